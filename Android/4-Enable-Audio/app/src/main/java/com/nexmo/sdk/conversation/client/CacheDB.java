@@ -7,27 +7,57 @@ package com.nexmo.sdk.conversation.client;
 
 import android.annotation.TargetApi;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.DatabaseUtils;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.os.Build;
 
+import com.nexmo.sdk.conversation.client.event.container.CacheUsage;
+import com.nexmo.sdk.conversation.config.Defaults;
+import com.nexmo.sdk.conversation.core.persistence.CacheBudget;
+import com.nexmo.sdk.conversation.core.persistence.CachePartitions;
+import com.nexmo.sdk.conversation.core.persistence.CacheWriter;
+import com.nexmo.sdk.conversation.core.persistence.InvalidationTracker;
+import com.nexmo.sdk.conversation.core.persistence.UserPreference;
+import com.nexmo.sdk.conversation.core.persistence.migration.CacheMigrations;
 import com.nexmo.sdk.conversation.core.util.Log;
 
 import com.nexmo.sdk.conversation.core.persistence.repository.ConversationRepository;
+import com.nexmo.sdk.conversation.core.persistence.repository.ConversationSummaryRepository;
 import com.nexmo.sdk.conversation.core.persistence.repository.MemberRepository;
 import com.nexmo.sdk.conversation.core.persistence.repository.EventRepository;
+import com.nexmo.sdk.conversation.core.persistence.repository.ReceiptRepository;
 import com.nexmo.sdk.conversation.core.persistence.contract.ConversationContract.ConversationEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.ConversationSummaryContract.ConversationSummaryEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.MessageSearchContract;
+import com.nexmo.sdk.conversation.core.persistence.contract.MessageSearchContract.MessageSearchEntry;
 import com.nexmo.sdk.conversation.core.persistence.contract.MemberContract.MemberEntry;
 import com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.ReceiptContract.ReceiptEntry;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Database helper for updating and accessing the cached conversations.
  *
+ * <p>The database runs in write-ahead-logging mode and stays open for the lifetime of the process:
+ * all writes go through a single {@link CacheWriter} thread and are group committed on the primary
+ * connection, reads run concurrently on the pool of read connections and see the last committed
+ * snapshot, so they never wait on a sync in progress. Readers which need their own writes
+ * call {@link #awaitPendingWrites()} first.</p>
+ *
+ * <p>Each user has a database file of their own, see {@link CachePartitions}. On login the active
+ * instance is switched to the user's partition, the other partitions are kept as they are.</p>
+ *
+ * <p>The active partition is kept within the {@link CacheBudget} while the writer is idle.</p>
+ *
+ * <p>Committed changes are reported to the {@link CacheWriter.InvalidationListener}, a switch
+ * of partition as a change of everything.</p>
+ *
  * @hide
  *
  * @author emma tresanszki.
@@ -36,24 +66,30 @@ public class CacheDB extends SQLiteOpenHelper {
     public static final String TAG = CacheDB.class.getSimpleName();
 
     private static CacheDB instance;
-    private static SQLiteDatabase sDatabase;
-    private AtomicInteger mOpenCounter = new AtomicInteger();
+    private static CacheBudget budget;
+    private static CacheWriter.InvalidationListener invalidationListener;
+    private final String databaseName;
+    private final CacheWriter writer;
 
-    private static final int DATABASE_VERSION = 3;
-    private static final String DATABASE_NAME = "ConversationCache.db";
+    // schema changes need a migration from the previous version, see CacheMigrations.
+    private static final int DATABASE_VERSION = 8;
     private static final String TEXT_TYPE = " TEXT";
-    private static final String DATE_TYPE = " TIMESTAMP";
+    private static final String INTEGER_TYPE = " INTEGER";
+    // dates are stored as epoch millis.
+    private static final String DATE_TYPE = INTEGER_TYPE;
     private static final String COMMA_SEP = ",";
-    private static ConversationRepository conversationRepository;
-    private static MemberRepository memberRepository;
-    private static EventRepository eventRepository;
+    private final ConversationRepository conversationRepository;
+    private final MemberRepository memberRepository;
+    private final EventRepository eventRepository;
+    private final ReceiptRepository receiptRepository;
+    private final ConversationSummaryRepository conversationSummaryRepository;
 
     private static final String SQL_CREATE_CONVERSATION_ENTRIES =
             "CREATE TABLE " + ConversationEntry.TABLE_NAME + " (" +
                     ConversationEntry.COLUMN_CID + TEXT_TYPE + " PRIMARY KEY" + COMMA_SEP + //will create int PK based on hashcode
                     ConversationEntry.COLUMN_NAME + TEXT_TYPE + COMMA_SEP +
                     ConversationEntry.COLUMN_CREATED + DATE_TYPE + COMMA_SEP +
-                    ConversationEntry.COLUMN_LAST_EVENT_ID + TEXT_TYPE + COMMA_SEP +
+                    ConversationEntry.COLUMN_LAST_EVENT_ID + INTEGER_TYPE + COMMA_SEP +
                     ConversationEntry.COLUMN_MEMBER_ID + TEXT_TYPE +
                     " )";
 
@@ -71,12 +107,14 @@ public class CacheDB extends SQLiteOpenHelper {
                     " FOREIGN KEY(" + ConversationEntry.COLUMN_CID +
                     ") REFERENCES " + ConversationEntry.TABLE_NAME + "(" + ConversationEntry.COLUMN_CID + ")" +
                     " ON DELETE CASCADE" +
-                    " );" +
-                    "CREATE INDEX idx_member_cid ON " + MemberEntry.TABLE_NAME + "(" + ConversationEntry.COLUMN_CID + ")";
+                    " )";
+
+    private static final String SQL_CREATE_MEMBER_CID_INDEX =
+            "CREATE INDEX idx_member_cid ON " + MemberEntry.TABLE_NAME + "(" + ConversationEntry.COLUMN_CID + ")";
 
     private static final String SQL_CREATE_MESSAGE_ENTRIES =
             "CREATE TABLE " + EventEntry.TABLE_NAME + " (" +
-                    EventEntry.COLUMN_EVENT_ID + TEXT_TYPE + COMMA_SEP +
+                    EventEntry.COLUMN_EVENT_ID + INTEGER_TYPE + COMMA_SEP +
                     EventEntry.COLUMN_CID + TEXT_TYPE + COMMA_SEP +
                     EventEntry.COLUMN_MESSAGE_TYPE + TEXT_TYPE + COMMA_SEP +
                     EventEntry.COLUMN_TEXT + TEXT_TYPE + COMMA_SEP +
@@ -84,84 +122,195 @@ public class CacheDB extends SQLiteOpenHelper {
                     EventEntry.COLUMN_TIMESTAMP + DATE_TYPE + COMMA_SEP +
                     EventEntry.COLUMN_DELETED_TIMESTAMP + DATE_TYPE + COMMA_SEP +
                     EventEntry.COLUMN_IMAGE_REPRESENTATIONS + TEXT_TYPE + COMMA_SEP +
-                    EventEntry.COLUMN_DELIVERED_RECEIPTS + TEXT_TYPE + COMMA_SEP +
-                    EventEntry.COLUMN_SEEN_RECEIPTS + TEXT_TYPE + COMMA_SEP +
                     EventEntry.COLUMN_MEMBER_MEDIA_ENABLED + " INT , " +
-                    " PRIMARY KEY (" + EventEntry.COLUMN_EVENT_ID + COMMA_SEP + EventEntry.COLUMN_CID + ")" + COMMA_SEP +
+                    // (conversation_id, event_id) also serves as the index for reading pages of a conversation.
+                    " PRIMARY KEY (" + EventEntry.COLUMN_CID + COMMA_SEP + EventEntry.COLUMN_EVENT_ID + ")" + COMMA_SEP +
                     " FOREIGN KEY(" + EventEntry.COLUMN_MEMBER_ID + COMMA_SEP + EventEntry.COLUMN_CID +
                     ") REFERENCES " + MemberEntry.TABLE_NAME + "(" + MemberEntry.COLUMN_MEMBER_ID + COMMA_SEP + ConversationEntry.COLUMN_CID + ")" +
                     " ON DELETE CASCADE" +
-                    " );" +
-                    "CREATE INDEX idx_message_cid ON " + EventEntry.TABLE_NAME + "(" + EventEntry.COLUMN_CID + ")";
+                    " )";
 
-    private static final String SQL_DELETE_CONVERSATION_ENTRIES =
-            "DROP TABLE IF EXISTS " + ConversationEntry.TABLE_NAME;
-    private static final String SQL_DELETE_MEMBER_ENTRIES =
-            "DROP TABLE IF EXISTS " + MemberEntry.TABLE_NAME;
-    private static final String SQL_DELETE_MESSAGE_ENTRIES =
-            "DROP TABLE IF EXISTS " + EventEntry.TABLE_NAME;
+    // keyed by event, so a page of receipts is a range of the key.
+    private static final String SQL_CREATE_RECEIPT_ENTRIES =
+            "CREATE TABLE " + ReceiptEntry.TABLE_NAME + " (" +
+                    ReceiptEntry.COLUMN_CID + TEXT_TYPE + COMMA_SEP +
+                    ReceiptEntry.COLUMN_EVENT_ID + INTEGER_TYPE + COMMA_SEP +
+                    ReceiptEntry.COLUMN_MEMBER_ID + TEXT_TYPE + COMMA_SEP +
+                    ReceiptEntry.COLUMN_KIND + TEXT_TYPE + COMMA_SEP +
+                    ReceiptEntry.COLUMN_TIMESTAMP + DATE_TYPE + COMMA_SEP +
+                    " PRIMARY KEY (" + ReceiptEntry.COLUMN_CID + COMMA_SEP + ReceiptEntry.COLUMN_EVENT_ID + COMMA_SEP +
+                    ReceiptEntry.COLUMN_MEMBER_ID + COMMA_SEP + ReceiptEntry.COLUMN_KIND + ")" + COMMA_SEP +
+                    " FOREIGN KEY(" + ReceiptEntry.COLUMN_CID + COMMA_SEP + ReceiptEntry.COLUMN_EVENT_ID +
+                    ") REFERENCES " + EventEntry.TABLE_NAME + "(" + EventEntry.COLUMN_CID + COMMA_SEP + EventEntry.COLUMN_EVENT_ID + ")" +
+                    " ON DELETE CASCADE" +
+                    " )";
+
+    // no foreign key, replacing a conversation row mustn't drop its summary.
+    private static final String SQL_CREATE_CONVERSATION_SUMMARY_ENTRIES =
+            "CREATE TABLE " + ConversationSummaryEntry.TABLE_NAME + " (" +
+                    ConversationSummaryEntry.COLUMN_CID + TEXT_TYPE + " PRIMARY KEY" + COMMA_SEP +
+                    ConversationSummaryEntry.COLUMN_LAST_EVENT_ID + INTEGER_TYPE + COMMA_SEP +
+                    ConversationSummaryEntry.COLUMN_LAST_EVENT_TYPE + TEXT_TYPE + COMMA_SEP +
+                    ConversationSummaryEntry.COLUMN_LAST_EVENT_TEXT + TEXT_TYPE + COMMA_SEP +
+                    ConversationSummaryEntry.COLUMN_LAST_EVENT_MEMBER_ID + TEXT_TYPE + COMMA_SEP +
+                    ConversationSummaryEntry.COLUMN_LAST_EVENT_DELETED + INTEGER_TYPE + COMMA_SEP +
+                    ConversationSummaryEntry.COLUMN_LAST_ACTIVITY + DATE_TYPE + COMMA_SEP +
+                    ConversationSummaryEntry.COLUMN_UNREAD_COUNT + INTEGER_TYPE + " NOT NULL DEFAULT 0" +
+                    " )";
 
-    static synchronized void initializeCacheDBInstance(Context context){
+    // opens the partition of the last logged in user, if any.
+    static synchronized void initializeCacheDBInstance(Context context, CacheBudget cacheBudget,
+                                                       CacheWriter.InvalidationListener listener){
+        budget = cacheBudget;
+        invalidationListener = listener;
         if (instance == null) {
-            instance = new CacheDB(context);
-            initializeRepositories();
+            User user = UserPreference.getLoggedInUser(context);
+            CachePartitions.adoptDefaultDatabase(user, context);
+            instance = new CacheDB(context, CachePartitions.databaseName(user));
         }
     }
 
+    /**
+     * Switch the cache to the partition of the user logging in. The previous partition is closed
+     * once its pending writes are committed, and kept for when that user logs in again.
+     */
+    static void switchToUser(Context context, User user) {
+        String databaseName = CachePartitions.databaseName(user);
+        CacheDB previous;
+        synchronized (CacheDB.class) {
+            previous = instance;
+            if (previous != null && previous.databaseName.equals(databaseName)) {
+                CachePartitions.touch(databaseName, context);
+                return;
+            }
+            instance = new CacheDB(context, databaseName);
+        }
+        Log.d(TAG, "switchToUser: " + databaseName);
+
+        if (previous != null)
+            previous.shutdown();
+        CachePartitions.touch(databaseName, context);
+        if (invalidationListener != null)
+            invalidationListener.onInvalidated(null);
+    }
+
     static synchronized CacheDB getCacheDBInstance(){
         return instance;
     }
 
-    public synchronized SQLiteDatabase openDatabase(){
-        if(mOpenCounter.incrementAndGet() == 1 || sDatabase == null) {
-            // Opening new database
-            sDatabase = instance.getWritableDatabase();
-        }
-        return sDatabase;
+    /**
+     * Shared database handle, opened on first use. Don't close it, see {@link #closeDatabase()}.
+     */
+    public SQLiteDatabase openDatabase(){
+        // the helper keeps the handle open and reopens it if closed on logout.
+        return getWritableDatabase();
     }
 
-    synchronized void closeDatabase(){
-        if(mOpenCounter.decrementAndGet() >= 0) {
-            mOpenCounter.set(0);
-            // Closing database
-            sDatabase.close();
-            sDatabase = null;
-        }
+    /**
+     * Block until writes queued so far have been committed.
+     */
+    public void awaitPendingWrites() {
+        this.writer.awaitPendingWrites();
     }
 
-    private CacheDB(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    /**
+     * Queue a write, it's applied on the writer thread as part of the next group commit.
+     */
+    public void write(CacheWriter.Mutation mutation) {
+        this.writer.write(mutation);
     }
 
-    private static void initializeRepositories() {
-        conversationRepository = new ConversationRepository(getCacheDBInstance());
-        memberRepository = new MemberRepository(getCacheDBInstance());
-        eventRepository = new EventRepository(getCacheDBInstance());
+    /**
+     * Current size of this partition and of the stored images. Reads the database, don't call it
+     * on the main thread.
+     */
+    CacheUsage getUsage() {
+        return budget.usage(openDatabase());
+    }
+
+    /**
+     * Close the database once writes queued so far have been committed, e.g. on logout.
+     * Readers still holding the handle finish their query first, the next
+     * {@link #openDatabase()} opens it again.
+     */
+    void closeDatabase(){
+        this.writer.runExclusive(new Runnable() {
+            @Override
+            public void run() {
+                close();
+            }
+        });
+    }
+
+    /**
+     * Close the database for good, writes queued after this are dropped.
+     */
+    private void shutdown() {
+        // the writer thread has stopped, no commit or idle task can run into the close.
+        this.writer.shutdown();
+        close();
+    }
+
+    private CacheDB(Context context, String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
+        this.databaseName = databaseName;
+        setWriteAheadLoggingEnabled(true);
+        this.writer = new CacheWriter(this, Defaults.CACHE_FLUSH_WINDOW, Defaults.CACHE_MAX_BATCH_SIZE);
+        this.writer.setIdleTask(budget, Defaults.CACHE_IDLE_DELAY);
+        this.writer.setInvalidationListener(invalidationListener);
+        this.conversationRepository = new ConversationRepository(this);
+        this.memberRepository = new MemberRepository(this);
+        this.eventRepository = new EventRepository(this);
+        this.receiptRepository = new ReceiptRepository(this);
+        this.conversationSummaryRepository = new ConversationSummaryRepository(this);
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
-        Log.d(TAG, "ConversationCache.db onCreate");
+        Log.d(TAG, this.databaseName + " onCreate");
         db.execSQL(SQL_CREATE_CONVERSATION_ENTRIES);
         db.execSQL(SQL_CREATE_MEMBER_ENTRIES);
+        // execSQL runs a single statement, indexes need their own call.
+        db.execSQL(SQL_CREATE_MEMBER_CID_INDEX);
         db.execSQL(SQL_CREATE_MESSAGE_ENTRIES);
+        db.execSQL(SQL_CREATE_RECEIPT_ENTRIES);
+        db.execSQL(SQL_CREATE_CONVERSATION_SUMMARY_ENTRIES);
+        db.execSQL(MessageSearchContract.SQL_CREATE);
+        for (String trigger : MessageSearchContract.SQL_CREATE_TRIGGERS)
+            db.execSQL(trigger);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        Log.d(TAG, "ConversationCache.db onUpgrade Old version: " + oldVersion + " to new version: " + newVersion);
-        // This database is only a cache for online data, so its upgrade policy is
-        // to simply to discard the data and start over
-        switch(oldVersion) {
-            case 1:
-                //fall through
-            default:
-                db.execSQL(SQL_DELETE_CONVERSATION_ENTRIES);
-                db.execSQL(SQL_DELETE_MEMBER_ENTRIES);
-                db.execSQL(SQL_DELETE_MESSAGE_ENTRIES);
-                onCreate(db);
-                break;
+        Log.d(TAG, this.databaseName + " onUpgrade Old version: " + oldVersion + " to new version: " + newVersion);
+        // migrate the cached data in place, so it doesn't have to be synced again after an SDK update.
+        try {
+            if (CacheMigrations.migrate(db, oldVersion, newVersion))
+                return;
+        } catch (SQLException e) {
+            Log.e(TAG, "onUpgrade: migration failed, the cache is recreated", e);
         }
+        // This database is only a cache for online data, so without a migration
+        // its upgrade policy is to simply to discard the data and start over
+        recreate(db);
+    }
+
+    // drop whatever is there, including tables left by a failed migration.
+    // virtual tables first, dropping them drops their shadow tables.
+    private void recreate(SQLiteDatabase db) {
+        List<String> tables = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'table'" +
+                " AND name NOT LIKE 'sqlite_%' AND name <> 'android_metadata'" +
+                " ORDER BY sql LIKE 'CREATE VIRTUAL%' DESC", null);
+        try {
+            while (cursor.moveToNext())
+                tables.add(cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
+        for (String table : tables)
+            db.execSQL("DROP TABLE IF EXISTS " + table);
+        onCreate(db);
     }
 
     @Override
@@ -170,6 +319,10 @@ public class CacheDB extends SQLiteOpenHelper {
         if (!db.isReadOnly()) {
             // Enable foreign key constraints
             setForeignKeyConstraintsEnabled(db);
+            // so rows deleted by insert-or-replace fire the delete triggers, e.g. of the search index.
+            db.execSQL("PRAGMA recursive_triggers = ON");
+            // per connection, so on every open.
+            InvalidationTracker.install(db);
         }
     }
 
@@ -187,8 +340,9 @@ public class CacheDB extends SQLiteOpenHelper {
 
     @Override
     public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        onUpgrade(db, oldVersion, newVersion);
-        Log.d(TAG, "ConversationCache.db onDowngrade from new version: " + newVersion + " to Old version: " + oldVersion);
+        // a newer schema can't be known by this version, start over.
+        recreate(db);
+        Log.d(TAG, this.databaseName + " onDowngrade from new version: " + newVersion + " to Old version: " + oldVersion);
     }
 
     boolean tableContainsRows(String tableName) {
@@ -206,10 +360,18 @@ public class CacheDB extends SQLiteOpenHelper {
         return eventRepository;
     }
 
+    ReceiptRepository getReceiptRepository() {
+        return receiptRepository;
+    }
+
     ConversationRepository getConversationRepository() {
         return conversationRepository;
     }
 
+    ConversationSummaryRepository getConversationSummaryRepository() {
+        return conversationSummaryRepository;
+    }
+
     void updateMembersForConversations(Map<String, List<Member>> conversationMembersMap) {
         for (Map.Entry<String, List<Member>> entry : conversationMembersMap.entrySet())
             memberRepository.insertAll(entry.getKey(), entry.getValue());
@@ -221,22 +383,17 @@ public class CacheDB extends SQLiteOpenHelper {
      * @VisibleForTesting
      */
     void clearDb() {
-        SQLiteDatabase db = getCacheDBInstance().openDatabase();
-        db.execSQL("delete from "+ ConversationEntry.TABLE_NAME);
-        db.execSQL("delete from " + MemberEntry.TABLE_NAME);
-        db.execSQL("delete from " + EventEntry.TABLE_NAME);
-    }
-
-    /**
-     * @VisibleForTesting
-     */
-    private void dropDB() {
-        Log.d(TAG, "dropDB");
-        SQLiteDatabase db = getCacheDBInstance().openDatabase();
-        db.execSQL(SQL_DELETE_CONVERSATION_ENTRIES);
-        db.execSQL(SQL_DELETE_MEMBER_ENTRIES);
-        db.execSQL(SQL_DELETE_MESSAGE_ENTRIES);
-        getCacheDBInstance().closeDatabase();
+        write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                db.execSQL("delete from " + ReceiptEntry.TABLE_NAME);
+                db.execSQL("delete from " + ConversationSummaryEntry.TABLE_NAME);
+                db.execSQL("delete from " + MessageSearchEntry.TABLE_NAME);
+                db.execSQL("delete from "+ ConversationEntry.TABLE_NAME);
+                db.execSQL("delete from " + MemberEntry.TABLE_NAME);
+                db.execSQL("delete from " + EventEntry.TABLE_NAME);
+            }
+        });
     }
 
 }
@@ -0,0 +1,132 @@
+package com.nexmo.sdk.conversation.client;
+
+import com.nexmo.sdk.conversation.core.persistence.CacheWriter;
+import com.nexmo.sdk.conversation.core.persistence.contract.ConversationContract.ConversationEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.ConversationSummaryContract.ConversationSummaryEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.MemberContract.MemberEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.ReceiptContract.ReceiptEntry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs the {@link CachedQuery} instances which have subscribers, again whenever the cache writer
+ * commits a change to what they read.
+ *
+ * <p>Queries share a single background thread, so they never compete with each other for the
+ * read connections, and a burst of writes costs one run per query.</p>
+ *
+ * @hide
+ */
+class CacheObservers implements CacheWriter.InvalidationListener {
+    private final ConversationClient conversationClient;
+    private final Set<CachedQuery<?>> active = new CopyOnWriteArraySet<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "capi-sdk-cache-query");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    CacheObservers(ConversationClient conversationClient) {
+        this.conversationClient = conversationClient;
+    }
+
+    @Override
+    public void onInvalidated(Map<String, Set<String>> cidsByTable) {
+        for (CachedQuery<?> query : this.active)
+            if (query.dependsOn(cidsByTable))
+                query.invalidate();
+    }
+
+    void activate(CachedQuery<?> query) {
+        this.active.add(query);
+    }
+
+    void deactivate(CachedQuery<?> query) {
+        this.active.remove(query);
+    }
+
+    void execute(Runnable task) {
+        this.executor.execute(task);
+    }
+
+    /**
+     * The latest events of a conversation with their receipts, oldest first.
+     */
+    CachedQuery<List<Event>> events(final Conversation conversation, final int limit) {
+        final String cid = conversation.getConversationId();
+        return new CachedQuery<List<Event>>(this.conversationClient, this, cid,
+                EventEntry.TABLE_NAME, ReceiptEntry.TABLE_NAME) {
+            @Override
+            List<Event> run(CacheDB cacheDB) {
+                return cacheDB.getEventRepository().readPage(cid, conversation, null, limit);
+            }
+
+            @Override
+            boolean sameResult(List<Event> previous, List<Event> next) {
+                if (previous.size() != next.size()) return false;
+
+                for (int i = 0; i < previous.size(); i++) {
+                    Event before = previous.get(i);
+                    Event after = next.get(i);
+                    if (!before.contentEquals(after)
+                            || before.getSeenReceipts().size() != after.getSeenReceipts().size()
+                            || before.getDeliveredReceipts().size() != after.getDeliveredReceipts().size())
+                        return false;
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Every conversation summary, most recently active first.
+     */
+    CachedQuery<List<ConversationSummary>> conversationSummaries() {
+        return new CachedQuery<List<ConversationSummary>>(this.conversationClient, this, null,
+                ConversationSummaryEntry.TABLE_NAME, ConversationEntry.TABLE_NAME) {
+            @Override
+            List<ConversationSummary> run(CacheDB cacheDB) {
+                return cacheDB.getConversationSummaryRepository().readAll();
+            }
+
+            @Override
+            boolean sameResult(List<ConversationSummary> previous, List<ConversationSummary> next) {
+                return previous.equals(next);
+            }
+        };
+    }
+
+    /**
+     * The cached members of a conversation.
+     */
+    CachedQuery<List<Member>> members(Conversation conversation) {
+        final String cid = conversation.getConversationId();
+        return new CachedQuery<List<Member>>(this.conversationClient, this, cid, MemberEntry.TABLE_NAME) {
+            @Override
+            List<Member> run(CacheDB cacheDB) {
+                return cacheDB.getMemberRepository().read(cid);
+            }
+
+            @Override
+            boolean sameResult(List<Member> previous, List<Member> next) {
+                if (previous.size() != next.size()) return false;
+
+                for (int i = 0; i < previous.size(); i++)
+                    if (!previous.get(i).contentEquals(next.get(i)))
+                        return false;
+                return true;
+            }
+        };
+    }
+
+}
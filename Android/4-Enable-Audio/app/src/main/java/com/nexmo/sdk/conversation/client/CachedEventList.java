@@ -0,0 +1,105 @@
+package com.nexmo.sdk.conversation.client;
+
+import android.database.Cursor;
+
+import com.nexmo.sdk.conversation.core.persistence.contract.EventContract;
+import com.nexmo.sdk.conversation.core.persistence.repository.EventRepository;
+
+import java.io.Closeable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Read-only view of the cached events of a conversation, oldest first.
+ *
+ * <p>Events are read from the cache only as they are accessed, a block of events at a time,
+ * and only the most recently used blocks are kept in memory, so scrolling through a long history
+ * costs about as much as the events on screen. Receipts are attached when a block is read.</p>
+ *
+ * <p>The view holds a database cursor, close it once done with it.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     CachedEventList events = conversation.getCachedEvents();
+ *     Event latest = events.get(events.size() - 1);
+ *     ...
+ *     events.close();
+ * </pre>
+ */
+public class CachedEventList extends AbstractList<Event> implements RandomAccess, Closeable {
+    private static final String TAG = CachedEventList.class.getSimpleName();
+
+    private final Cursor cursor;
+    private final Conversation conversation;
+    private final EventRepository eventRepository;
+    private final EventContract.Columns columns;
+    private final int blockSize;
+    private final int size;
+    private final Map<Integer, Event[]> blocks;
+
+    CachedEventList(Cursor cursor, Conversation conversation, EventRepository eventRepository,
+                    int blockSize, final int blocksKept) {
+        this.cursor = cursor;
+        this.conversation = conversation;
+        this.eventRepository = eventRepository;
+        this.columns = new EventContract.Columns(cursor);
+        this.blockSize = blockSize;
+        this.size = cursor.getCount();
+        // access ordered, evicts the least recently used block.
+        this.blocks = new LinkedHashMap<Integer, Event[]>(blocksKept + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Event[]> eldest) {
+                return size() > blocksKept;
+            }
+        };
+    }
+
+    @Override
+    public synchronized Event get(int index) {
+        if (index < 0 || index >= this.size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+
+        Integer block = index / this.blockSize;
+        Event[] events = this.blocks.get(block);
+        if (events == null) {
+            events = readBlock(block);
+            this.blocks.put(block, events);
+        }
+        return events[index % this.blockSize];
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public synchronized void close() {
+        this.blocks.clear();
+        this.cursor.close();
+    }
+
+    private Event[] readBlock(int block) {
+        if (this.cursor.isClosed())
+            throw new IllegalStateException(TAG + " is closed");
+
+        int first = block * this.blockSize;
+        Event[] events = new Event[Math.min(this.blockSize, this.size - first)];
+        for (int i = 0; i < events.length; i++) {
+            this.cursor.moveToPosition(first + i);
+            events[i] = Event.fromCursor(this.cursor, this.conversation, this.columns);
+        }
+
+        List<Event> mapped = new ArrayList<>(Arrays.asList(events));
+        mapped.removeAll(Collections.singleton(null));
+        this.eventRepository.attachReceipts(this.conversation.getConversationId(), mapped);
+        return events;
+    }
+
+}
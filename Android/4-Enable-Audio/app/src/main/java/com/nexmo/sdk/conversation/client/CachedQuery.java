@@ -0,0 +1,245 @@
+package com.nexmo.sdk.conversation.client;
+
+import com.nexmo.sdk.conversation.client.event.NexmoAPIError;
+import com.nexmo.sdk.conversation.client.event.RequestHandler;
+import com.nexmo.sdk.conversation.core.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * A query over the cache which result is delivered again whenever it changes.
+ *
+ * <p>The query runs in the background when the first handler subscribes, and again only after
+ * a write to one of the tables it reads, for the conversation it reads. Writes arriving while it
+ * runs are coalesced into a single re-run. The result is delivered only if it differs from the
+ * previous one, a handler subscribing later gets the last result straight away.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ *     CachedQuery&lt;List&lt;ConversationSummary&gt;&gt; summaries = myClient.observeConversationSummaries();
+ *     summaries.subscribe(new RequestHandler&lt;List&lt;ConversationSummary&gt;&gt;() {
+ *         &#64;Override
+ *         public void onSuccess(List&lt;ConversationSummary&gt; result) {
+ *             // Update the conversation list here.
+ *         }
+ *         &#64;Override
+ *         public void onError(NexmoAPIError error) {
+ *         }
+ *     });
+ *     ...
+ *     summaries.unsubscribe(handler);
+ * </pre>
+ *
+ * @param <T> The result type.
+ */
+public abstract class CachedQuery<T> {
+    private static final String TAG = CachedQuery.class.getSimpleName();
+
+    private final ConversationClient conversationClient;
+    private final CacheObservers cacheObservers;
+    private final String cid;
+    private final List<String> tables;
+
+    // guarded by this.
+    private final List<Subscriber<T>> subscribers = new ArrayList<>();
+    private T result;
+    private boolean hasResult;
+    private boolean running;
+    private boolean dirty;
+
+    /**
+     * @param cid    The conversation read, or null if it reads every conversation.
+     * @param tables The tables read.
+     */
+    CachedQuery(ConversationClient conversationClient, CacheObservers cacheObservers, String cid, String... tables) {
+        this.conversationClient = conversationClient;
+        this.cacheObservers = cacheObservers;
+        this.cid = cid;
+        this.tables = Arrays.asList(tables);
+    }
+
+    /**
+     * Receive the result, on the callback thread of the {@link ConversationClient}.
+     */
+    public void subscribe(RequestHandler<T> handler) {
+        subscribe(handler, null);
+    }
+
+    /**
+     * Receive the result on a given executor, e.g. to process it off the main thread.
+     *
+     * @param handler  The result handler.
+     * @param delivery The executor the handler is called on, or null for the callback thread
+     *                 of the {@link ConversationClient}.
+     */
+    public void subscribe(RequestHandler<T> handler, Executor delivery) {
+        if (handler == null) return;
+
+        Subscriber<T> subscriber = new Subscriber<>(handler, delivery);
+        boolean first;
+        T current = null;
+        boolean hasCurrent;
+        synchronized (this) {
+            first = this.subscribers.isEmpty();
+            this.subscribers.add(subscriber);
+            hasCurrent = this.hasResult;
+            if (hasCurrent)
+                current = this.result;
+        }
+
+        if (first) {
+            this.cacheObservers.activate(this);
+            invalidate();
+        } else if (hasCurrent)
+            deliver(subscriber, current);
+    }
+
+    /**
+     * Stop receiving results. Once the last handler is gone the query isn't run anymore.
+     */
+    public void unsubscribe(RequestHandler<T> handler) {
+        synchronized (this) {
+            Iterator<Subscriber<T>> iterator = this.subscribers.iterator();
+            while (iterator.hasNext())
+                if (iterator.next().handler == handler)
+                    iterator.remove();
+            if (!this.subscribers.isEmpty())
+                return;
+
+            this.result = null;
+            this.hasResult = false;
+        }
+        this.cacheObservers.deactivate(this);
+    }
+
+    /**
+     * Read the result, on the query thread.
+     */
+    abstract T run(CacheDB cacheDB);
+
+    /**
+     * @return true if the subscribers don't need to be told about the new result.
+     */
+    abstract boolean sameResult(T previous, T next);
+
+    /**
+     * @param cidsByTable The conversations changed by table, or null if anything may have changed.
+     */
+    boolean dependsOn(Map<String, Set<String>> cidsByTable) {
+        if (cidsByTable == null) return true;
+
+        for (String table : this.tables) {
+            Set<String> cids = cidsByTable.get(table);
+            if (cids != null && (this.cid == null || cids.contains(this.cid)))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Run the query again, once the current run if any is done.
+     */
+    void invalidate() {
+        synchronized (this) {
+            if (this.running) {
+                this.dirty = true;
+                return;
+            }
+            this.running = true;
+        }
+        this.cacheObservers.execute(new Runnable() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        });
+    }
+
+    private void refresh() {
+        while (true) {
+            synchronized (this) {
+                this.dirty = false;
+                if (this.subscribers.isEmpty()) {
+                    this.running = false;
+                    return;
+                }
+            }
+
+            T next = null;
+            NexmoAPIError error = null;
+            try {
+                next = run(CacheDB.getCacheDBInstance());
+            } catch (RuntimeException e) {
+                Log.e(TAG, "refresh: query failed", e);
+                error = new NexmoAPIError(NexmoAPIError.UNEXPECTED_RESPONSE, this.cid, "Cache query failed: " + e.getMessage());
+            }
+
+            List<Subscriber<T>> targets = null;
+            boolean again;
+            synchronized (this) {
+                if (error != null || !this.hasResult || !sameResult(this.result, next)) {
+                    if (error == null) {
+                        this.result = next;
+                        this.hasResult = true;
+                    }
+                    targets = new ArrayList<>(this.subscribers);
+                }
+                again = this.dirty;
+                if (!again)
+                    this.running = false;
+            }
+
+            if (targets != null)
+                for (Subscriber<T> subscriber : targets) {
+                    if (error != null)
+                        fail(subscriber, error);
+                    else
+                        deliver(subscriber, next);
+                }
+            if (!again)
+                return;
+        }
+    }
+
+    private void deliver(final Subscriber<T> subscriber, final T result) {
+        dispatch(subscriber, new Runnable() {
+            @Override
+            public void run() {
+                subscriber.handler.onSuccess(result);
+            }
+        });
+    }
+
+    private void fail(final Subscriber<T> subscriber, final NexmoAPIError error) {
+        dispatch(subscriber, new Runnable() {
+            @Override
+            public void run() {
+                subscriber.handler.onError(error);
+            }
+        });
+    }
+
+    private void dispatch(Subscriber<T> subscriber, Runnable callback) {
+        if (subscriber.delivery != null)
+            subscriber.delivery.execute(callback);
+        else
+            this.conversationClient.callUserCallback(callback);
+    }
+
+    private static class Subscriber<T> {
+        private final RequestHandler<T> handler;
+        private final Executor delivery;
+
+        Subscriber(RequestHandler<T> handler, Executor delivery) {
+            this.handler = handler;
+            this.delivery = delivery;
+        }
+    }
+
+}
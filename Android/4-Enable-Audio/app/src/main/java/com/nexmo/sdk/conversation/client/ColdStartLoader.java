@@ -0,0 +1,113 @@
+package com.nexmo.sdk.conversation.client;
+
+import android.os.SystemClock;
+
+import com.nexmo.sdk.conversation.client.event.NexmoAPIError;
+import com.nexmo.sdk.conversation.client.event.RequestHandler;
+import com.nexmo.sdk.conversation.core.persistence.UserPreference;
+import com.nexmo.sdk.conversation.core.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the conversation list of the last logged in user from cache on a background thread,
+ * so it can be rendered before the socket connects and the user logs in.
+ *
+ * <p>The cache is read once per {@link ConversationClient}. Listeners which ask after that get
+ * the in-memory conversation list, which the network sync keeps up to date.</p>
+ *
+ * @hide
+ */
+class ColdStartLoader {
+    private static final String TAG = ColdStartLoader.class.getSimpleName();
+
+    private final ConversationClient conversationClient;
+    private final int recentEvents;
+    // guarded by this.
+    private final List<RequestHandler<List<Conversation>>> pendingListeners = new ArrayList<>();
+    private boolean started;
+    private boolean loaded;
+    private NexmoAPIError error;
+
+    ColdStartLoader(ConversationClient conversationClient, int recentEvents) {
+        this.conversationClient = conversationClient;
+        this.recentEvents = recentEvents;
+    }
+
+    void start() {
+        synchronized (this) {
+            if (this.started) return;
+            this.started = true;
+        }
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        }, "capi-sdk-cold-start");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void getConversations(RequestHandler<List<Conversation>> listener) {
+        synchronized (this) {
+            if (!this.loaded) {
+                this.pendingListeners.add(listener);
+                listener = null;
+            }
+        }
+        if (listener != null)
+            deliver(listener);
+        start();
+    }
+
+    private void load() {
+        long startedAt = SystemClock.elapsedRealtime();
+        User user = UserPreference.getLoggedInUser(this.conversationClient.getContext());
+        NexmoAPIError loadError = null;
+        if (user == null)
+            loadError = NexmoAPIError.noUserLoggedIn();
+        else {
+            try {
+                List<Conversation> conversations = this.conversationClient.getSignallingChannel()
+                        .loadConversationListFromCache(user, this.recentEvents, false);
+                Log.d(TAG, "load: " + conversations.size() + " conversations in "
+                        + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+            } catch (RuntimeException e) {
+                Log.e(TAG, "load: couldn't read the cache", e);
+                loadError = new NexmoAPIError(NexmoAPIError.UNEXPECTED_RESPONSE, "Couldn't read the cache: " + e.getMessage());
+            }
+        }
+
+        List<RequestHandler<List<Conversation>>> listeners;
+        synchronized (this) {
+            this.error = loadError;
+            this.loaded = true;
+            listeners = new ArrayList<>(this.pendingListeners);
+            this.pendingListeners.clear();
+        }
+        if (loadError == null)
+            this.conversationClient.reportFirstConversationList("cold start");
+        for (RequestHandler<List<Conversation>> listener : listeners)
+            deliver(listener);
+    }
+
+    private void deliver(final RequestHandler<List<Conversation>> listener) {
+        final NexmoAPIError loadError;
+        synchronized (this) {
+            loadError = this.error;
+        }
+        this.conversationClient.callUserCallback(new Runnable() {
+            @Override
+            public void run() {
+                if (loadError != null)
+                    listener.onError(loadError);
+                else
+                    listener.onSuccess(conversationClient.getConversationList());
+            }
+        });
+    }
+
+}
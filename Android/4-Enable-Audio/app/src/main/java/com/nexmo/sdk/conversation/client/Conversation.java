@@ -12,6 +12,7 @@ import android.database.Cursor;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.VisibleForTesting;
 import android.support.v4.content.ContextCompat;
@@ -20,11 +21,14 @@ import android.text.TextUtils;
 import com.nexmo.sdk.conversation.client.audio.AppRTCAudioManager;
 import com.nexmo.sdk.conversation.client.audio.AudioCallEventListener;
 import com.nexmo.sdk.conversation.client.audio.AudioCallManager;
+import com.nexmo.sdk.conversation.client.event.ConversationOpenListener;
 import com.nexmo.sdk.conversation.client.event.NexmoAPIError;
 import com.nexmo.sdk.conversation.client.event.RequestHandler;
+import com.nexmo.sdk.conversation.client.event.container.ConversationUpdate;
 import com.nexmo.sdk.conversation.client.event.container.Invitation;
 import com.nexmo.sdk.conversation.client.event.container.Receipt;
 import com.nexmo.sdk.conversation.config.Defaults;
+import com.nexmo.sdk.conversation.core.IndexedList;
 import com.nexmo.sdk.conversation.core.util.Log;
 
 import com.nexmo.sdk.conversation.client.event.EventType;
@@ -37,9 +41,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
-import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -132,9 +134,34 @@ public class Conversation {
     public enum MEDIA_TYPE { AUDIO }
     private long typingTimeOutLength = Defaults.TYPING_TIMER_LENGTH;
 
-    //TODO v2.0 key value map based on memberId to fast up the search
-    private List<Member> members = Collections.synchronizedList(new ArrayList<Member>());
-    private List<Event> events = Collections.synchronizedList(new ArrayList<Event>());
+    static final IndexedList.KeyExtractor<Member> MEMBER_BY_ID = new IndexedList.KeyExtractor<Member>() {
+        @Override
+        public String keyOf(Member member) {
+            return member.getMemberId();
+        }
+    };
+    static final IndexedList.KeyExtractor<Member> MEMBER_BY_USER_ID = new IndexedList.KeyExtractor<Member>() {
+        @Override
+        public String keyOf(Member member) {
+            return member.getUserId();
+        }
+    };
+    static final IndexedList.KeyExtractor<Member> MEMBER_BY_USERNAME = new IndexedList.KeyExtractor<Member>() {
+        @Override
+        public String keyOf(Member member) {
+            return member.getName();
+        }
+    };
+    static final IndexedList.KeyExtractor<Event> EVENT_BY_ID = new IndexedList.KeyExtractor<Event>() {
+        @Override
+        public String keyOf(Event event) {
+            return event.getId();
+        }
+    };
+
+    // members and events are indexed by id, so lookups don't scan the whole history.
+    private IndexedList<Member> members = newMemberList(null);
+    private IndexedList<Event> events = newEventList(null);
     //self as member of the conversation
     private Member self;
 
@@ -198,7 +225,7 @@ public class Conversation {
     protected Conversation(final String displayName, final String cid, final String lastEventId, final Member member,
                         final Date creationDate, List<Member> members) {
         this(displayName, cid, lastEventId, member, creationDate);
-        this.members = members;
+        this.members = newMemberList(members);
     }
 
     @VisibleForTesting(otherwise = VisibleForTesting.PROTECTED)
@@ -217,7 +244,7 @@ public class Conversation {
     protected Conversation(final String displayName, final String cid, final String lastEventId, final Member member, final Date creationDate,
             final List<Member> members, final List<Event> events) {
         this(displayName, cid, lastEventId, member, creationDate, members);
-        this.events = events;
+        this.events = newEventList(events);
     }
 
     @VisibleForTesting(otherwise = VisibleForTesting.PROTECTED)
@@ -251,6 +278,9 @@ public class Conversation {
      *
      * <p>For the first time launching the app, the local cache will not present any results.
      *
+     * <p>Updates of the same conversation requested while one is in progress share its result,
+     * every handler gets this same {@link Conversation} instance.</p>
+     *
      * @param requestHandler The handler in charge of dispatching the result.
      */
     public void update(RequestHandler<Conversation> requestHandler) {
@@ -274,11 +304,14 @@ public class Conversation {
      * <p>Note: If  members are out of sync make sure to call {@link Conversation#update(RequestHandler<Conversation>)}
      * before this,in order to retrieve the already existing members inside this conversation.</p>
      *
+     * <p>Requests of the same range made while one is in progress share its result,
+     * every handler gets this same {@link Conversation} instance.</p>
+     *
      * @param startId              Optional, the first event id to get.
      * @param endId                Optional, the last event id to get.
      * @param requestHandler       The handler in charge of dispatching the result.
      */
-    public void updateEvents(String startId, String endId, RequestHandler<Conversation> requestHandler) {
+    public void updateEvents(String startId, String endId, final RequestHandler<Conversation> requestHandler) {
         //temporary. until we merge the caching implementation:
         //fetch the members in case conversation.update wasn't previously done by dev.
         if (!conversationSignalingChannel.isValidInput(requestHandler, conversationId)) return;
@@ -286,10 +319,44 @@ public class Conversation {
         if (this.members.size() != 0)
             Log.d(TAG, members.toString());
 
+        final long startedAt = SystemClock.elapsedRealtime();
+        RequestHandler<Conversation> timedHandler = new RequestHandler<Conversation>() {
+            @Override
+            public void onSuccess(Conversation result) {
+                ConversationOpener.logTimeToFirstMessage("updateEvents", startedAt,
+                        (result != null ? result.getEvents().size() : 0));
+                requestHandler.onSuccess(result);
+            }
+
+            @Override
+            public void onError(NexmoAPIError apiError) {
+                requestHandler.onError(apiError);
+            }
+        };
+
         if (this.members.size() == 0)
-            this.conversationSignalingChannel.getMembersBeforeGetEvents(this, startId, endId, requestHandler);
+            this.conversationSignalingChannel.getMembersBeforeGetEvents(this, startId, endId, timedHandler);
         else
-            this.conversationSignalingChannel.getEvents(Conversation.this, startId, endId, requestHandler);
+            this.conversationSignalingChannel.getEvents(Conversation.this, startId, endId, timedHandler);
+    }
+
+    /**
+     * Open a {@link Conversation}, stale-while-revalidate.
+     *
+     * <p>Cached members and the latest page of events are delivered right away via
+     * {@link ConversationOpenListener#onCached(Conversation)}. Then, if connected, members and the
+     * events after the last cached one are fetched in parallel, and only what changed is delivered
+     * as a {@link ConversationUpdate}.</p>
+     *
+     * <p>Unlike {@link Conversation#updateEvents(String, String, RequestHandler)}, the events already
+     * shown are kept and the conversation history isn't fetched again.</p>
+     *
+     * @param openListener The listener in charge of dispatching the cached conversation and its changes.
+     */
+    public void open(ConversationOpenListener openListener) {
+        if (!conversationSignalingChannel.isValidInput(openListener, conversationId)) return;
+
+        this.conversationSignalingChannel.openConversation(this, openListener);
     }
 
     /**
@@ -684,11 +751,7 @@ public class Conversation {
      * @return          The member or null if member is not found locally.
      */
     public Member getMember(final String member_id) {
-        for (Member member : this.members) {
-            if (TextUtils.equals(member.getMemberId(), member_id))
-                return member;
-        }
-        return null;
+        return this.members.find(MEMBER_BY_ID, member_id);
     }
 
     /**
@@ -700,11 +763,7 @@ public class Conversation {
      * @return          The member or null if member is not found locally.
      */
     public Member getMember(final User user) {
-        for (Member member : this.members) {
-            if (TextUtils.equals(member.getUserId(), user.getUserId()))
-                return member;
-        }
-        return null;
+        return this.members.find(MEMBER_BY_USER_ID, user.getUserId());
     }
 
     /**
@@ -723,15 +782,7 @@ public class Conversation {
      * @param member
      */
     void addMember(Member member) {
-        synchronized(members) {
-            for (int i=0 ; i < this.members.size(); i++) {
-                if (TextUtils.equals(this.members.get(i).getMemberId(), member.getMemberId())) {
-                    this.members.set(i, member);
-                    return;
-                }
-            }
-            this.members.add(member);
-        }
+        this.members.addOrReplace(MEMBER_BY_ID, member);
     }
 
     /**
@@ -759,11 +810,7 @@ public class Conversation {
      * @return         The event object.
      */
     public Event getEvent(final String event_id) {
-        for (Event event : this.events) {
-            if (TextUtils.equals(event.getId(), event_id))
-                return event;
-        }
-        return null;
+        return this.events.find(EVENT_BY_ID, event_id);
     }
 
     /**
@@ -795,6 +842,23 @@ public class Conversation {
         return (Image) findEvent(id);
     }
 
+    /**
+     * Get the whole cached history of this conversation, oldest first, synchronously.
+     *
+     * <p>Unlike {@link #getEvents()}, events are read from the cache only as they are accessed,
+     * so even a long history can be scrolled without loading it all in memory.
+     * Close the list once done with it.</p>
+     *
+     * @return The cached events, or null if no user is logged in.
+     */
+    public CachedEventList getCachedEvents() {
+        CacheDB cacheDB = CacheDB.getCacheDBInstance();
+        if (cacheDB == null) return null;
+
+        return new CachedEventList(cacheDB.getEventRepository().openCursor(this.conversationId), this,
+                cacheDB.getEventRepository(), Defaults.CACHE_EVENTS_PAGE_SIZE, Defaults.CACHE_EVENTS_BLOCKS_KEPT);
+    }
+
     /**
      * Get the list of image events <b>only</b> , synchronously.
      *
@@ -913,13 +977,7 @@ public class Conversation {
         if (cursor == null) return null;
         Member self = Member.fromCursor(cursor);
 
-        Date dateCreated;
-        try {
-            dateCreated = DateUtil.formatIso8601DateString(cursor.getString(cursor.getColumnIndex(COLUMN_CREATED)));
-        } catch (ParseException e) {
-            dateCreated = null;
-            Log.d(TAG, "getConversationsList: wrong date format");
-        }
+        Date dateCreated = DateUtil.fromEpochMillis(cursor, COLUMN_CREATED);
         String cid = cursor.getString(cursor.getColumnIndex(COLUMN_CID));
         return new Conversation(cursor.getString(cursor.getColumnIndex(COLUMN_NAME)),
                 cid,
@@ -939,6 +997,11 @@ public class Conversation {
                 " .events:" + (this.events != null ? this.events.toString() : "");
     }
 
+    /**
+     * Conversations are identified by their conversation id, so hashing and equality
+     * don't depend on the size of the members list or the event history.
+     * Use {@link Conversation#contentEquals(Conversation)} for a full comparison.
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -946,29 +1009,53 @@ public class Conversation {
 
         Conversation that = (Conversation) o;
 
-        if (members != null ? !members.equals(that.members) : that.members != null) return false;
-        if (events != null ? !events.equals(that.events) : that.events != null)
-            return false;
-        if (self != null ? !self.equals(that.self) : that.self != null) return false;
+        return conversationId != null && conversationId.equals(that.conversationId);
+    }
+
+    @Override
+    public int hashCode() {
+        return conversationId != null ? conversationId.hashCode() : 0;
+    }
+
+    /**
+     * Compare all conversation details, members and events, not just the conversation id.
+     *
+     * @param that The conversation to compare with.
+     * @return     True if both conversations hold the same details and history.
+     */
+    public boolean contentEquals(Conversation that) {
+        if (this == that) return true;
+        if (that == null) return false;
+
+        if (!membersContentEquals(members, that.members)) return false;
+        if (!eventsContentEquals(events, that.events)) return false;
+        if (self != null ? !self.contentEquals(that.self) : that.self != null) return false;
         if (displayName != null ? !displayName.equals(that.displayName) : that.displayName != null) return false;
         if (creationDate != null ? !creationDate.equals(that.creationDate) : that.creationDate != null)
             return false;
         if (conversationId != null ? !conversationId.equals(that.conversationId) : that.conversationId != null)
             return false;
         return lastEventId != null ? lastEventId.equals(that.lastEventId) : that.lastEventId == null;
+    }
 
+    private static boolean membersContentEquals(List<Member> members, List<Member> others) {
+        if (members.size() != others.size()) return false;
+        for (int i = 0; i < members.size(); i++) {
+            Member member = members.get(i);
+            if (member != null ? !member.contentEquals(others.get(i)) : others.get(i) != null)
+                return false;
+        }
+        return true;
     }
 
-    @Override
-    public int hashCode() {
-        int result = members != null ? members.hashCode() : 0;
-        result = 31 * result + (events != null ? events.hashCode() : 0);
-        result = 31 * result + (self != null ? self.hashCode() : 0);
-        result = 31 * result + (displayName != null ? displayName.hashCode() : 0);
-        result = 31 * result + (creationDate != null ? creationDate.hashCode() : 0);
-        result = 31 * result + conversationId.hashCode();
-        result = 31 * result + (lastEventId != null ? lastEventId.hashCode() : 0);
-        return result;
+    private static boolean eventsContentEquals(List<Event> events, List<Event> others) {
+        if (events.size() != others.size()) return false;
+        for (int i = 0; i < events.size(); i++) {
+            Event event = events.get(i);
+            if (event != null ? !event.contentEquals(others.get(i)) : others.get(i) != null)
+                return false;
+        }
+        return true;
     }
 
     //**********************************************************************************************
@@ -989,12 +1076,12 @@ public class Conversation {
 
     @VisibleForTesting(otherwise = VisibleForTesting.PACKAGE_PRIVATE)
     void setMembers(List<Member> members) {
-        this.members = members;
+        this.members = newMemberList(members);
     }
 
     @VisibleForTesting(otherwise = VisibleForTesting.PACKAGE_PRIVATE)
     void setEvents(List<Event> events) {
-        this.events = events;
+        this.events = newEventList(events);
         if (!events.isEmpty())
             updateLastEventId(events.get(events.size()-1).getId());
     }
@@ -1018,7 +1105,7 @@ public class Conversation {
         this.lastEventId = conversation.getLastEventId();
         this.creationDate = conversation.getCreationDate();
         this.displayName = conversation.getDisplayName();
-        this.members = conversation.getMembers();
+        this.members = newMemberList(conversation.getMembers());
     }
 
     /**
@@ -1027,11 +1114,7 @@ public class Conversation {
      * @return      True if event is part of the conversation history.
      */
     boolean containsEvent(Event event) {
-        for (Event message: this.events) {
-            if (TextUtils.equals(event.getId(), message.getId()))
-                return true;
-        }
-        return false;
+        return this.events.containsKey(EVENT_BY_ID, event.getId());
     }
 
     /**
@@ -1041,18 +1124,12 @@ public class Conversation {
      * @return          The memberId.
      */
     String containsMember(final String username) {
-        for (Member member : this.members)
-            if (TextUtils.equals(member.getName(),username))
-                return member.getMemberId();
-
-        return null;
+        Member member = this.members.find(MEMBER_BY_USERNAME, username);
+        return (member != null ? member.getMemberId() : null);
     }
 
     Event findEvent(String eventId) {
-        for (Event event : this.events)
-            if (TextUtils.equals(event.getId(), eventId))
-                return event;
-        return null;
+        return this.events.find(EVENT_BY_ID, eventId);
     }
 
     ConversationSignalingChannel getSignallingChannel(){
@@ -1102,6 +1179,25 @@ public class Conversation {
         }
     }
 
+    // keep the same list instance when it is already indexed, so updateBasicDetails shares members as before.
+    private static IndexedList<Member> newMemberList(List<Member> members) {
+        if (members instanceof IndexedList)
+            return (IndexedList<Member>) members;
+        IndexedList<Member> indexed = new IndexedList<>(MEMBER_BY_ID, MEMBER_BY_USER_ID, MEMBER_BY_USERNAME);
+        if (members != null)
+            indexed.addAll(members);
+        return indexed;
+    }
+
+    private static IndexedList<Event> newEventList(List<Event> events) {
+        if (events instanceof IndexedList)
+            return (IndexedList<Event>) events;
+        IndexedList<Event> indexed = new IndexedList<>(EVENT_BY_ID);
+        if (events != null)
+            indexed.addAll(events);
+        return indexed;
+    }
+
     private void createTypingThreads(){
         HandlerThread handlerThread = new HandlerThread("typingHandler");
         handlerThread.start();
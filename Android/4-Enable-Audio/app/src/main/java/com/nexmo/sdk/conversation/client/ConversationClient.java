@@ -7,6 +7,7 @@ package com.nexmo.sdk.conversation.client;
 
 import android.content.Context;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.VisibleForTesting;
 import android.text.TextUtils;
@@ -14,6 +15,8 @@ import android.text.TextUtils;
 import com.nexmo.enableaudio.BuildConfig;
 import com.nexmo.sdk.conversation.client.event.NexmoAPIError;
 import com.nexmo.sdk.conversation.client.event.RequestHandler;
+import com.nexmo.sdk.conversation.client.event.container.CacheUsage;
+import com.nexmo.sdk.conversation.client.event.container.ConversationListDiff;
 import com.nexmo.sdk.conversation.client.event.container.SynchronisingState;
 
 import com.nexmo.sdk.conversation.client.event.misc.SessionError;
@@ -25,13 +28,20 @@ import com.nexmo.sdk.conversation.client.event.container.Invitation;
 import com.nexmo.sdk.conversation.client.event.ConversationClientException;
 import com.nexmo.sdk.conversation.client.event.network.NetworkState;
 import com.nexmo.sdk.conversation.client.event.network.NetworkingStateListener;
+import com.nexmo.sdk.conversation.config.Defaults;
 import com.nexmo.sdk.conversation.core.client.Router;
 import com.nexmo.sdk.conversation.core.networking.Constants;
+import com.nexmo.sdk.conversation.core.persistence.CacheBudget;
+import com.nexmo.sdk.conversation.core.persistence.repository.EventRepository;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -172,6 +182,11 @@ public class ConversationClient {
 
     private ConcurrentMap<String, EventSource<?>> eventSourceMap = new ConcurrentHashMap<>();
     Handler handlerForCallbacks = null;
+    private final ColdStartLoader coldStartLoader;
+    private final CacheObservers cacheObservers;
+    // time to first conversation list, measured from when this client was built.
+    private final long createdAt = SystemClock.elapsedRealtime();
+    private final AtomicLong timeToFirstConversationList = new AtomicLong(-1);
 
     private ConversationClient(ConversationClientConfig config) {
         this.config = config;
@@ -179,11 +194,17 @@ public class ConversationClient {
             Bugsnag.init(config.getContext());
             Bugsnag.setAppVersion(BuildConfig.SDK_REVISION_CODE);
         }*/
-        CacheDB.initializeCacheDBInstance(config.getContext());
+        this.cacheObservers = new CacheObservers(this);
+        CacheDB.initializeCacheDBInstance(config.getContext(), new CacheBudget(config.getCacheMaxEventsPerConversation(),
+                config.getCacheMaxDatabaseBytes(), config.getCacheMaxMediaBytes()), this.cacheObservers);
 
         this.socketEventNotifier = new SocketEventNotifier();
         this.signalingChannel = new ConversationSignalingChannel(this, new SocketClient(this));
         this.handlerForCallbacks = config.isOnMainThread() ? new Handler(config.getContext().getMainLooper()) : null;
+
+        this.coldStartLoader = new ColdStartLoader(this, config.getColdStartEvents());
+        if (config.isColdStart())
+            this.coldStartLoader.start();
     }
 
     /**
@@ -386,6 +407,167 @@ public class ConversationClient {
             Log.d(TAG, "ConversationListListener is mandatory");
     }
 
+    /**
+     * Render the conversation list of the last logged in user from cache, before login and
+     * before the socket connects.
+     *
+     * <p>The cache is read on a background thread, right away when the client has been built with
+     * {@link ConversationClientBuilder#coldStart(boolean)}. Once logged in, the list is synced with
+     * the network in the background and the changes are notified via
+     * {@link ConversationClient#conversationListDiffEvent()}.</p>
+     *
+     * <p>Login is not required, but if no user has logged in on this device
+     * {@link NexmoAPIError#noUserLoggedIn()} is fired.</p>
+     *
+     * @param conversationListListener The listener in charge of dispatching the result.
+     */
+    public void loadCachedConversations(@NonNull RequestHandler<List<Conversation>> conversationListListener) {
+        this.coldStartLoader.getConversations(conversationListListener);
+    }
+
+    /**
+     * Register for receiving the changes to the conversation list once it has been synced with
+     * the network, compared to the list shown before, e.g. from {@link ConversationClient#loadCachedConversations(RequestHandler)}.
+     *
+     * @return The changes to the conversation list.
+     */
+    public EventSource<ConversationListDiff> conversationListDiffEvent() {
+        return getEventSource("conversationListDiffEvent");
+    }
+
+    /**
+     * Time it took for the first conversation list to be available, from cache or from the network,
+     * since this client was built.
+     *
+     * @return Time in milliseconds, or -1 if no conversation list has been available yet.
+     */
+    public long getTimeToFirstConversationList() {
+        return this.timeToFirstConversationList.get();
+    }
+
+    void reportFirstConversationList(String source) {
+        long elapsed = SystemClock.elapsedRealtime() - this.createdAt;
+        if (this.timeToFirstConversationList.compareAndSet(-1, elapsed))
+            Log.i(TAG, "Time to first conversation list: " + elapsed + "ms, from " + source);
+    }
+
+    /**
+     * Current size of the cache of the logged in user, or of the last logged in user before login,
+     * and the budgets it's kept within, see {@link ConversationClientBuilder#cacheMaxDatabaseBytes(long)}.
+     *
+     * <p>Reads the database synchronously, don't call it on the main thread.</p>
+     *
+     * @return The cache usage.
+     */
+    public CacheUsage getCacheUsage() {
+        return CacheDB.getCacheDBInstance().getUsage();
+    }
+
+    /**
+     * Last message and unread count of every cached conversation, most recently active first,
+     * for rendering the conversation list without loading any events.
+     *
+     * <p>The summaries are kept up to date in the cache as events, receipts and deletions arrive,
+     * reading them costs one row per conversation. Reads the database synchronously, don't call
+     * it on the main thread.</p>
+     *
+     * @return The conversation summaries.
+     */
+    public List<ConversationSummary> getConversationSummaries() {
+        CacheDB cacheDB = CacheDB.getCacheDBInstance();
+        cacheDB.awaitPendingWrites();
+        return cacheDB.getConversationSummaryRepository().readAll();
+    }
+
+    /**
+     * Observe the latest cached events of a conversation, with their receipts, oldest first.
+     *
+     * <p>The events are read again in the background only when events or receipts of this
+     * conversation are written, and delivered only if they changed.</p>
+     *
+     * @param conversation The conversation.
+     * @param limit        Maximum number of events, the most recent ones.
+     * @return The query, subscribe to it to receive the events.
+     */
+    public CachedQuery<List<Event>> observeEvents(Conversation conversation, int limit) {
+        return this.cacheObservers.events(conversation, limit);
+    }
+
+    /**
+     * Observe the conversation summaries, see {@link #getConversationSummaries()}.
+     *
+     * <p>The summaries are read again in the background whenever a summary or a conversation is
+     * written, and delivered only if they changed.</p>
+     *
+     * @return The query, subscribe to it to receive the summaries.
+     */
+    public CachedQuery<List<ConversationSummary>> observeConversationSummaries() {
+        return this.cacheObservers.conversationSummaries();
+    }
+
+    /**
+     * Observe the cached members of a conversation.
+     *
+     * <p>The members are read again in the background only when members of this conversation are
+     * written, and delivered only if they changed.</p>
+     *
+     * @param conversation The conversation.
+     * @return The query, subscribe to it to receive the members.
+     */
+    public CachedQuery<List<Member>> observeMembers(Conversation conversation) {
+        return this.cacheObservers.members(conversation);
+    }
+
+    /**
+     * Search the cached text messages of every conversation.
+     *
+     * <p>Every word of the query has to match the start of a word of the message, e.g. "hel wor"
+     * matches "Hello world". Punctuation and search operators are ignored. Hits are ranked by
+     * relevance, the best first. Only the cache is searched, so messages which haven't been
+     * synced or have been evicted aren't found.</p>
+     *
+     * <p>Reads the database synchronously, don't call it on the main thread.</p>
+     *
+     * @param query The words to search for.
+     * @param limit Maximum number of hits, at most {@link Defaults#CACHE_MAX_SEARCH_HITS}.
+     * @return The matching messages, best first.
+     */
+    public List<Text> search(String query, int limit) {
+        CacheDB cacheDB = CacheDB.getCacheDBInstance();
+        cacheDB.awaitPendingWrites();
+        List<EventRepository.SearchHit> hits = cacheDB.getEventRepository().search(query, limit);
+
+        Map<String, List<String>> eventIdsByConversation = new HashMap<>();
+        for (EventRepository.SearchHit hit : hits) {
+            List<String> eventIds = eventIdsByConversation.get(hit.cid);
+            if (eventIds == null) {
+                eventIds = new ArrayList<>();
+                eventIdsByConversation.put(hit.cid, eventIds);
+            }
+            eventIds.add(hit.eventId);
+        }
+
+        Map<String, Text> texts = new HashMap<>(hits.size() * 2);
+        for (Map.Entry<String, List<String>> entry : eventIdsByConversation.entrySet()) {
+            Conversation conversation = getConversation(entry.getKey());
+            if (conversation == null)
+                conversation = cacheDB.getConversationRepository().read(entry.getKey());
+            if (conversation == null) continue;
+
+            for (Event event : cacheDB.getEventRepository().read(entry.getKey(), conversation, entry.getValue()))
+                if (event instanceof Text)
+                    texts.put(entry.getKey() + "/" + event.getId(), (Text) event);
+        }
+
+        List<Text> results = new ArrayList<>(texts.size());
+        for (EventRepository.SearchHit hit : hits) {
+            Text text = texts.get(hit.cid + "/" + hit.eventId);
+            if (text != null)
+                results.add(text);
+        }
+        return results;
+    }
+
     /**
      * Get list of active conversation where user has been either invited, or joined, synchronously.
      * Subscribe to {@link ConversationClient#synchronisationEvent()} to get notified once all
@@ -614,6 +796,28 @@ public class ConversationClient {
         return getEventSource("synchronisationEvent");
     }
 
+    /**
+     * Register for receiving progress of the synchronisation of conversation details.
+     *
+     * <p>Progress is reported with {@link SynchronisingState.STATE#CONVERSATIONS} state after each
+     * conversation is synced, and with {@link SynchronisingState.STATE#MEMBERS} once all of them are.</p>
+     *
+     * @return The synchronisation progress.
+     */
+    public EventSource<SynchronisingState> synchronisationProgressEvent() {
+        return getEventSource("synchronisationProgressEvent");
+    }
+
+    /**
+     * Sync details of these conversations first, e.g. the ones currently on screen.
+     * Might be called at any time, it only affects conversations which are not synced yet.
+     *
+     * @param conversationIds Conversation ids, most important first.
+     */
+    public void setVisibleConversations(@NonNull List<String> conversationIds) {
+        this.signalingChannel.socketClient.getSocketEventHandler().setVisibleConversations(conversationIds);
+    }
+
     @Override
     public String toString() {
         return TAG + " Token: " + (this.authToken != null ? this.authToken : "");
@@ -715,6 +919,13 @@ public class ConversationClient {
      * <pre.endpointPath(endpointPath)     // default Config.ENDPOINT_PATH = "/rtc/"></pre>
      * <pre>.imageProcessingServiceUrl(ips) // default Config.IPS_ENDPOINT_PRODUCTION = "https://api.nexmo.com/v1/image"</pre>
      * <pre>.flushPending(true)             // default true. Pending operations from previous app start will be flushed on login process</pre>
+     * <pre>.flushWindow(8)                 // default 8. Maximum number of pending operations flushed in parallel</pre>
+     * <pre>.hydrationConcurrency(4)        // default 4. Maximum number of conversations synced in parallel after login</pre>
+     * <pre>.coldStart(true)                // default false. Read the cached conversation list as soon as the client is built</pre>
+     * <pre>.coldStartEvents(20)            // default 0. Number of recent events read from cache for each conversation on cold start</pre>
+     * <pre>.cacheMaxEventsPerConversation(1000) // default 1000. Older events are evicted from cache</pre>
+     * <pre>.cacheMaxDatabaseBytes(bytes)   // default 50MB. Events of the least recently active conversations are evicted above it</pre>
+     * <pre>.cacheMaxMediaBytes(bytes)      // default 100MB. Least recently used images are deleted above it</pre>
      * <pre>.logLevel(Log.ASSERT)           // default Log.ASSERT(minimal output). For verbose logs use Log.VERBOSE</pre>
      * <pre>.autoReconnect(true)            // default true. Set automatic reconnect policy if the connectivity gets lost.</pre>
      *
@@ -726,6 +937,13 @@ public class ConversationClient {
         protected boolean enableCrashReporting = false; // by default false.
         protected String imageProcessingServiceUrl = "https://api.nexmo.com/v1/image";
         protected boolean flushPending;
+        protected int flushWindow = Defaults.FLUSH_WINDOW;
+        protected int hydrationConcurrency = Defaults.HYDRATION_CONCURRENCY;
+        protected boolean coldStart = false;
+        protected int coldStartEvents = 0;
+        protected int cacheMaxEventsPerConversation = Defaults.CACHE_MAX_EVENTS_PER_CONVERSATION;
+        protected long cacheMaxDatabaseBytes = Defaults.CACHE_MAX_DATABASE_BYTES;
+        protected long cacheMaxMediaBytes = Defaults.CACHE_MAX_MEDIA_BYTES;
         protected int logLevel = android.util.Log.ASSERT;
         protected boolean autoReconnect = true; // automatically-reconnect policy when the socket gets disconnected.
         protected boolean onMainThread = true;
@@ -755,6 +973,34 @@ public class ConversationClient {
             return flushPending;
         }
 
+        public int getFlushWindow() {
+            return flushWindow;
+        }
+
+        public int getHydrationConcurrency() {
+            return hydrationConcurrency;
+        }
+
+        public boolean isColdStart() {
+            return coldStart;
+        }
+
+        public int getColdStartEvents() {
+            return coldStartEvents;
+        }
+
+        public int getCacheMaxEventsPerConversation() {
+            return cacheMaxEventsPerConversation;
+        }
+
+        public long getCacheMaxDatabaseBytes() {
+            return cacheMaxDatabaseBytes;
+        }
+
+        public long getCacheMaxMediaBytes() {
+            return cacheMaxMediaBytes;
+        }
+
         public boolean isAutoReconnect() {
             return this.autoReconnect;
         }
@@ -807,6 +1053,24 @@ public class ConversationClient {
             if (this.endpointPath == null)
                 throw new ConversationClientException("endpointPath can't be null");
 
+            if (this.flushWindow < 1)
+                throw new ConversationClientException("flushWindow must be at least 1");
+
+            if (this.hydrationConcurrency < 1)
+                throw new ConversationClientException("hydrationConcurrency must be at least 1");
+
+            if (this.coldStartEvents < 0)
+                throw new ConversationClientException("coldStartEvents can't be negative");
+
+            if (this.cacheMaxEventsPerConversation < 1)
+                throw new ConversationClientException("cacheMaxEventsPerConversation must be at least 1");
+
+            if (this.cacheMaxDatabaseBytes < 1)
+                throw new ConversationClientException("cacheMaxDatabaseBytes must be at least 1");
+
+            if (this.cacheMaxMediaBytes < 0)
+                throw new ConversationClientException("cacheMaxMediaBytes can't be negative");
+
             if (this.logLevel > android.util.Log.ASSERT)
                 throw new ConversationClientException("Maximum log level is ASSERT");
 
@@ -853,6 +1117,75 @@ public class ConversationClient {
             return this;
         }
 
+        /**
+         * Maximum number of pending operations in flight while they are being flushed on login.
+         * Operations on the same conversation are always flushed one after another, in order.
+         * @param flushWindow 1 to flush pending operations one by one. Default is {@link Defaults#FLUSH_WINDOW}
+         */
+        public ConversationClientBuilder flushWindow(int flushWindow) {
+            this.flushWindow = flushWindow;
+            return this;
+        }
+
+        /**
+         * Maximum number of conversations which details are synced in parallel after login.
+         * @param hydrationConcurrency Default is {@link Defaults#HYDRATION_CONCURRENCY}
+         */
+        public ConversationClientBuilder hydrationConcurrency(int hydrationConcurrency) {
+            this.hydrationConcurrency = hydrationConcurrency;
+            return this;
+        }
+
+        /**
+         * Read the conversation list of the last logged in user from cache as soon as the client
+         * is built, so it's ready by the time {@link ConversationClient#loadCachedConversations(RequestHandler)} is called.
+         * @param coldStart Default is false, the cache is read on the first call.
+         */
+        public ConversationClientBuilder coldStart(boolean coldStart) {
+            this.coldStart = coldStart;
+            return this;
+        }
+
+        /**
+         * Number of most recent events read from cache for each conversation on cold start.
+         * @param coldStartEvents Default is 0, events are read when the conversation is opened.
+         */
+        public ConversationClientBuilder coldStartEvents(int coldStartEvents) {
+            this.coldStartEvents = coldStartEvents;
+            return this;
+        }
+
+        /**
+         * Maximum number of events cached for each conversation, older ones are evicted while
+         * the cache is idle and fetched again if needed.
+         * @param cacheMaxEventsPerConversation Default is {@link Defaults#CACHE_MAX_EVENTS_PER_CONVERSATION}
+         */
+        public ConversationClientBuilder cacheMaxEventsPerConversation(int cacheMaxEventsPerConversation) {
+            this.cacheMaxEventsPerConversation = cacheMaxEventsPerConversation;
+            return this;
+        }
+
+        /**
+         * Size budget of the cache database. Above it, the events of the least recently active
+         * conversations are evicted while the cache is idle, and the freed space is compacted.
+         * See {@link ConversationClient#getCacheUsage()} for tuning it per device class.
+         * @param cacheMaxDatabaseBytes Default is {@link Defaults#CACHE_MAX_DATABASE_BYTES}
+         */
+        public ConversationClientBuilder cacheMaxDatabaseBytes(long cacheMaxDatabaseBytes) {
+            this.cacheMaxDatabaseBytes = cacheMaxDatabaseBytes;
+            return this;
+        }
+
+        /**
+         * Size budget of the downloaded images. Above it, the least recently used images are deleted
+         * while the cache is idle, they are downloaded again when needed.
+         * @param cacheMaxMediaBytes 0 to keep no images. Default is {@link Defaults#CACHE_MAX_MEDIA_BYTES}
+         */
+        public ConversationClientBuilder cacheMaxMediaBytes(long cacheMaxMediaBytes) {
+            this.cacheMaxMediaBytes = cacheMaxMediaBytes;
+            return this;
+        }
+
         /**
          * Set log level for SDK. Default is {@link android.util.Log#ASSERT} - minimal output.
          * For maximum verbosity use {@link android.util.Log#VERBOSE}
@@ -0,0 +1,130 @@
+package com.nexmo.sdk.conversation.client;
+
+import com.nexmo.sdk.conversation.core.util.Log;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches the conversation list page by page on a thread of its own.
+ *
+ * <p>Pages are fetched in a loop, the next page is requested once the previous one has been merged.
+ * Responses arrive on a dispatcher lane and are only handed over to the pager thread, so merging
+ * a page, which waits for pending cache writes, never holds the lane.</p>
+ *
+ * <p>One sync runs at a time, a sync started meanwhile, e.g. after reconnect, waits for it.</p>
+ *
+ * @hide
+ */
+class ConversationListPager {
+    private static final String TAG = ConversationListPager.class.getSimpleName();
+
+    interface PageSource {
+        /**
+         * Request a page of the conversation list, the callback has to be called once whatever the outcome.
+         * @param cursor cursor returned with the previous page, null for the first page.
+         */
+        void fetch(String cursor, PageCallback callback);
+    }
+
+    interface PageCallback {
+        /**
+         * @param nextCursor null on the last page.
+         */
+        void onPage(List<Conversation> conversations, String nextCursor);
+
+        void onError();
+    }
+
+    interface PageSink {
+        void onPage(List<Conversation> conversations, boolean firstPage, boolean lastPage);
+
+        /**
+         * A page couldn't be fetched, the sync stopped.
+         */
+        void onPagingFailed(boolean firstPage);
+    }
+
+    private final PageSource source;
+    private final PageSink sink;
+    private final long pageTimeoutMillis;
+
+    ConversationListPager(PageSource source, PageSink sink, long pageTimeoutMillis) {
+        this.source = source;
+        this.sink = sink;
+        this.pageTimeoutMillis = pageTimeoutMillis;
+    }
+
+    /**
+     * Start a sync of the whole conversation list.
+     */
+    void sync() {
+        Thread pager = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                syncPages();
+            }
+        }, "capi-sdk-conversation-pager");
+        pager.setDaemon(true);
+        pager.start();
+    }
+
+    private synchronized void syncPages() {
+        String cursor = null;
+        boolean firstPage = true;
+        while (true) {
+            PendingPage page = new PendingPage();
+            this.source.fetch(cursor, page);
+            if (!page.await(this.pageTimeoutMillis)) {
+                Log.w(TAG, "syncPages: no page for cursor " + cursor);
+                this.sink.onPagingFailed(firstPage);
+                return;
+            }
+
+            boolean lastPage = (page.nextCursor == null);
+            try {
+                this.sink.onPage(page.conversations, firstPage, lastPage);
+            } catch (Throwable throwable) {
+                Log.w(TAG, "syncPages: error during page processing", throwable);
+                this.sink.onPagingFailed(firstPage);
+                return;
+            }
+            if (lastPage) return;
+
+            cursor = page.nextCursor;
+            firstPage = false;
+        }
+    }
+
+    private static class PendingPage implements PageCallback {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean failed;
+        private volatile List<Conversation> conversations;
+        private volatile String nextCursor;
+
+        @Override
+        public void onPage(List<Conversation> conversations, String nextCursor) {
+            this.conversations = conversations;
+            this.nextCursor = nextCursor;
+            this.done.countDown();
+        }
+
+        @Override
+        public void onError() {
+            this.failed = true;
+            this.done.countDown();
+        }
+
+        // false if the page failed or didn't arrive in time.
+        boolean await(long timeoutMillis) {
+            try {
+                return (this.done.await(timeoutMillis, TimeUnit.MILLISECONDS) && !this.failed);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,193 @@
+package com.nexmo.sdk.conversation.client;
+
+import android.os.SystemClock;
+
+import com.nexmo.sdk.conversation.client.event.ConversationOpenListener;
+import com.nexmo.sdk.conversation.client.event.NexmoAPIError;
+import com.nexmo.sdk.conversation.client.event.RequestHandler;
+import com.nexmo.sdk.conversation.client.event.container.ConversationUpdate;
+import com.nexmo.sdk.conversation.config.Defaults;
+import com.nexmo.sdk.conversation.core.client.request.GetConversationRequest;
+import com.nexmo.sdk.conversation.core.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Opens a conversation stale-while-revalidate: cached members and the latest page of events are
+ * delivered right away, then members and the events after the last cached one are fetched in
+ * parallel and only the changes are published.
+ *
+ * @hide
+ */
+class ConversationOpener {
+    private static final String TAG = ConversationOpener.class.getSimpleName();
+
+    private final ConversationClient conversationClient;
+    private final ConversationSignalingChannel signalingChannel;
+    private final Conversation conversation;
+    private final ConversationOpenListener listener;
+    private final long startedAt = SystemClock.elapsedRealtime();
+    private final Map<String, Member> cachedMembers = new HashMap<>();
+    private boolean cachedEvents;
+
+    // guarded by this, both requests report back on the callback thread.
+    private int pendingRequests;
+    private Conversation freshConversation;
+    private List<Event> newEvents = Collections.emptyList();
+    private NexmoAPIError error;
+
+    ConversationOpener(ConversationClient conversationClient, Conversation conversation, ConversationOpenListener listener) {
+        this.conversationClient = conversationClient;
+        this.signalingChannel = conversationClient.getSignallingChannel();
+        this.conversation = conversation;
+        this.listener = listener;
+    }
+
+    void open() {
+        readCache();
+        this.cachedEvents = !this.conversation.getEvents().isEmpty();
+        this.conversationClient.callUserCallback(new Runnable() {
+            @Override
+            public void run() {
+                if (cachedEvents)
+                    logTimeToFirstMessage("open, from cache", startedAt, conversation.getEvents().size());
+                listener.onCached(conversation);
+            }
+        });
+
+        if (this.signalingChannel.isConnecting())
+            revalidate();
+        else
+            Log.d(TAG, "open: offline, " + this.conversation.getConversationId() + " served from cache only");
+    }
+
+    private void readCache() {
+        CacheDB cacheDB = CacheDB.getCacheDBInstance();
+        String cid = this.conversation.getConversationId();
+
+        if (this.conversation.getMembers().isEmpty())
+            for (Member member : cacheDB.getMemberRepository().read(cid))
+                this.conversation.addMember(member);
+        // only the latest page, older events are read on demand, see Conversation.getCachedEvents().
+        if (this.conversation.getEvents().isEmpty())
+            this.conversation.setEvents(cacheDB.getEventRepository()
+                    .readPage(cid, this.conversation, null, Defaults.CACHE_EVENTS_PAGE_SIZE));
+
+        for (Member member : this.conversation.getMembers())
+            this.cachedMembers.put(member.getMemberId(), member);
+    }
+
+    private void revalidate() {
+        List<Event> events = this.conversation.getEvents();
+        String lastEventId = (events.isEmpty() ? null : events.get(events.size() - 1).getId());
+        this.pendingRequests = 2;
+
+        this.signalingChannel.socketClient.getConversation(new GetConversationRequest(this.conversation.getConversationId(),
+                new RequestHandler<Conversation>() {
+                    @Override
+                    public void onSuccess(Conversation result) {
+                        synchronized (ConversationOpener.this) {
+                            freshConversation = result;
+                        }
+                        onRequestDone();
+                    }
+
+                    @Override
+                    public void onError(NexmoAPIError apiError) {
+                        onRequestFailed(apiError);
+                    }
+                }));
+
+        // the last cached event is returned again, it's skipped when merging.
+        this.signalingChannel.socketClient.getEventsSince(this.conversation, lastEventId, new RequestHandler<List<Event>>() {
+            @Override
+            public void onSuccess(List<Event> result) {
+                synchronized (ConversationOpener.this) {
+                    newEvents = result;
+                }
+                onRequestDone();
+            }
+
+            @Override
+            public void onError(NexmoAPIError apiError) {
+                onRequestFailed(apiError);
+            }
+        });
+    }
+
+    private void onRequestFailed(NexmoAPIError apiError) {
+        Log.w(TAG, "revalidate: " + this.conversation.getConversationId() + " " + apiError.getMessage());
+        synchronized (this) {
+            if (this.error == null)
+                this.error = apiError;
+        }
+        onRequestDone();
+    }
+
+    private void onRequestDone() {
+        synchronized (this) {
+            if (--this.pendingRequests > 0)
+                return;
+        }
+
+        if (this.freshConversation != null)
+            updateMembers(this.freshConversation);
+        // events fetched before the members arrived have no sender yet.
+        for (Event event : this.newEvents) {
+            Member sender = this.conversation.getMember(event.getMember().getMemberId());
+            if (sender != null)
+                event.setMember(sender);
+        }
+        // after the members, the cached events reference their sender.
+        if (this.conversation.getSelf() != null)
+            CacheDB.getCacheDBInstance().getEventRepository().upsertAll(this.conversation.getConversationId(), this.newEvents);
+        // the conversation:get response replaced the opened conversation in the list.
+        this.signalingChannel.socketClient.getSocketEventHandler().addOrUpdateConversationList(this.conversation);
+
+        if (this.error != null) {
+            this.listener.onError(this.error);
+            return;
+        }
+
+        List<Member> changedMembers = new ArrayList<>();
+        for (Member member : this.conversation.getMembers()) {
+            Member cached = this.cachedMembers.remove(member.getMemberId());
+            if (cached == null || !cached.contentEquals(member))
+                changedMembers.add(member);
+        }
+        // whatever is left has been removed.
+        ConversationUpdate update = new ConversationUpdate(this.conversation, this.newEvents, changedMembers,
+                new ArrayList<>(this.cachedMembers.values()));
+        Log.d(TAG, "revalidate: " + update);
+
+        if (!this.cachedEvents && !this.newEvents.isEmpty())
+            logTimeToFirstMessage("open, from network", this.startedAt, this.newEvents.size());
+        this.listener.onSuccess(update);
+    }
+
+    private void updateMembers(Conversation fresh) {
+        this.conversation.updateBasicDetails(fresh);
+        this.conversation.setSelf(fresh.getSelf());
+        for (Member member : this.conversation.getMembers())
+            member.setConversation(this.conversation);
+
+        if (this.conversation.getSelf() != null) {
+            CacheDB cacheDB = CacheDB.getCacheDBInstance();
+            cacheDB.getConversationRepository().update(this.conversation, this.conversation.getConversationId());
+            cacheDB.getMemberRepository().insertAll(this.conversation.getConversationId(), this.conversation.getMembers());
+        }
+    }
+
+    /**
+     * Time from asking for a conversation's events until the first of them can be shown.
+     */
+    static void logTimeToFirstMessage(String path, long startedAt, int events) {
+        Log.i(TAG, "Time to first message: " + (SystemClock.elapsedRealtime() - startedAt) + "ms, "
+                + events + " events, " + path);
+    }
+
+}
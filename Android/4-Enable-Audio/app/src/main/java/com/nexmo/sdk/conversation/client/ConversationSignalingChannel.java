@@ -10,6 +10,7 @@ import android.text.TextUtils;
 
 import com.nexmo.sdk.conversation.client.audio.AppRTCAudioManager;
 import com.nexmo.sdk.conversation.client.audio.AudioCallEventListener;
+import com.nexmo.sdk.conversation.client.event.ConversationOpenListener;
 import com.nexmo.sdk.conversation.client.event.NexmoAPIError;
 import com.nexmo.sdk.conversation.client.event.RequestHandler;
 import com.nexmo.sdk.conversation.client.event.container.SynchronisingState;
@@ -20,6 +21,7 @@ import com.nexmo.sdk.conversation.core.client.request.audio.AudioRingingRequest;
 import com.nexmo.sdk.conversation.core.client.request.audio.RtcNewRequest;
 import com.nexmo.sdk.conversation.core.client.request.SeenReceiptRequest;
 import com.nexmo.sdk.conversation.core.client.request.audio.RtcTerminateRequest;
+import com.nexmo.sdk.conversation.config.Defaults;
 import com.nexmo.sdk.conversation.core.util.Log;
 
 import com.nexmo.sdk.conversation.client.ImageRepresentation.TYPE;
@@ -345,8 +347,28 @@ public class ConversationSignalingChannel  {
     }
 
     void updateConversationListFromCache() {
-        List<Conversation> conversations = CacheDB.getCacheDBInstance().getConversationRepository()
-                .read(socketClient.getConversationClient().getUser());
+        loadConversationListFromCache(socketClient.getConversationClient().getUser(), 0, true);
+
+        SocketEventNotifier socketEventNotifier = socketClient.getConversationClient().getEventNotifier();
+        SocketEventHandler socketEventHandler = socketClient.getSocketEventHandler();
+
+        socketClient.getConversationClient().synchronisationEvent().notifySubscriptions(SynchronisingState.STATE.MEMBERS);
+        socketEventNotifier.notifyConversationListListener(socketEventHandler.getConversationList());
+        socketClient.getConversationClient().reportFirstConversationList("cache");
+        updateSyncState(SynchronisingState.STATE.MEMBERS);
+    }
+
+    /**
+     * Read the conversation list of a user from cache into the in-memory list.
+     *
+     * @param recentEvents Number of most recent events to read for each conversation, 0 for none.
+     * @param replace      false to keep the in-memory list if it's been populated meanwhile, e.g. by
+     *                     the network sync on cold start.
+     * @return The in-memory conversation list.
+     */
+    List<Conversation> loadConversationListFromCache(User user, int recentEvents, boolean replace) {
+        CacheDB cacheDB = CacheDB.getCacheDBInstance();
+        List<Conversation> conversations = cacheDB.getConversationRepository().read(user);
 
         SocketEventNotifier socketEventNotifier = socketClient.getConversationClient().getEventNotifier();
         SocketEventHandler socketEventHandler = socketClient.getSocketEventHandler();
@@ -354,16 +376,19 @@ public class ConversationSignalingChannel  {
         for (Conversation conversation : conversations) {
             conversation.setConversationSignalingChannel(socketClient.getConversationClient().getSignallingChannel());
             conversation.setSocketEventNotifier(socketEventNotifier);
+            if (recentEvents > 0)
+                conversation.setEvents(cacheDB.getEventRepository()
+                        .readPage(conversation.getConversationId(), conversation, null, recentEvents));
         }
 
         synchronized (socketEventHandler.getConversationList()) {
-            socketEventHandler.getConversationList().clear();
-            socketEventHandler.getConversationList().addAll(conversations);
+            if (replace || socketEventHandler.getConversationList().isEmpty()) {
+                socketEventHandler.getConversationList().clear();
+                socketEventHandler.getConversationList().addAll(conversations);
+            } else
+                Log.d(TAG, "loadConversationListFromCache: conversation list already synced, cache ignored");
         }
-
-        socketClient.getConversationClient().synchronisationEvent().notifySubscriptions(SynchronisingState.STATE.MEMBERS);
-        socketEventNotifier.notifyConversationListListener(socketEventHandler.getConversationList());
-        updateSyncState(SynchronisingState.STATE.MEMBERS);
+        return socketEventHandler.getConversationList();
     }
 
     public void getConversation(Conversation conversation, RequestHandler<Conversation> requestHandler) {
@@ -398,6 +423,10 @@ public class ConversationSignalingChannel  {
             requestHandler.onError(NexmoAPIError.noUserLoggedInForConversation(cid));
     }
 
+    void openConversation(Conversation conversation, ConversationOpenListener listener) {
+        new ConversationOpener(this.conversationClient, conversation, listener).open();
+    }
+
     void getMembersBeforeGetEvents(Conversation conversation, final String startId, final String endId, final RequestHandler<Conversation> requestHandler) {
         Log.d(TAG, "getMembersBeforeGetEvents");
 
@@ -429,8 +458,10 @@ public class ConversationSignalingChannel  {
             this.socketClient.getEvents(request);
         }
         else {
-            CacheDB.getCacheDBInstance()
-                    .getEventRepository().read(conversation.getConversationId(), conversation);
+            // only the latest page, older events are read on demand, see Conversation.getCachedEvents().
+            if (conversation.getEvents().isEmpty())
+                conversation.setEvents(CacheDB.getCacheDBInstance().getEventRepository()
+                        .readPage(conversation.getConversationId(), conversation, null, Defaults.CACHE_EVENTS_PAGE_SIZE));
             requestHandler.onSuccess(conversation);
         }
     }
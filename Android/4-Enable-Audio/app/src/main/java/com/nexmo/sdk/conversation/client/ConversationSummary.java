@@ -0,0 +1,143 @@
+package com.nexmo.sdk.conversation.client;
+
+import android.database.Cursor;
+import android.text.TextUtils;
+
+import com.nexmo.sdk.conversation.client.event.EventType;
+import com.nexmo.sdk.conversation.core.util.DateUtil;
+
+import java.util.Date;
+
+import static com.nexmo.sdk.conversation.core.persistence.contract.ConversationContract.ConversationEntry.COLUMN_NAME;
+import static com.nexmo.sdk.conversation.core.persistence.contract.ConversationSummaryContract.ConversationSummaryEntry.COLUMN_CID;
+import static com.nexmo.sdk.conversation.core.persistence.contract.ConversationSummaryContract.ConversationSummaryEntry.COLUMN_LAST_ACTIVITY;
+import static com.nexmo.sdk.conversation.core.persistence.contract.ConversationSummaryContract.ConversationSummaryEntry.COLUMN_LAST_EVENT_DELETED;
+import static com.nexmo.sdk.conversation.core.persistence.contract.ConversationSummaryContract.ConversationSummaryEntry.COLUMN_LAST_EVENT_ID;
+import static com.nexmo.sdk.conversation.core.persistence.contract.ConversationSummaryContract.ConversationSummaryEntry.COLUMN_LAST_EVENT_MEMBER_ID;
+import static com.nexmo.sdk.conversation.core.persistence.contract.ConversationSummaryContract.ConversationSummaryEntry.COLUMN_LAST_EVENT_TEXT;
+import static com.nexmo.sdk.conversation.core.persistence.contract.ConversationSummaryContract.ConversationSummaryEntry.COLUMN_LAST_EVENT_TYPE;
+import static com.nexmo.sdk.conversation.core.persistence.contract.ConversationSummaryContract.ConversationSummaryEntry.COLUMN_UNREAD_COUNT;
+
+/**
+ * What a conversation list row shows: the last message and the number of unread messages,
+ * read from cache without loading the conversation's events.
+ *
+ * <p>Only text and image events count as messages. A message is unread when it was sent by
+ * another member and the self member hasn't marked it as seen.</p>
+ */
+public class ConversationSummary {
+    private final String conversationId;
+    private final String displayName;
+    private final String lastEventId;
+    private final EventType lastEventType;
+    private final String lastEventText;
+    private final String lastEventMemberId;
+    private final boolean lastEventDeleted;
+    private final Date lastActivity;
+    private final int unreadCount;
+
+    private ConversationSummary(String conversationId, String displayName, String lastEventId, EventType lastEventType,
+                                String lastEventText, String lastEventMemberId, boolean lastEventDeleted,
+                                Date lastActivity, int unreadCount) {
+        this.conversationId = conversationId;
+        this.displayName = displayName;
+        this.lastEventId = lastEventId;
+        this.lastEventType = lastEventType;
+        this.lastEventText = lastEventText;
+        this.lastEventMemberId = lastEventMemberId;
+        this.lastEventDeleted = lastEventDeleted;
+        this.lastActivity = lastActivity;
+        this.unreadCount = unreadCount;
+    }
+
+    public String getConversationId() {
+        return this.conversationId;
+    }
+
+    public String getDisplayName() {
+        return this.displayName;
+    }
+
+    /**
+     * @return Id of the last message, or null if no message is cached.
+     */
+    public String getLastEventId() {
+        return this.lastEventId;
+    }
+
+    /**
+     * @return {@link EventType#TEXT} or {@link EventType#IMAGE}, or null if no message is cached.
+     */
+    public EventType getLastEventType() {
+        return this.lastEventType;
+    }
+
+    /**
+     * @return Text of the last message, null for images and deleted messages.
+     */
+    public String getLastEventText() {
+        return this.lastEventText;
+    }
+
+    public String getLastEventMemberId() {
+        return this.lastEventMemberId;
+    }
+
+    public boolean isLastEventDeleted() {
+        return this.lastEventDeleted;
+    }
+
+    /**
+     * @return Time of the last message, or null if no message is cached.
+     */
+    public Date getLastActivity() {
+        return this.lastActivity;
+    }
+
+    public int getUnreadCount() {
+        return this.unreadCount;
+    }
+
+    public static ConversationSummary fromCursor(Cursor cursor) {
+        String type = cursor.getString(cursor.getColumnIndex(COLUMN_LAST_EVENT_TYPE));
+        return new ConversationSummary(cursor.getString(cursor.getColumnIndex(COLUMN_CID)),
+                cursor.getString(cursor.getColumnIndex(COLUMN_NAME)),
+                cursor.getString(cursor.getColumnIndex(COLUMN_LAST_EVENT_ID)),
+                (type != null ? EventType.valueOf(type) : null),
+                cursor.getString(cursor.getColumnIndex(COLUMN_LAST_EVENT_TEXT)),
+                cursor.getString(cursor.getColumnIndex(COLUMN_LAST_EVENT_MEMBER_ID)),
+                cursor.getInt(cursor.getColumnIndex(COLUMN_LAST_EVENT_DELETED)) != 0,
+                DateUtil.fromEpochMillis(cursor, COLUMN_LAST_ACTIVITY),
+                cursor.getInt(cursor.getColumnIndex(COLUMN_UNREAD_COUNT)));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ConversationSummary that = (ConversationSummary) o;
+        return TextUtils.equals(this.conversationId, that.conversationId)
+                && TextUtils.equals(this.displayName, that.displayName)
+                && TextUtils.equals(this.lastEventId, that.lastEventId)
+                && this.lastEventType == that.lastEventType
+                && TextUtils.equals(this.lastEventText, that.lastEventText)
+                && TextUtils.equals(this.lastEventMemberId, that.lastEventMemberId)
+                && this.lastEventDeleted == that.lastEventDeleted
+                && (this.lastActivity != null ? this.lastActivity.equals(that.lastActivity) : that.lastActivity == null)
+                && this.unreadCount == that.unreadCount;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = this.conversationId != null ? this.conversationId.hashCode() : 0;
+        result = 31 * result + (this.lastEventId != null ? this.lastEventId.hashCode() : 0);
+        return 31 * result + this.unreadCount;
+    }
+
+    @Override
+    public String toString() {
+        return ConversationSummary.class.getSimpleName() + " cid: " + this.conversationId
+                + " .lastEventId: " + this.lastEventId + " .unread: " + this.unreadCount;
+    }
+}
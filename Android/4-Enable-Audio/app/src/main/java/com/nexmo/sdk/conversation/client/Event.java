@@ -9,13 +9,13 @@ import android.text.TextUtils;
 import com.nexmo.sdk.conversation.client.event.EventType;
 import com.nexmo.sdk.conversation.client.event.NexmoAPIError;
 import com.nexmo.sdk.conversation.client.event.RequestHandler;
+import com.nexmo.sdk.conversation.core.persistence.contract.EventContract;
 import com.nexmo.sdk.conversation.core.util.DateUtil;
 import com.nexmo.sdk.conversation.core.util.Log;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -25,22 +25,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_DELETED_TIMESTAMP;
-import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_DELIVERED_RECEIPTS;
-import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_EVENT_ID;
-import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_IMAGE_REPRESENTATIONS;
-import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_MEMBER_MEDIA_ENABLED;
-import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_MESSAGE_TYPE;
-import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_SEEN_RECEIPTS;
-import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_TEXT;
-import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_TIMESTAMP;
-import static com.nexmo.sdk.conversation.core.persistence.contract.MemberContract.MemberEntry.COLUMN_INVITEDAT;
-import static com.nexmo.sdk.conversation.core.persistence.contract.MemberContract.MemberEntry.COLUMN_JOINEDAT;
-import static com.nexmo.sdk.conversation.core.persistence.contract.MemberContract.MemberEntry.COLUMN_LEFTAT;
-import static com.nexmo.sdk.conversation.core.persistence.contract.MemberContract.MemberEntry.COLUMN_MEMBER_ID;
-import static com.nexmo.sdk.conversation.core.persistence.contract.MemberContract.MemberEntry.COLUMN_STATE;
-import static com.nexmo.sdk.conversation.core.persistence.contract.MemberContract.MemberEntry.COLUMN_USERNAME;
-import static com.nexmo.sdk.conversation.core.persistence.contract.MemberContract.MemberEntry.COLUMN_USER_ID;
 
 /**
  * Event is a foundation for different types of messages
@@ -205,129 +189,92 @@ public abstract class Event implements Parcelable {
         dest.writeTypedArray(getSeenReceipts().toArray(new SeenReceipt[0]), 0);
     }
 
+    /**
+     * Events are identified by their event id within the parent conversation.
+     * Hashing only uses the event id, so it stays stable while receipts, payload or
+     * deletion state change, and it doesn't walk the conversation history.
+     * Events without an id yet, i.e. not sent, are only equal to themselves.
+     * Use {@link Event#contentEquals(Event)} for a full comparison.
+     */
     @Override
-    public boolean equals(Object o) {
+    public final boolean equals(Object o) {
         if (this == o) return true;
-        if (!(o instanceof Event)) return false;
+        if (!(o instanceof Event) || id == null) return false;
+
+        Event that = (Event) o;
+
+        if (!id.equals(that.id)) return false;
+        return TextUtils.equals(getConversationId(), that.getConversationId());
+    }
 
-        Event Event = (Event) o;
+    @Override
+    public final int hashCode() {
+        return id != null ? id.hashCode() : System.identityHashCode(this);
+    }
 
-        if (!id.equals(Event.id)) return false;
+    /**
+     * Compare the event details, sender and payload, not just the event id.
+     *
+     * @param that The event to compare with.
+     * @return     True if both events hold the same details.
+     */
+    public boolean contentEquals(Event that) {
+        if (this == that) return true;
+        if (that == null || getClass() != that.getClass()) return false;
 
-        if ((timestamp != null && Event.timestamp != null && !timestamp.equals(Event.timestamp)))
+        if (!equals(that)) return false;
+        if ((timestamp != null && that.timestamp != null && !timestamp.equals(that.timestamp)))
             return false;
-        if (deletedTimestamp != null ? !deletedTimestamp.equals(Event.deletedTimestamp) : Event.deletedTimestamp != null)
+        if (deletedTimestamp != null ? !deletedTimestamp.equals(that.deletedTimestamp) : that.deletedTimestamp != null)
             return false;
-        if (!member.equals(Event.member)) return false;
-        return conversation.equals(Event.conversation);
-
+        return member != null ? member.contentEquals(that.member) : that.member == null;
     }
 
-    @Override
-    public int hashCode() {
-        int result = id.hashCode();
-        result = 31 * result + (timestamp != null ? timestamp.hashCode() : 0);
-        result = 31 * result + (deletedTimestamp != null ? deletedTimestamp.hashCode() : 0);
-        if(member!= null) result = 31 * result + member.hashCode();
-        if(conversation != null) result = 31 * result + conversation.hashCode();
-        return result;
+    private String getConversationId() {
+        return (this.conversation != null ? this.conversation.getConversationId() : null);
     }
 
     public static Event fromCursor(Cursor cursor, Conversation conversation) {
         if (cursor == null) return null;
+        return fromCursor(cursor, conversation, new EventContract.Columns(cursor));
+    }
 
-        Date timestamp = null, deletedTimestamp = null, joinedAt = null, invitedAt = null, leftAt = null;
-
-        try {
-            timestamp = DateUtil.formatIso8601DateString(cursor.getString(cursor.getColumnIndex(COLUMN_TIMESTAMP)));
-        } catch (ParseException e) {
-            Log.d(TAG, "Event fromCursor: wrong date format - created timestamp");
-        }
-
-        try{
-            deletedTimestamp = DateUtil.formatIso8601DateString(cursor.getString(cursor.getColumnIndex(COLUMN_DELETED_TIMESTAMP)));
-        } catch (ParseException e) {
-            Log.d(TAG, "Event fromCursor: wrong date format - deleted timestamp");
-        }
-        
-        try{
-            joinedAt = DateUtil.formatIso8601DateString(cursor.getString(cursor.getColumnIndex(COLUMN_JOINEDAT)));
-        } catch (ParseException e) {
-            Log.d(TAG, "Event fromCursor: wrong date format - joined timestamp");
-        }
-
-        try{
-            invitedAt = DateUtil.formatIso8601DateString(cursor.getString(cursor.getColumnIndex(COLUMN_INVITEDAT)));
-        } catch (ParseException e) {
-            Log.d(TAG, "Event fromCursor: wrong date format - invited timestamp");
-        }
+    /**
+     * Map the current row of an event cursor, see {@link EventContract.Columns}.
+     * Receipts are attached once the page is read, see {@link ReceiptRecordUtil#attachFromCursor},
+     * image representations are parsed on first access.
+     */
+    public static Event fromCursor(Cursor cursor, Conversation conversation, EventContract.Columns columns) {
+        if (cursor == null) return null;
 
-        try{
-            leftAt = DateUtil.formatIso8601DateString(cursor.getString(cursor.getColumnIndex(COLUMN_LEFTAT)));
-        } catch (ParseException e) {
-            Log.d(TAG, "Event fromCursor: wrong date format - left timestamp");
-        }
+        Date timestamp = DateUtil.fromEpochMillis(cursor, columns.timestamp);
+        Date deletedTimestamp = DateUtil.fromEpochMillis(cursor, columns.deletedTimestamp);
+        Date joinedAt = DateUtil.fromEpochMillis(cursor, columns.joinedAt);
+        Date invitedAt = DateUtil.fromEpochMillis(cursor, columns.invitedAt);
+        Date leftAt = DateUtil.fromEpochMillis(cursor, columns.leftAt);
 
-        Member.STATE state = Member.STATE.fromId(cursor.getString(cursor.getColumnIndex(COLUMN_STATE)));
-        Member self = new Member(cursor.getString(cursor.getColumnIndex(COLUMN_USER_ID)),
-                cursor.getString(cursor.getColumnIndex(COLUMN_USERNAME)),
-                cursor.getString(cursor.getColumnIndex(COLUMN_MEMBER_ID)),
+        Member.STATE state = Member.STATE.fromId(cursor.getString(columns.state));
+        Member self = new Member(cursor.getString(columns.userId),
+                cursor.getString(columns.username),
+                cursor.getString(columns.memberId),
                 joinedAt, invitedAt, leftAt, state);
 
-        String text = cursor.getString(cursor.getColumnIndex(COLUMN_TEXT));
-        String eventId = cursor.getString(cursor.getColumnIndex(COLUMN_EVENT_ID));
-        String typeString = cursor.getString(cursor.getColumnIndex(COLUMN_MESSAGE_TYPE));
-
-        String deliveredReceiptsJson = cursor.getString(cursor.getColumnIndex(COLUMN_DELIVERED_RECEIPTS));
-        String seenReceiptsJson = cursor.getString(cursor.getColumnIndex(COLUMN_SEEN_RECEIPTS));
-
+        String eventId = cursor.getString(columns.eventId);
         List<SeenReceipt> seenReceipts = new ArrayList<>();
         List<DeliveredReceipt> deliveredReceipts = new ArrayList<>();
-        if (!TextUtils.isEmpty(deliveredReceiptsJson))
-            try {
-                deliveredReceipts = ReceiptRecordUtil.parseDeliveryReceiptHistory(conversation, eventId, new JSONObject(deliveredReceiptsJson));
-            } catch (JSONException e) {
-                e.printStackTrace();
-                Log.d(TAG, "cannot parse delivery receipt records for this event");
-            }
-
-        if (!TextUtils.isEmpty(seenReceiptsJson))
-            try {
-                seenReceipts = ReceiptRecordUtil.parseSeenReceiptHistory(conversation, eventId, new JSONObject(seenReceiptsJson));
-            } catch (JSONException e) {
-                e.printStackTrace();
-                Log.d(TAG, "cannot parse seen receipt records for this event");
-            }
 
-        switch(EventType.valueOf(typeString)) {
+        switch(EventType.valueOf(cursor.getString(columns.type))) {
             case TEXT: {
-                return new Text(text, eventId, timestamp, self, conversation, deletedTimestamp, seenReceipts, deliveredReceipts);
+                return new Text(cursor.getString(columns.text), eventId, timestamp, self, conversation, deletedTimestamp, seenReceipts, deliveredReceipts);
             }
             case IMAGE: {
-                if (deletedTimestamp != null) {
-                    return new Image(eventId, timestamp, self, deletedTimestamp, conversation, seenReceipts, deliveredReceipts);
-                } else {
-                    try {
-                        JSONObject representationsJson = new JSONObject(cursor.getString(cursor.getColumnIndex(COLUMN_IMAGE_REPRESENTATIONS)));
-
-                        JSONObject representations = representationsJson.getJSONObject("representations");
-                        JSONObject originalJson = representations.getJSONObject("original");
-                        JSONObject mediumJson = representations.getJSONObject("medium");
-                        JSONObject thumbnailJson = representations.getJSONObject("thumbnail");
-
-                        ImageRepresentation original = ImageRepresentation.fromJson(ImageRepresentation.TYPE.ORIGINAL, originalJson);
-                        ImageRepresentation medium = ImageRepresentation.fromJson(ImageRepresentation.TYPE.MEDIUM, mediumJson);
-                        ImageRepresentation thumbnail = ImageRepresentation.fromJson(ImageRepresentation.TYPE.THUMBNAIL, thumbnailJson);
-
-                        return new Image(eventId, timestamp, self, null, conversation, original, medium, thumbnail, seenReceipts, deliveredReceipts);
-                    } catch (JSONException e) {
-                        e.printStackTrace();
-                        return new Image(eventId, timestamp, self, null, conversation, seenReceipts, deliveredReceipts);
-                    }
-                }
+                Image image = new Image(eventId, timestamp, self, deletedTimestamp, conversation, seenReceipts, deliveredReceipts);
+                if (deletedTimestamp == null && !cursor.isNull(columns.imageRepresentations))
+                    image.setRepresentationsJson(cursor.getString(columns.imageRepresentations));
+                return image;
             }
             case MEMBER_MEDIA: {
-                boolean isAudioEnabled = cursor.getInt(cursor.getColumnIndex(COLUMN_MEMBER_MEDIA_ENABLED)) == 1;
+                boolean isAudioEnabled = cursor.getInt(columns.memberMediaEnabled) == 1;
                 return new MemberMedia(eventId, self, conversation, isAudioEnabled, timestamp);
             }
             default:
@@ -336,14 +283,28 @@ public abstract class Event implements Parcelable {
     }
 
     public static Event fromJson(Conversation conversation, JSONObject messageObject) throws JSONException {
+        return fromJson(conversation, messageObject, false);
+    }
+
+    /**
+     * @param delta true when merging the events fetched since the last one shown: events already part
+     *              of the conversation are skipped, and a sender which isn't a member yet is kept by
+     *              its member id, to be matched once the members are fetched.
+     */
+    public static Event fromJson(Conversation conversation, JSONObject messageObject, boolean delta) throws JSONException {
         JSONObject body = messageObject.getJSONObject("body");
 
         String eventId = messageObject.getString("id");
+        if (delta && conversation.findEvent(eventId) != null)
+            return null;
+
         String memberId = messageObject.getString("from");
         Member member = conversation.getMember(memberId);
         if (member == null) {
             Log.d(TAG, "Event.fromJson out-of-sync members");
-            return null;
+            if (!delta)
+                return null;
+            member = new Member(memberId, conversation);
         }
 
         Date timestamp = DateUtil.parseDateFromJson(messageObject, "timestamp");
@@ -0,0 +1,154 @@
+package com.nexmo.sdk.conversation.client;
+
+import com.nexmo.sdk.conversation.core.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Fetches details of conversations after login with a bounded number of requests in flight.
+ *
+ * <p>Conversations are hydrated in the order they were given, except for the visible ones which
+ * always go first. Visible conversations can be changed at any time, before or during hydration.
+ * Conversations might be added while the hydration is running, e.g. as pages of the conversation
+ * list arrive, it finishes once the last page has been added and hydrated.</p>
+ *
+ * <p>Starting a new hydration, e.g. after reconnect, drops whatever the previous one had left in
+ * its queue. Its requests already in flight still count towards the concurrency limit.</p>
+ *
+ * @hide
+ */
+class HydrationScheduler {
+    private static final String TAG = HydrationScheduler.class.getSimpleName();
+
+    interface Hydrator {
+        /**
+         * Fetch and cache details of a conversation, then run {@code onDone} whatever the outcome.
+         */
+        void hydrate(String cid, Runnable onDone);
+    }
+
+    interface ProgressListener {
+        void onHydrationProgress(int hydrated, int total);
+
+        void onHydrationFinished(int total);
+    }
+
+    private final int concurrency;
+    private final Hydrator hydrator;
+    private final ProgressListener progressListener;
+
+    private final LinkedList<String> queue = new LinkedList<>();
+    private List<String> visible = Collections.emptyList();
+    private int generation;
+    private int inFlight;
+    private int hydrated;
+    private int total;
+    private boolean complete;
+
+    HydrationScheduler(int concurrency, Hydrator hydrator, ProgressListener progressListener) {
+        this.concurrency = Math.max(1, concurrency);
+        this.hydrator = hydrator;
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Start a new hydration, conversations are added to it page by page.
+     */
+    synchronized void begin() {
+        this.generation++;
+        this.queue.clear();
+        this.hydrated = 0;
+        this.total = 0;
+        this.complete = false;
+    }
+
+    /**
+     * Queue conversations of the current hydration, most important first.
+     * @param lastPage true if no more conversations will be added to this hydration.
+     */
+    void add(List<String> cids, boolean lastPage) {
+        boolean finished;
+        int total;
+        synchronized (this) {
+            this.queue.addAll(cids);
+            prioritiseVisible();
+            total = (this.total += cids.size());
+            this.complete = lastPage;
+            finished = (lastPage && this.hydrated == total);
+        }
+        Log.d(TAG, "add: " + cids.size() + " conversations, " + this.concurrency + " at a time");
+
+        if (finished)
+            this.progressListener.onHydrationFinished(total);
+        else
+            hydrateNext();
+    }
+
+    /**
+     * Move conversations currently on screen to the front of the queue.
+     * @param cids conversation ids, most important first.
+     */
+    synchronized void setVisible(List<String> cids) {
+        this.visible = new ArrayList<>(cids);
+        prioritiseVisible();
+    }
+
+    private void prioritiseVisible() {
+        for (int i = this.visible.size() - 1; i >= 0; i--) {
+            String cid = this.visible.get(i);
+            if (this.queue.remove(cid))
+                this.queue.addFirst(cid);
+        }
+    }
+
+    private void hydrateNext() {
+        final int generation;
+        List<String> next = new ArrayList<>();
+        synchronized (this) {
+            generation = this.generation;
+            while (this.inFlight < this.concurrency && !this.queue.isEmpty()) {
+                next.add(this.queue.poll());
+                this.inFlight++;
+            }
+        }
+
+        for (String cid : next) {
+            this.hydrator.hydrate(cid, new Runnable() {
+                @Override
+                public void run() {
+                    onHydrated(generation);
+                }
+            });
+        }
+    }
+
+    private void onHydrated(int generation) {
+        int hydrated, total;
+        boolean finished = false;
+        synchronized (this) {
+            this.inFlight--;
+            if (generation != this.generation) {
+                // superseded hydration, just free up its slot.
+                hydrated = -1;
+                total = 0;
+            } else {
+                hydrated = ++this.hydrated;
+                total = this.total;
+                finished = (this.complete && hydrated == total);
+            }
+        }
+
+        if (hydrated > 0) {
+            this.progressListener.onHydrationProgress(hydrated, total);
+            if (finished) {
+                this.progressListener.onHydrationFinished(total);
+                return;
+            }
+        }
+        hydrateNext();
+    }
+
+}
@@ -14,6 +14,7 @@ import com.nexmo.sdk.conversation.client.event.NexmoAPIError;
 import com.nexmo.sdk.conversation.client.event.RequestHandler;
 
 import com.nexmo.sdk.conversation.client.event.EventType;
+import com.nexmo.sdk.conversation.core.persistence.ImageStorage;
 import com.nexmo.sdk.conversation.core.util.DateUtil;
 
 import org.json.JSONException;
@@ -66,6 +67,8 @@ public class Image extends Event implements Parcelable {
     private ImageRepresentation original;
     private ImageRepresentation medium;
     private ImageRepresentation thumbnail;
+    // representations read from cache, parsed on first access.
+    private String representationsJson;
 
     @VisibleForTesting(otherwise = VisibleForTesting.PROTECTED)
     protected Image(String localPath) {
@@ -155,14 +158,17 @@ public class Image extends Event implements Parcelable {
     }
 
     public ImageRepresentation getOriginal(){
+        parseRepresentationsIfNeeded();
         return this.original;
     }
 
     public ImageRepresentation getMedium() {
+        parseRepresentationsIfNeeded();
         return this.medium;
     }
 
     public ImageRepresentation getThumbnail(){
+        parseRepresentationsIfNeeded();
         return this.thumbnail;
     }
 
@@ -180,6 +186,7 @@ public class Image extends Event implements Parcelable {
     }
 
     void updateLocalFilePaths(final String localPath) {
+        parseRepresentationsIfNeeded();
         this.original.updateLocalFilePath(localPath);
         this.medium.updateLocalFilePath(localPath);
         this.thumbnail.updateLocalFilePath(localPath);
@@ -195,6 +202,7 @@ public class Image extends Event implements Parcelable {
      *
      */
     public boolean isDownloaded() {
+        parseRepresentationsIfNeeded();
         return (this.thumbnail != null && !TextUtils.isEmpty(this.thumbnail.getLocalFilePath()));
     }
 
@@ -228,6 +236,7 @@ public class Image extends Event implements Parcelable {
 
         /** Image already cached. **/
         if (this.getImageRepresentationByType(type).localFileExists()) {
+            ImageStorage.touch(this.getImageRepresentationByType(type).getLocalFilePath());
             conversation.getSignallingChannel().getConversationClient().callUserCallback(new Runnable() {
                 @Override
                 public void run() {
@@ -259,6 +268,7 @@ public class Image extends Event implements Parcelable {
     @Override
     public void writeToParcel(Parcel dest, int flags) {
         super.writeToParcel(dest,flags); //writes the id, timestamp, member and receipts
+        parseRepresentationsIfNeeded();
         dest.writeParcelable(this.original, flags);
         dest.writeParcelable(this.medium, flags);
         dest.writeParcelable(this.thumbnail, flags);
@@ -266,6 +276,7 @@ public class Image extends Event implements Parcelable {
 
     @Override
     public String toString() {
+        parseRepresentationsIfNeeded();
         return TAG +
                 " .id: " + (this.id != null ? this.id : "") +
                 " .Member: " + (this.getMember() != null ? this.getMember().toString() : "") +
@@ -276,12 +287,12 @@ public class Image extends Event implements Parcelable {
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (!(o instanceof Image)) return false;
-        if (!super.equals(o)) return false;
+    public boolean contentEquals(Event o) {
+        if (!super.contentEquals(o)) return false;
 
         Image image = (Image) o;
+        parseRepresentationsIfNeeded();
+        image.parseRepresentationsIfNeeded();
 
         if (original != null ? !original.equals(image.original) : image.original != null)
             return false;
@@ -289,15 +300,6 @@ public class Image extends Event implements Parcelable {
         return thumbnail != null ? thumbnail.equals(image.thumbnail) : image.thumbnail == null;
     }
 
-    @Override
-    public int hashCode() {
-        int result = super.hashCode();
-        result = 31 * result + (original != null ? original.hashCode() : 0);
-        result = 31 * result + (medium != null ? medium.hashCode() : 0);
-        result = 31 * result + (thumbnail != null ? thumbnail.hashCode() : 0);
-        return result;
-    }
-
     public static Image fromPush(final String senderId, final String eventId, final JSONObject messageObject) throws JSONException {
         Date timestamp = DateUtil.parseDateFromJson(messageObject, "timestamp");
         JSONObject representations = messageObject.getJSONObject("body").getJSONObject("representations");
@@ -325,14 +327,38 @@ public class Image extends Event implements Parcelable {
         }
     };
 
-    void setRepresentations(ImageRepresentation original, ImageRepresentation medium,
+    synchronized void setRepresentations(ImageRepresentation original, ImageRepresentation medium,
                             ImageRepresentation thumbnail) {
+        this.representationsJson = null;
         this.original = original;
         this.medium = medium;
         this.thumbnail = thumbnail;
     }
 
+    /**
+     * Keep the cached representations json, it's only parsed if they're accessed.
+     */
+    synchronized void setRepresentationsJson(String representationsJson) {
+        this.representationsJson = representationsJson;
+    }
+
+    private synchronized void parseRepresentationsIfNeeded() {
+        if (this.representationsJson == null) return;
+
+        String json = this.representationsJson;
+        this.representationsJson = null;
+        try {
+            JSONObject representations = new JSONObject(json).getJSONObject("representations");
+            this.original = ImageRepresentation.fromJson(ImageRepresentation.TYPE.ORIGINAL, representations.getJSONObject("original"));
+            this.medium = ImageRepresentation.fromJson(ImageRepresentation.TYPE.MEDIUM, representations.getJSONObject("medium"));
+            this.thumbnail = ImageRepresentation.fromJson(ImageRepresentation.TYPE.THUMBNAIL, representations.getJSONObject("thumbnail"));
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
     void recycleBitmaps() {
+        parseRepresentationsIfNeeded();
       if (this.original != null) this.original.recycleBitmap();
       if (this.medium != null) this.medium.recycleBitmap();
       if (this.thumbnail != null ) this.thumbnail.recycleBitmap();
@@ -19,7 +19,6 @@ import com.nexmo.sdk.conversation.core.util.DateUtil;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.text.ParseException;
 import java.util.Date;
 
 import static com.nexmo.sdk.conversation.core.persistence.contract.MemberContract.MemberEntry.COLUMN_INVITEDAT;
@@ -217,6 +216,11 @@ public class Member implements Parcelable {
                 " .leftAt: " + (this.leftAt != null ? this.leftAt.toString() : "");
     }
 
+    /**
+     * Members are identified by their member id, or by user id for members that
+     * don't have one yet. State changes don't affect hashing.
+     * Use {@link Member#contentEquals(Member)} for a full comparison.
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -224,6 +228,27 @@ public class Member implements Parcelable {
 
         Member member = (Member) o;
 
+        if (memberId != null || member.memberId != null)
+            return memberId != null && memberId.equals(member.memberId);
+        return userId != null && userId.equals(member.userId);
+    }
+
+    @Override
+    public int hashCode() {
+        if (memberId != null) return memberId.hashCode();
+        return userId != null ? userId.hashCode() : 0;
+    }
+
+    /**
+     * Compare all member details, including state and state timestamps.
+     *
+     * @param member The member to compare with.
+     * @return       True if both members hold the same details.
+     */
+    public boolean contentEquals(Member member) {
+        if (this == member) return true;
+        if (member == null) return false;
+
         if (memberId != null ? !memberId.equals(member.memberId) : member.memberId != null)
             return false;
         if (userId != null ? !userId.equals(member.userId) : member.userId != null) return false;
@@ -234,19 +259,6 @@ public class Member implements Parcelable {
         if (invitedAt != null ? !invitedAt.equals(member.invitedAt) : member.invitedAt != null)
             return false;
         return leftAt != null ? leftAt.equals(member.leftAt) : member.leftAt == null;
-
-    }
-
-    @Override
-    public int hashCode() {
-        int result = memberId != null ? memberId.hashCode() : 0;
-        result = 31 * result + (userId != null ? userId.hashCode() : 0);
-        result = 31 * result + (name != null ? name.hashCode() : 0);
-        result = 31 * result + state.hashCode();
-        result = 31 * result + (joinedAt != null ? joinedAt.hashCode() : 0);
-        result = 31 * result + (invitedAt != null ? invitedAt.hashCode() : 0);
-        result = 31 * result + (leftAt != null ? leftAt.hashCode() : 0);
-        return result;
     }
 
 
@@ -288,14 +300,9 @@ public class Member implements Parcelable {
     public static Member fromCursor(Cursor cursor) {
         if (cursor == null) return null;
 
-        Date dateInvited = null, dateLeft = null, dateJoined = null;
-        try {
-            dateInvited = DateUtil.formatIso8601DateString(cursor.getString(cursor.getColumnIndex(COLUMN_INVITEDAT)));
-            dateLeft = DateUtil.formatIso8601DateString(cursor.getString(cursor.getColumnIndex(COLUMN_LEFTAT)));
-            dateJoined = DateUtil.formatIso8601DateString(cursor.getString(cursor.getColumnIndex(COLUMN_JOINEDAT)));
-        } catch (ParseException e) {
-            Log.d(TAG, "Member: wrong date format");
-        }
+        Date dateInvited = DateUtil.fromEpochMillis(cursor, COLUMN_INVITEDAT);
+        Date dateLeft = DateUtil.fromEpochMillis(cursor, COLUMN_LEFTAT);
+        Date dateJoined = DateUtil.fromEpochMillis(cursor, COLUMN_JOINEDAT);
 
         return new Member(cursor.getString(cursor.getColumnIndex(COLUMN_USER_ID)),
                 cursor.getString(cursor.getColumnIndex(COLUMN_USERNAME)),
@@ -2,6 +2,7 @@ package com.nexmo.sdk.conversation.client;
 
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.text.TextUtils;
 
 import com.nexmo.sdk.conversation.client.event.EventType;
 
@@ -88,6 +89,12 @@ public class ReceiptRecord implements Parcelable {
                 ".timestamp: " + (this.timestamp != null ? this.timestamp : "");
     }
 
+    /**
+     * A member can issue a single receipt of each kind per event, so receipts are
+     * identified by receipt type, event and member id. Events compare as in {@link Event#equals(Object)},
+     * by event id within their conversation.
+     * Use {@link ReceiptRecord#contentEquals(ReceiptRecord)} to also compare timestamps.
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -95,19 +102,24 @@ public class ReceiptRecord implements Parcelable {
 
         ReceiptRecord that = (ReceiptRecord) o;
 
-        if (timestamp != null ? !timestamp.equals(that.timestamp) : that.timestamp != null)
-        if (getEvent() != null ? !getEvent().equals(that.getEvent()) : that.getEvent() != null)
-            return false;
-        if (getMember() != null ? !getMember().equals(that.getMember()) : that.getMember() != null)
-            return false;
-        return true;
+        if (event != null ? !event.equals(that.event) : that.event != null) return false;
+        return TextUtils.equals(getMemberId(), that.getMemberId());
     }
 
     @Override
     public int hashCode() {
-        int result = timestamp != null ? timestamp.hashCode() : 0;
-        result = 31 * result + (event.getId() != null ? event.getId().hashCode() : 0);
-        result = 31 * result + (member != null ? member.getMemberId().hashCode() : 0);
+        String memberId = getMemberId();
+        int result = event != null ? event.hashCode() : 0;
+        result = 31 * result + (memberId != null ? memberId.hashCode() : 0);
         return result;
     }
+
+    public boolean contentEquals(ReceiptRecord that) {
+        if (!equals(that)) return false;
+        return timestamp != null ? timestamp.equals(that.timestamp) : that.timestamp == null;
+    }
+
+    private String getMemberId() {
+        return (this.member != null ? this.member.getMemberId() : null);
+    }
 }
@@ -1,8 +1,10 @@
 package com.nexmo.sdk.conversation.client;
 
+import android.database.Cursor;
 import android.support.annotation.Nullable;
 import com.nexmo.sdk.conversation.core.util.Log;
 
+import com.nexmo.sdk.conversation.core.persistence.contract.ReceiptContract;
 import com.nexmo.sdk.conversation.core.util.DateUtil;
 
 import org.json.JSONException;
@@ -13,6 +15,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -25,28 +28,29 @@ public class ReceiptRecordUtil {
     private static final String TAG = ReceiptRecordUtil.class.getSimpleName();
 
     /**
-     * Convert seen receipts in json form, for writing them to cache.
+     * Attach receipts read from cache to their events.
+     * Receipts of members who are not part of the conversation any more are skipped.
+     * @param eventsById events of the page the receipts were read for.
      */
-    public static JSONObject seenReceiptsToJson(final Event event) throws JSONException {
-        JSONObject stateObject = new JSONObject();
-        JSONObject seenObject = new JSONObject();
-        for (SeenReceipt receipt : event.getSeenReceipts())
-            seenObject.put(receipt.getMember().getMemberId(), DateUtil.formatIso8601DateString(receipt.getTimestamp()));
-
-        stateObject.put("seen_by", seenObject);
-
-        return stateObject;
-    }
-
-    public static JSONObject deliveredReceiptsToJson(final Event event) throws JSONException {
-        JSONObject stateObject = new JSONObject();
-        JSONObject deliveredObject = new JSONObject();
-        for (DeliveredReceipt receipt : event.getDeliveredReceipts())
-            deliveredObject.put(receipt.getMember().getMemberId(), DateUtil.formatIso8601DateString(receipt.getTimestamp()));
-
-        stateObject.put("delivered_to", deliveredObject);
-
-        return stateObject;
+    public static void attachFromCursor(Cursor cursor, Map<String, Event> eventsById) {
+        if (cursor == null) return;
+
+        int eventIdIndex = cursor.getColumnIndex(ReceiptContract.ReceiptEntry.COLUMN_EVENT_ID);
+        int memberIdIndex = cursor.getColumnIndex(ReceiptContract.ReceiptEntry.COLUMN_MEMBER_ID);
+        int kindIndex = cursor.getColumnIndex(ReceiptContract.ReceiptEntry.COLUMN_KIND);
+        while (cursor.moveToNext()) {
+            Event event = eventsById.get(cursor.getString(eventIdIndex));
+            if (event == null || event.getConversation() == null) continue;
+
+            Member member = event.getConversation().getMember(cursor.getString(memberIdIndex));
+            if (member == null) continue;
+
+            Date timestamp = DateUtil.fromEpochMillis(cursor, ReceiptContract.ReceiptEntry.COLUMN_TIMESTAMP);
+            if (ReceiptContract.KIND_DELIVERED.equals(cursor.getString(kindIndex)))
+                event.addDeliveredReceipt(new DeliveredReceipt(event, member, timestamp));
+            else
+                event.addSeenReceipt(new SeenReceipt(event, member, timestamp));
+        }
     }
 
     static List<DeliveredReceipt> parseDeliveryReceiptHistory(Conversation conversation, String eventId, JSONObject stateJson) {
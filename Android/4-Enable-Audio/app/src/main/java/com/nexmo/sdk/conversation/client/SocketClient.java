@@ -19,8 +19,10 @@ import com.nexmo.sdk.conversation.client.event.network.CAPIInternalRequest;
 import com.nexmo.sdk.conversation.client.event.network.NetworkState;
 import com.nexmo.sdk.conversation.client.event.network.NetworkingStateListener;
 import com.nexmo.sdk.conversation.client.event.network.SubscriptionListener;
+import com.nexmo.sdk.conversation.config.Defaults;
 import com.nexmo.sdk.conversation.core.client.Router;
-import com.nexmo.sdk.conversation.core.client.Router.FlushFinishedListener;
+import com.nexmo.sdk.conversation.core.client.Router.FlushListener;
+import com.nexmo.sdk.conversation.core.client.SingleFlight;
 import com.nexmo.sdk.conversation.core.client.request.*;
 import com.nexmo.sdk.conversation.core.client.request.audio.AudioEarmuffRequest;
 import com.nexmo.sdk.conversation.core.client.request.audio.AudioMuteRequest;
@@ -88,6 +90,27 @@ class SocketClient implements NetworkingStateListener {
 
     private ConversationClient conversationClient;
     private SocketEventHandler socketEventHandler;
+    private final SingleFlight<Conversation> conversationReads = new SingleFlight<>();
+    private final ConversationListPager conversationListPager = new ConversationListPager(
+            new ConversationListPager.PageSource() {
+                @Override
+                public void fetch(String cursor, ConversationListPager.PageCallback callback) {
+                    fetchConversationsPage(cursor, callback);
+                }
+            },
+            new ConversationListPager.PageSink() {
+                @Override
+                public void onPage(List<Conversation> conversations, boolean firstPage, boolean lastPage) {
+                    socketEventHandler.onConversationsPage(conversations, firstPage, lastPage);
+                }
+
+                @Override
+                public void onPagingFailed(boolean firstPage) {
+                    if (!firstPage)
+                        socketEventHandler.onConversationsPagingFailed();
+                }
+            },
+            Defaults.CONVERSATION_LIST_PAGE_WAIT);
 
     private RequestHandler<User> loginListener;
     private Set<NetworkingStateListener> networkingStateListeners = Collections.synchronizedSet(new HashSet<NetworkingStateListener>());
@@ -185,25 +208,21 @@ class SocketClient implements NetworkingStateListener {
             User processParsedResponse(User me) {
                 self = me;
                 Log.d(TAG, "onLogin user " + self.toString());
+                if (!UserPreference.isLastLoggedInUser(self, conversationClient.getContext())) {
+                    Log.d(TAG, "Cache: switching to the cache of " + self.getUserId());
+                    UserPreference.saveUser(self, conversationClient.getContext());
+                }
+                else
+                    Log.d(TAG, "Cache: user found");
+                // each user has a cache of their own, switching users only switches the file.
+                CacheDB.switchToUser(conversationClient.getContext(), self);
+
                 if (loginListener != null) {
                     loginListener.onSuccess(self);
                     loginListener = null;
                 }
                 flushPendingOperations();
 
-                if (!UserPreference.containsUser(conversationClient.getContext())) {
-                    Log.d(TAG, "Cache: no user found. saving user.");
-                    CacheDB.getCacheDBInstance().clearDb();
-                    UserPreference.saveUser(self, conversationClient.getContext());
-                }
-                else if (!UserPreference.isLastLoggedInUser(self, conversationClient.getContext())) {
-                    Log.d(TAG,"Cache: other user found. overriding all cache.");
-                    CacheDB.getCacheDBInstance().clearDb();
-                    UserPreference.saveUser(self, conversationClient.getContext());
-                }
-                else
-                    Log.d(TAG, "Cache: user found");
-
                 // always get fresh conversation list from backend so we can match lastEventId
                 updateConversationList();
 
@@ -276,11 +295,10 @@ class SocketClient implements NetworkingStateListener {
         self = null;
         UserPreference.clearUser(conversationClient.getContext());
 
+        // keep the cache of this user for their next login.
         CacheDB cacheDB = CacheDB.getCacheDBInstance();
-        if (cacheDB != null) {
-            cacheDB.clearDb();
+        if (cacheDB != null)
             cacheDB.closeDatabase();
-        }
 
         ConversationSignalingChannel signalingChannel = getConversationClient().getSignallingChannel();
         if (signalingChannel.isAudioEnabled())
@@ -486,6 +504,14 @@ class SocketClient implements NetworkingStateListener {
     }
 
     void getConversation(final GetConversationRequest getRequest) {
+        // attach to the same conversation:get if it's already in flight
+        RequestHandler<Conversation> handler = this.conversationReads.join(getRequest.getCoalescingKey(), getRequest.listener);
+        if (handler == null) {
+            Log.d(TAG, "getConversation: joined in-flight request for " + getRequest.cid);
+            return;
+        }
+        getRequest.listener = handler;
+
         sendRequest(new InternalResponseHelper<GetConversationRequest.Container, Conversation>(getRequest) {
             @Override
             Conversation processParsedResponse(GetConversationRequest.Container result) {
@@ -511,35 +537,53 @@ class SocketClient implements NetworkingStateListener {
     }
 
     void updateConversationList() {
-        GetConversationsRequest request = new GetConversationsRequest(conversationClient.getUser());
+        this.conversationListPager.sync();
+    }
+
+    // fetch one page of the conversation list, the pager merges it off the dispatcher lane.
+    private void fetchConversationsPage(String cursor, final ConversationListPager.PageCallback callback) {
+        final GetConversationsRequest request = new GetConversationsRequest(conversationClient.getUser(), cursor,
+                Defaults.CONVERSATION_LIST_PAGE_SIZE);
 
-        sendRequest(new InternalResponseHelper<List<GetConversationsRequest.Container>, List<Conversation>>(request) {
+        sendRequest(new InternalResponseHelper<GetConversationsRequest.Page, List<Conversation>>(request) {
             @Override
-            List<Conversation> processParsedResponse(List<GetConversationsRequest.Container> result) {
-                ArrayList<Conversation> conversations = new ArrayList<>(result.size());
-                for (GetConversationsRequest.Container container : result) {
+            List<Conversation> processParsedResponse(GetConversationsRequest.Page result) {
+                ArrayList<Conversation> conversations = new ArrayList<>(result.containers.size());
+                for (GetConversationsRequest.Container container : result.containers) {
                     container.conversation.setSelf(container.member);
                     conversations.add(container.conversation);
                 }
-                socketEventHandler.onConversations(conversations);
+                callback.onPage(conversations, result.nextCursor);
                 return conversations; // no actual result to be delivered - it's internal call
             }
+
+            @Override
+            public void onError(String errorEventName, JSONObject data, String rid, String cid) {
+                super.onError(errorEventName, data, rid, cid);
+                callback.onError();
+            }
         });
     }
 
     void flushPendingOperations() {
-        FlushFinishedListener readyToCallUserCallback = new FlushFinishedListener() {
+        FlushListener readyToCallUserCallback = new FlushListener() {
+            @Override
+            public void onFlushProgress(int flushed, int total) {
+                Log.d(TAG, "Flushed " + flushed + " of " + total + " pending operations");
+            }
+
             @Override
-            public void onFlushFinished() {
+            public void onFlushFinished(int total, long elapsedMillis) {
+                Log.d(TAG, "Flush of " + total + " pending operations took " + elapsedMillis + "ms");
                 retryPendingOperations();
             }
         };
 
         if (conversationClient.getConfig().isFlushPending()) {
             Log.d(TAG, "Login succeed and flushPending is enabled - trying to flush");
-            router.loadAndRemoveAndFlush(router, readyToCallUserCallback);
+            router.loadAndRemoveAndFlush(router, conversationClient.getConfig().getFlushWindow(), readyToCallUserCallback);
         } else
-            readyToCallUserCallback.onFlushFinished();
+            readyToCallUserCallback.onFlushFinished(0, 0);
     }
 
     // declare that self has seen the file
@@ -615,6 +659,13 @@ class SocketClient implements NetworkingStateListener {
     }
 
     void getEvents(final GetEventsRequest getRequest) {
+        RequestHandler<Conversation> handler = this.conversationReads.join(getRequest.getCoalescingKey(), getRequest.listener);
+        if (handler == null) {
+            Log.d(TAG, "getEvents: joined in-flight request for " + getRequest.cid);
+            return;
+        }
+        getRequest.listener = handler;
+
         sendRequest(new InternalResponseHelper<List<Event>, Conversation>(getRequest) {
             @Override
             Conversation processParsedResponse(List<Event> events) {
@@ -625,6 +676,31 @@ class SocketClient implements NetworkingStateListener {
         });
     }
 
+    // events from startId on, merged into the conversation instead of replacing its history.
+    void getEventsSince(final Conversation conversation, String startId, final RequestHandler<List<Event>> newEventsListener) {
+        final List<Event> newEvents = new ArrayList<>();
+        GetEventsRequest getRequest = new GetEventsRequest(conversation, startId, null, true, new RequestHandler<Conversation>() {
+            @Override
+            public void onSuccess(Conversation result) {
+                newEventsListener.onSuccess(newEvents);
+            }
+
+            @Override
+            public void onError(NexmoAPIError apiError) {
+                newEventsListener.onError(apiError);
+            }
+        });
+
+        sendRequest(new InternalResponseHelper<List<Event>, Conversation>(getRequest) {
+            @Override
+            Conversation processParsedResponse(List<Event> events) {
+                newEvents.addAll(socketEventHandler.onEventsDelta(conversation, events));
+                Log.d(TAG, "getEventsSince: " + newEvents.size() + " new events in " + conversation.getConversationId());
+                return conversation;
+            }
+        });
+    }
+
     private Emitter.Listener onMessageDeleted = new Listener() {
         @Override
         public void onData(JSONObject data, String rid) throws Throwable {
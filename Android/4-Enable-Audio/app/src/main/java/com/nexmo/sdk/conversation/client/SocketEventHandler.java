@@ -9,10 +9,11 @@ import android.text.TextUtils;
 
 import com.nexmo.sdk.conversation.client.event.NexmoAPIError;
 import com.nexmo.sdk.conversation.client.event.RequestHandler;
+import com.nexmo.sdk.conversation.client.event.container.ConversationListDiff;
 import com.nexmo.sdk.conversation.client.event.container.Invitation;
 import com.nexmo.sdk.conversation.client.event.container.Receipt;
 import com.nexmo.sdk.conversation.client.event.container.SynchronisingState;
-import com.nexmo.sdk.conversation.config.Defaults;
+import com.nexmo.sdk.conversation.core.IndexedList;
 import com.nexmo.sdk.conversation.core.client.request.CreateConversationRequest;
 import com.nexmo.sdk.conversation.core.client.request.DeliveredReceiptRequest;
 import com.nexmo.sdk.conversation.core.client.request.audio.RtcNewRequest;
@@ -36,11 +37,13 @@ import com.nexmo.sdk.conversation.core.persistence.contract.ConversationContract
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Set;
 
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -55,6 +58,11 @@ import static com.nexmo.sdk.conversation.core.networking.Constants.CALL_PREFIX_N
  * SocketEventHandler handles the response events from SocketClient
  * and OperationsManager, and forwards to SocketEventNotifier.
  *
+ * <p>Handlers run on the {@link com.nexmo.sdk.conversation.core.client.InboundDispatcher} lane of the
+ * event's conversation, or on the request timeout thread for failed requests, so different conversations
+ * are handled in parallel. The conversation lists synchronize on themselves and the state of the
+ * conversation list sync is guarded by {@code conversationSyncLock}.</p>
+ *
  * @author chatitze moumin.
  *
  * @hide
@@ -64,20 +72,66 @@ class SocketEventHandler {
 
     private static final String TAG = SocketEventHandler.class.getSimpleName();
 
+    static final IndexedList.KeyExtractor<Conversation> CONVERSATION_BY_ID = new IndexedList.KeyExtractor<Conversation>() {
+        @Override
+        public String keyOf(Conversation conversation) {
+            return conversation.getConversationId();
+        }
+    };
+    static final IndexedList.KeyExtractor<com.nexmo.sdk.conversation.client.Call> CALL_BY_CONVERSATION_ID = new IndexedList.KeyExtractor<com.nexmo.sdk.conversation.client.Call>() {
+        @Override
+        public String keyOf(com.nexmo.sdk.conversation.client.Call call) {
+            return call.getConversation().getConversationId();
+        }
+    };
+
     // list of joined/invited conversations.
-    private final List<Conversation> conversationList = new ArrayList<>();
+    private final IndexedList<Conversation> conversationList = new IndexedList<>(CONVERSATION_BY_ID);
     // list of created conversations.
-    private final List<Conversation> createdConversationList = new ArrayList<>();
+    private final IndexedList<Conversation> createdConversationList = new IndexedList<>(CONVERSATION_BY_ID);
     // list of ongoing calls.
-    private final List<com.nexmo.sdk.conversation.client.Call> callList = Collections.synchronizedList(new ArrayList<com.nexmo.sdk.conversation.client.Call>());
+    private final IndexedList<com.nexmo.sdk.conversation.client.Call> callList = new IndexedList<>(CALL_BY_CONVERSATION_ID);
     private SocketClient socketClient;
     private SocketEventNotifier socketEventNotifier;
-    private final CacheDB cacheDb;
+    private final HydrationScheduler hydrationScheduler;
+    // state of the conversation list sync, which spans all of its pages.
+    private final Object conversationSyncLock = new Object();
+    private final Set<String> syncedConversationIds = new HashSet<>();
+    private Map<String, Conversation> cachedConversationsBeforeSync;
+    // in-memory list as it was when the sync started, e.g. rendered from cache on cold start.
+    private Map<String, Conversation> shownConversationsBeforeSync;
 
     SocketEventHandler (SocketClient socketClient){
         this.socketClient = socketClient;
         this.socketEventNotifier = socketClient.getConversationClient().getEventNotifier();
-        this.cacheDb = CacheDB.getCacheDBInstance();
+        this.hydrationScheduler = new HydrationScheduler(socketClient.getConversationClient().getConfig().getHydrationConcurrency(),
+                new HydrationScheduler.Hydrator() {
+                    @Override
+                    public void hydrate(String cid, Runnable onDone) {
+                        hydrateConversation(cid, onDone);
+                    }
+                },
+                new HydrationScheduler.ProgressListener() {
+                    @Override
+                    public void onHydrationProgress(int hydrated, int total) {
+                        socketClient.getConversationClient().synchronisationProgressEvent()
+                                .notifySubscriptions(new SynchronisingState(SynchronisingState.STATE.CONVERSATIONS, hydrated, total));
+                    }
+
+                    @Override
+                    public void onHydrationFinished(int total) {
+                        socketClient.getConversationClient().synchronisationProgressEvent()
+                                .notifySubscriptions(new SynchronisingState(SynchronisingState.STATE.MEMBERS, total, total));
+                        socketClient.getConversationClient().synchronisationEvent().notifySubscriptions(SynchronisingState.STATE.MEMBERS);
+                        socketEventNotifier.notifyConversationListListener(conversationList);
+                        socketClient.getConversationClient().getSignallingChannel().updateSyncState(SynchronisingState.STATE.MEMBERS);
+                    }
+                });
+    }
+
+    // the active partition, it changes when another user logs in.
+    private CacheDB cacheDb() {
+        return CacheDB.getCacheDBInstance();
     }
 
     private Member onMemberJoinedAddMember(Conversation conversation, String memberId, User user, Date joinedTimestamp) {
@@ -157,8 +211,8 @@ class SocketEventHandler {
                 public void onSuccess(Conversation conversation) {
                     invitedConversation.updateBasicDetails(conversation);
 
-                    cacheDb.getConversationRepository().update(conversation, conversation.getConversationId());
-                    cacheDb.getMemberRepository().insertAll(conversation.getConversationId(), conversation.getMembers());
+                    cacheDb().getConversationRepository().update(conversation, conversation.getConversationId());
+                    cacheDb().getMemberRepository().insertAll(conversation.getConversationId(), conversation.getMembers());
 
                     if (conversation.getDisplayName().startsWith(CALL_PREFIX_NAME) && isAudioEnabled) {
                         com.nexmo.sdk.conversation.client.Call incomingCall = new com.nexmo.sdk.conversation.client.Call(conversation, invitedByUsername);
@@ -309,7 +363,7 @@ class SocketEventHandler {
                 seenEvent.addSeenReceipt(seenReceipt);
                 // update cache
                 pendingConversation.updateLastEventId(seenEvent.id);
-                updateCacheUpdateMessage(seenEvent);
+                updateCacheNewReceipt(seenReceipt);
 
                 Receipt<SeenReceipt> receipt = new Receipt<>(seenEvent, pendingConversation.getMember(memberId), seenReceipt);
                 pendingConversation.seenEvent().notifySubscriptions(receipt);
@@ -328,7 +382,7 @@ class SocketEventHandler {
             DeliveredReceipt deliveredReceipt = new DeliveredReceipt(deliveredEvent, deliveredTo, timestamp);
             deliveredEvent.addDeliveredReceipt(deliveredReceipt);
             pendingConversation.updateLastEventId(deliveredEvent.id);
-            updateCacheUpdateMessage(deliveredEvent);
+            updateCacheNewReceipt(deliveredReceipt);
 
             Receipt<DeliveredReceipt> receipt = new Receipt<>(deliveredEvent, pendingConversation.getMember(memberId), deliveredReceipt);
             pendingConversation.deliveryEvent().notifySubscriptions(receipt);
@@ -427,8 +481,8 @@ class SocketEventHandler {
                         createdConversation.updateBasicDetails(conversation);
                         member.setConversation(createdConversation);
 
-                        cacheDb.getConversationRepository().update(conversation, conversation.getConversationId());
-                        cacheDb.getMemberRepository().insertAll(conversation.getConversationId(), conversation.getMembers());
+                        cacheDb().getConversationRepository().update(conversation, conversation.getConversationId());
+                        cacheDb().getMemberRepository().insertAll(conversation.getConversationId(), conversation.getMembers());
                     }
 
                     @Override
@@ -477,8 +531,8 @@ class SocketEventHandler {
                 conversation.updateBasicDetails(updatedConversation);
                 member.setConversation(conversation);
 
-                cacheDb.getConversationRepository().update(conversation, conversation.getConversationId());
-                cacheDb.getMemberRepository().insertAll(conversation.getConversationId(), conversation.getMembers());
+                cacheDb().getConversationRepository().update(conversation, conversation.getConversationId());
+                cacheDb().getMemberRepository().insertAll(conversation.getConversationId(), conversation.getMembers());
                 request.getListener().onSuccess(conversation);
             }
 
@@ -523,28 +577,94 @@ class SocketEventHandler {
         return this.conversationList;
     }
 
-    void onConversations(List<Conversation> conversations) {
-        if (conversations.size() > Defaults.MAX_CONVERSATION_LIST_SIZE) {
-            socketClient.getConversationClient().synchronisationEvent().notifySubscriptions(SynchronisingState.STATE.OUT_OF_SYNC);
-            socketClient.getConversationClient().getSignallingChannel().updateSyncState(SynchronisingState.STATE.OUT_OF_SYNC);
+    /**
+     * Merge a page of the conversation list. Conversations which were not part of any page
+     * are removed once the last page arrives.
+     * Pages are merged one at a time, events of single conversations might be handled meanwhile.
+     */
+    void onConversationsPage(List<Conversation> conversations, boolean firstPage, boolean lastPage) {
+        synchronized(this.conversationSyncLock) {
+            if (firstPage) {
+                socketClient.getConversationClient().synchronisationEvent().notifySubscriptions(SynchronisingState.STATE.CONVERSATIONS);
+                socketClient.getConversationClient().getSignallingChannel().updateSyncState(SynchronisingState.STATE.CONVERSATIONS);
+
+                this.syncedConversationIds.clear();
+                // diff against the cache including e.g. a clear queued on logout.
+                cacheDb().awaitPendingWrites();
+                this.cachedConversationsBeforeSync = (cacheDb().tableContainsRows(ConversationContract.ConversationEntry.TABLE_NAME)
+                        ? cacheDb().getConversationRepository().getConversationsListAsMap(this.socketClient.getConversationClient().getUser())
+                        : null);
+                this.hydrationScheduler.begin();
+
+                this.shownConversationsBeforeSync = new HashMap<>();
+                synchronized(this.conversationList) {
+                    for (Conversation conversation : this.conversationList)
+                        this.shownConversationsBeforeSync.put(conversation.getConversationId(), conversation);
+                }
+            }
 
-            return;
-        }
+            for (Conversation conversation : conversations) {
+                conversation.setConversationSignalingChannel(socketClient.getConversationClient().getSignallingChannel());
+                conversation.setSocketEventNotifier(socketEventNotifier);
+                this.conversationList.addOrReplace(CONVERSATION_BY_ID, conversation);
+                this.syncedConversationIds.add(conversation.getConversationId());
+            }
+
+            if (lastPage) {
+                synchronized(this.conversationList) {
+                    for (int i = this.conversationList.size() - 1; i >= 0; i--) {
+                        if (!this.syncedConversationIds.contains(this.conversationList.get(i).getConversationId()))
+                            this.conversationList.remove(i);
+                    }
+                }
+            }
 
-        socketClient.getConversationClient().synchronisationEvent().notifySubscriptions(SynchronisingState.STATE.CONVERSATIONS);
-        socketClient.getConversationClient().getSignallingChannel().updateSyncState(SynchronisingState.STATE.CONVERSATIONS);
+            updateCacheOnConversations(conversations, lastPage);
 
-        for (Conversation conversation : conversations) {
-            conversation.setConversationSignalingChannel(socketClient.getConversationClient().getSignallingChannel());
-            conversation.setSocketEventNotifier(socketEventNotifier);
+            if (firstPage)
+                socketClient.getConversationClient().reportFirstConversationList("network");
+            if (lastPage)
+                notifyConversationListDiff();
         }
+    }
+
+    /**
+     * Compare the synced conversation list with the one shown before the sync.
+     */
+    private void notifyConversationListDiff() {
+        Map<String, Conversation> shownBefore = this.shownConversationsBeforeSync;
+        this.shownConversationsBeforeSync = null;
+        if (shownBefore == null) return;
+
+        List<Conversation> added = new ArrayList<>();
+        List<Conversation> updated = new ArrayList<>();
         synchronized(this.conversationList) {
-            this.conversationList.clear();
-            this.conversationList.addAll(conversations);
+            for (Conversation fresh : this.conversationList) {
+                Conversation shown = shownBefore.remove(fresh.getConversationId());
+                if (shown == null)
+                    added.add(fresh);
+                else if (shown != fresh && (!TextUtils.equals(shown.getLastEventId(), fresh.getLastEventId())
+                        || !TextUtils.equals(shown.getDisplayName(), fresh.getDisplayName())))
+                    updated.add(fresh);
+            }
         }
+        // whatever is left has been removed.
+        ConversationListDiff diff = new ConversationListDiff(added, updated, new ArrayList<>(shownBefore.values()));
+        Log.d(TAG, "notifyConversationListDiff: " + diff);
+        socketClient.getConversationClient().conversationListDiffEvent().notifySubscriptions(diff);
+    }
 
-        // TODO: Caching might be handling in a different thread?
-        updateCacheOnConversations();
+    /**
+     * A page after the first one couldn't be fetched. Keep whatever was merged so far,
+     * but don't remove anything as the list is incomplete.
+     */
+    void onConversationsPagingFailed() {
+        Log.w(TAG, "onConversationsPagingFailed: conversation list is incomplete");
+        synchronized(this.conversationSyncLock) {
+            this.cachedConversationsBeforeSync = null;
+            this.shownConversationsBeforeSync = null;
+            this.hydrationScheduler.add(Collections.<String>emptyList(), true);
+        }
     }
 
     Conversation onConversation(Conversation conversation, GetConversationRequest request) {
@@ -560,46 +680,64 @@ class SocketEventHandler {
         if (pendingConversation == null)
             return null; // TODO: user won't be notified! :(
 
-        for (Event event : events) {
-            event.setConversation(pendingConversation);
+        for (Event event : events)
+            attachToConversation(event, pendingConversation);
+        pendingConversation.setEvents(events);
+        addOrUpdateConversationList(pendingConversation);
 
-            String memberId = event.getMember().getMemberId();
-            Member sender = pendingConversation.getMember(memberId);
-            if (sender != null) {
-                event.setMember(sender);
+        if (pendingConversation.getSelf() != null)
+            updateCacheOfMessageEvents(pendingConversation);
 
-                for (SeenReceipt seenReceipt : event.getSeenReceipts()) {
-                    seenReceipt.setEvent(event);
+        return pendingConversation;
+    }
 
-                    Member seenByMember = pendingConversation.getMember(seenReceipt.getMember().getMemberId());
-                    if (seenByMember != null)
-                        seenReceipt.setMember(seenByMember);
+    /**
+     * Merge events fetched since the last cached one into the conversation being opened,
+     * unlike {@link #onEventsHistory(List, GetEventsRequest)} the events already shown are kept.
+     *
+     * @param newEvents The events which were not part of the conversation yet, they were added to it
+     *                  as they were parsed, see {@link GetEventsRequest}.
+     * @return newEvents.
+     */
+    List<Event> onEventsDelta(Conversation conversation, List<Event> newEvents) {
+        // cached by ConversationOpener once the members are, messages reference their sender.
+        for (Event event : newEvents)
+            attachToConversation(event, conversation);
+        return newEvents;
+    }
 
-                }
-                // for delivery receipt as well
-                for (DeliveredReceipt deliveredReceipt : event.getDeliveredReceipts()) {
-                    deliveredReceipt.setEvent(event);
+    private void attachToConversation(Event event, Conversation conversation) {
+        event.setConversation(conversation);
 
-                    Member deliveredToMember = pendingConversation.getMember(deliveredReceipt.getMember().getMemberId());
-                    if (deliveredToMember != null)
-                        deliveredReceipt.setMember(deliveredToMember);
-                }
+        String memberId = event.getMember().getMemberId();
+        Member sender = conversation.getMember(memberId);
+        if (sender != null) {
+            event.setMember(sender);
+
+            for (SeenReceipt seenReceipt : event.getSeenReceipts()) {
+                seenReceipt.setEvent(event);
 
-                if (event.isReadyForMarkedAsDelivered())
-                    issueDeliveryReceiptInBackground(event);
+                Member seenByMember = conversation.getMember(seenReceipt.getMember().getMemberId());
+                if (seenByMember != null)
+                    seenReceipt.setMember(seenByMember);
 
-                if (event.getType() == EventType.IMAGE
-                        && event.deletedTimestamp == null)
-                    downloadImageRepresentation((Image)event, ImageRepresentation.TYPE.THUMBNAIL, null);
             }
-        }
-        pendingConversation.setEvents(events);
-        addOrUpdateConversationList(pendingConversation);
+            // for delivery receipt as well
+            for (DeliveredReceipt deliveredReceipt : event.getDeliveredReceipts()) {
+                deliveredReceipt.setEvent(event);
 
-        if (pendingConversation.getSelf() != null)
-            updateCacheOfMessageEvents(pendingConversation);
+                Member deliveredToMember = conversation.getMember(deliveredReceipt.getMember().getMemberId());
+                if (deliveredToMember != null)
+                    deliveredReceipt.setMember(deliveredToMember);
+            }
 
-        return pendingConversation;
+            if (event.isReadyForMarkedAsDelivered())
+                issueDeliveryReceiptInBackground(event);
+
+            if (event.getType() == EventType.IMAGE
+                    && event.deletedTimestamp == null)
+                downloadImageRepresentation((Image)event, ImageRepresentation.TYPE.THUMBNAIL, null);
+        }
     }
 
     Member.TYPING_INDICATOR  onTyping(Member.TYPING_INDICATOR indicator, TypingIndicatorRequest request) {
@@ -802,56 +940,37 @@ class SocketEventHandler {
     }
 
     com.nexmo.sdk.conversation.client.Call findCall(final String callId) {
-        for (com.nexmo.sdk.conversation.client.Call call : callList) {
-            if (call.getConversation().getConversationId().equals(callId))
-                return call;
-        }
-        return null;
+        return callList.find(CALL_BY_CONVERSATION_ID, callId);
     }
 
     Conversation findConversation(final String cid) {
-        synchronized(conversationList) {
-            for (Conversation conversation : conversationList) {
-                if (conversation.getConversationId().equals(cid))
-                    return conversation;
-            }
-        }
-        return null;
+        return conversationList.find(CONVERSATION_BY_ID, cid);
     }
 
     Conversation findCreatedConversation(final String cid) {
-        synchronized(createdConversationList) {
-            for (Conversation conversation : createdConversationList) {
-                if (conversation.getConversationId().equals(cid))
-                    return conversation;
-            }
-        }
-        return null;
+        return createdConversationList.find(CONVERSATION_BY_ID, cid);
     }
 
 
     /**
      * Check if cached conversations need sync based on lastEventId.
      * If conversation not in cache yet, add it.
-     * If conversation removed from CS means someone kicked us and we have to remove it from cache.
      *
-     * @param fetchedConversations The fresh list.
+     * @param fetchedConversations A page of the fresh list.
+     * @param cachedConversationsMap Conversations cached before the sync started.
      * @return  List of cids that require conversation details update.
      */
-    private List<String> checkIfConversationsNeedSync(List<Conversation> fetchedConversations, User self) {
+    private List<String> checkIfConversationsNeedSync(List<Conversation> fetchedConversations, Map<String, Conversation> cachedConversationsMap) {
         Log.d(TAG, "checkIfConversationsNeedSync");
         List<String> cidsToUpdate = new ArrayList<>();
-
-        final Map<String, Conversation> freshConversationMap = new HashMap<>();
-        final Map<String, Conversation> cachedConversationsMap = this.cacheDb.getConversationRepository().getConversationsListAsMap(self);
+        List<Conversation> conversationsToCache = new ArrayList<>();
 
         for (Conversation freshConversation : fetchedConversations) {
-            freshConversationMap.put(freshConversation.getConversationId(), freshConversation);
             Conversation cachedConversation = cachedConversationsMap.get(freshConversation.getConversationId());
 
             if (cachedConversation == null) {
                 Log.d(TAG, "checkIfConversationsNeedSync: Yes, conversation not cached yet");
-                this.cacheDb.getConversationRepository().insert(freshConversation, freshConversation.getConversationId());
+                conversationsToCache.add(freshConversation);
 
                 cidsToUpdate.add(freshConversation.getConversationId());
             } else if (TextUtils.equals(cachedConversation.getLastEventId(), freshConversation.getLastEventId()))
@@ -864,103 +983,146 @@ class SocketEventHandler {
                 cidsToUpdate.add(freshConversation.getConversationId());
             }
         }
+        cacheDb().getConversationRepository().upsertAll(conversationsToCache);
 
+        return cidsToUpdate;
+    }
+
+    /**
+     * If conversation removed from CS means someone kicked us and we have to remove it from cache.
+     */
+    private void removeConversationsMissingFromSync(Map<String, Conversation> cachedConversationsMap) {
         ArrayList<String> idsToRemove = new ArrayList<>();
-        for (Conversation cachedConversation : cachedConversationsMap.values()) {
-            if (!freshConversationMap.containsKey(cachedConversation.getConversationId()))
-                idsToRemove.add(cachedConversation.getConversationId());
+        for (String cid : cachedConversationsMap.keySet()) {
+            if (!this.syncedConversationIds.contains(cid))
+                idsToRemove.add(cid);
         }
-        this.cacheDb.getConversationRepository().delete(idsToRemove);
-
-        return cidsToUpdate;
+        cacheDb().getConversationRepository().delete(idsToRemove);
     }
 
 
     private void syncMessagesIfNeeded(Conversation conversation) {
         String cid = conversation.getConversationId();
         List<Event> messagesFromCAPI = conversation.getEvents();
-        final List<String> cachedMessageIds = cacheDb.getEventRepository().getEventIds(conversation);
+        final List<String> cachedMessageIds = cacheDb().getEventRepository().getEventIds(conversation);
         Log.d(TAG, "syncMessagesIfNeeded - cachedMessageIds: " + cachedMessageIds.toString());
 
+        List<Event> missingEvents = new ArrayList<>();
         for(Event freshEvent : messagesFromCAPI) {
             if (cachedMessageIds.contains(freshEvent.getId()))
                 cachedMessageIds.remove(freshEvent.getId());
             else
-                cacheDb.getEventRepository().insert(freshEvent, cid);
+                missingEvents.add(freshEvent);
         }
-        cacheDb.getEventRepository().delete(cachedMessageIds);
+        cacheDb().getEventRepository().upsertAll(cid, missingEvents);
+        cacheDb().getEventRepository().delete(cid, cachedMessageIds);
     }
 
     /**
-     * Updating DB against fresh list of conversations.
-     * If no conversations are persisted yet:
+     * Updating DB against a page of the fresh list of conversations.
+     * If no conversations were persisted when the sync started:
      *     - bulk insert all conversations and members.
-     * If some conversations are persisted already:
+     * If some conversations were persisted already:
      *     - check if conversations need sync.
+     *     - remove the ones which are gone, once the last page arrived.
      */
-    private void updateCacheOnConversations() {
+    private void updateCacheOnConversations(List<Conversation> conversations, boolean lastPage) {
         List<String> cidsToUpdate = new ArrayList<>();
-        if (cacheDb.tableContainsRows(ConversationContract.ConversationEntry.TABLE_NAME))
-            cidsToUpdate =  (checkIfConversationsNeedSync(this.conversationList, this.socketClient.getConversationClient().getUser()));
-        else {
+        if (this.cachedConversationsBeforeSync != null) {
+            cidsToUpdate = checkIfConversationsNeedSync(conversations, this.cachedConversationsBeforeSync);
+            if (lastPage)
+                removeConversationsMissingFromSync(this.cachedConversationsBeforeSync);
+        } else {
             // only update conversations user is part of.
-            for (Conversation conversation : this.conversationList)
+            for (Conversation conversation : conversations)
                 if (conversation.getSelf() != null)
                     cidsToUpdate.add(conversation.getConversationId());
 
-            this.cacheDb.getConversationRepository().insertAll(this.conversationList);
-        }
-
-        final int totalItems = cidsToUpdate.size();
-        final AtomicInteger iteration = new AtomicInteger();
-        Log.d(TAG, "updateCacheOnConversations for total conversations: " + totalItems);
-
-        if (totalItems == 0) {
-            socketClient.getConversationClient().synchronisationEvent().notifySubscriptions(SynchronisingState.STATE.MEMBERS);
-            socketEventNotifier.notifyConversationListListener(conversationList);
-            socketClient.getConversationClient().getSignallingChannel().updateSyncState(SynchronisingState.STATE.MEMBERS);
-            return;
+            cacheDb().getConversationRepository().insertAll(conversations);
         }
+        if (lastPage)
+            this.cachedConversationsBeforeSync = null;
 
-        // start fetching conversation details (members and message events).
-        for (final String cid : cidsToUpdate) {
-            final int counter = iteration.incrementAndGet();
+        Log.d(TAG, "updateCacheOnConversations for page conversations: " + cidsToUpdate.size());
+        this.hydrationScheduler.add(sortForHydration(cidsToUpdate), lastPage);
+    }
 
-            updateCacheOfMembersForConversation(cid, new RequestHandler<Conversation>() {
-                @Override
-                public void onSuccess(Conversation conversation) {
+    /**
+     * Fetch conversation details (members and message events) and cache them.
+     */
+    private void hydrateConversation(final String cid, final Runnable onDone) {
+        updateCacheOfMembersForConversation(cid, new RequestHandler<Conversation>() {
+            @Override
+            public void onSuccess(Conversation conversation) {
+                try {
                     Conversation pendingConversation = findConversation(cid);
                     if (pendingConversation != null) {
                         pendingConversation.updateBasicDetails(conversation);
 
                         if (pendingConversation.getSelf() != null) {
-                            cacheDb.getConversationRepository().update(conversation, conversation.getConversationId());
-                            cacheDb.getMemberRepository().insertAll(conversation.getConversationId(),
+                            cacheDb().getConversationRepository().update(conversation, conversation.getConversationId());
+                            cacheDb().getMemberRepository().insertAll(conversation.getConversationId(),
                                     conversation.getMembers());
                         }
-
-                        if (counter == totalItems) {
-                            socketClient.getConversationClient().synchronisationEvent().notifySubscriptions(SynchronisingState.STATE.MEMBERS);
-                            socketEventNotifier.notifyConversationListListener(conversationList);
-                            socketClient.getConversationClient().getSignallingChannel().updateSyncState(SynchronisingState.STATE.MEMBERS);
-                        }
                     }
+                } finally {
+                    onDone.run();
                 }
+            }
 
-                @Override
-                public void onError(NexmoAPIError error) {
-                }
-            });
+            @Override
+            public void onError(NexmoAPIError error) {
+                Log.w(TAG, "hydrateConversation: couldn't sync " + cid + ": " + error);
+                onDone.run();
+            }
+        });
+    }
+
+    /**
+     * Conversations with events missed since the last sync go first, then the most recently created ones.
+     * Visible conversations are moved to the front by the scheduler.
+     */
+    private List<String> sortForHydration(List<String> cids) {
+        List<Conversation> conversations = new ArrayList<>(cids.size());
+        List<String> unknown = new ArrayList<>();
+        for (String cid : cids) {
+            Conversation conversation = findConversation(cid);
+            if (conversation != null)
+                conversations.add(conversation);
+            else
+                unknown.add(cid);
         }
+
+        Collections.sort(conversations, new Comparator<Conversation>() {
+            @Override
+            public int compare(Conversation lhs, Conversation rhs) {
+                if (lhs.isDirty() != rhs.isDirty())
+                    return (lhs.isDirty() ? -1 : 1);
+                if (lhs.getCreationDate() == null || rhs.getCreationDate() == null)
+                    return (lhs.getCreationDate() == null ? (rhs.getCreationDate() == null ? 0 : 1) : -1);
+                return rhs.getCreationDate().compareTo(lhs.getCreationDate());
+            }
+        });
+
+        List<String> sorted = new ArrayList<>(cids.size());
+        for (Conversation conversation : conversations)
+            sorted.add(conversation.getConversationId());
+        sorted.addAll(unknown);
+        return sorted;
+    }
+
+    void setVisibleConversations(List<String> cids) {
+        this.hydrationScheduler.setVisible(cids);
     }
 
     private  void updateCacheOfMessageEvents(Conversation conversation){
         // Persist (or remove if NOT exist anymore) each message of conversation if it is NOT done yet!
-        if(cacheDb.getEventRepository().isAny(conversation.getConversationId()))
+        cacheDb().awaitPendingWrites();
+        if(cacheDb().getEventRepository().isAny(conversation.getConversationId()))
             // there are already some messages in the cache, update the cache if needed
             syncMessagesIfNeeded(conversation);
         else // NO any message persisted yet, so DO persist all
-            cacheDb.getEventRepository().insertAll(conversation.getConversationId(), conversation.getEvents());
+            cacheDb().getEventRepository().insertAll(conversation.getConversationId(), conversation.getEvents());
     }
 
     private void updateCacheOfMembersForConversation(final String cid, RequestHandler<Conversation> requestHandler){
@@ -968,17 +1130,17 @@ class SocketEventHandler {
     }
 
     private void updateCacheOnMemberEvent(final Member member) {
-        this.cacheDb.getMemberRepository().update(member, member.getConversation().getConversationId());
+        cacheDb().getMemberRepository().update(member, member.getConversation().getConversationId());
     }
 
     private void updateCacheAddMember(final Member member) {
-        this.cacheDb.getMemberRepository().insert(member, member.getConversation().getConversationId());
+        cacheDb().getMemberRepository().insert(member, member.getConversation().getConversationId());
     }
 
     // persist newly created conversation after join/invitation.
     private void updateCacheAddConversation(Conversation conversationToUpdate, RequestHandler<Conversation> requestHandler) {
         if (requestHandler == null) return;
-        this.cacheDb.getConversationRepository().insert(conversationToUpdate, conversationToUpdate.getConversationId());
+        cacheDb().getConversationRepository().insert(conversationToUpdate, conversationToUpdate.getConversationId());
 
         socketClient.getConversation(new GetConversationRequest(conversationToUpdate.getConversationId(), requestHandler));
     }
@@ -989,33 +1151,30 @@ class SocketEventHandler {
     }
 
     private void updateCacheWithNewConversation( Conversation conversationToUpdate ){
-        cacheDb.getConversationRepository().insert(conversationToUpdate, conversationToUpdate.getConversationId());
-        cacheDb.getMemberRepository().insertAll(conversationToUpdate.getConversationId(), conversationToUpdate.getMembers());
+        cacheDb().getConversationRepository().insert(conversationToUpdate, conversationToUpdate.getConversationId());
+        cacheDb().getMemberRepository().insertAll(conversationToUpdate.getConversationId(), conversationToUpdate.getMembers());
     }
 
     private void updateCacheNewMessage(Event event) {
         Conversation updatedConversation = event.getConversation();
-        this.cacheDb.getConversationRepository().update(updatedConversation, updatedConversation.getConversationId());
-        this.cacheDb.getEventRepository().insert(event, updatedConversation.getConversationId());
+        cacheDb().getConversationRepository().update(updatedConversation, updatedConversation.getConversationId());
+        cacheDb().getEventRepository().insert(event, updatedConversation.getConversationId());
     }
 
     private void updateCacheUpdateMessage(Event event) {
         Conversation updatedConversation = event.getConversation();
-        this.cacheDb.getConversationRepository().update(updatedConversation, updatedConversation.getConversationId());
-        this.cacheDb.getEventRepository().update(event, updatedConversation.getConversationId());
+        cacheDb().getConversationRepository().update(updatedConversation, updatedConversation.getConversationId());
+        cacheDb().getEventRepository().update(event, updatedConversation.getConversationId());
     }
 
-    public void addOrUpdateConversationList(Conversation joinedConversation) {
-        synchronized (conversationList) {
-            for(int i = 0; i < conversationList.size(); i++){
-                if (conversationList.get(i).getConversationId().equals(joinedConversation.getConversationId())){
-                    conversationList.set(i, joinedConversation); // replace it
-                    return;
-                }
-            }
+    private void updateCacheNewReceipt(ReceiptRecord receipt) {
+        Conversation updatedConversation = receipt.getEvent().getConversation();
+        cacheDb().getConversationRepository().update(updatedConversation, updatedConversation.getConversationId());
+        cacheDb().getReceiptRepository().insert(receipt, updatedConversation.getConversationId());
+    }
 
-            this.conversationList.add(joinedConversation);
-        }
+    public void addOrUpdateConversationList(Conversation joinedConversation) {
+        conversationList.addOrReplace(CONVERSATION_BY_ID, joinedConversation);
     }
 
     public void updateCallList(com.nexmo.sdk.conversation.client.Call outgoingCall) {
@@ -1023,15 +1182,6 @@ class SocketEventHandler {
     }
 
     private void addOrUpdateCreatedConversationList(Conversation createdConversation) {
-        synchronized (createdConversationList) {
-            for(int i = 0; i < createdConversationList.size(); i++){
-                if (createdConversationList.get(i).getConversationId().equals(createdConversation.getConversationId())){
-                    createdConversationList.set(i, createdConversation); // replace it
-                    return;
-                }
-            }
-
-            this.createdConversationList.add(createdConversation);
-        }
+        createdConversationList.addOrReplace(CONVERSATION_BY_ID, createdConversation);
     }
 }
@@ -159,22 +159,12 @@ public class Text extends Event {
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (!(o instanceof Text)) return false;
-        if (!super.equals(o)) return false;
+    public boolean contentEquals(Event o) {
+        if (!super.contentEquals(o)) return false;
 
         Text text = (Text) o;
 
         return this.text != null ? this.text.equals(text.text) : text.text == null;
-
-    }
-
-    @Override
-    public int hashCode() {
-        int result = super.hashCode();
-        result = 31 * result + (text != null ? text.hashCode() : 0);
-        return result;
     }
 
     public static Text fromPush(final String senderId, final String eventId, final JSONObject messageObject) throws JSONException {
@@ -0,0 +1,22 @@
+package com.nexmo.sdk.conversation.client.event;
+
+import com.nexmo.sdk.conversation.client.Conversation;
+import com.nexmo.sdk.conversation.client.event.container.ConversationUpdate;
+
+/**
+ * Listener for opening a conversation: what is cached is delivered first, then the changes
+ * once the conversation has been revalidated with the Conversation service.
+ *
+ * <p>{@link #onSuccess(Object)} and {@link #onError(NexmoAPIError)} report the revalidation,
+ * they are not called while offline.</p>
+ */
+
+public interface ConversationOpenListener extends RequestHandler<ConversationUpdate> {
+
+    /**
+     * Cached members and latest page of events are available.
+     *
+     * @param conversation The conversation being opened.
+     */
+    void onCached(Conversation conversation);
+}
@@ -30,6 +30,7 @@ public class NexmoAPIError extends Exception {
     public static final String UNEXPECTED_RESPONSE = "unexpected-response"; //or "generic-error"
     public static final String INVALID_ACTION = "invalid-action";
     public static final String USER_ALREADY_LOGGED_IN = "login:user-already-loggedin";
+    public static final String REQUEST_TIMEOUT = "request:timeout";
     private String rid;
     private String type;
     private String conversationId;
@@ -0,0 +1,76 @@
+package com.nexmo.sdk.conversation.client.event.container;
+
+/**
+ * Current size of the cache of the logged in user, next to the budgets it's kept within.
+ *
+ * <p>Budgets are enforced while the cache is idle, so usage can be above them for a while
+ * after a sync. Database pages freed by eviction are counted in {@link #getFreeDatabaseBytes()}
+ * until they are compacted.</p>
+ */
+public final class CacheUsage {
+    private final long databaseBytes;
+    private final long freeDatabaseBytes;
+    private final long mediaBytes;
+    private final long conversations;
+    private final long events;
+    private final int maxEventsPerConversation;
+    private final long maxDatabaseBytes;
+    private final long maxMediaBytes;
+
+    public CacheUsage(long databaseBytes, long freeDatabaseBytes, long mediaBytes, long conversations, long events,
+                      int maxEventsPerConversation, long maxDatabaseBytes, long maxMediaBytes) {
+        this.databaseBytes = databaseBytes;
+        this.freeDatabaseBytes = freeDatabaseBytes;
+        this.mediaBytes = mediaBytes;
+        this.conversations = conversations;
+        this.events = events;
+        this.maxEventsPerConversation = maxEventsPerConversation;
+        this.maxDatabaseBytes = maxDatabaseBytes;
+        this.maxMediaBytes = maxMediaBytes;
+    }
+
+    /**
+     * @return Size of the database file, including free pages.
+     */
+    public long getDatabaseBytes() {
+        return this.databaseBytes;
+    }
+
+    public long getFreeDatabaseBytes() {
+        return this.freeDatabaseBytes;
+    }
+
+    /**
+     * @return Size of the downloaded image files.
+     */
+    public long getMediaBytes() {
+        return this.mediaBytes;
+    }
+
+    public long getConversations() {
+        return this.conversations;
+    }
+
+    public long getEvents() {
+        return this.events;
+    }
+
+    public int getMaxEventsPerConversation() {
+        return this.maxEventsPerConversation;
+    }
+
+    public long getMaxDatabaseBytes() {
+        return this.maxDatabaseBytes;
+    }
+
+    public long getMaxMediaBytes() {
+        return this.maxMediaBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheUsage database: " + this.databaseBytes + "/" + this.maxDatabaseBytes
+                + " (free: " + this.freeDatabaseBytes + ") media: " + this.mediaBytes + "/" + this.maxMediaBytes
+                + " conversations: " + this.conversations + " events: " + this.events;
+    }
+}
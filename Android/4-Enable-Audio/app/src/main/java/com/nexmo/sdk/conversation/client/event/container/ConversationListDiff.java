@@ -0,0 +1,47 @@
+package com.nexmo.sdk.conversation.client.event.container;
+
+import com.nexmo.sdk.conversation.client.Conversation;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Changes to the conversation list once it has been synced with the Conversation service,
+ * compared to the list shown before the sync, e.g. the one rendered from cache on cold start.
+ *
+ * <p>{@link #getAdded()} and {@link #getUpdated()} hold the fresh conversation objects, which replace
+ * any previously shown ones. {@link #getRemoved()} holds the ones which are not part of the list anymore.</p>
+ */
+public final class ConversationListDiff {
+    private final List<Conversation> added;
+    private final List<Conversation> updated;
+    private final List<Conversation> removed;
+
+    public ConversationListDiff(List<Conversation> added, List<Conversation> updated, List<Conversation> removed) {
+        this.added = Collections.unmodifiableList(added);
+        this.updated = Collections.unmodifiableList(updated);
+        this.removed = Collections.unmodifiableList(removed);
+    }
+
+    public List<Conversation> getAdded() {
+        return this.added;
+    }
+
+    public List<Conversation> getUpdated() {
+        return this.updated;
+    }
+
+    public List<Conversation> getRemoved() {
+        return this.removed;
+    }
+
+    public boolean isEmpty() {
+        return this.added.isEmpty() && this.updated.isEmpty() && this.removed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ConversationListDiff added: " + this.added.size() + " updated: " + this.updated.size()
+                + " removed: " + this.removed.size();
+    }
+}
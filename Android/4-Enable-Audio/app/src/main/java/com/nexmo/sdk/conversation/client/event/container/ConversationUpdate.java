@@ -0,0 +1,61 @@
+package com.nexmo.sdk.conversation.client.event.container;
+
+import com.nexmo.sdk.conversation.client.Conversation;
+import com.nexmo.sdk.conversation.client.Event;
+import com.nexmo.sdk.conversation.client.Member;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Changes to an opened conversation once it has been revalidated with the Conversation service,
+ * compared to what was read from cache.
+ *
+ * <p>Only what changed is listed, the conversation itself is already up to date.</p>
+ */
+public final class ConversationUpdate {
+    private final Conversation conversation;
+    private final List<Event> newEvents;
+    private final List<Member> changedMembers;
+    private final List<Member> removedMembers;
+
+    public ConversationUpdate(Conversation conversation, List<Event> newEvents,
+                              List<Member> changedMembers, List<Member> removedMembers) {
+        this.conversation = conversation;
+        this.newEvents = Collections.unmodifiableList(newEvents);
+        this.changedMembers = Collections.unmodifiableList(changedMembers);
+        this.removedMembers = Collections.unmodifiableList(removedMembers);
+    }
+
+    public Conversation getConversation() {
+        return this.conversation;
+    }
+
+    /**
+     * @return Events which were not cached yet, oldest first.
+     */
+    public List<Event> getNewEvents() {
+        return this.newEvents;
+    }
+
+    /**
+     * @return Members which joined, or which details or state have changed.
+     */
+    public List<Member> getChangedMembers() {
+        return this.changedMembers;
+    }
+
+    public List<Member> getRemovedMembers() {
+        return this.removedMembers;
+    }
+
+    public boolean isEmpty() {
+        return this.newEvents.isEmpty() && this.changedMembers.isEmpty() && this.removedMembers.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ConversationUpdate " + this.conversation.getConversationId() + " new events: " + this.newEvents.size()
+                + " changed members: " + this.changedMembers.size() + " removed members: " + this.removedMembers.size();
+    }
+}
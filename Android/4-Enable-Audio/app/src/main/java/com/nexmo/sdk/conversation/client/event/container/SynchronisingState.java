@@ -13,6 +13,9 @@ package com.nexmo.sdk.conversation.client.event.container;
  *     <li>MEMBERS: all information about the members has been synced. At this point all members can be displayed in the UI.</li>
  * </ul>
  *
+ * <p>While conversation details are being synced, progress is reported as {@link #synced} out of
+ * {@link #total} conversations, so the list can be rendered before all of them are loaded.</p>
+ *
  * @author emma tresanszki.
  */
 public class SynchronisingState {
@@ -36,4 +39,27 @@ public class SynchronisingState {
     }
 
     public STATE state;//step
+
+    /**
+     * Number of conversations which details have been synced so far, see {@link #total}.
+     */
+    public int synced;
+
+    /**
+     * Number of conversations which details are being synced.
+     */
+    public int total;
+
+    public SynchronisingState() { }
+
+    public SynchronisingState(STATE state, int synced, int total) {
+        this.state = state;
+        this.synced = synced;
+        this.total = total;
+    }
+
+    @Override
+    public String toString() {
+        return "SynchronisingState " + state + " " + synced + "/" + total;
+    }
 }
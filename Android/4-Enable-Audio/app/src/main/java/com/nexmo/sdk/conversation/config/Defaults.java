@@ -20,5 +20,26 @@ public class Defaults {
     public static final int RECONNECT_DELAY_THRESHOLD = 120 * 1000;
     public static final int BITMAP_COMPRESS_QUALITY = 90;
     public static final long TYPING_TIMER_LENGTH = 1000l;
-    public static final long MAX_CONVERSATION_LIST_SIZE = 150;
+    public static final int CONVERSATION_LIST_PAGE_SIZE = 100;
+    public static final long CONVERSATION_LIST_PAGE_WAIT = 2 * 60 * 1000;
+    public static final int FLUSH_WINDOW = 8;
+    public static final int INBOUND_DISPATCH_LANES = 4;
+    public static final long REQUEST_TIMEOUT = 20 * 1000;
+    public static final long SIGNALLING_REQUEST_TIMEOUT = 10 * 1000;
+    public static final long BULK_REQUEST_TIMEOUT = 60 * 1000;
+    public static final long REQUEST_TIMEOUT_TICK = 500;
+    public static final int REQUEST_TIMEOUT_WHEEL_SIZE = 256;
+    public static final int HYDRATION_CONCURRENCY = 4;
+    public static final long CACHE_FLUSH_WINDOW = 20;
+    public static final int CACHE_MAX_BATCH_SIZE = 500;
+    public static final int CACHE_EVENTS_PAGE_SIZE = 50;
+    public static final int CACHE_EVENTS_BLOCKS_KEPT = 4;
+    public static final int CACHE_PARTITIONS_KEPT = 3;
+    public static final int CACHE_MAX_EVENTS_PER_CONVERSATION = 1000;
+    public static final int CACHE_MAX_SEARCH_HITS = 200;
+    public static final long CACHE_MAX_DATABASE_BYTES = 50 * 1024 * 1024;
+    public static final long CACHE_MAX_MEDIA_BYTES = 100 * 1024 * 1024;
+    public static final long CACHE_IDLE_DELAY = 5 * 1000;
+    public static final int CACHE_VACUUM_PAGES = 256;
+    public static final long THREAD_SHUTDOWN_TIMEOUT = 5 * 1000;
 }
@@ -0,0 +1,262 @@
+package com.nexmo.sdk.conversation.core;
+
+import android.support.annotation.NonNull;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe list which keeps one or more id-keyed indexes in sync with its contents,
+ * so lookups by id are O(1) instead of a linear scan.
+ *
+ * <p>Mutations are synchronized on the list itself, same as {@link java.util.Collections#synchronizedList(java.util.List)},
+ * so existing {@code synchronized(list)} blocks keep working. Lookups by key don't take the lock.</p>
+ *
+ * <p>When several items share a key, the index resolves to the first one in list order,
+ * matching the behaviour of a linear scan.</p>
+ *
+ * <p>Each index also keeps the position of the first item of every key, so
+ * {@link #addOrReplace(KeyExtractor, Object)} replaces in place without scanning. Inserting or
+ * removing anywhere but at the end shifts the positions, they're rebuilt once on the next replace.</p>
+ *
+ * @hide
+ */
+public class IndexedList<T> extends AbstractList<T> implements RandomAccess {
+
+    /**
+     * Extracts the key an item is indexed by. Items with a null key are not indexed.
+     */
+    public interface KeyExtractor<T> {
+        String keyOf(T item);
+    }
+
+    private final ArrayList<T> items = new ArrayList<>();
+    private final Map<KeyExtractor<T>, Index<T>> indexes = new LinkedHashMap<>();
+    // false once an insert or remove shifted the items, positions are rebuilt when next needed.
+    private boolean positionsValid = true;
+
+    @SafeVarargs
+    public IndexedList(KeyExtractor<T>... extractors) {
+        for (KeyExtractor<T> extractor : extractors)
+            this.indexes.put(extractor, new Index<>(extractor));
+    }
+
+    /**
+     * Look up an item by key.
+     *
+     * @param extractor One of the extractors this list was created with.
+     * @param key       The key to look for.
+     * @return the first item with the given key, or null if none is found.
+     */
+    public T find(KeyExtractor<T> extractor, String key) {
+        if (key == null) return null;
+        return indexBy(extractor).first.get(key);
+    }
+
+    public boolean containsKey(KeyExtractor<T> extractor, String key) {
+        return find(extractor, key) != null;
+    }
+
+    /**
+     * Replace the item having the same key, or append it if there is none.
+     *
+     * @return the replaced item, or null if the item was appended.
+     */
+    public synchronized T addOrReplace(KeyExtractor<T> extractor, T item) {
+        Index<T> index = indexBy(extractor);
+        String key = extractor.keyOf(item);
+        if (key == null || !index.first.containsKey(key)) {
+            add(item);
+            return null;
+        }
+        ensurePositions();
+        return set(index.positions.get(key), item);
+    }
+
+    @Override
+    public synchronized T get(int location) {
+        return this.items.get(location);
+    }
+
+    @Override
+    public synchronized int size() {
+        return this.items.size();
+    }
+
+    @Override
+    public synchronized void add(int location, T item) {
+        boolean append = (location == this.items.size());
+        // positions are read before the items shift.
+        if (sharesKey(item))
+            ensurePositions();
+        for (Index<T> index : this.indexes.values())
+            index(index, item, location);
+        this.items.add(location, item);
+        this.modCount++;
+        if (!append)
+            this.positionsValid = false;
+    }
+
+    @Override
+    public synchronized boolean addAll(@NonNull Collection<? extends T> collection) {
+        return super.addAll(collection);
+    }
+
+    @Override
+    public synchronized T set(int location, T item) {
+        if (sharesKey(item))
+            ensurePositions();
+        T previous = this.items.set(location, item);
+        for (Index<T> index : this.indexes.values()) {
+            String previousKey = index.extractor.keyOf(previous);
+            if (previousKey != null && previousKey.equals(index.extractor.keyOf(item))) {
+                // same key at the same position, only the item changes.
+                if (index.first.get(previousKey) == previous)
+                    index.first.put(previousKey, item);
+                continue;
+            }
+            unindex(index, previous, location);
+            index(index, item, location);
+        }
+        return previous;
+    }
+
+    @Override
+    public synchronized T remove(int location) {
+        boolean last = (location == this.items.size() - 1);
+        T removed = this.items.remove(location);
+        this.modCount++;
+        for (Index<T> index : this.indexes.values())
+            unindex(index, removed, location);
+        if (!last)
+            this.positionsValid = false;
+        return removed;
+    }
+
+    @Override
+    public synchronized boolean remove(Object item) {
+        int location = this.items.indexOf(item);
+        if (location < 0) return false;
+        remove(location);
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.items.clear();
+        this.modCount++;
+        for (Index<T> index : this.indexes.values()) {
+            index.first.clear();
+            index.counts.clear();
+            index.positions.clear();
+        }
+        this.positionsValid = true;
+    }
+
+    @Override
+    public synchronized int indexOf(Object item) {
+        return this.items.indexOf(item);
+    }
+
+    @Override
+    public synchronized boolean contains(Object item) {
+        return this.items.contains(item);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return this.items.toString();
+    }
+
+    private Index<T> indexBy(KeyExtractor<T> extractor) {
+        Index<T> index = this.indexes.get(extractor);
+        if (index == null)
+            throw new IllegalArgumentException("List is not indexed by " + extractor);
+        return index;
+    }
+
+    // Count an item about to be placed at location. It becomes the first of its key if it's the
+    // only one, or if it lands before the current first.
+    private void index(Index<T> index, T item, int location) {
+        String key = index.extractor.keyOf(item);
+        if (key == null) return;
+
+        Integer count = index.counts.get(key);
+        index.counts.put(key, (count == null ? 1 : count + 1));
+        if (count == null || location <= index.positions.get(key)) {
+            index.first.put(key, item);
+            index.positions.put(key, location);
+        }
+    }
+
+    // Uncount an item which was at location. If it was the first of its key, the next one takes
+    // over: it can only be found further down the list.
+    private void unindex(Index<T> index, T item, int location) {
+        String key = index.extractor.keyOf(item);
+        if (key == null) return;
+
+        int count = index.counts.get(key);
+        if (count == 1) {
+            index.counts.remove(key);
+            index.first.remove(key);
+            index.positions.remove(key);
+            return;
+        }
+        index.counts.put(key, count - 1);
+        if (index.first.get(key) != item) return;
+
+        for (int i = location; i < this.items.size(); i++) {
+            T candidate = this.items.get(i);
+            if (key.equals(index.extractor.keyOf(candidate))) {
+                index.first.put(key, candidate);
+                index.positions.put(key, i);
+                return;
+            }
+        }
+    }
+
+    // true if the item has a key already in the list, so where it goes decides which is first.
+    private boolean sharesKey(T item) {
+        for (Index<T> index : this.indexes.values()) {
+            String key = index.extractor.keyOf(item);
+            if (key != null && index.counts.containsKey(key))
+                return true;
+        }
+        return false;
+    }
+
+    private void ensurePositions() {
+        if (this.positionsValid) return;
+
+        for (Index<T> index : this.indexes.values())
+            index.positions.clear();
+        for (int i = 0; i < this.items.size(); i++) {
+            T item = this.items.get(i);
+            for (Index<T> index : this.indexes.values()) {
+                String key = index.extractor.keyOf(item);
+                if (key != null && !index.positions.containsKey(key))
+                    index.positions.put(key, i);
+            }
+        }
+        this.positionsValid = true;
+    }
+
+    private static class Index<T> {
+        private final KeyExtractor<T> extractor;
+        // read without the lock.
+        private final ConcurrentHashMap<String, T> first = new ConcurrentHashMap<>();
+        // guarded by the list: items per key, and the position of the first one.
+        private final Map<String, Integer> counts = new HashMap<>();
+        private final Map<String, Integer> positions = new HashMap<>();
+
+        Index(KeyExtractor<T> extractor) {
+            this.extractor = extractor;
+        }
+    }
+}
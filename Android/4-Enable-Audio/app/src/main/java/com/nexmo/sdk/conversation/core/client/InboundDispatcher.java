@@ -0,0 +1,193 @@
+package com.nexmo.sdk.conversation.core.client;
+
+import android.os.SystemClock;
+
+import com.nexmo.sdk.conversation.core.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves handling of incoming events off the socket.io event thread.
+ *
+ * <p>Events are striped over a fixed number of serial lanes by conversation id, so events of
+ * one conversation are handled in the order they arrived while different conversations proceed
+ * in parallel. Events without a conversation id always go to the same lane, in the order they arrived,
+ * but there is no ordering between them and events of conversations. State shared by handlers of
+ * different conversations must be thread-safe.</p>
+ *
+ * <p>Every lane keeps track of its queue depth and of the lag between an event being received
+ * and its handling being started.</p>
+ *
+ * @hide
+ */
+
+public class InboundDispatcher {
+    private static final String TAG = InboundDispatcher.class.getSimpleName();
+
+    // log a warning once handling of an event starts this late.
+    static final long LAG_WARNING_THRESHOLD = 1000;
+
+    private final Lane[] lanes;
+
+    public InboundDispatcher(int laneCount) {
+        this.lanes = new Lane[Math.max(1, laneCount)];
+        for (int i = 0; i < this.lanes.length; i++)
+            this.lanes[i] = new Lane(i);
+    }
+
+    /**
+     * Queue a task on the lane of a conversation.
+     * @param cid conversation id, might be null or empty.
+     * @param task the task to run.
+     */
+    public void dispatch(String cid, Runnable task) {
+        laneFor(cid).execute(task);
+    }
+
+    /**
+     * Stop the lanes once the events queued so far are handled, doesn't wait for them.
+     * Lanes are started again by the next {@link #dispatch(String, Runnable)}.
+     */
+    public void shutdown() {
+        for (Lane lane : this.lanes)
+            lane.shutdown();
+    }
+
+    /**
+     * @return a snapshot of every lane's metrics.
+     */
+    public List<LaneStats> getLaneStats() {
+        List<LaneStats> stats = new ArrayList<>(this.lanes.length);
+        for (Lane lane : this.lanes)
+            stats.add(lane.stats());
+        return Collections.unmodifiableList(stats);
+    }
+
+    private Lane laneFor(String cid) {
+        if (cid == null || cid.isEmpty()) return this.lanes[0];
+        return this.lanes[(cid.hashCode() & Integer.MAX_VALUE) % this.lanes.length];
+    }
+
+    private static class Lane {
+        private final int index;
+        private ExecutorService executor;
+        private final AtomicInteger queueDepth = new AtomicInteger();
+        private final AtomicLong dispatched = new AtomicLong();
+        private final AtomicLong lastLag = new AtomicLong();
+        private final AtomicLong maxLag = new AtomicLong();
+
+        Lane(final int index) {
+            this.index = index;
+        }
+
+        synchronized void execute(final Runnable task) {
+            if (this.executor == null)
+                this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "capi-sdk-inbound-" + index);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+            final long receivedAt = SystemClock.elapsedRealtime();
+            this.queueDepth.incrementAndGet();
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long lag = SystemClock.elapsedRealtime() - receivedAt;
+                    onStarted(lag);
+                    try {
+                        task.run();
+                    } catch (Throwable throwable) {
+                        Log.w(TAG, "Lane " + index + ": error during event processing", throwable);
+                    } finally {
+                        queueDepth.decrementAndGet();
+                        dispatched.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        synchronized void shutdown() {
+            if (this.executor == null) return;
+            this.executor.shutdown();
+            this.executor = null;
+        }
+
+        private void onStarted(long lag) {
+            this.lastLag.set(lag);
+            long max;
+            do {
+                max = this.maxLag.get();
+            } while (lag > max && !this.maxLag.compareAndSet(max, lag));
+
+            if (lag >= LAG_WARNING_THRESHOLD)
+                Log.w(TAG, "Lane " + this.index + " is lagging " + lag + "ms behind, " + this.queueDepth.get() + " events queued");
+        }
+
+        LaneStats stats() {
+            return new LaneStats(this.index, this.queueDepth.get(), this.dispatched.get(), this.lastLag.get(), this.maxLag.get());
+        }
+    }
+
+    /**
+     * Metrics of a single dispatcher lane.
+     */
+    public static class LaneStats {
+        private final int lane;
+        private final int queueDepth;
+        private final long dispatched;
+        private final long lastLagMillis;
+        private final long maxLagMillis;
+
+        LaneStats(int lane, int queueDepth, long dispatched, long lastLagMillis, long maxLagMillis) {
+            this.lane = lane;
+            this.queueDepth = queueDepth;
+            this.dispatched = dispatched;
+            this.lastLagMillis = lastLagMillis;
+            this.maxLagMillis = maxLagMillis;
+        }
+
+        public int getLane() {
+            return lane;
+        }
+
+        /**
+         * @return events queued or being handled on this lane.
+         */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public long getDispatched() {
+            return dispatched;
+        }
+
+        /**
+         * @return time the last handled event waited in the queue.
+         */
+        public long getLastLagMillis() {
+            return lastLagMillis;
+        }
+
+        public long getMaxLagMillis() {
+            return maxLagMillis;
+        }
+
+        @Override
+        public String toString() {
+            return TAG + " lane " + lane + " {queueDepth=" + queueDepth + ", dispatched=" + dispatched +
+                    ", lastLag=" + lastLagMillis + "ms, maxLag=" + maxLagMillis + "ms}";
+        }
+    }
+
+}
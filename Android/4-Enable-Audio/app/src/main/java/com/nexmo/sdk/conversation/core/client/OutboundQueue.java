@@ -0,0 +1,135 @@
+package com.nexmo.sdk.conversation.core.client;
+
+import android.os.SystemClock;
+
+import com.nexmo.sdk.conversation.config.Defaults;
+import com.nexmo.sdk.conversation.core.client.request.Request;
+import com.nexmo.sdk.conversation.core.util.Log;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue of outgoing requests, drained by a dedicated sender thread.
+ *
+ * <p>Requests are serialized and emitted on the sender thread rather than on the caller's one,
+ * in order of their {@link Request.PRIORITY} class and, within the same class, in the order they
+ * were queued. A flood of receipts therefore never delays call signalling by more than
+ * the single request being emitted at the moment.</p>
+ *
+ * @hide
+ */
+
+public class OutboundQueue {
+    private static final String TAG = OutboundQueue.class.getSimpleName();
+
+    // log a warning once a request waited this long before being emitted.
+    static final long LAG_WARNING_THRESHOLD = 1000;
+
+    /**
+     * Emits a serialized request.
+     */
+    public interface Sink {
+        void emit(String requestName, Object data);
+    }
+
+    private final PriorityBlockingQueue<Outbound> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Sink sink;
+    // started by the first request, guarded by this.
+    private Thread sender;
+
+    public OutboundQueue(Sink sink) {
+        this.sink = sink;
+    }
+
+    public void offer(Request request) {
+        this.queue.offer(new Outbound(request, this.sequence.getAndIncrement()));
+        startSender();
+    }
+
+    /**
+     * Stop the sender thread and drop the requests not sent yet.
+     * The sender is started again by the next {@link #offer(Request)}.
+     */
+    public void shutdown() {
+        Thread sender;
+        synchronized (this) {
+            sender = this.sender;
+            this.sender = null;
+            if (sender != null)
+                sender.interrupt();
+
+            int dropped = this.queue.size();
+            this.queue.clear();
+            if (dropped > 0)
+                Log.w(TAG, "shutdown: " + dropped + " requests not sent");
+        }
+        if (sender == null || sender == Thread.currentThread()) return;
+
+        try {
+            sender.join(Defaults.THREAD_SHUTDOWN_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int size() {
+        return this.queue.size();
+    }
+
+    private synchronized void startSender() {
+        if (this.sender != null) return;
+
+        this.sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "capi-sdk-sender");
+        this.sender.setDaemon(true);
+        this.sender.start();
+    }
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Outbound outbound;
+            try {
+                outbound = this.queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long lag = SystemClock.elapsedRealtime() - outbound.queuedAt;
+            if (lag >= LAG_WARNING_THRESHOLD)
+                Log.w(TAG, outbound.request.getRequestName() + " waited " + lag + "ms to be sent, " + this.queue.size() + " requests queued");
+
+            try {
+                this.sink.emit(outbound.request.getRequestName(), outbound.request.toJson());
+            } catch (Throwable throwable) {
+                Log.w(TAG, "Couldn't send " + outbound.request.getRequestName(), throwable);
+            }
+        }
+    }
+
+    private static class Outbound implements Comparable<Outbound> {
+        private final Request request;
+        private final Request.PRIORITY priority;
+        private final long sequence;
+        private final long queuedAt = SystemClock.elapsedRealtime();
+
+        Outbound(Request request, long sequence) {
+            this.request = request;
+            this.priority = request.getPriority();
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Outbound other) {
+            if (this.priority != other.priority)
+                return this.priority.compareTo(other.priority);
+            return (this.sequence < other.sequence ? -1 : (this.sequence == other.sequence ? 0 : 1));
+        }
+    }
+
+}
@@ -3,6 +3,7 @@ package com.nexmo.sdk.conversation.core.client;
 import android.content.Context;
 import android.text.TextUtils;
 
+import com.nexmo.sdk.conversation.client.event.NexmoAPIError;
 import com.nexmo.sdk.conversation.client.event.network.*;
 import com.nexmo.sdk.conversation.config.Defaults;
 import com.nexmo.sdk.conversation.core.MapList;
@@ -15,8 +16,10 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.net.URISyntaxException;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.socket.client.IO;
 import io.socket.client.Manager;
@@ -52,16 +55,33 @@ public class Router extends Emitter {
 
     private Map<String, CAPIInternalRequest> pendingRequests = new ConcurrentHashMap<>();
     private MapList<SubscriptionListener> subscriptions = new MapList<>();
-    private Socket socket;
+    private volatile Socket socket;
 
     private final NetworkingStateListener connectionEventListener;
     private final boolean persistRequests;
-    private final Context context;
+    private final RequestQueueStorage requestQueueStorage;
+    private final InboundDispatcher inboundDispatcher = new InboundDispatcher(Defaults.INBOUND_DISPATCH_LANES);
+    private final AtomicLong timedOutRequests = new AtomicLong();
+    private final TimingWheel requestTimeouts = new TimingWheel(Defaults.REQUEST_TIMEOUT_TICK, Defaults.REQUEST_TIMEOUT_WHEEL_SIZE,
+            new TimingWheel.ExpiryListener() {
+                @Override
+                public void onExpired(String tid) {
+                    onRequestTimeout(tid);
+                }
+            });
+    private final OutboundQueue outboundQueue = new OutboundQueue(new OutboundQueue.Sink() {
+        @Override
+        public void emit(String requestName, Object data) {
+            Socket socket = Router.this.socket;
+            if (socket != null)
+                socket.emit(requestName, data);
+        }
+    });
 
     public Router(Context context, NetworkingStateListener connectionEventListener, boolean persistRequests) {
-        this.context = context.getApplicationContext();
         this.connectionEventListener = connectionEventListener;
         this.persistRequests = persistRequests;
+        this.requestQueueStorage = (persistRequests ? new RequestQueueStorage(context.getApplicationContext()) : null);
     }
 
     public void connect(final String connectionUrl, String path, boolean autoReconnect) throws URISyntaxException {
@@ -80,7 +100,7 @@ public class Router extends Emitter {
             options.reconnection = false;
 
         this.socket = IO.socket(connectionUrl, options);
-        System.out.println("Socket instance " + socket);
+        Log.d(TAG, "Socket instance " + socket);
 
         this.socket.on(EVENT_CONNECT, new NetworkStateHandler(NetworkState.CONNECTED));
         this.socket.on(EVENT_CONNECT_ERROR, new NetworkStateHandler(NetworkState.CONNECT_ERROR));
@@ -115,6 +135,11 @@ public class Router extends Emitter {
         this.socket.off();
         this.socket.disconnect();
         off();
+        this.inboundDispatcher.shutdown();
+        this.outboundQueue.shutdown();
+        this.requestTimeouts.shutdown();
+        if (this.persistRequests)
+            this.requestQueueStorage.shutdown();
     }
 
     /**
@@ -146,34 +171,31 @@ public class Router extends Emitter {
      * {@link CAPIAwareListener#onError(String, JSONObject, String, String)}
      * <br/>
      * Method guarantees that callback will be called once and only once unless disconnect method was called.
+     * <br/>
+     * Request is serialized and emitted later on by {@link OutboundQueue} according to its {@link Request#getPriority()}.
      * @param request
      * @param listener to be called in case success or error cases
      */
     public void sendRequest(Request request, CAPIAwareListener listener) {
         Log.i(TAG, "sendRequest " + request.getRequestName() + ": " + request.toString());
         this.pendingRequests.put(request.getTid(), new CAPIInternalRequest(request, listener));
-        if (request.isPersistable())
-            updatePersistentStorage();
+        this.requestTimeouts.schedule(request.getTid(), request.getTimeout());
+        if (this.persistRequests)
+            this.requestQueueStorage.enqueue(request);
 
-        if (this.socket!= null)
-            this.socket.emit(request.getRequestName(), request.toJson());
+        this.outboundQueue.offer(request);
     }
 
 
     /**
-     * Single point to persist commands if need.
-     * Might better to make it work in separate thread
+     * Replay requests persisted during the previous session.
+     * @param window maximum number of replayed requests in flight, 1 to replay them one by one.
+     * @param flushListener notified after every replayed request and once all of them are done.
      */
-    private void updatePersistentStorage() {
-        if (!this.persistRequests) return;
-        new RequestQueueStorage(this.context, this.pendingRequests.values()).save();
-    }
-
-    public void loadAndRemoveAndFlush(Router router, FlushFinishedListener readyToCallUserCallback) {
+    public void loadAndRemoveAndFlush(Router router, int window, FlushListener flushListener) {
         if (!this.persistRequests) return;
 
-        RequestQueueStorage storage = new RequestQueueStorage(this.context, this.pendingRequests.values());
-        storage.loadAndRemoveAndFlush(router, readyToCallUserCallback);
+        this.requestQueueStorage.loadAndRemoveAndFlush(router, window, flushListener);
     }
 
 
@@ -189,7 +211,8 @@ public class Router extends Emitter {
 
     /**
      * Sink for all valid incoming events.
-     * Method is responsible for routing
+     * Method is responsible for routing, it runs on the {@link InboundDispatcher} lane of event's conversation.
+     * Events of different conversations are routed in parallel.
      * @param eventName
      * @param eventData
      */
@@ -215,6 +238,11 @@ public class Router extends Emitter {
 
     private void dispatchResponse(String eventName, String tid, String cid, JSONObject data) {
         CAPIInternalRequest request = this.pendingRequests.remove(tid);
+        this.requestTimeouts.cancel(tid);
+        // ack replayed requests as well, they are journaled under their original tid.
+        if (this.persistRequests)
+            this.requestQueueStorage.ack(tid);
+
         if (request == null) {
             Log.w(TAG, "Got event " + eventName + " for unknown tid: " + tid);
             return;
@@ -240,9 +268,41 @@ public class Router extends Emitter {
                 request.getListener().onError(eventName, data, tid, cid);
             }
         }
+    }
+
+    // Fail the request unless we are offline, requests sent while offline are kept for retryPendingOperations.
+    // A timed out request stays journaled until the server responds, so it's replayed by the next flush.
+    private void onRequestTimeout(String tid) {
+        CAPIInternalRequest request = this.pendingRequests.get(tid);
+        if (request == null) return;
+
+        Socket socket = this.socket;
+        if (socket == null || !socket.connected()) {
+            this.requestTimeouts.schedule(tid, request.getRequest().getTimeout());
+            return;
+        }
+
+        if (this.pendingRequests.remove(tid) == null) return;
+        this.timedOutRequests.incrementAndGet();
+
+        String requestName = request.getRequest().getRequestName();
+        Log.w(TAG, "Request " + requestName + " timed out, tid: " + tid);
+        if (request.getListener() == null) return;
 
-        if (request.getRequest().isPersistable())
-            updatePersistentStorage();
+        JSONObject requestData = request.getRequest().toJson();
+        String cid = (requestData != null ? requestData.optString("cid") : "");
+        JSONObject data = new JSONObject();
+        try {
+            data.put("tid", tid)
+                .put("request", requestName)
+                .put("timeout", request.getRequest().getTimeout());
+        } catch (JSONException canNeverHappensKeyNamesAreNotNull) {}
+        try {
+            request.getListener().onError(NexmoAPIError.REQUEST_TIMEOUT, data, tid, cid);
+        } catch (Throwable throwable) {
+            Log.w(TAG, "Got error during timeout processing ");
+            throwable.printStackTrace();
+        }
     }
 
     private Emitter.Listener listener = new Emitter.Listener() {
@@ -258,7 +318,16 @@ public class Router extends Emitter {
                 eventData = data.getJSONObject(1);
             } catch (Throwable ignored) { }
             if (eventName == null || eventData == null) return;
-            dispatch(eventName, eventData);
+
+            // don't hold the socket thread while subscriptions parse and persist the event.
+            final String name = eventName;
+            final JSONObject data = eventData;
+            inboundDispatcher.dispatch(eventData.optString("cid"), new Runnable() {
+                @Override
+                public void run() {
+                    dispatch(name, data);
+                }
+            });
         }
     };
 
@@ -279,8 +348,32 @@ public class Router extends Emitter {
         return pendingRequests;
     }
 
-    public interface FlushFinishedListener {
-        void onFlushFinished();
+    /**
+     * @return number of requests waiting for a response.
+     */
+    public int getInFlightRequestCount() {
+        return this.pendingRequests.size();
+    }
+
+    /**
+     * @return number of requests failed with {@link NexmoAPIError#REQUEST_TIMEOUT} since the router was created.
+     */
+    public long getTimedOutRequestCount() {
+        return this.timedOutRequests.get();
+    }
+
+    public List<InboundDispatcher.LaneStats> getInboundLaneStats() {
+        return this.inboundDispatcher.getLaneStats();
+    }
+
+    public interface FlushListener {
+        void onFlushProgress(int flushed, int total);
+
+        /**
+         * @param total         number of replayed requests.
+         * @param elapsedMillis time from the start of the flush until the last response arrived.
+         */
+        void onFlushFinished(int total, long elapsedMillis);
     }
 
     private class NetworkStateHandler implements Emitter.Listener {
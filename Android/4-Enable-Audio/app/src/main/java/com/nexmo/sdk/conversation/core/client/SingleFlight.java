@@ -0,0 +1,73 @@
+package com.nexmo.sdk.conversation.core.client;
+
+import com.nexmo.sdk.conversation.client.event.NexmoAPIError;
+import com.nexmo.sdk.conversation.client.event.RequestHandler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces identical read requests: while a request for a key is in flight,
+ * later callers for the same key are attached to it instead of sending their own.
+ *
+ * <p>The first caller leads. It sends its request with the handler returned by
+ * {@link #join(String, RequestHandler)}, which forwards the one result or error to every
+ * attached caller. The key is released as soon as the result is delivered.</p>
+ *
+ * <p>Every attached caller gets the very same result instance, it's not copied. Only coalesce
+ * requests whose result is shared anyway, e.g. a {@link com.nexmo.sdk.conversation.client.Conversation}
+ * which is the instance kept in the conversation list.</p>
+ *
+ * @hide
+ */
+
+public class SingleFlight<T> {
+    private final Map<String, List<RequestHandler<T>>> inFlight = new HashMap<>();
+
+    /**
+     * Join the in-flight request for a key, or lead a new one.
+     * @param key     identifies requests which would return the same result.
+     * @param handler caller's handler, might be null.
+     * @return handler to send the request with if the caller leads, or null if the caller
+     *         got attached to a request already in flight.
+     */
+    public synchronized RequestHandler<T> join(final String key, RequestHandler<T> handler) {
+        List<RequestHandler<T>> handlers = this.inFlight.get(key);
+        if (handlers != null) {
+            if (handler != null)
+                handlers.add(handler);
+            return null;
+        }
+
+        handlers = new ArrayList<>();
+        if (handler != null)
+            handlers.add(handler);
+        this.inFlight.put(key, handlers);
+
+        return new RequestHandler<T>() {
+            @Override
+            public void onSuccess(T result) {
+                for (RequestHandler<T> handler : release(key))
+                    handler.onSuccess(result);
+            }
+
+            @Override
+            public void onError(NexmoAPIError apiError) {
+                for (RequestHandler<T> handler : release(key))
+                    handler.onError(apiError);
+            }
+        };
+    }
+
+    public synchronized int size() {
+        return this.inFlight.size();
+    }
+
+    private synchronized List<RequestHandler<T>> release(String key) {
+        List<RequestHandler<T>> handlers = this.inFlight.remove(key);
+        return (handlers != null ? handlers : new ArrayList<RequestHandler<T>>());
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.nexmo.sdk.conversation.core.client;
+
+import android.support.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timing wheel, tracks any number of deadlines with a single ticking thread.
+ *
+ * <p>Scheduling and cancelling a deadline are O(1). Deadlines are rounded up to the next tick,
+ * deadlines longer than a whole wheel revolution wait for the required number of rounds.</p>
+ *
+ * @hide
+ */
+
+public class TimingWheel {
+
+    public interface ExpiryListener {
+        /**
+         * Called on the wheel's thread once deadline of a key passed.
+         */
+        void onExpired(String key);
+    }
+
+    private final long tickMillis;
+    private final List<Deadline>[] slots;
+    private final Map<String, Deadline> deadlines = new HashMap<>();
+    private final ExpiryListener expiryListener;
+    private int cursor;
+    // started by the first deadline.
+    private ScheduledExecutorService ticker;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int slotCount, ExpiryListener expiryListener) {
+        this.tickMillis = tickMillis;
+        this.expiryListener = expiryListener;
+        this.slots = new List[slotCount];
+        for (int i = 0; i < slotCount; i++)
+            this.slots[i] = new ArrayList<>();
+    }
+
+    /**
+     * Schedule a deadline for a key, replacing the current one if any.
+     */
+    public synchronized void schedule(String key, long timeoutMillis) {
+        startTicker();
+        cancel(key);
+
+        long ticks = Math.max(1, (timeoutMillis + this.tickMillis - 1) / this.tickMillis);
+        Deadline deadline = new Deadline(key, (ticks - 1) / this.slots.length);
+        this.slots[(int) ((this.cursor + ticks) % this.slots.length)].add(deadline);
+        this.deadlines.put(key, deadline);
+    }
+
+    public synchronized void cancel(String key) {
+        Deadline deadline = this.deadlines.remove(key);
+        if (deadline != null)
+            deadline.cancelled = true;
+    }
+
+    public synchronized int size() {
+        return this.deadlines.size();
+    }
+
+    /**
+     * Stop the ticker and drop every deadline, none of them expires.
+     * The ticker is started again by the next {@link #schedule(String, long)}.
+     */
+    public synchronized void shutdown() {
+        if (this.ticker != null) {
+            this.ticker.shutdownNow();
+            this.ticker = null;
+        }
+        this.deadlines.clear();
+        for (List<Deadline> slot : this.slots)
+            slot.clear();
+    }
+
+    private void startTicker() {
+        if (this.ticker != null) return;
+
+        this.ticker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "capi-sdk-timeouts");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.ticker.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        }, this.tickMillis, this.tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @VisibleForTesting
+    void tick() {
+        List<String> expired = new ArrayList<>();
+        synchronized (this) {
+            this.cursor = (this.cursor + 1) % this.slots.length;
+            Iterator<Deadline> iterator = this.slots[this.cursor].iterator();
+            while (iterator.hasNext()) {
+                Deadline deadline = iterator.next();
+                if (deadline.cancelled) {
+                    iterator.remove();
+                } else if (deadline.rounds == 0) {
+                    iterator.remove();
+                    this.deadlines.remove(deadline.key);
+                    expired.add(deadline.key);
+                } else {
+                    deadline.rounds--;
+                }
+            }
+        }
+
+        for (String key : expired) {
+            try {
+                this.expiryListener.onExpired(key);
+            } catch (Throwable throwable) {
+                // never let the ticker die, it would stop every other deadline as well.
+                throwable.printStackTrace();
+            }
+        }
+    }
+
+    private static class Deadline {
+        private final String key;
+        private long rounds;
+        private boolean cancelled;
+
+        Deadline(String key, long rounds) {
+            this.key = key;
+            this.rounds = rounds;
+        }
+    }
+
+}
@@ -1,5 +1,7 @@
 package com.nexmo.sdk.conversation.core.client.request;
 
+import android.text.TextUtils;
+
 import com.nexmo.sdk.conversation.client.Conversation;
 import com.nexmo.sdk.conversation.client.Member;
 import com.nexmo.sdk.conversation.client.User;
@@ -17,19 +19,38 @@ import java.util.List;
  * @hide
  */
 
-public class GetConversationsRequest extends Request<RequestHandler<List<Conversation>>, List<GetConversationsRequest.Container>> {
+public class GetConversationsRequest extends Request<RequestHandler<List<Conversation>>, GetConversationsRequest.Page> {
     static final String CONVERSATIONS_GET_REQUEST = "user:conversations";
     static final String CONVERSATIONS_GET_SUCCESS = "user:conversations:success";
     private User self;
-
-    public GetConversationsRequest(User self) {
+    private final String cursor;
+    private final int pageSize;
+
+    /**
+     * Request one page of the conversation list.
+     * @param cursor   cursor returned with the previous page, null for the first page.
+     * @param pageSize maximum number of conversations in the page.
+     */
+    public GetConversationsRequest(User self, String cursor, int pageSize) {
         super(TYPE.OTHER);
         this.self = self;
+        this.cursor = cursor;
+        this.pageSize = pageSize;
+    }
+
+    public boolean isFirstPage() {
+        return this.cursor == null;
     }
 
     @Override
     protected JSONObject makeJson() throws JSONException {
-        return newTaggedResponse();
+        JSONObject bodyObj = new JSONObject()
+                .put("page_size", this.pageSize);
+        if (this.cursor != null)
+            bodyObj.put("cursor", this.cursor);
+
+        return newTaggedResponse()
+                .put("body", bodyObj);
     }
 
     @Override
@@ -43,10 +64,19 @@ public class GetConversationsRequest extends Request<RequestHandler<List<Convers
     }
 
 
+    /**
+     * Paged response body is {"conversations": [...], "cursor": "..."}, cursor is missing on the last page.
+     * Backends without paging answer with the plain array of all conversations.
+     */
     @Override
-    public List<Container> parse(JSONObject jsonObject, JSONObject body) throws JSONException {
+    public Page parse(JSONObject jsonObject, JSONObject body) throws JSONException {
         List<Container> conversationList = new ArrayList<>();
-        JSONArray conversations = jsonObject.getJSONArray("body");
+        JSONArray conversations = jsonObject.optJSONArray("body");
+        String nextCursor = null;
+        if (conversations == null) {
+            conversations = body.getJSONArray("conversations");
+            nextCursor = body.optString("cursor", null);
+        }
 
         for (int index = 0; index < conversations.length(); index++) {
             JSONObject cBody = conversations.getJSONObject(index);
@@ -57,7 +87,18 @@ public class GetConversationsRequest extends Request<RequestHandler<List<Convers
             conversationList.add(new Container(conversation, conversation.getMember(cBody.optString("member_id"))));
         }
 
-        return conversationList;
+        return new Page(conversationList, (TextUtils.isEmpty(nextCursor) ? null : nextCursor));
+    }
+
+    public static class Page {
+        public final List<Container> containers;
+        // null on the last page.
+        public final String nextCursor;
+
+        public Page(List<Container> containers, String nextCursor) {
+            this.containers = containers;
+            this.nextCursor = nextCursor;
+        }
     }
 
     public static class Container {
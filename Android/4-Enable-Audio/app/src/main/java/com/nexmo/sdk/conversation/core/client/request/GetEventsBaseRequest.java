@@ -29,6 +29,13 @@ public abstract class GetEventsBaseRequest<R> extends ConversationRequestBase<Re
         this.endId = endId;
     }
 
+    /**
+     * Requests with the same key return the same result, so they can share one round-trip.
+     */
+    public String getCoalescingKey() {
+        return getRequestName() + ":" + this.cid + ":" + this.startId + ":" + this.endId;
+    }
+
     @Override
     protected JSONObject makeJson() throws JSONException {
         JSONObject bodyObj = new JSONObject();
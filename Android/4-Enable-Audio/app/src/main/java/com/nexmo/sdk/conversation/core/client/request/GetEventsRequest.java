@@ -25,10 +25,20 @@ public class GetEventsRequest extends GetEventsBaseRequest<List<Event>> {
     public static final String CONVERSATION_GET_EVENTS = "conversation:events";
     public static final String CONVERSATION_GET_EVENTS_SUCCESS = "conversation:events:success";
     private Conversation conversation;
+    private final boolean delta;
 
     public GetEventsRequest(Conversation conversation, String startId, String endId, RequestHandler<Conversation> listener) {
+        this(conversation, startId, endId, false, listener);
+    }
+
+    /**
+     * @param delta true to parse only the events which are not part of the conversation yet, see
+     *              {@link Event#fromJson(Conversation, JSONObject, boolean)}.
+     */
+    public GetEventsRequest(Conversation conversation, String startId, String endId, boolean delta, RequestHandler<Conversation> listener) {
         super(TYPE.GET_EVENTS, conversation.getConversationId(), startId, endId, listener);
         this.conversation = conversation;
+        this.delta = delta;
     }
 
     @Override
@@ -49,7 +59,7 @@ public class GetEventsRequest extends GetEventsBaseRequest<List<Event>> {
         for(int index = 0; index < messagesArray.length(); index++) {
             JSONObject messageObject = messagesArray.getJSONObject(index);
 
-            Event event = Event.fromJson(conversation, messageObject);
+            Event event = Event.fromJson(conversation, messageObject, this.delta);
             if (event != null)
                 events.add(event);
         }
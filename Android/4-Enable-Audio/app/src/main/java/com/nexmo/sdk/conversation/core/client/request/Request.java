@@ -6,6 +6,7 @@
 package com.nexmo.sdk.conversation.core.client.request;
 
 import com.nexmo.sdk.conversation.client.event.RequestHandler;
+import com.nexmo.sdk.conversation.config.Defaults;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -115,6 +116,59 @@ public abstract class Request<T extends RequestHandler, R> implements ResultPars
         return false;
     }
 
+    /**
+     * Priority class of the request in the outbound queue.
+     * Call signalling goes first, receipts and typing indicators go last.
+     */
+    public PRIORITY getPriority() {
+        switch (this.type) {
+            case RTC_NEW:
+            case RTC_TERMINATE:
+            case RTC_MUTE:
+            case RTC_EARMUFF:
+            case AUDIO_RINGING:
+                return PRIORITY.SIGNALLING;
+            case MARK_TEXT_SEEN:
+            case MARK_IMAGE_SEEN:
+            case MARK_TEXT_DELIVERED:
+            case MARK_IMAGE_DELIVERED:
+            case TYPING:
+                return PRIORITY.BACKGROUND;
+            default:
+                return PRIORITY.NORMAL;
+        }
+    }
+
+    /**
+     * Time to wait for the response before the request fails with {@link com.nexmo.sdk.conversation.client.event.NexmoAPIError#REQUEST_TIMEOUT}.
+     */
+    public long getTimeout() {
+        switch (this.type) {
+            case RTC_NEW:
+            case RTC_TERMINATE:
+            case RTC_MUTE:
+            case RTC_EARMUFF:
+            case AUDIO_RINGING:
+                return Defaults.SIGNALLING_REQUEST_TIMEOUT;
+            case GET:
+            case GET_EVENTS:
+            case OTHER:
+                return Defaults.BULK_REQUEST_TIMEOUT;
+            default:
+                return Defaults.REQUEST_TIMEOUT;
+        }
+    }
+
+    /**
+     * Requests of a higher priority class are always emitted first,
+     * requests of the same class are emitted in the order they were sent.
+     */
+    public enum PRIORITY {
+        SIGNALLING,
+        NORMAL, // user messages and everything else
+        BACKGROUND
+    }
+
     public enum TYPE {
         CREATE,
         JOIN,
@@ -0,0 +1,115 @@
+package com.nexmo.sdk.conversation.core.persistence;
+
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.nexmo.sdk.conversation.core.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inserts many rows with a single compiled statement.
+ *
+ * <p>Rows are captured as plain arrays of column values, in the order of the columns the
+ * statement was built with, and bound to the statement one after the other. Unlike
+ * {@link SQLiteDatabase#insert}, the SQL is compiled once for the whole batch instead of once
+ * per row.</p>
+ *
+ * @hide
+ */
+
+public final class BulkInsert {
+    private static final String TAG = BulkInsert.class.getSimpleName();
+
+    private BulkInsert() {
+        throw new AssertionError();
+    }
+
+    /**
+     * @param replace true for insert-or-replace, false to skip rows which already exist.
+     */
+    public static String sql(String table, String[] columns, boolean replace) {
+        StringBuilder sql = new StringBuilder(replace ? "INSERT OR REPLACE INTO " : "INSERT INTO ");
+        sql.append(table).append(" (");
+        for (int i = 0; i < columns.length; i++)
+            sql.append(i > 0 ? "," : "").append(columns[i]);
+        sql.append(") VALUES (");
+        for (int i = 0; i < columns.length; i++)
+            sql.append(i > 0 ? ",?" : "?");
+        return sql.append(")").toString();
+    }
+
+    /**
+     * UPDATE of every column of a row, matched on its key columns. Bound by {@link #updateOrInsert}.
+     * @param keyIndexes positions of the key columns in columns.
+     */
+    public static String updateSql(String table, String[] columns, int... keyIndexes) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+        for (int i = 0; i < columns.length; i++)
+            sql.append(i > 0 ? "," : "").append(columns[i]).append(" = ?");
+        sql.append(" WHERE ");
+        for (int i = 0; i < keyIndexes.length; i++)
+            sql.append(i > 0 ? " AND " : "").append(columns[keyIndexes[i]]).append(" = ?");
+        return sql.toString();
+    }
+
+    /**
+     * Update rows in place and insert the ones which don't exist yet. Unlike insert-or-replace
+     * an existing row is never deleted, so the rows referencing it aren't deleted by cascade.
+     * @param updateSql  see {@link #updateSql}.
+     * @param insertSql  see {@link #sql}, without replace.
+     * @param keyIndexes the key columns updateSql was built with.
+     */
+    public static void updateOrInsert(SQLiteDatabase db, String updateSql, String insertSql, List<Object[]> rows,
+                                      int... keyIndexes) {
+        if (rows.isEmpty()) return;
+
+        List<Object[]> missing = new ArrayList<>();
+        SQLiteStatement statement = db.compileStatement(updateSql);
+        try {
+            for (Object[] row : rows) {
+                statement.clearBindings();
+                for (int i = 0; i < row.length; i++)
+                    DatabaseUtils.bindObjectToProgram(statement, i + 1, row[i]);
+                for (int i = 0; i < keyIndexes.length; i++)
+                    DatabaseUtils.bindObjectToProgram(statement, row.length + i + 1, row[keyIndexes[i]]);
+                if (statement.executeUpdateDelete() == 0)
+                    missing.add(row);
+            }
+        } finally {
+            statement.close();
+        }
+        execute(db, insertSql, missing);
+    }
+
+    /**
+     * Insert rows, a row which fails is logged and skipped the same way {@link SQLiteDatabase#insert} does.
+     * @return number of rows inserted.
+     */
+    public static int execute(SQLiteDatabase db, String sql, List<Object[]> rows) {
+        if (rows.isEmpty()) return 0;
+
+        int inserted = 0;
+        SQLiteStatement statement = db.compileStatement(sql);
+        try {
+            for (Object[] row : rows) {
+                statement.clearBindings();
+                for (int i = 0; i < row.length; i++)
+                    DatabaseUtils.bindObjectToProgram(statement, i + 1, row[i]);
+                try {
+                    if (statement.executeInsert() != -1)
+                        inserted++;
+                } catch (SQLException e) {
+                    Log.d(TAG, "execute: skipped row, " + e.getMessage());
+                }
+            }
+        } finally {
+            statement.close();
+        }
+        return inserted;
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.nexmo.sdk.conversation.core.persistence;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+
+import com.nexmo.sdk.conversation.client.event.container.CacheUsage;
+import com.nexmo.sdk.conversation.config.Defaults;
+import com.nexmo.sdk.conversation.core.persistence.contract.ConversationContract.ConversationEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry;
+import com.nexmo.sdk.conversation.core.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Size budgets of the cache, enforced by the {@link CacheWriter} thread while it's idle:
+ * <ul>
+ *     <li>events above the per conversation limit are trimmed, oldest first.</li>
+ *     <li>while the database is above its budget, the events of the least recently active
+ *     conversation are evicted. The conversations themselves and their members stay cached.</li>
+ *     <li>image files above the media budget are deleted, least recently used first.</li>
+ *     <li>freed pages are released to the file system a few at a time with incremental vacuum.</li>
+ * </ul>
+ * Evicted events are fetched again when the conversation is opened. Conversation summaries are
+ * left as they are, so the conversation list still shows the last message of evicted conversations.
+ *
+ * @hide
+ */
+public class CacheBudget implements CacheWriter.IdleTask {
+    private static final String TAG = CacheBudget.class.getSimpleName();
+    // PRAGMA auto_vacuum value of INCREMENTAL.
+    private static final long AUTO_VACUUM_INCREMENTAL = 2;
+
+    private final int maxEventsPerConversation;
+    private final long maxDatabaseBytes;
+    private final long maxMediaBytes;
+
+    public CacheBudget(int maxEventsPerConversation, long maxDatabaseBytes, long maxMediaBytes) {
+        this.maxEventsPerConversation = maxEventsPerConversation;
+        this.maxDatabaseBytes = maxDatabaseBytes;
+        this.maxMediaBytes = maxMediaBytes;
+    }
+
+    @Override
+    public boolean run(SQLiteDatabase db) {
+        long startedAt = SystemClock.elapsedRealtime();
+        int trimmed = trimConversations(db);
+        int evicted = evictLeastRecentlyActive(db);
+        int mediaFiles = ImageStorage.trimTo(this.maxMediaBytes);
+        boolean compacted = compact(db);
+        Log.d(TAG, "run: trimmed " + trimmed + " events, evicted " + evicted + " conversations, deleted "
+                + mediaFiles + " image files in " + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+        return !compacted;
+    }
+
+    public CacheUsage usage(SQLiteDatabase db) {
+        long pageSize = DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+        return new CacheUsage(
+                DatabaseUtils.longForQuery(db, "PRAGMA page_count", null) * pageSize,
+                DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null) * pageSize,
+                ImageStorage.storedBytes(),
+                DatabaseUtils.queryNumEntries(db, ConversationEntry.TABLE_NAME),
+                DatabaseUtils.queryNumEntries(db, EventEntry.TABLE_NAME),
+                this.maxEventsPerConversation, this.maxDatabaseBytes, this.maxMediaBytes);
+    }
+
+    private int trimConversations(SQLiteDatabase db) {
+        List<String> cids = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT DISTINCT " + EventEntry.COLUMN_CID + " FROM " + EventEntry.TABLE_NAME, null);
+        try {
+            while (cursor.moveToNext())
+                cids.add(cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
+
+        // everything up to the newest event above the limit, receipts are deleted by cascade.
+        String whereClause = EventEntry.COLUMN_CID + " = ? AND " + EventEntry.COLUMN_EVENT_ID + " <= (SELECT "
+                + EventEntry.COLUMN_EVENT_ID + " FROM " + EventEntry.TABLE_NAME + " WHERE " + EventEntry.COLUMN_CID
+                + " = ? ORDER BY " + EventEntry.COLUMN_EVENT_ID + " DESC LIMIT 1 OFFSET " + this.maxEventsPerConversation + ")";
+        int trimmed = 0;
+        db.beginTransaction();
+        try {
+            for (String cid : cids) {
+                trimmed += db.delete(EventEntry.TABLE_NAME, whereClause, new String[]{cid, cid});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return trimmed;
+    }
+
+    private int evictLeastRecentlyActive(SQLiteDatabase db) {
+        if (usedBytes(db) <= this.maxDatabaseBytes)
+            return 0;
+
+        // activity is the newest cached event, least recently active first.
+        List<String> cids = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT " + EventEntry.COLUMN_CID + ", MAX(" + EventEntry.COLUMN_TIMESTAMP + ") AS activity"
+                + " FROM " + EventEntry.TABLE_NAME + " GROUP BY " + EventEntry.COLUMN_CID + " ORDER BY activity ASC", null);
+        try {
+            while (cursor.moveToNext())
+                cids.add(cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
+
+        // the most recently active conversation is kept whatever its size.
+        int evicted = 0;
+        for (int i = 0; i < cids.size() - 1 && usedBytes(db) > this.maxDatabaseBytes; i++) {
+            db.delete(EventEntry.TABLE_NAME, EventEntry.COLUMN_CID + " = ?", new String[]{cids.get(i)});
+            evicted++;
+        }
+        if (usedBytes(db) > this.maxDatabaseBytes)
+            Log.w(TAG, "evictLeastRecentlyActive: still above budget, " + usedBytes(db) + " bytes");
+        return evicted;
+    }
+
+    private long usedBytes(SQLiteDatabase db) {
+        long pages = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null)
+                - DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+        return pages * DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+    }
+
+    /**
+     * Release a batch of free pages.
+     *
+     * @return true once there are no free pages left.
+     */
+    private boolean compact(SQLiteDatabase db) {
+        if (DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) != AUTO_VACUUM_INCREMENTAL) {
+            // the mode of an existing database only changes with a full vacuum, done once.
+            long startedAt = SystemClock.elapsedRealtime();
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+            Log.d(TAG, "compact: switched to incremental vacuum in " + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+            return true;
+        }
+
+        if (DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null) == 0)
+            return true;
+
+        // returns no rows, but only runs while the cursor is stepped.
+        Cursor cursor = db.rawQuery("PRAGMA incremental_vacuum(" + Defaults.CACHE_VACUUM_PAGES + ")", null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+        return DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null) == 0;
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.nexmo.sdk.conversation.core.persistence;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.nexmo.sdk.conversation.client.User;
+import com.nexmo.sdk.conversation.config.Defaults;
+import com.nexmo.sdk.conversation.core.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Names and retention of the per-user cache database files.
+ *
+ * <p>Each user has a database file of their own, so switching accounts only switches the file.
+ * The partitions of the {@link Defaults#CACHE_PARTITIONS_KEPT} most recently used users are kept,
+ * older ones are deleted.</p>
+ *
+ * @hide
+ */
+public class CachePartitions {
+    private static final String TAG = CachePartitions.class.getSimpleName();
+    static final String PREFERENCE_FILE = CachePartitions.class.getSimpleName();
+    // database used while no user is known, and the single database of earlier versions.
+    public static final String DEFAULT_DATABASE_NAME = "ConversationCache.db";
+    private static final String PREFIX = "ConversationCache-";
+    private static final String[] DATABASE_FILE_SUFFIXES = { "", "-wal", "-shm", "-journal" };
+
+    public static String databaseName(final User user) {
+        if (user == null || user.getUserId() == null)
+            return DEFAULT_DATABASE_NAME;
+
+        return PREFIX + user.getUserId().replaceAll("[^A-Za-z0-9_-]", "_") + ".db";
+    }
+
+    /**
+     * The database of earlier versions belongs to the last logged in user, it becomes their partition.
+     * Has to be called before either database is opened.
+     */
+    public static void adoptDefaultDatabase(final User user, Context context) {
+        String name = databaseName(user);
+        if (context == null || DEFAULT_DATABASE_NAME.equals(name))
+            return;
+
+        File defaultDatabase = context.getDatabasePath(DEFAULT_DATABASE_NAME);
+        if (!defaultDatabase.exists() || context.getDatabasePath(name).exists()
+                || !UserPreference.isLastLoggedInUser(user, context))
+            return;
+
+        for (String suffix : DATABASE_FILE_SUFFIXES) {
+            File from = context.getDatabasePath(DEFAULT_DATABASE_NAME + suffix);
+            if (from.exists() && !from.renameTo(context.getDatabasePath(name + suffix)))
+                Log.w(TAG, "adoptDefaultDatabase: couldn't move " + from.getName());
+        }
+        Log.d(TAG, "adoptDefaultDatabase: " + name);
+    }
+
+    /**
+     * Mark a partition as just used, and delete the least recently used ones above the limit.
+     */
+    public static void touch(final String name, Context context) {
+        if (context == null || DEFAULT_DATABASE_NAME.equals(name))
+            return;
+
+        final SharedPreferences preferences = context.getApplicationContext().getSharedPreferences(PREFERENCE_FILE, 0);
+        preferences.edit().putLong(name, System.currentTimeMillis()).commit();
+
+        Map<String, ?> lastUsed = preferences.getAll();
+        if (lastUsed.size() <= Defaults.CACHE_PARTITIONS_KEPT)
+            return;
+
+        List<String> names = new ArrayList<>(lastUsed.keySet());
+        // most recently used first.
+        Collections.sort(names, new Comparator<String>() {
+            @Override
+            public int compare(String lhs, String rhs) {
+                long left = preferences.getLong(lhs, 0);
+                long right = preferences.getLong(rhs, 0);
+                return (left < right ? 1 : (left == right ? 0 : -1));
+            }
+        });
+
+        SharedPreferences.Editor editor = preferences.edit();
+        for (String evicted : names.subList(Defaults.CACHE_PARTITIONS_KEPT, names.size())) {
+            if (evicted.equals(name)) continue;
+
+            context.deleteDatabase(evicted);
+            editor.remove(evicted);
+            Log.d(TAG, "touch: evicted " + evicted);
+        }
+        editor.commit();
+    }
+}
@@ -0,0 +1,321 @@
+package com.nexmo.sdk.conversation.core.persistence;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.SystemClock;
+
+import com.nexmo.sdk.conversation.core.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single writer thread for the cache database.
+ *
+ * <p>Mutations are queued from any thread and applied in order by the writer thread. Mutations
+ * queued within the same flush window are committed together in one transaction, so a burst of
+ * events costs a single commit instead of one per row. Each mutation still applies fully or not at
+ * all: if one throws, the batch is rolled back and committed again without it.</p>
+ *
+ * <p>Readers which need to see their own writes call {@link #awaitPendingWrites()} first. If the
+ * writer thread dies, e.g. a mutation threw an {@link Error}, the waiters are released and later
+ * writes are dropped.</p>
+ *
+ * <p>Once the queue has been empty for a while after some writes, the {@link IdleTask} runs on
+ * the writer thread, outside of any transaction, e.g. to evict and compact.</p>
+ *
+ * <p>Once a batch or an idle task is committed, the {@link InvalidationListener} is told which
+ * conversations of which tables it changed, see {@link InvalidationTracker}.</p>
+ *
+ * @hide
+ */
+
+public class CacheWriter {
+    private static final String TAG = CacheWriter.class.getSimpleName();
+
+    /**
+     * A write to be applied on the writer thread. Values should be captured when the mutation
+     * is created, the objects they come from may change before it's applied.
+     */
+    public interface Mutation {
+        void apply(SQLiteDatabase db);
+    }
+
+    /**
+     * Maintenance run on the writer thread while no writes are queued.
+     */
+    public interface IdleTask {
+        /**
+         * @return true if there is work left, to be run again after the next idle period.
+         */
+        boolean run(SQLiteDatabase db);
+    }
+
+    /**
+     * Told about committed changes, on the writer thread. Keep it short, writes wait meanwhile.
+     */
+    public interface InvalidationListener {
+        /**
+         * @param cidsByTable The ids of the conversations changed, by table. Null if anything may
+         *                    have changed, e.g. the database was switched.
+         */
+        void onInvalidated(Map<String, Set<String>> cidsByTable);
+    }
+
+    // the cache database, its shared handle is opened on first use.
+    private final SQLiteOpenHelper database;
+    private final long flushWindowMillis;
+    private final int maxBatchSize;
+    private final LinkedBlockingQueue<Mutation> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    // held while a batch is committed.
+    private final Object commitLock = new Object();
+    private volatile IdleTask idleTask;
+    private volatile long idleMillis;
+    private volatile InvalidationListener invalidationListener;
+    // only touched by the writer thread, the database is checked once after it's opened.
+    private boolean idleTaskDue = true;
+
+    // guarded by this, used by awaitPendingWrites.
+    private long queued;
+    private long applied;
+    private boolean shutdown;
+
+    public CacheWriter(SQLiteOpenHelper database, long flushWindowMillis, int maxBatchSize) {
+        this.database = database;
+        this.flushWindowMillis = flushWindowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "capi-sdk-cache-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Run a task once the queue has been empty for idleMillis after some writes.
+     */
+    public void setIdleTask(IdleTask idleTask, long idleMillis) {
+        this.idleMillis = idleMillis;
+        this.idleTask = idleTask;
+    }
+
+    public void setInvalidationListener(InvalidationListener invalidationListener) {
+        this.invalidationListener = invalidationListener;
+    }
+
+    public void write(Mutation mutation) {
+        synchronized (this) {
+            if (this.shutdown) {
+                Log.d(TAG, "write: dropped, the writer has been shut down");
+                return;
+            }
+            this.queued++;
+            this.queue.offer(mutation);
+        }
+    }
+
+    /**
+     * Block until every mutation queued so far has been committed.
+     * Returns immediately when called from the writer thread itself.
+     */
+    public void awaitPendingWrites() {
+        if (Thread.currentThread() == this.writer) return;
+
+        synchronized (this) {
+            long target = this.queued;
+            while (this.applied < target) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait for pending writes, then run an action while no batch is being committed,
+     * e.g. to close the database.
+     */
+    public void runExclusive(Runnable action) {
+        awaitPendingWrites();
+        synchronized (this.commitLock) {
+            action.run();
+        }
+    }
+
+    /**
+     * Stop the writer thread once the pending writes are committed, e.g. when the database is
+     * switched to another file. Writes queued afterwards are dropped.
+     * Returns once the thread has stopped, an idle task in progress is finished first,
+     * so the database can be closed right after.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            this.shutdown = true;
+        }
+        awaitPendingWrites();
+        this.writer.interrupt();
+        if (Thread.currentThread() == this.writer) return;
+
+        try {
+            this.writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // still don't let the database be closed under a running commit or idle task.
+            synchronized (this.commitLock) {
+                Log.w(TAG, "shutdown: interrupted while waiting for the writer thread");
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            drainQueue();
+        } catch (Error e) {
+            Log.e(TAG, "Writer thread died, " + this.queue.size() + " writes dropped", e);
+            throw e;
+        } finally {
+            // whatever stopped the thread, nobody may wait for writes which will never be applied.
+            synchronized (this) {
+                this.shutdown = true;
+                this.queue.clear();
+                this.applied = this.queued;
+                notifyAll();
+            }
+        }
+    }
+
+    private void drainQueue() {
+        List<Mutation> batch = new ArrayList<>();
+        while (true) {
+            try {
+                Mutation first = (this.idleTask != null && this.idleTaskDue
+                        ? this.queue.poll(this.idleMillis, TimeUnit.MILLISECONDS) : this.queue.take());
+                if (first == null) {
+                    synchronized (this.commitLock) {
+                        runIdleTask();
+                    }
+                    continue;
+                }
+                batch.add(first);
+
+                // group commit: collect whatever else arrives within the flush window.
+                long deadline = SystemClock.elapsedRealtime() + this.flushWindowMillis;
+                while (batch.size() < this.maxBatchSize) {
+                    long remaining = deadline - SystemClock.elapsedRealtime();
+                    Mutation next = (remaining > 0 ? this.queue.poll(remaining, TimeUnit.MILLISECONDS) : this.queue.poll());
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Writer thread interrupted, " + this.queue.size() + " writes dropped");
+                return;
+            }
+
+            synchronized (this.commitLock) {
+                commit(batch);
+            }
+
+            this.idleTaskDue = true;
+            synchronized (this) {
+                this.applied += batch.size();
+                notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    private void runIdleTask() {
+        long startedAt = SystemClock.elapsedRealtime();
+        try {
+            this.idleTaskDue = this.idleTask.run(this.database.getWritableDatabase());
+        } catch (RuntimeException e) {
+            Log.e(TAG, "runIdleTask: failed", e);
+            this.idleTaskDue = false;
+        }
+        // the task ran outside of a transaction, its changes are collected on their own.
+        try {
+            SQLiteDatabase db = this.database.getWritableDatabase();
+            Map<String, Set<String>> invalidated;
+            db.beginTransaction();
+            try {
+                invalidated = InvalidationTracker.collect(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            notifyInvalidated(invalidated);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "runIdleTask: couldn't collect changes", e);
+        }
+        Log.d(TAG, "runIdleTask: " + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+    }
+
+    private void commit(List<Mutation> batch) {
+        long startedAt = SystemClock.elapsedRealtime();
+        List<Mutation> pending = new ArrayList<>(batch);
+        try {
+            while (!pending.isEmpty()) {
+                int failed = tryCommit(pending);
+                if (failed < 0) break;
+                // one bad mutation shouldn't cost the rest of the batch, nor leave half of its own writes.
+                pending.remove(failed);
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "commit: couldn't commit " + pending.size() + " writes", e);
+        }
+        Log.d(TAG, "commit: " + pending.size() + " of " + batch.size() + " writes in "
+                + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+    }
+
+    /**
+     * Apply the mutations in a single transaction. If one of them throws, the whole transaction
+     * is rolled back: Android ends its transaction on any ROLLBACK statement, so a savepoint
+     * can't be rolled back on its own.
+     *
+     * @return The index of the mutation which failed, or -1 once committed.
+     */
+    private int tryCommit(List<Mutation> batch) {
+        SQLiteDatabase db = this.database.getWritableDatabase();
+        Map<String, Set<String>> invalidated;
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    batch.get(i).apply(db);
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "commit: mutation failed, the batch is applied again without it", e);
+                    return i;
+                }
+            }
+            invalidated = InvalidationTracker.collect(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        notifyInvalidated(invalidated);
+        return -1;
+    }
+
+    private void notifyInvalidated(Map<String, Set<String>> cidsByTable) {
+        InvalidationListener listener = this.invalidationListener;
+        if (listener == null || cidsByTable.isEmpty()) return;
+
+        try {
+            listener.onInvalidated(cidsByTable);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "notifyInvalidated: listener failed", e);
+        }
+    }
+
+}
@@ -15,6 +15,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
 
 /**
@@ -34,15 +36,17 @@ public class ImageStorage {
     /***   Save all 3 image representations, one by one   ***/
     public static String saveFileToDisk(Context context, Image image, ImageRepresentation.TYPE type) {
         Log.d(TAG, "saveFilesToDisk " + image.toString());
-        String root = Environment.getExternalStorageDirectory() + "/" + "nexmo_audio" + "/Media/Images/";
-
-        File rootFile = new File(root);
+        File rootFile = rootDirectory();
         if (!rootFile.exists())
             if (!rootFile.mkdirs()) return null;
 
         return fileGenerator(rootFile, image.getTimestamp(), image.getImageRepresentationByType(type));
     }
 
+    private static File rootDirectory() {
+        return new File(Environment.getExternalStorageDirectory() + "/" + "nexmo_audio" + "/Media/Images/");
+    }
+
     private static String fileNameGenerator(final Date timestamp, final String id, final String type) {
         return "IMG-" + DateUtil.formatImageNamingDateString(timestamp) + "-" + id + "-" + type + ".jpg";
     }
@@ -67,8 +71,7 @@ public class ImageStorage {
 
     /***  Remove all 3 image representation files  ***/
     public static void deleteFilesFromDisk(Context context, Image image) {
-        String root = Environment.getExternalStorageDirectory() + "/" + "nexmo_audio" + "/Media/Images/";
-        File rootFile = new File(root);
+        File rootFile = rootDirectory();
         if (!rootFile.exists()) return;
 
         deleteFile(image.getOriginal());
@@ -82,4 +85,57 @@ public class ImageStorage {
         if (fileToDelete.exists())
             fileToDelete.delete();
     }
+
+    /** Mark an image file as just used, so it's evicted last. **/
+    public static void touch(String localFilePath) {
+        File file = new File(localFilePath);
+        if (file.exists() && !file.setLastModified(System.currentTimeMillis()))
+            Log.d(TAG, "touch: couldn't update " + file.getName());
+    }
+
+    /** Total size of the stored image files. **/
+    public static long storedBytes() {
+        long total = 0;
+        File[] files = rootDirectory().listFiles();
+        if (files != null)
+            for (File file : files)
+                total += file.length();
+        return total;
+    }
+
+    /**
+     * Delete the least recently used image files until the rest fit in maxBytes.
+     * Deleted images are downloaded again when needed, see {@link Image#download}.
+     *
+     * @return The number of deleted files.
+     */
+    public static int trimTo(long maxBytes) {
+        File[] files = rootDirectory().listFiles();
+        if (files == null) return 0;
+
+        long total = 0;
+        for (File file : files)
+            total += file.length();
+        if (total <= maxBytes) return 0;
+
+        // least recently used first.
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long left = lhs.lastModified();
+                long right = rhs.lastModified();
+                return (left < right ? -1 : (left == right ? 0 : 1));
+            }
+        });
+
+        int deleted = 0;
+        for (int i = 0; i < files.length && total > maxBytes; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                total -= length;
+                deleted++;
+            }
+        }
+        return deleted;
+    }
 }
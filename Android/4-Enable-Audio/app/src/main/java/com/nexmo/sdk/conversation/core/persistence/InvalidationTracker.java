@@ -0,0 +1,91 @@
+package com.nexmo.sdk.conversation.core.persistence;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.nexmo.sdk.conversation.core.persistence.contract.ConversationContract.ConversationEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.ConversationSummaryContract.ConversationSummaryEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.MemberContract.MemberEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.ReceiptContract.ReceiptEntry;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records which conversations of which tables a write transaction touched, so cached queries
+ * only re-run when their own data changed.
+ *
+ * <p>Temporary triggers on the primary connection, the one every write goes through, log the
+ * conversation id of each changed row, including rows deleted by cascade. The log is read and
+ * cleared by the writer before the transaction commits.</p>
+ *
+ * @hide
+ */
+public final class InvalidationTracker {
+    private static final String LOG_TABLE = "cache_invalidation";
+
+    // table, and its conversation id column.
+    private static final String[][] TRACKED_TABLES = {
+            { ConversationEntry.TABLE_NAME, ConversationEntry.COLUMN_CID },
+            { MemberEntry.TABLE_NAME, ConversationEntry.COLUMN_CID },
+            { EventEntry.TABLE_NAME, EventEntry.COLUMN_CID },
+            { ReceiptEntry.TABLE_NAME, ReceiptEntry.COLUMN_CID },
+            { ConversationSummaryEntry.TABLE_NAME, ConversationSummaryEntry.COLUMN_CID }
+    };
+
+    private InvalidationTracker() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Create the log and its triggers, they only live as long as the connection.
+     * Call on every open of a writable database.
+     */
+    public static void install(SQLiteDatabase db) {
+        db.execSQL("CREATE TEMP TABLE IF NOT EXISTS " + LOG_TABLE + " (table_name TEXT NOT NULL, cid TEXT, UNIQUE (table_name, cid))");
+        for (String[] table : TRACKED_TABLES) {
+            createTrigger(db, table[0], table[1], "INSERT", "NEW");
+            createTrigger(db, table[0], table[1], "UPDATE", "NEW");
+            createTrigger(db, table[0], table[1], "DELETE", "OLD");
+        }
+    }
+
+    private static void createTrigger(SQLiteDatabase db, String table, String cidColumn, String operation, String row) {
+        db.execSQL("CREATE TEMP TRIGGER IF NOT EXISTS " + LOG_TABLE + "_" + table + "_" + operation.toLowerCase()
+                + " AFTER " + operation + " ON main." + table
+                + " BEGIN INSERT OR IGNORE INTO " + LOG_TABLE + " (table_name, cid) VALUES ('" + table + "', " + row + "." + cidColumn + "); END");
+    }
+
+    /**
+     * Read and clear the log. Has to run within a transaction, so it's on the primary connection
+     * the triggers live on.
+     *
+     * @return The ids of the conversations changed, by table.
+     */
+    public static Map<String, Set<String>> collect(SQLiteDatabase db) {
+        Map<String, Set<String>> cidsByTable = new HashMap<>();
+        Cursor cursor = db.rawQuery("SELECT table_name, cid FROM " + LOG_TABLE, null);
+        try {
+            while (cursor.moveToNext()) {
+                Set<String> cids = cidsByTable.get(cursor.getString(0));
+                if (cids == null) {
+                    cids = new HashSet<>();
+                    cidsByTable.put(cursor.getString(0), cids);
+                }
+                cids.add(cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        if (cidsByTable.isEmpty())
+            return Collections.emptyMap();
+
+        db.execSQL("DELETE FROM " + LOG_TABLE);
+        return cidsByTable;
+    }
+
+}
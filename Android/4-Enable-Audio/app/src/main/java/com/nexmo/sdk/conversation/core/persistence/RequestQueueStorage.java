@@ -1,11 +1,12 @@
 package com.nexmo.sdk.conversation.core.persistence;
 
 import android.content.Context;
+import android.os.SystemClock;
 
-import com.nexmo.sdk.conversation.client.event.network.CAPIInternalRequest;
 import com.nexmo.sdk.conversation.core.util.Log;
 
 import com.nexmo.sdk.conversation.client.event.network.CAPIAwareListener;
+import com.nexmo.sdk.conversation.config.Defaults;
 import com.nexmo.sdk.conversation.core.client.Router;
 import com.nexmo.sdk.conversation.core.client.request.Request;
 import com.nexmo.sdk.conversation.core.util.StreamUtils;
@@ -14,55 +15,244 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * Persisted queue of requests to be retried after the next login.
+ *
+ * <p>Requests are kept in an append-only journal: one enqueue record per persistable request
+ * and one ack record once its response arrives, so every operation costs a single small append
+ * instead of rewriting the whole queue. Records are written on a dedicated thread, never on the
+ * caller's. Once acknowledged records outnumber pending ones by {@link #COMPACTION_THRESHOLD},
+ * the journal is compacted in the background by writing the pending requests to a temporary file
+ * and renaming it over the journal.</p>
+ *
+ * <p>Each record is a single JSON line. A partially written last line, e.g. after the process was
+ * killed mid-append, is ignored on recovery.</p>
+ *
+ * <p>Records are synced to the disk in groups: the writer syncs the journal once it has no more
+ * records queued, so a burst of sends costs a single sync. A crash of the process loses nothing,
+ * a power loss may lose the last burst which wasn't synced yet but never the records before it.
+ * {@link #shutdown()} syncs and closes the journal.</p>
+ *
  * @hide
  */
 
 public class RequestQueueStorage {
     private static final String TAG = RequestQueueStorage.class.getSimpleName();
-    private final ArrayList<Request> requests;
-
-    private Context context;
 
+    // full snapshot written by previous SDK versions, migrated into the journal on startup.
     private static final String FILENAME = "capi-sdk-pending.json";
+    private static final String JOURNAL_FILENAME = "capi-sdk-pending.journal";
+    private static final String JOURNAL_COMPACTION_FILENAME = JOURNAL_FILENAME + ".tmp";
+
+    static final int COMPACTION_THRESHOLD = 64;
+
+    private static final String RECORD_OPERATION = "op";
+    private static final String RECORD_TID = "t";
+    private static final String OPERATION_ENQUEUE = "e";
+    private static final String OPERATION_ACK = "a";
+
+    private final Context context;
+    // started on demand, stopped by shutdown. Guarded by this.
+    private ThreadPoolExecutor writer;
 
-    public RequestQueueStorage(Context application, final Collection<CAPIInternalRequest> requests) {
+    // tids with an enqueue record in the journal and no ack yet. Checked on the caller thread
+    // so responses to non persisted requests don't reach the writer.
+    private final Set<String> journaledTids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    // the rest is only accessed from the writer thread.
+    private final Map<String, RequestHolder> pending = new LinkedHashMap<>();
+    private Deque<RequestHolder> recovered = new LinkedList<>();
+    private FileOutputStream journal;
+    private int journalRecords;
+    private boolean unsynced;
+
+    public RequestQueueStorage(Context application) {
         this.context = application.getApplicationContext();
-        this.requests = new ArrayList<Request>(requests.size()) {{
-            for (CAPIInternalRequest request : requests) add(request.getRequest());
-        }};
+        write(new Runnable() {
+            @Override
+            public void run() {
+                recover();
+            }
+        });
     }
 
+    /**
+     * Write the queued records, sync and close the journal, then stop the writer thread.
+     * The next operation starts it again.
+     */
+    public synchronized void shutdown() {
+        if (this.writer == null) return;
 
-    public void save() {
-        Log.d(TAG, "save called with request size = " + requests.size());
+        this.writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeJournal();
+            }
+        });
+        this.writer.shutdown();
         try {
-            FileOutputStream outputStream = this.context.openFileOutput(FILENAME, 0);
-            serialize(requests, outputStream);
-            outputStream.close();
-        } catch (Exception e) {
-            Log.w(TAG, "save: couldn't save items", e);
-            e.printStackTrace();
+            // wait while holding the lock, so a new writer can't start before this one is done.
+            if (!this.writer.awaitTermination(Defaults.THREAD_SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS))
+                Log.w(TAG, "shutdown: journal writer still busy");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        this.writer = null;
+    }
+
+    /**
+     * Append an enqueue record for a persistable request.
+     */
+    public void enqueue(final Request request) {
+        if (!request.isPersistable()) return;
+
+        this.journaledTids.add(request.getTid());
+        write(new Runnable() {
+            @Override
+            public void run() {
+                RequestHolder holder = new RequestHolder(request);
+                pending.put(request.getTid(), holder);
+                append(holder.toJournalRecord());
+            }
+        });
     }
 
     /**
-     * Method reads persisted queue with commands and removes file.
-     * Hence, this method will success only <b>once</b> per session
+     * Append an ack record once a response arrived for a journaled request.
+     * Responses to requests which were never journaled are ignored.
+     */
+    public void ack(final String tid) {
+        if (tid == null || !this.journaledTids.remove(tid)) return;
+
+        write(new Runnable() {
+            @Override
+            public void run() {
+                if (pending.remove(tid) == null) return;
+                append(ackRecord(tid));
+                if (journalRecords - pending.size() > COMPACTION_THRESHOLD)
+                    compact();
+            }
+        });
+    }
+
+    /**
+     * Method returns the requests recovered from the journal on startup.
+     * Recovered requests stay in the journal until they are acknowledged, but this method
+     * will return them only <b>once</b> per session.
      * @return queue or empty queue
      */
     public Deque<RequestHolder> loadAndRemove() {
+        try {
+            return writer().submit(new Callable<Deque<RequestHolder>>() {
+                @Override
+                public Deque<RequestHolder> call() {
+                    Deque<RequestHolder> requestHolders = recovered;
+                    recovered = new LinkedList<>();
+                    return requestHolders;
+                }
+            }).get();
+        } catch (Exception e) {
+            Log.w(TAG, "loadAndRemove: can't load anything from persistent storage", e);
+            return new LinkedList<>();
+        }
+    }
+
+    public void loadAndRemoveAndFlush(Router router, int window, Router.FlushListener flushListener) {
+        flush(loadAndRemove(), router, window, flushListener);
+    }
+
+    private synchronized void write(Runnable task) {
+        writer().execute(task);
+    }
+
+    private synchronized ThreadPoolExecutor writer() {
+        if (this.writer == null)
+            this.writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "capi-sdk-journal");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    }) {
+                @Override
+                protected void afterExecute(Runnable task, Throwable throwable) {
+                    if (getQueue().isEmpty())
+                        syncJournal();
+                }
+            };
+        return this.writer;
+    }
+
+    // Replay the journal: enqueue records add a request, ack records remove it.
+    private void recover() {
+        for (RequestHolder holder : loadLegacySnapshot())
+            this.pending.put(holder.getTid(), holder);
+
+        File journalFile = this.context.getFileStreamPath(JOURNAL_FILENAME);
+        if (journalFile.exists()) {
+            BufferedReader reader = null;
+            try {
+                reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), "UTF-8"));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        replay(new JSONObject(line));
+                    } catch (JSONException e) {
+                        Log.w(TAG, "recover: skipping incomplete journal record");
+                    }
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "recover: can't read journal", e);
+            } finally {
+                closeQuietly(reader);
+            }
+        }
+
+        this.recovered = new LinkedList<>(this.pending.values());
+        this.journaledTids.addAll(this.pending.keySet());
+        Log.d(TAG, "recover: " + this.recovered.size() + " pending requests");
+
+        // the legacy snapshot goes only once its requests are in the journal.
+        if (compact())
+            removeFile();
+    }
+
+    private void replay(JSONObject record) throws JSONException {
+        String tid = record.getString(RECORD_TID);
+        if (OPERATION_ACK.equals(record.getString(RECORD_OPERATION)))
+            this.pending.remove(tid);
+        else
+            this.pending.put(tid, RequestHolder.fromJson(record));
+    }
+
+    private Deque<RequestHolder> loadLegacySnapshot() {
         Deque<RequestHolder> requestHolders = new LinkedList<>();
         try {
             FileInputStream inputStream = this.context.openFileInput(FILENAME);
@@ -70,15 +260,72 @@ public class RequestQueueStorage {
             inputStream.close();
         } catch (FileNotFoundException ignoreAsItIsNormalToNotToHavePersistedQueue) {
         } catch (Exception e) {
-            Log.w(TAG, "loadAndRemove: can't load anything from persistent storage", e);
-        } finally {
-            removeFile();
+            Log.w(TAG, "loadLegacySnapshot: can't load anything from persistent storage", e);
         }
         return requestHolders;
     }
 
-    public void loadAndRemoveAndFlush(Router router, Router.FlushFinishedListener finishedListener) {
-        flush(loadAndRemove(), router, finishedListener);
+    private void append(JSONObject record) {
+        try {
+            if (this.journal == null)
+                this.journal = new FileOutputStream(this.context.getFileStreamPath(JOURNAL_FILENAME), true);
+            this.journal.write((record.toString() + "\n").getBytes("UTF-8"));
+            this.journalRecords++;
+            this.unsynced = true;
+        } catch (IOException e) {
+            Log.w(TAG, "append: couldn't write journal record", e);
+            closeQuietly(this.journal);
+            this.journal = null;
+        }
+    }
+
+    private void syncJournal() {
+        if (this.journal == null || !this.unsynced) return;
+        try {
+            this.journal.getFD().sync();
+            this.unsynced = false;
+        } catch (IOException e) {
+            Log.w(TAG, "syncJournal: couldn't sync journal", e);
+        }
+    }
+
+    private void closeJournal() {
+        syncJournal();
+        closeQuietly(this.journal);
+        this.journal = null;
+    }
+
+    // Rewrite the journal with pending requests only. The new journal is synced before it
+    // replaces the old one, so a crash at any point leaves one complete journal behind.
+    // Returns true once the new journal is in place.
+    private boolean compact() {
+        closeJournal();
+
+        File compacted = this.context.getFileStreamPath(JOURNAL_COMPACTION_FILENAME);
+        FileOutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(compacted, false);
+            StringBuilder records = new StringBuilder();
+            for (RequestHolder holder : this.pending.values())
+                records.append(holder.toJournalRecord().toString()).append('\n');
+            outputStream.write(records.toString().getBytes("UTF-8"));
+            outputStream.flush();
+            outputStream.getFD().sync();
+            outputStream.close();
+            outputStream = null;
+
+            if (!compacted.renameTo(this.context.getFileStreamPath(JOURNAL_FILENAME))) {
+                Log.w(TAG, "compact: couldn't replace journal");
+                return false;
+            }
+            this.journalRecords = this.pending.size();
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "compact: couldn't compact journal", e);
+            return false;
+        } finally {
+            closeQuietly(outputStream);
+        }
     }
 
     private void removeFile() {
@@ -87,15 +334,21 @@ public class RequestQueueStorage {
         } catch (Exception ignore) {}
     }
 
-    static String serialize(Collection<Request> opsRequests) {
-        JSONArray root = new JSONArray();
-        ArrayList<Request> requests = new ArrayList<>(opsRequests);
-        for (Request request : requests) {
-            if (!request.isPersistable()) continue;
-            root.put(new RequestHolder(request).toJson());
+    private static JSONObject ackRecord(String tid) {
+        try {
+            return new JSONObject()
+                    .put(RECORD_OPERATION, OPERATION_ACK)
+                    .put(RECORD_TID, tid);
+        } catch (JSONException canNeverHappensKeyNamesAreNotNull) {
+            return null;
         }
+    }
 
-        return root.toString();
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignore) {}
     }
 
     static Deque<RequestHolder> deserialize(String input) throws JSONException {
@@ -112,26 +365,98 @@ public class RequestQueueStorage {
         return deserialize(StreamUtils.streamToString(input));
     }
 
-
-    static void serialize(Collection<Request> requests, OutputStream outputStream) throws IOException {
-        outputStream.write(serialize(requests).getBytes());
+    /**
+     * Replay requests keeping up to {@code window} of them in flight.
+     *
+     * <p>Requests are split in lanes by conversation id, requests without one share a single lane.
+     * A lane never has more than one request in flight, so requests of the same conversation
+     * are still sent in their original order, i.e. join is answered before the following sends.
+     * Window of 1 flushes the queue strictly one request at a time.</p>
+     */
+    static void flush(Deque<RequestHolder> requests, Router router, int window, Router.FlushListener flushListener) {
+        new WindowedFlush(requests, router, window, flushListener).start();
     }
 
-    static void flush(final Deque<RequestHolder> requests, final Router router, final Router.FlushFinishedListener finishedListener) {
-        if (requests.isEmpty()) {
-            finishedListener.onFlushFinished();
-            return;
+    private static class WindowedFlush {
+        private final Router router;
+        private final int window;
+        private final Router.FlushListener flushListener;
+        private final Map<String, Deque<RequestHolder>> lanes = new LinkedHashMap<>();
+        private final Set<String> busyLanes = new HashSet<>();
+        private final int total;
+        private int inFlight;
+        private int flushed;
+        private long startedAt;
+
+        WindowedFlush(Deque<RequestHolder> requests, Router router, int window, Router.FlushListener flushListener) {
+            this.router = router;
+            this.window = Math.max(1, window);
+            this.flushListener = flushListener;
+            this.total = requests.size();
+
+            for (RequestHolder holder : requests) {
+                String lane = holder.getConversationId();
+                Deque<RequestHolder> queue = this.lanes.get(lane);
+                if (queue == null) {
+                    queue = new LinkedList<>();
+                    this.lanes.put(lane, queue);
+                }
+                queue.add(holder);
+            }
         }
 
-        final RequestHolder pop = requests.pop();
+        void start() {
+            this.startedAt = SystemClock.elapsedRealtime();
+            if (this.total == 0) {
+                this.flushListener.onFlushFinished(0, 0);
+                return;
+            }
+            Log.d(TAG, "flush: " + this.total + " requests in " + this.lanes.size() + " lanes, window " + this.window);
+            sendNext();
+        }
 
-        router.sendRequest(pop.syntheticRequest(), new RequestDoneListener() {
-            @Override
-            public void onDone() {
-                Log.d(TAG, "flush for request " + pop.requestName + " done, " + requests.size() + " remain in queue");
-                flush(requests, router, finishedListener);
+        private void sendNext() {
+            List<RequestHolder> toSend = new ArrayList<>();
+            synchronized (this) {
+                for (Map.Entry<String, Deque<RequestHolder>> lane : this.lanes.entrySet()) {
+                    if (this.inFlight == this.window) break;
+                    if (this.busyLanes.contains(lane.getKey()) || lane.getValue().isEmpty()) continue;
+
+                    this.busyLanes.add(lane.getKey());
+                    this.inFlight++;
+                    toSend.add(lane.getValue().pop());
+                }
             }
-        });
+
+            for (final RequestHolder holder : toSend) {
+                this.router.sendRequest(holder.syntheticRequest(), new RequestDoneListener() {
+                    @Override
+                    public void onDone() {
+                        onRequestDone(holder);
+                    }
+                });
+            }
+        }
+
+        private void onRequestDone(RequestHolder holder) {
+            int flushed;
+            synchronized (this) {
+                String lane = holder.getConversationId();
+                this.busyLanes.remove(lane);
+                if (this.lanes.get(lane).isEmpty())
+                    this.lanes.remove(lane);
+                this.inFlight--;
+                flushed = ++this.flushed;
+            }
+
+            Log.d(TAG, "flush for request " + holder.requestName + " done, " + (this.total - flushed) + " remain in queue");
+            this.flushListener.onFlushProgress(flushed, this.total);
+
+            if (flushed == this.total)
+                this.flushListener.onFlushFinished(this.total, SystemClock.elapsedRealtime() - this.startedAt);
+            else
+                sendNext();
+        }
     }
 
     static class RequestHolder {
@@ -157,12 +482,30 @@ public class RequestQueueStorage {
             }
         }
 
+        JSONObject toJournalRecord() {
+            try {
+                return toJson()
+                        .put(RECORD_OPERATION, OPERATION_ENQUEUE)
+                        .put(RECORD_TID, getTid());
+            } catch (JSONException canNeverHappensKeyNamesAreNotNull) {
+                return null;
+            }
+        }
+
         JSONObject getNetworkData() {
             return networkData;
         }
 
+        String getTid() {
+            return networkData.optString("tid");
+        }
+
+        String getConversationId() {
+            return networkData.optString("cid");
+        }
+
         Request syntheticRequest() {
-            return new Request(Request.TYPE.OTHER, networkData.optString("tid")) {
+            return new Request(Request.TYPE.OTHER, getTid()) {
                 @Override
                 public Object parse(JSONObject jsonObject, JSONObject body) throws JSONException {
                     return new Object();
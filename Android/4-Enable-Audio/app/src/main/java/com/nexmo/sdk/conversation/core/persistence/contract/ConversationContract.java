@@ -9,6 +9,7 @@ import android.content.ContentValues;
 import android.provider.BaseColumns;
 
 import com.nexmo.sdk.conversation.client.Conversation;
+import com.nexmo.sdk.conversation.core.persistence.BulkInsert;
 import com.nexmo.sdk.conversation.core.util.DateUtil;
 
 /**
@@ -33,12 +34,36 @@ public final class ConversationContract {
         public static final String COLUMN_MEMBER_ID = "selfMemberId";
     }
 
+    // column order of row(), used by the bulk statements.
+    public static final String[] COLUMNS = {
+            ConversationEntry.COLUMN_CID,
+            ConversationEntry.COLUMN_NAME,
+            ConversationEntry.COLUMN_CREATED,
+            ConversationEntry.COLUMN_LAST_EVENT_ID,
+            ConversationEntry.COLUMN_MEMBER_ID
+    };
+    public static final String SQL_INSERT = BulkInsert.sql(ConversationEntry.TABLE_NAME, COLUMNS, false);
+    public static final String SQL_UPSERT = BulkInsert.sql(ConversationEntry.TABLE_NAME, COLUMNS, true);
+
+    /**
+     * Column values of a conversation in {@link #COLUMNS} order, for {@link BulkInsert}.
+     */
+    public static Object[] row(final Conversation conversation) {
+        return new Object[] {
+                conversation.getConversationId(),
+                conversation.getDisplayName(),
+                DateUtil.toEpochMillis(conversation.getCreationDate()),
+                EventContract.eventId(conversation.getLastEventId()),
+                conversation.getSelf().getMemberId()
+        };
+    }
+
     public static ContentValues contentValues(final Conversation conversation) {
         ContentValues values = new ContentValues();
         values.put(ConversationEntry.COLUMN_CID, conversation.getConversationId());
         values.put(ConversationEntry.COLUMN_NAME, conversation.getDisplayName());
-        values.put(ConversationEntry.COLUMN_CREATED, DateUtil.formatIso8601DateString(conversation.getCreationDate()));
-        values.put(ConversationEntry.COLUMN_LAST_EVENT_ID, conversation.getLastEventId());
+        values.put(ConversationEntry.COLUMN_CREATED, DateUtil.toEpochMillis(conversation.getCreationDate()));
+        EventContract.putEventId(values, ConversationEntry.COLUMN_LAST_EVENT_ID, conversation.getLastEventId());
         values.put(ConversationEntry.COLUMN_MEMBER_ID, conversation.getSelf().getMemberId());
 
         return values;
@@ -0,0 +1,93 @@
+package com.nexmo.sdk.conversation.core.persistence.contract;
+
+import android.provider.BaseColumns;
+
+import com.nexmo.sdk.conversation.client.event.EventType;
+import com.nexmo.sdk.conversation.core.persistence.contract.ConversationContract.ConversationEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.ReceiptContract.ReceiptEntry;
+
+/**
+ * Contract for {@link com.nexmo.sdk.conversation.client.ConversationSummary} objects, one row per
+ * conversation, kept up to date with each event write.
+ *
+ * <p>Only messages, i.e. text and image events, are summarised. A message is unread if it was sent
+ * by another member, isn't deleted, and has no seen receipt from the self member.</p>
+ *
+ * @hide
+ */
+
+// This class will never be extended, so it is marked as final.
+public final class ConversationSummaryContract {
+
+    // Suppress default constructor for non-instantiability
+    private ConversationSummaryContract() {
+        throw new AssertionError();
+    }
+
+    /* Inner class that defines the table contents */
+    public static abstract class ConversationSummaryEntry implements BaseColumns {
+        public static final String TABLE_NAME                 = "conversation_summary";
+        public static final String COLUMN_CID                 = "conversation_id";
+        public static final String COLUMN_LAST_EVENT_ID       = "last_event_id";
+        public static final String COLUMN_LAST_EVENT_TYPE     = "last_event_type";
+        public static final String COLUMN_LAST_EVENT_TEXT     = "last_event_text";
+        public static final String COLUMN_LAST_EVENT_MEMBER_ID = "last_event_member_id";
+        public static final String COLUMN_LAST_EVENT_DELETED  = "last_event_deleted";
+        public static final String COLUMN_LAST_ACTIVITY       = "last_activity";
+        public static final String COLUMN_UNREAD_COUNT        = "unread_count";
+    }
+
+    // message_type values which are summarised.
+    public static final String MESSAGE_TYPES = "('" + EventType.TEXT + "','" + EventType.IMAGE + "')";
+
+    /**
+     * 1 if the message ?2 of conversation ?1 is unread, 0 otherwise.
+     */
+    public static final String SQL_IS_UNREAD =
+            "SELECT COUNT(*) FROM " + EventEntry.TABLE_NAME + " m, " + ConversationEntry.TABLE_NAME + " c" +
+                    " WHERE m." + EventEntry.COLUMN_CID + " = ?1 AND m." + EventEntry.COLUMN_EVENT_ID + " = ?2" +
+                    " AND c." + ConversationEntry.COLUMN_CID + " = ?1" +
+                    " AND m." + EventEntry.COLUMN_MESSAGE_TYPE + " IN " + MESSAGE_TYPES +
+                    " AND m." + EventEntry.COLUMN_DELETED_TIMESTAMP + " IS NULL" +
+                    " AND m." + EventEntry.COLUMN_MEMBER_ID + " IS NOT c." + ConversationEntry.COLUMN_MEMBER_ID +
+                    " AND NOT EXISTS (SELECT 1 FROM " + ReceiptEntry.TABLE_NAME + " r" +
+                    " WHERE r." + ReceiptEntry.COLUMN_CID + " = ?1 AND r." + ReceiptEntry.COLUMN_EVENT_ID + " = ?2" +
+                    " AND r." + ReceiptEntry.COLUMN_MEMBER_ID + " = c." + ConversationEntry.COLUMN_MEMBER_ID +
+                    " AND r." + ReceiptEntry.COLUMN_KIND + " = '" + ReceiptContract.KIND_SEEN + "')";
+
+    /**
+     * Summary of every conversation, computed from the cached events. Used when events are written
+     * in bulk, append a condition on c.cid to compute a single conversation.
+     */
+    public static final String SQL_REBUILD =
+            "INSERT OR REPLACE INTO " + ConversationSummaryEntry.TABLE_NAME + " (" +
+                    ConversationSummaryEntry.COLUMN_CID + "," +
+                    ConversationSummaryEntry.COLUMN_LAST_EVENT_ID + "," +
+                    ConversationSummaryEntry.COLUMN_LAST_EVENT_TYPE + "," +
+                    ConversationSummaryEntry.COLUMN_LAST_EVENT_TEXT + "," +
+                    ConversationSummaryEntry.COLUMN_LAST_EVENT_MEMBER_ID + "," +
+                    ConversationSummaryEntry.COLUMN_LAST_EVENT_DELETED + "," +
+                    ConversationSummaryEntry.COLUMN_LAST_ACTIVITY + "," +
+                    ConversationSummaryEntry.COLUMN_UNREAD_COUNT + ")" +
+            " SELECT c." + ConversationEntry.COLUMN_CID + ", m." + EventEntry.COLUMN_EVENT_ID +
+                    ", m." + EventEntry.COLUMN_MESSAGE_TYPE + ", m." + EventEntry.COLUMN_TEXT +
+                    ", m." + EventEntry.COLUMN_MEMBER_ID + ", m." + EventEntry.COLUMN_DELETED_TIMESTAMP + " IS NOT NULL" +
+                    ", m." + EventEntry.COLUMN_TIMESTAMP + "," +
+                    " (SELECT COUNT(*) FROM " + EventEntry.TABLE_NAME + " u" +
+                    " WHERE u." + EventEntry.COLUMN_CID + " = c." + ConversationEntry.COLUMN_CID +
+                    " AND u." + EventEntry.COLUMN_MESSAGE_TYPE + " IN " + MESSAGE_TYPES +
+                    " AND u." + EventEntry.COLUMN_DELETED_TIMESTAMP + " IS NULL" +
+                    " AND u." + EventEntry.COLUMN_MEMBER_ID + " IS NOT c." + ConversationEntry.COLUMN_MEMBER_ID +
+                    " AND NOT EXISTS (SELECT 1 FROM " + ReceiptEntry.TABLE_NAME + " r" +
+                    " WHERE r." + ReceiptEntry.COLUMN_CID + " = u." + EventEntry.COLUMN_CID +
+                    " AND r." + ReceiptEntry.COLUMN_EVENT_ID + " = u." + EventEntry.COLUMN_EVENT_ID +
+                    " AND r." + ReceiptEntry.COLUMN_MEMBER_ID + " = c." + ConversationEntry.COLUMN_MEMBER_ID +
+                    " AND r." + ReceiptEntry.COLUMN_KIND + " = '" + ReceiptContract.KIND_SEEN + "'))" +
+            " FROM " + ConversationEntry.TABLE_NAME + " c LEFT JOIN " + EventEntry.TABLE_NAME + " m" +
+                    " ON m." + EventEntry.COLUMN_CID + " = c." + ConversationEntry.COLUMN_CID +
+                    " AND m." + EventEntry.COLUMN_EVENT_ID + " = (SELECT MAX(" + EventEntry.COLUMN_EVENT_ID + ") FROM " + EventEntry.TABLE_NAME +
+                    " WHERE " + EventEntry.COLUMN_CID + " = c." + ConversationEntry.COLUMN_CID +
+                    " AND " + EventEntry.COLUMN_MESSAGE_TYPE + " IN " + MESSAGE_TYPES + ")";
+
+}
@@ -1,13 +1,14 @@
 package com.nexmo.sdk.conversation.core.persistence.contract;
 
 import android.content.ContentValues;
+import android.database.Cursor;
 import android.provider.BaseColumns;
 
 import com.nexmo.sdk.conversation.client.Event;
 import com.nexmo.sdk.conversation.client.Image;
 import com.nexmo.sdk.conversation.client.MemberMedia;
-import com.nexmo.sdk.conversation.client.ReceiptRecordUtil;
 import com.nexmo.sdk.conversation.client.Text;
+import com.nexmo.sdk.conversation.core.persistence.BulkInsert;
 import com.nexmo.sdk.conversation.core.util.DateUtil;
 
 import org.json.JSONException;
@@ -15,12 +16,10 @@ import org.json.JSONObject;
 
 import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_CID;
 import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_DELETED_TIMESTAMP;
-import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_DELIVERED_RECEIPTS;
 import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_EVENT_ID;
 import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_IMAGE_REPRESENTATIONS;
 import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_MEMBER_ID;
 import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_MEMBER_MEDIA_ENABLED;
-import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_SEEN_RECEIPTS;
 import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_TEXT;
 import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_TIMESTAMP;
 import static com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry.COLUMN_MESSAGE_TYPE;
@@ -50,8 +49,6 @@ public final class EventContract {
         public static final String COLUMN_TIMESTAMP             = "timestamp";
         public static final String COLUMN_DELETED_TIMESTAMP     = "deleted_timestamp";
         public static final String COLUMN_MESSAGE_TYPE          = "message_type";
-        public static final String COLUMN_DELIVERED_RECEIPTS    = "delivered_receipts";
-        public static final String COLUMN_SEEN_RECEIPTS         = "seen_receipts";
         // fields dependant on TYPE.
         public static final String COLUMN_TEXT                  = "text";
         // 3 Image representation: id, url, size, local_path
@@ -59,28 +56,101 @@ public final class EventContract {
         public static final String COLUMN_MEMBER_MEDIA_ENABLED = "audio_enabled";
     }
 
+    /**
+     * Column indices of an event query joined with its member, looked up once per cursor
+     * instead of once per row.
+     */
+    public static final class Columns {
+        public final int eventId;
+        public final int type;
+        public final int timestamp;
+        public final int deletedTimestamp;
+        public final int text;
+        public final int imageRepresentations;
+        public final int memberMediaEnabled;
+        public final int memberId;
+        public final int username;
+        public final int userId;
+        public final int state;
+        public final int invitedAt;
+        public final int joinedAt;
+        public final int leftAt;
+
+        public Columns(Cursor cursor) {
+            this.eventId = cursor.getColumnIndex(COLUMN_EVENT_ID);
+            this.type = cursor.getColumnIndex(COLUMN_MESSAGE_TYPE);
+            this.timestamp = cursor.getColumnIndex(COLUMN_TIMESTAMP);
+            this.deletedTimestamp = cursor.getColumnIndex(COLUMN_DELETED_TIMESTAMP);
+            this.text = cursor.getColumnIndex(COLUMN_TEXT);
+            this.imageRepresentations = cursor.getColumnIndex(COLUMN_IMAGE_REPRESENTATIONS);
+            this.memberMediaEnabled = cursor.getColumnIndex(COLUMN_MEMBER_MEDIA_ENABLED);
+            this.memberId = cursor.getColumnIndex(MemberContract.MemberEntry.COLUMN_MEMBER_ID);
+            this.username = cursor.getColumnIndex(MemberContract.MemberEntry.COLUMN_USERNAME);
+            this.userId = cursor.getColumnIndex(MemberContract.MemberEntry.COLUMN_USER_ID);
+            this.state = cursor.getColumnIndex(MemberContract.MemberEntry.COLUMN_STATE);
+            this.invitedAt = cursor.getColumnIndex(MemberContract.MemberEntry.COLUMN_INVITEDAT);
+            this.joinedAt = cursor.getColumnIndex(MemberContract.MemberEntry.COLUMN_JOINEDAT);
+            this.leftAt = cursor.getColumnIndex(MemberContract.MemberEntry.COLUMN_LEFTAT);
+        }
+    }
+
+    // column order of row(), used by the bulk statements.
+    public static final String[] COLUMNS = {
+            COLUMN_CID,
+            COLUMN_EVENT_ID,
+            COLUMN_MEMBER_ID,
+            COLUMN_TIMESTAMP,
+            COLUMN_DELETED_TIMESTAMP,
+            COLUMN_MESSAGE_TYPE,
+            COLUMN_TEXT,
+            COLUMN_IMAGE_REPRESENTATIONS,
+            COLUMN_MEMBER_MEDIA_ENABLED
+    };
+    public static final String SQL_INSERT = BulkInsert.sql(EventEntry.TABLE_NAME, COLUMNS, false);
+    public static final String SQL_UPSERT = BulkInsert.sql(EventEntry.TABLE_NAME, COLUMNS, true);
+
+    /**
+     * Column values of an event in {@link #COLUMNS} order, for {@link BulkInsert}.
+     */
+    public static Object[] row(final Event event, final String cid) {
+        String text = null;
+        String imageRepresentations = null;
+        Integer memberMediaEnabled = null;
+        switch (event.getType()) {
+            case TEXT: {
+                text = ((Text) event).getText();
+                break;
+            }
+            case IMAGE: {
+                imageRepresentations = imageRepresentationsToString((Image) event);
+                break;
+            }
+            case MEMBER_MEDIA: {
+                memberMediaEnabled = ((MemberMedia) event).isAudioEnabled() ? 1 : 0;
+                break;
+            }
+        }
+
+        return new Object[] {
+                cid,
+                eventId(event.getId()),
+                event.getMember().getMemberId(),
+                DateUtil.toEpochMillis(event.getTimestamp()),
+                DateUtil.toEpochMillis(event.getDeletedTimestamp()),
+                event.getType().toString(),
+                text,
+                imageRepresentations,
+                memberMediaEnabled
+        };
+    }
+
     public static ContentValues contentValues(final Event event, final String cid) {
         ContentValues values = new ContentValues();
         values.put(COLUMN_CID, cid);
-        values.put(COLUMN_EVENT_ID, event.getId());
+        putEventId(values, COLUMN_EVENT_ID, event.getId());
         values.put(COLUMN_MEMBER_ID, event.getMember().getMemberId());
-        values.put(COLUMN_TIMESTAMP, DateUtil.formatIso8601DateString(event.getTimestamp()));
-        values.put(COLUMN_DELETED_TIMESTAMP, (event.getDeletedTimestamp() != null) ?
-                DateUtil.formatIso8601DateString(event.getDeletedTimestamp()) : null);
-
-        if (!event.getDeliveredReceipts().isEmpty())
-            try {
-                values.put(COLUMN_DELIVERED_RECEIPTS, ReceiptRecordUtil.deliveredReceiptsToJson(event).toString());
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
-
-        if (!event.getSeenReceipts().isEmpty())
-            try {
-                values.put(COLUMN_SEEN_RECEIPTS, ReceiptRecordUtil.seenReceiptsToJson(event).toString());
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
+        values.put(COLUMN_TIMESTAMP, DateUtil.toEpochMillis(event.getTimestamp()));
+        values.put(COLUMN_DELETED_TIMESTAMP, DateUtil.toEpochMillis(event.getDeletedTimestamp()));
 
         values.put(COLUMN_MESSAGE_TYPE, event.getType().toString());
         switch (event.getType()) {
@@ -91,16 +161,7 @@ public final class EventContract {
             }
             case IMAGE: {
                 values.putNull(COLUMN_TEXT);
-                Image image = (Image) event;
-                if (image.getOriginal() != null && image.getThumbnail() !=  null && image.getMedium() != null)
-                    try {
-                         values.put(COLUMN_IMAGE_REPRESENTATIONS, imageRepresentationsToJson(image).toString());
-                    } catch (JSONException e) {
-                        e.printStackTrace();
-                    }
-                else
-                    values.putNull(COLUMN_IMAGE_REPRESENTATIONS);
-
+                values.put(COLUMN_IMAGE_REPRESENTATIONS, imageRepresentationsToString((Image) event));
                 break;
             }
             case MEMBER_MEDIA: {
@@ -112,6 +173,38 @@ public final class EventContract {
         return values;
     }
 
+    /**
+     * Event ids are stored as INTEGER so they sort numerically. Ids which aren't numbers
+     * are kept as they are, SQLite stores them as TEXT.
+     */
+    public static Object eventId(String id) {
+        if (id == null) return null;
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            return id;
+        }
+    }
+
+    public static void putEventId(ContentValues values, String column, String id) {
+        Object value = eventId(id);
+        if (value instanceof Long)
+            values.put(column, (Long) value);
+        else
+            values.put(column, (String) value);
+    }
+
+    private static String imageRepresentationsToString(final Image image) {
+        if (image.getOriginal() == null || image.getThumbnail() == null || image.getMedium() == null)
+            return null;
+        try {
+            return imageRepresentationsToJson(image).toString();
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     static JSONObject imageRepresentationsToJson(final Image image) throws JSONException {
         JSONObject parentJson = new JSONObject();
         JSONObject representationsJson = new JSONObject();
@@ -9,6 +9,7 @@ import android.content.ContentValues;
 import android.provider.BaseColumns;
 
 import com.nexmo.sdk.conversation.client.Member;
+import com.nexmo.sdk.conversation.core.persistence.BulkInsert;
 import com.nexmo.sdk.conversation.core.util.DateUtil;
 
 import static com.nexmo.sdk.conversation.core.persistence.contract.MemberContract.MemberEntry.COLUMN_INVITEDAT;
@@ -42,19 +43,48 @@ public final class MemberContract {
         public static final String COLUMN_LEFTAT = "left_at";
     }
 
+    // column order of row(), used by the bulk statements.
+    public static final String[] COLUMNS = {
+            COLUMN_MEMBER_ID,
+            COLUMN_USERNAME,
+            COLUMN_USER_ID,
+            COLUMN_STATE,
+            COLUMN_INVITEDAT,
+            COLUMN_JOINEDAT,
+            COLUMN_LEFTAT,
+            ConversationContract.ConversationEntry.COLUMN_CID
+    };
+    public static final String SQL_INSERT = BulkInsert.sql(MemberEntry.TABLE_NAME, COLUMNS, false);
+    public static final String SQL_UPSERT = BulkInsert.sql(MemberEntry.TABLE_NAME, COLUMNS, true);
+    // member id and conversation id, the primary key.
+    public static final int[] KEY_INDEXES = {0, 7};
+    public static final String SQL_UPDATE = BulkInsert.updateSql(MemberEntry.TABLE_NAME, COLUMNS, KEY_INDEXES);
+
+    /**
+     * Column values of a member in {@link #COLUMNS} order, for {@link BulkInsert}.
+     */
+    public static Object[] row(final Member member, final String cid) {
+        return new Object[] {
+                member.getMemberId(),
+                member.getName(),
+                member.getUserId(),
+                member.getState().getId(),
+                DateUtil.toEpochMillis(member.getInvitedAt()),
+                DateUtil.toEpochMillis(member.getJoinedAt()),
+                DateUtil.toEpochMillis(member.getLeftAt()),
+                cid
+        };
+    }
+
     public static ContentValues contentValues(final Member member, final String cid) {
         ContentValues values = new ContentValues();
         values.put(COLUMN_MEMBER_ID, member.getMemberId());
         values.put(COLUMN_USERNAME, member.getName());
         values.put(COLUMN_USER_ID, member.getUserId());
         values.put(COLUMN_STATE, member.getState().getId());
-        try {
-            values.put(COLUMN_INVITEDAT, DateUtil.formatIso8601DateString(member.getInvitedAt()));
-            values.put(COLUMN_JOINEDAT, DateUtil.formatIso8601DateString(member.getJoinedAt()));
-            values.put(COLUMN_LEFTAT, DateUtil.formatIso8601DateString(member.getLeftAt()));
-        }catch (Exception e){
-
-        }
+        values.put(COLUMN_INVITEDAT, DateUtil.toEpochMillis(member.getInvitedAt()));
+        values.put(COLUMN_JOINEDAT, DateUtil.toEpochMillis(member.getJoinedAt()));
+        values.put(COLUMN_LEFTAT, DateUtil.toEpochMillis(member.getLeftAt()));
         values.put(ConversationContract.ConversationEntry.COLUMN_CID, cid);
 
         return values;
@@ -0,0 +1,84 @@
+package com.nexmo.sdk.conversation.core.persistence.contract;
+
+import com.nexmo.sdk.conversation.client.event.EventType;
+import com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Contract for the full-text index of cached text messages, an FTS4 table which docid is the
+ * rowid of the message it indexes.
+ *
+ * <p>The message rowid changes whenever a message row is replaced, so the index is kept in step by
+ * triggers on the message table. They also fire for messages deleted by cascade, and with
+ * recursive triggers on, for rows deleted by insert-or-replace, so whichever way a message goes
+ * its entry goes with it.</p>
+ *
+ * @hide
+ */
+
+// This class will never be extended, so it is marked as final.
+public final class MessageSearchContract {
+
+    // Suppress default constructor for non-instantiability
+    private MessageSearchContract() {
+        throw new AssertionError();
+    }
+
+    /* Inner class that defines the table contents */
+    public static abstract class MessageSearchEntry {
+        public static final String TABLE_NAME  = "message_search";
+        public static final String COLUMN_TEXT = "text";
+    }
+
+    // the default tokenizer, unicode61 isn't available on every supported API level.
+    public static final String SQL_CREATE =
+            "CREATE VIRTUAL TABLE " + MessageSearchEntry.TABLE_NAME + " USING fts4(" + MessageSearchEntry.COLUMN_TEXT + ")";
+
+    private static final String INDEX_NEW_ROW =
+            "INSERT INTO " + MessageSearchEntry.TABLE_NAME + " (docid, " + MessageSearchEntry.COLUMN_TEXT + ")"
+                    + " SELECT NEW.rowid, NEW." + EventEntry.COLUMN_TEXT
+                    + " WHERE NEW." + EventEntry.COLUMN_MESSAGE_TYPE + " = '" + EventType.TEXT + "'"
+                    + " AND NEW." + EventEntry.COLUMN_TEXT + " IS NOT NULL;";
+    private static final String UNINDEX_OLD_ROW =
+            "DELETE FROM " + MessageSearchEntry.TABLE_NAME + " WHERE docid = OLD.rowid;";
+
+    // one statement each, execSQL runs a single statement.
+    public static final String[] SQL_CREATE_TRIGGERS = {
+            "CREATE TRIGGER message_search_insert AFTER INSERT ON " + EventEntry.TABLE_NAME
+                    + " BEGIN " + INDEX_NEW_ROW + " END",
+            "CREATE TRIGGER message_search_update AFTER UPDATE OF " + EventEntry.COLUMN_MESSAGE_TYPE + ", "
+                    + EventEntry.COLUMN_TEXT + " ON " + EventEntry.TABLE_NAME
+                    + " BEGIN " + UNINDEX_OLD_ROW + " " + INDEX_NEW_ROW + " END",
+            "CREATE TRIGGER message_search_delete AFTER DELETE ON " + EventEntry.TABLE_NAME
+                    + " BEGIN " + UNINDEX_OLD_ROW + " END"
+    };
+
+    // phrases, columns, rows, average tokens, tokens of this row, hits per phrase.
+    public static final String MATCHINFO_FORMAT = "pcnalx";
+
+    private static final Pattern NOT_A_TERM = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern OPERATORS = Pattern.compile("AND|OR|NOT|NEAR");
+
+    /**
+     * Turn free text into an FTS query: every word has to match the start of a word of the message.
+     * Operators and quotes are dropped, so user input can't break the query syntax.
+     *
+     * @return The query, or null if there are no words.
+     */
+    public static String matchQuery(String text) {
+        if (text == null) return null;
+
+        StringBuilder query = new StringBuilder();
+        for (String term : NOT_A_TERM.split(text)) {
+            if (term.isEmpty()) continue;
+            // operator words would be read as operators. Only these are lowered, the tokenizer folds ASCII case only.
+            if (OPERATORS.matcher(term).matches())
+                term = term.toLowerCase(Locale.ROOT);
+            query.append(query.length() > 0 ? " " : "").append(term).append('*');
+        }
+        return (query.length() > 0 ? query.toString() : null);
+    }
+
+}
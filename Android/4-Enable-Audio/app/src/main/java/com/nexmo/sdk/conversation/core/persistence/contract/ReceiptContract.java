@@ -0,0 +1,79 @@
+package com.nexmo.sdk.conversation.core.persistence.contract;
+
+import android.provider.BaseColumns;
+
+import com.nexmo.sdk.conversation.client.DeliveredReceipt;
+import com.nexmo.sdk.conversation.client.Event;
+import com.nexmo.sdk.conversation.client.ReceiptRecord;
+import com.nexmo.sdk.conversation.client.SeenReceipt;
+import com.nexmo.sdk.conversation.core.persistence.BulkInsert;
+import com.nexmo.sdk.conversation.core.util.DateUtil;
+
+import java.util.List;
+
+/**
+ * Contract for {@link com.nexmo.sdk.conversation.client.SeenReceipt} and
+ * {@link com.nexmo.sdk.conversation.client.DeliveredReceipt} objects, one row per receipt.
+ *
+ * @hide
+ */
+
+// This class will never be extended, so it is marked as final.
+public final class ReceiptContract {
+
+    // Suppress default constructor for non-instantiability
+    private ReceiptContract() {
+        throw new AssertionError();
+    }
+
+    public static final String KIND_SEEN = "seen";
+    public static final String KIND_DELIVERED = "delivered";
+
+    /* Inner class that defines the table contents */
+    public static abstract class ReceiptEntry implements BaseColumns {
+        public static final String TABLE_NAME       = "receipt";
+        public static final String COLUMN_CID       = "conversation_id";
+        public static final String COLUMN_EVENT_ID  = "event_id";
+        public static final String COLUMN_MEMBER_ID = "member_id";
+        public static final String COLUMN_KIND      = "kind";
+        public static final String COLUMN_TIMESTAMP = "timestamp";
+    }
+
+    // column order of row(), used by the bulk statements.
+    public static final String[] COLUMNS = {
+            ReceiptEntry.COLUMN_CID,
+            ReceiptEntry.COLUMN_EVENT_ID,
+            ReceiptEntry.COLUMN_MEMBER_ID,
+            ReceiptEntry.COLUMN_KIND,
+            ReceiptEntry.COLUMN_TIMESTAMP
+    };
+    public static final String SQL_UPSERT = BulkInsert.sql(ReceiptEntry.TABLE_NAME, COLUMNS, true);
+
+    public static String kind(ReceiptRecord receipt) {
+        return (receipt instanceof DeliveredReceipt ? KIND_DELIVERED : KIND_SEEN);
+    }
+
+    /**
+     * Column values of a receipt in {@link #COLUMNS} order, for {@link BulkInsert}.
+     */
+    public static Object[] row(final ReceiptRecord receipt, final String cid) {
+        return new Object[] {
+                cid,
+                EventContract.eventId(receipt.getEvent().getId()),
+                receipt.getMember().getMemberId(),
+                kind(receipt),
+                DateUtil.toEpochMillis(receipt.getTimestamp())
+        };
+    }
+
+    /**
+     * Rows of every receipt of an event.
+     */
+    public static void addRows(final Event event, final String cid, List<Object[]> rows) {
+        for (SeenReceipt receipt : event.getSeenReceipts())
+            rows.add(row(receipt, cid));
+        for (DeliveredReceipt receipt : event.getDeliveredReceipts())
+            rows.add(row(receipt, cid));
+    }
+
+}
@@ -10,10 +10,12 @@ import java.util.Map;
  * @author emma tresanszki.
  * @hide
  */
-public interface ConversationDAO extends DAO<Conversation> {
+public interface ConversationDAO extends KeyedDAO<Conversation> {
 
     void insertAll(List<Conversation> items);
 
+    void upsertAll(List<Conversation> items);
+
     Conversation read(String cid);
 
     List<Conversation> read(User user);
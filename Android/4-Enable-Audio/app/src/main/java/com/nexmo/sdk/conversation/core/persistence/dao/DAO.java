@@ -1,10 +1,9 @@
 package com.nexmo.sdk.conversation.core.persistence.dao;
 
-import java.util.Collection;
-
 /**
  * Data Access Objects interface for CRUD operations.
  * DAOs abstract access to the database in a clean way.
+ * Deletes are declared by each DAO with the keys its rows are unique by, see {@link KeyedDAO}.
  *
  * @author emma tresanszki.
  */
@@ -13,6 +12,4 @@ interface DAO<T> {
     //CRUD
     void insert(T dto, String id);
     void update(T dto, String id);
-    boolean delete(String id);
-    boolean delete(Collection<String> cIds);
 }
@@ -3,6 +3,7 @@ package com.nexmo.sdk.conversation.core.persistence.dao;
 import com.nexmo.sdk.conversation.client.Conversation;
 import com.nexmo.sdk.conversation.client.Event;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -13,10 +14,17 @@ public interface EventDAO extends DAO<Event> {
 
     void insertAll(String cid, List<Event> eventList);
 
+    void upsertAll(String cid, List<Event> eventList);
+
     void update(Event event, String cid);
 
+    // event ids are only unique within a conversation.
+    boolean delete(String cid, Collection<String> ids);
+
     List<Event> read(String cid, Conversation conversation);
 
+    List<Event> readPage(String cid, Conversation conversation, String beforeId, int limit);
+
     String getLastEventId(String cid);
 
     List<String> getEventIds(Conversation conversation);
@@ -0,0 +1,12 @@
+package com.nexmo.sdk.conversation.core.persistence.dao;
+
+import java.util.Collection;
+
+/**
+ * DAO of rows which are unique by their id alone, so they can be deleted by id.
+ */
+interface KeyedDAO<T> extends DAO<T> {
+
+    boolean delete(String id);
+    boolean delete(Collection<String> ids);
+}
@@ -13,4 +13,7 @@ public interface MemberDAO extends DAO<Member> {
     void insertAll(String cid, List<Member> memberList);
 
     List<Member> read(String cid);
+
+    // member ids are only unique within a conversation, only all members of one are deleted at once.
+    boolean delete(String cid);
 }
@@ -0,0 +1,9 @@
+package com.nexmo.sdk.conversation.core.persistence.dao;
+
+import com.nexmo.sdk.conversation.client.ReceiptRecord;
+
+/**
+ * @hide
+ */
+public interface ReceiptDAO extends DAO<ReceiptRecord> {
+}
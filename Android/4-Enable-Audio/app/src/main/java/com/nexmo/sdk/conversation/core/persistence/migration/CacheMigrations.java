@@ -0,0 +1,76 @@
+package com.nexmo.sdk.conversation.core.persistence.migration;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+
+import com.nexmo.sdk.conversation.core.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Every cache schema migration, chained to upgrade from any supported version to the latest.
+ *
+ * <p>When a schema change is made, bump the database version and add a {@link Migration} from the
+ * previous version here, so the cache survives the SDK update instead of being synced again.</p>
+ *
+ * @hide
+ */
+public final class CacheMigrations {
+    private static final String TAG = CacheMigrations.class.getSimpleName();
+
+    private static final Migration[] MIGRATIONS = {
+            new Migration3To4(),
+            new Migration4To5(),
+            new Migration5To6(),
+            new Migration6To7(),
+            new Migration7To8()
+    };
+
+    private CacheMigrations() {
+        throw new AssertionError();
+    }
+
+    /**
+     * @return The migrations to run in order, or null if there is no path between the versions,
+     * e.g. for a downgrade or a version older than the first migration.
+     */
+    public static List<Migration> path(int oldVersion, int newVersion) {
+        List<Migration> path = new ArrayList<>();
+        int version = oldVersion;
+        while (version < newVersion) {
+            Migration next = null;
+            for (Migration migration : MIGRATIONS)
+                if (migration.startVersion == version) {
+                    next = migration;
+                    break;
+                }
+            if (next == null || next.endVersion > newVersion)
+                return null;
+
+            path.add(next);
+            version = next.endVersion;
+        }
+        return (version == newVersion ? path : null);
+    }
+
+    /**
+     * Run the migrations from oldVersion to newVersion.
+     *
+     * @return false if there is no path, the caller recreates the schema instead.
+     */
+    public static boolean migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        List<Migration> path = path(oldVersion, newVersion);
+        if (path == null) {
+            Log.w(TAG, "migrate: no migration from version " + oldVersion + " to " + newVersion);
+            return false;
+        }
+
+        for (Migration migration : path) {
+            long startedAt = SystemClock.elapsedRealtime();
+            migration.migrate(db);
+            Log.d(TAG, "migrate: " + migration + " in " + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+        }
+        return true;
+    }
+}
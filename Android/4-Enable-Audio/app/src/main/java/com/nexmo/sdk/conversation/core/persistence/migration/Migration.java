@@ -0,0 +1,54 @@
+package com.nexmo.sdk.conversation.core.persistence.migration;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Transforms the cache schema from one version to the next in place, keeping the cached rows.
+ *
+ * <p>A migration runs inside the upgrade transaction, so it either applies fully or not at all.
+ * It refers to the schema as it was at its versions, not to the current contracts, since those
+ * keep changing after the migration is written.</p>
+ *
+ * @hide
+ */
+public abstract class Migration {
+    public final int startVersion;
+    public final int endVersion;
+
+    protected Migration(int startVersion, int endVersion) {
+        this.startVersion = startVersion;
+        this.endVersion = endVersion;
+    }
+
+    public abstract void migrate(SQLiteDatabase db);
+
+    /**
+     * Rebuild a table with a new definition, the way SQLite documents for changes ALTER TABLE can't do.
+     * Foreign keys are not enforced while upgrading, so the tables referring to it are left untouched.
+     *
+     * @param createSql   CREATE TABLE statement of the new definition, for a table named {@code table}.
+     * @param columns     Columns of the new definition, in order.
+     * @param selectSql   Values of those columns, selected from the old table.
+     */
+    static void rebuildTable(SQLiteDatabase db, String table, String createSql, String columns, String selectSql) {
+        String rebuilt = table + "_rebuilt";
+        db.execSQL("DROP TABLE IF EXISTS " + rebuilt);
+        db.execSQL(createSql.replaceFirst("CREATE TABLE " + table + " ", "CREATE TABLE " + rebuilt + " "));
+        db.execSQL("INSERT INTO " + rebuilt + " (" + columns + ") " + selectSql);
+        db.execSQL("DROP TABLE " + table);
+        db.execSQL("ALTER TABLE " + rebuilt + " RENAME TO " + table);
+    }
+
+    /**
+     * SQL expression converting a date stored as ISO-8601 text in local time, as the cache did up to
+     * version 3, into epoch millis. Unparseable dates become NULL.
+     */
+    static String isoToEpochMillis(String column) {
+        return "CAST(ROUND((julianday(" + column + ", 'utc') - 2440587.5) * 86400000) AS INTEGER)";
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " " + this.startVersion + " -> " + this.endVersion;
+    }
+}
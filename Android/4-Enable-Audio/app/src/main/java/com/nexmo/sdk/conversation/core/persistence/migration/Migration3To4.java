@@ -0,0 +1,57 @@
+package com.nexmo.sdk.conversation.core.persistence.migration;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Version 4 stores dates as epoch millis instead of ISO-8601 text, event ids as integers, and keys
+ * events by (conversation_id, event_id).
+ *
+ * <p>Each table is converted with a single INSERT ... SELECT, so the work stays in SQLite and is
+ * linear in the number of rows. Numeric ids are converted by the INTEGER affinity of the new columns.</p>
+ *
+ * @hide
+ */
+class Migration3To4 extends Migration {
+
+    private static final String CONVERSATION_V4 =
+            "CREATE TABLE conversation (cid TEXT PRIMARY KEY,name TEXT,created INTEGER,lastEventId INTEGER,selfMemberId TEXT )";
+
+    private static final String MEMBER_V4 =
+            "CREATE TABLE member (id TEXT,username TEXT,user_id TEXT,state TEXT,invited_at INTEGER,joined_at INTEGER," +
+                    "left_at INTEGER,cid TEXT, PRIMARY KEY (id,cid), FOREIGN KEY(cid) REFERENCES conversation(cid) ON DELETE CASCADE )";
+
+    private static final String MEMBER_CID_INDEX_V4 =
+            "CREATE INDEX IF NOT EXISTS idx_member_cid ON member(cid)";
+
+    private static final String MESSAGE_V4 =
+            "CREATE TABLE message (event_id INTEGER,conversation_id TEXT,message_type TEXT,text TEXT,member_id TEXT," +
+                    "timestamp INTEGER,deleted_timestamp INTEGER,image_representations TEXT,delivered_receipts TEXT," +
+                    "seen_receipts TEXT,audio_enabled INT , PRIMARY KEY (conversation_id,event_id)," +
+                    " FOREIGN KEY(member_id,conversation_id) REFERENCES member(id,cid) ON DELETE CASCADE )";
+
+    Migration3To4() {
+        super(3, 4);
+    }
+
+    @Override
+    public void migrate(SQLiteDatabase db) {
+        rebuildTable(db, "conversation", CONVERSATION_V4,
+                "cid,name,created,lastEventId,selfMemberId",
+                "SELECT cid,name," + isoToEpochMillis("created") + ",lastEventId,selfMemberId FROM conversation");
+
+        rebuildTable(db, "member", MEMBER_V4,
+                "id,username,user_id,state,invited_at,joined_at,left_at,cid",
+                "SELECT id,username,user_id,state," + isoToEpochMillis("invited_at") + "," + isoToEpochMillis("joined_at") +
+                        "," + isoToEpochMillis("left_at") + ",cid FROM member");
+        // version 3 never created it, see CacheDB.onCreate.
+        db.execSQL(MEMBER_CID_INDEX_V4);
+
+        // receipts stay as they are, they are moved to their own table by version 5.
+        rebuildTable(db, "message", MESSAGE_V4,
+                "event_id,conversation_id,message_type,text,member_id,timestamp,deleted_timestamp," +
+                        "image_representations,delivered_receipts,seen_receipts,audio_enabled",
+                "SELECT event_id,conversation_id,message_type,text,member_id," + isoToEpochMillis("timestamp") +
+                        "," + isoToEpochMillis("deleted_timestamp") + ",image_representations,delivered_receipts," +
+                        "seen_receipts,audio_enabled FROM message");
+    }
+}
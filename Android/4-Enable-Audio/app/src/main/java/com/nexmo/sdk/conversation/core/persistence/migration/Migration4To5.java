@@ -0,0 +1,141 @@
+package com.nexmo.sdk.conversation.core.persistence.migration;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.nexmo.sdk.conversation.core.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Version 5 moves receipts from JSON columns of the message table to a table of their own,
+ * one row per receipt.
+ *
+ * <p>The JSON is parsed row by row while streaming the messages which have receipts, and the
+ * receipts are inserted in bounded batches, so memory use doesn't grow with the database.</p>
+ *
+ * <p>The receipt dates are read the way version 4 wrote them, in local time with any trailing zone
+ * ignored, with a date format of its own rather than the current DateUtil.</p>
+ *
+ * @hide
+ */
+class Migration4To5 extends Migration {
+    private static final String TAG = Migration4To5.class.getSimpleName();
+
+    private static final String RECEIPT_V5 =
+            "CREATE TABLE receipt (conversation_id TEXT,event_id INTEGER,member_id TEXT,kind TEXT,timestamp INTEGER," +
+                    " PRIMARY KEY (conversation_id,event_id,member_id,kind)," +
+                    " FOREIGN KEY(conversation_id,event_id) REFERENCES message(conversation_id,event_id) ON DELETE CASCADE )";
+
+    private static final String MESSAGE_V5 =
+            "CREATE TABLE message (event_id INTEGER,conversation_id TEXT,message_type TEXT,text TEXT,member_id TEXT," +
+                    "timestamp INTEGER,deleted_timestamp INTEGER,image_representations TEXT,audio_enabled INT ," +
+                    " PRIMARY KEY (conversation_id,event_id)," +
+                    " FOREIGN KEY(member_id,conversation_id) REFERENCES member(id,cid) ON DELETE CASCADE )";
+
+    private static final String INSERT_RECEIPT_V5 =
+            "INSERT OR REPLACE INTO receipt (conversation_id,event_id,member_id,kind,timestamp) VALUES (?,?,?,?,?)";
+
+    private static final String DATE_FORMAT_V4 = "yyyy-MM-dd'T'HH:mm:ss.SSS";
+    private static final int BATCH_SIZE = 500;
+
+    Migration4To5() {
+        super(4, 5);
+    }
+
+    @Override
+    public void migrate(SQLiteDatabase db) {
+        db.execSQL(RECEIPT_V5);
+        copyReceipts(db);
+
+        rebuildTable(db, "message", MESSAGE_V5,
+                "event_id,conversation_id,message_type,text,member_id,timestamp,deleted_timestamp,image_representations,audio_enabled",
+                "SELECT event_id,conversation_id,message_type,text,member_id,timestamp,deleted_timestamp,image_representations,audio_enabled FROM message");
+    }
+
+    private void copyReceipts(SQLiteDatabase db) {
+        DateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT_V4, Locale.getDefault());
+        dateFormat.setLenient(false);
+        List<Object[]> rows = new ArrayList<>();
+        int copied = 0;
+
+        SQLiteStatement insert = db.compileStatement(INSERT_RECEIPT_V5);
+        Cursor cursor = db.rawQuery("SELECT conversation_id,event_id,delivered_receipts,seen_receipts FROM message" +
+                " WHERE delivered_receipts IS NOT NULL OR seen_receipts IS NOT NULL", null);
+        try {
+            while (cursor.moveToNext()) {
+                String cid = cursor.getString(0);
+                Object eventId = (cursor.getType(1) == Cursor.FIELD_TYPE_INTEGER ? (Object) cursor.getLong(1) : cursor.getString(1));
+                addRows(rows, dateFormat, cid, eventId, cursor.getString(2), "delivered_to", "delivered");
+                addRows(rows, dateFormat, cid, eventId, cursor.getString(3), "seen_by", "seen");
+
+                if (rows.size() >= BATCH_SIZE) {
+                    copied += insert(insert, rows);
+                    rows.clear();
+                }
+            }
+            copied += insert(insert, rows);
+        } finally {
+            cursor.close();
+            insert.close();
+        }
+        Log.d(TAG, "copyReceipts: " + copied + " receipts");
+    }
+
+    // a row which fails is logged and skipped.
+    private static int insert(SQLiteStatement insert, List<Object[]> rows) {
+        int inserted = 0;
+        for (Object[] row : rows) {
+            insert.clearBindings();
+            for (int i = 0; i < row.length; i++)
+                DatabaseUtils.bindObjectToProgram(insert, i + 1, row[i]);
+            try {
+                if (insert.executeInsert() != -1)
+                    inserted++;
+            } catch (SQLException e) {
+                Log.d(TAG, "insert: skipped receipt, " + e.getMessage());
+            }
+        }
+        return inserted;
+    }
+
+    // {"delivered_to": {"memberId": "2017-01-02T10:11:12.345", ...}}
+    private static void addRows(List<Object[]> rows, DateFormat dateFormat, String cid, Object eventId, String json,
+                                String key, String kind) {
+        if (json == null) return;
+
+        try {
+            JSONObject receipts = new JSONObject(json).optJSONObject(key);
+            if (receipts == null) return;
+
+            Iterator<String> memberIds = receipts.keys();
+            while (memberIds.hasNext()) {
+                String memberId = memberIds.next();
+                String date = receipts.optString(memberId, null);
+                Long timestamp = null;
+                try {
+                    // parses the leading date, whatever follows it is ignored.
+                    timestamp = (date != null ? dateFormat.parse(date).getTime() : null);
+                } catch (ParseException e) {
+                    Log.d(TAG, "addRows: wrong date format for " + memberId);
+                }
+                rows.add(new Object[] { cid, eventId, memberId, kind, timestamp });
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "addRows: skipped receipts of event " + eventId + ", " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.nexmo.sdk.conversation.core.persistence.migration;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Version 6 adds the conversation_summary table, computed once from the cached events.
+ *
+ * @hide
+ */
+class Migration5To6 extends Migration {
+
+    private static final String CONVERSATION_SUMMARY_V6 =
+            "CREATE TABLE conversation_summary (conversation_id TEXT PRIMARY KEY,last_event_id INTEGER," +
+                    "last_event_type TEXT,last_event_text TEXT,last_event_member_id TEXT,last_event_deleted INTEGER," +
+                    "last_activity INTEGER,unread_count INTEGER NOT NULL DEFAULT 0 )";
+
+    // the last text or image message of each conversation, and its unseen messages from other members.
+    private static final String REBUILD_SUMMARIES_V6 =
+            "INSERT OR REPLACE INTO conversation_summary (conversation_id,last_event_id,last_event_type," +
+                    "last_event_text,last_event_member_id,last_event_deleted,last_activity,unread_count)" +
+            " SELECT c.cid, m.event_id, m.message_type, m.text, m.member_id, m.deleted_timestamp IS NOT NULL, m.timestamp," +
+                    " (SELECT COUNT(*) FROM message u WHERE u.conversation_id = c.cid" +
+                    " AND u.message_type IN ('TEXT','IMAGE') AND u.deleted_timestamp IS NULL" +
+                    " AND u.member_id IS NOT c.selfMemberId" +
+                    " AND NOT EXISTS (SELECT 1 FROM receipt r WHERE r.conversation_id = u.conversation_id" +
+                    " AND r.event_id = u.event_id AND r.member_id = c.selfMemberId AND r.kind = 'seen'))" +
+            " FROM conversation c LEFT JOIN message m ON m.conversation_id = c.cid" +
+                    " AND m.event_id = (SELECT MAX(event_id) FROM message WHERE conversation_id = c.cid" +
+                    " AND message_type IN ('TEXT','IMAGE'))";
+
+    Migration5To6() {
+        super(5, 6);
+    }
+
+    @Override
+    public void migrate(SQLiteDatabase db) {
+        db.execSQL(CONVERSATION_SUMMARY_V6);
+        db.execSQL(REBUILD_SUMMARIES_V6);
+    }
+}
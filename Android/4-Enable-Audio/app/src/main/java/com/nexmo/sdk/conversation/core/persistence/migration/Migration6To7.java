@@ -0,0 +1,27 @@
+package com.nexmo.sdk.conversation.core.persistence.migration;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Version 7 adds the full-text index of text messages, built once from the cached messages.
+ *
+ * @hide
+ */
+class Migration6To7 extends Migration {
+
+    private static final String MESSAGE_SEARCH_V7 = "CREATE VIRTUAL TABLE message_search USING fts4(text)";
+    // docid is the rowid of the text message indexed.
+    private static final String INDEX_MESSAGES_V7 =
+            "INSERT INTO message_search (docid, text) SELECT rowid, text FROM message" +
+                    " WHERE message_type = 'TEXT' AND text IS NOT NULL";
+
+    Migration6To7() {
+        super(6, 7);
+    }
+
+    @Override
+    public void migrate(SQLiteDatabase db) {
+        db.execSQL(MESSAGE_SEARCH_V7);
+        db.execSQL(INDEX_MESSAGES_V7);
+    }
+}
@@ -0,0 +1,38 @@
+package com.nexmo.sdk.conversation.core.persistence.migration;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Version 8 maintains the full-text index with triggers on the message table, so messages deleted
+ * by cascade leave the index as well. The index is built again, dropping the entries such
+ * messages left behind.
+ *
+ * @hide
+ */
+class Migration7To8 extends Migration {
+
+    private static final String[] MESSAGE_SEARCH_TRIGGERS_V8 = {
+            "CREATE TRIGGER message_search_insert AFTER INSERT ON message BEGIN"
+                    + " INSERT INTO message_search (docid, text) SELECT NEW.rowid, NEW.text"
+                    + " WHERE NEW.message_type = 'TEXT' AND NEW.text IS NOT NULL; END",
+            "CREATE TRIGGER message_search_update AFTER UPDATE OF message_type, text ON message BEGIN"
+                    + " DELETE FROM message_search WHERE docid = OLD.rowid;"
+                    + " INSERT INTO message_search (docid, text) SELECT NEW.rowid, NEW.text"
+                    + " WHERE NEW.message_type = 'TEXT' AND NEW.text IS NOT NULL; END",
+            "CREATE TRIGGER message_search_delete AFTER DELETE ON message BEGIN"
+                    + " DELETE FROM message_search WHERE docid = OLD.rowid; END"
+    };
+
+    Migration7To8() {
+        super(7, 8);
+    }
+
+    @Override
+    public void migrate(SQLiteDatabase db) {
+        for (String trigger : MESSAGE_SEARCH_TRIGGERS_V8)
+            db.execSQL(trigger);
+        db.execSQL("DELETE FROM message_search");
+        db.execSQL("INSERT INTO message_search (docid, text) SELECT rowid, text FROM message"
+                + " WHERE message_type = 'TEXT' AND text IS NOT NULL");
+    }
+}
@@ -5,6 +5,7 @@
  */
 package com.nexmo.sdk.conversation.core.persistence.repository;
 
+import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.text.TextUtils;
@@ -12,6 +13,8 @@ import android.text.TextUtils;
 import com.nexmo.sdk.conversation.client.CacheDB;
 import com.nexmo.sdk.conversation.client.Conversation;
 import com.nexmo.sdk.conversation.client.User;
+import com.nexmo.sdk.conversation.core.persistence.BulkInsert;
+import com.nexmo.sdk.conversation.core.persistence.CacheWriter;
 import com.nexmo.sdk.conversation.core.persistence.contract.ConversationContract;
 import com.nexmo.sdk.conversation.core.persistence.contract.MemberContract;
 import com.nexmo.sdk.conversation.core.persistence.dao.ConversationDAO;
@@ -85,46 +88,58 @@ public class ConversationRepository implements ConversationDAO {
     @Override
     public void insertAll(final List<Conversation> conversationList) {
         Log.d(TAG, "insertAll");
-        SQLiteDatabase db = this.cacheDB.openDatabase();
+        write(conversationList, ConversationContract.SQL_INSERT, MemberContract.SQL_INSERT);
+    }
 
-        db.beginTransaction();
+    // insert or replace conversations and their self member.
+    @Override
+    public void upsertAll(final List<Conversation> conversationList) {
+        Log.d(TAG, "upsertAll");
+        write(conversationList, ConversationContract.SQL_UPSERT, MemberContract.SQL_UPSERT);
+    }
 
-        try {
-            for (Conversation conversation : conversationList) {
-                db.insert(
-                        ConversationContract.ConversationEntry.TABLE_NAME,
-                        null,
-                        ConversationContract.contentValues(conversation));
+    private void write(final List<Conversation> conversationList, final String conversationSql, final String memberSql) {
+        if (conversationList.isEmpty()) return;
 
-                db.insert(
-                        MemberContract.MemberEntry.TABLE_NAME,
-                        null,
-                        MemberContract.contentValues(conversation.getSelf(), conversation.getConversationId()));
-            }
-            db.setTransactionSuccessful();
-        }
-        finally {
-            db.endTransaction();
+        final List<Object[]> conversationRows = new ArrayList<>(conversationList.size());
+        final List<Object[]> memberRows = new ArrayList<>(conversationList.size());
+        for (Conversation conversation : conversationList) {
+            conversationRows.add(ConversationContract.row(conversation));
+            memberRows.add(MemberContract.row(conversation.getSelf(), conversation.getConversationId()));
         }
+
+        this.cacheDB.write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                // conversations first, members reference them.
+                BulkInsert.execute(db, conversationSql, conversationRows);
+                BulkInsert.execute(db, memberSql, memberRows);
+            }
+        });
     }
 
     // insertAll basic conversation details
     @Override
     public void insert(final Conversation conversation, String cid) {
         Log.d(TAG, "insertAll");
-        SQLiteDatabase db = this.cacheDB.openDatabase();
+        final ContentValues conversationValues = ConversationContract.contentValues(conversation);
+        final ContentValues memberValues = MemberContract.contentValues(conversation.getSelf(), cid);
 
-        // Insert the new row, returning the primary key value of the new row
-        long pk = db.insertWithOnConflict(
-                ConversationContract.ConversationEntry.TABLE_NAME,
-                null,
-                ConversationContract.contentValues(conversation),
-                SQLiteDatabase.CONFLICT_REPLACE);
+        this.cacheDB.write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                db.insertWithOnConflict(
+                        ConversationContract.ConversationEntry.TABLE_NAME,
+                        null,
+                        conversationValues,
+                        SQLiteDatabase.CONFLICT_REPLACE);
 
-        db.insert(
-                MemberContract.MemberEntry.TABLE_NAME,
-                null,
-                MemberContract.contentValues(conversation.getSelf(), cid));
+                db.insert(
+                        MemberContract.MemberEntry.TABLE_NAME,
+                        null,
+                        memberValues);
+            }
+        });
     }
 
     @Override
@@ -132,29 +147,43 @@ public class ConversationRepository implements ConversationDAO {
         return delete(Collections.singletonList(cid));
     }
 
+    // returns true once the delete is queued.
     @Override
     public boolean delete(final Collection<String> cIds ){
         Log.d(TAG, "delete .cids " + cIds.toString());
-        SQLiteDatabase db = this.cacheDB.openDatabase();
+        if (cIds.isEmpty()) return false;
 
-        String placeholders = TextUtils.join(",", Collections.nCopies(cIds.size(), "?"));
+        final String placeholders = TextUtils.join(",", Collections.nCopies(cIds.size(), "?"));
+        final String[] args = cIds.toArray(new String[0]);
 
-        return (db.delete(
-                ConversationContract.ConversationEntry.TABLE_NAME,
-                ConversationContract.ConversationEntry.COLUMN_CID + " IN (" + placeholders + ") ",
-                cIds.toArray(new String[0])) != 0);
+        this.cacheDB.write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                db.delete(
+                        ConversationContract.ConversationEntry.TABLE_NAME,
+                        ConversationContract.ConversationEntry.COLUMN_CID + " IN (" + placeholders + ") ",
+                        args);
+                ConversationSummaryRepository.delete(db, placeholders, args);
+            }
+        });
+        return true;
     }
 
     @Override
-    public void update(final Conversation conversation, String cid) {
+    public void update(final Conversation conversation, final String cid) {
         Log.d(TAG, "update. cid " + conversation.getConversationId());
-        SQLiteDatabase db = this.cacheDB.openDatabase();
+        final ContentValues values = ConversationContract.contentValues(conversation);
 
-        db.update(
-                ConversationContract.ConversationEntry.TABLE_NAME,
-                ConversationContract.contentValues(conversation),
-                ConversationContract.ConversationEntry.COLUMN_CID + " = ? ",
-                new String[] {cid});
+        this.cacheDB.write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                db.update(
+                        ConversationContract.ConversationEntry.TABLE_NAME,
+                        values,
+                        ConversationContract.ConversationEntry.COLUMN_CID + " = ? ",
+                        new String[] {cid});
+            }
+        });
     }
 
     //including members info.
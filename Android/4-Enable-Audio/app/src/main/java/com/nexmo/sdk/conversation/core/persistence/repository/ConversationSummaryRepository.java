@@ -0,0 +1,135 @@
+package com.nexmo.sdk.conversation.core.persistence.repository;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.nexmo.sdk.conversation.client.CacheDB;
+import com.nexmo.sdk.conversation.client.ConversationSummary;
+import com.nexmo.sdk.conversation.core.persistence.contract.ConversationContract.ConversationEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.ConversationSummaryContract;
+import com.nexmo.sdk.conversation.core.persistence.contract.ConversationSummaryContract.ConversationSummaryEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.EventContract;
+import com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry;
+import com.nexmo.sdk.conversation.core.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Conversation summary manager, one row per conversation holding the last message and the unread count.
+ *
+ * <p>The summary is maintained by the other repositories, within the same {@link com.nexmo.sdk.conversation.core.persistence.CacheWriter.Mutation}
+ * as the event or receipt write it follows, so both are committed together. Single events adjust it
+ * with a few primary key lookups, bulk writes compute it again for the conversation.</p>
+ *
+ * @hide
+ */
+public class ConversationSummaryRepository {
+    private static final String TAG = ConversationSummaryRepository.class.getSimpleName();
+
+    private CacheDB cacheDB;
+
+    public ConversationSummaryRepository(CacheDB cacheDB) {
+        this.cacheDB = cacheDB;
+    }
+
+    /**
+     * Every summary, most recently active first, with a single scan of the summary table.
+     */
+    public List<ConversationSummary> readAll() {
+        SQLiteDatabase db = this.cacheDB.openDatabase();
+        List<ConversationSummary> summaries = new ArrayList<>();
+
+        Cursor cursor = db.rawQuery("SELECT s.*, c." + ConversationEntry.COLUMN_NAME +
+                " FROM " + ConversationSummaryEntry.TABLE_NAME + " s, " + ConversationEntry.TABLE_NAME + " c" +
+                " WHERE c." + ConversationEntry.COLUMN_CID + " = s." + ConversationSummaryEntry.COLUMN_CID +
+                " ORDER BY s." + ConversationSummaryEntry.COLUMN_LAST_ACTIVITY + " DESC", null);
+        try {
+            while (cursor.moveToNext())
+                summaries.add(ConversationSummary.fromCursor(cursor));
+        } finally {
+            cursor.close();
+        }
+        Log.d(TAG, "readAll: " + summaries.size());
+        return summaries;
+    }
+
+    /**
+     * 1 if the event is an unread message, 0 otherwise. Called before and after writing an event
+     * or a receipt, the difference is applied to the unread count by {@link #onEventWritten}.
+     */
+    public static long isUnread(SQLiteDatabase db, String cid, String eventId) {
+        return DatabaseUtils.longForQuery(db, ConversationSummaryContract.SQL_IS_UNREAD, new String[] {cid, eventId});
+    }
+
+    /**
+     * Update the summary after a single event or one of its receipts was written.
+     * @param unreadBefore {@link #isUnread} of the event before the write.
+     */
+    public static void onEventWritten(SQLiteDatabase db, String cid, String eventId, long unreadBefore) {
+        if (DatabaseUtils.queryNumEntries(db, ConversationSummaryEntry.TABLE_NAME,
+                ConversationSummaryEntry.COLUMN_CID + " = ?", new String[] {cid}) == 0) {
+            rebuild(db, cid);
+            return;
+        }
+
+        long delta = isUnread(db, cid, eventId) - unreadBefore;
+        if (delta != 0)
+            db.execSQL("UPDATE " + ConversationSummaryEntry.TABLE_NAME +
+                    " SET " + ConversationSummaryEntry.COLUMN_UNREAD_COUNT + " = MAX(" + ConversationSummaryEntry.COLUMN_UNREAD_COUNT + " + ?, 0)" +
+                    " WHERE " + ConversationSummaryEntry.COLUMN_CID + " = ?", new Object[] {delta, cid});
+
+        Cursor cursor = db.query(EventEntry.TABLE_NAME,
+                new String[] {
+                        EventEntry.COLUMN_MESSAGE_TYPE,
+                        EventEntry.COLUMN_TEXT,
+                        EventEntry.COLUMN_MEMBER_ID,
+                        EventEntry.COLUMN_DELETED_TIMESTAMP,
+                        EventEntry.COLUMN_TIMESTAMP
+                },
+                EventEntry.COLUMN_CID + " = ? AND " + EventEntry.COLUMN_EVENT_ID + " = ? AND "
+                        + EventEntry.COLUMN_MESSAGE_TYPE + " IN " + ConversationSummaryContract.MESSAGE_TYPES,
+                new String[] {cid, eventId}, null, null, null);
+        try {
+            if (!cursor.moveToFirst())
+                return;
+
+            ContentValues values = new ContentValues();
+            EventContract.putEventId(values, ConversationSummaryEntry.COLUMN_LAST_EVENT_ID, eventId);
+            values.put(ConversationSummaryEntry.COLUMN_LAST_EVENT_TYPE, cursor.getString(0));
+            values.put(ConversationSummaryEntry.COLUMN_LAST_EVENT_TEXT, cursor.getString(1));
+            values.put(ConversationSummaryEntry.COLUMN_LAST_EVENT_MEMBER_ID, cursor.getString(2));
+            values.put(ConversationSummaryEntry.COLUMN_LAST_EVENT_DELETED, cursor.isNull(3) ? 0 : 1);
+            values.put(ConversationSummaryEntry.COLUMN_LAST_ACTIVITY, cursor.isNull(4) ? null : cursor.getLong(4));
+            // only if it is the last message, or a newer one.
+            db.update(ConversationSummaryEntry.TABLE_NAME, values,
+                    ConversationSummaryEntry.COLUMN_CID + " = ? AND (" + ConversationSummaryEntry.COLUMN_LAST_EVENT_ID
+                            + " IS NULL OR " + ConversationSummaryEntry.COLUMN_LAST_EVENT_ID + " <= ?)",
+                    new String[] {cid, eventId});
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Compute the summary of a conversation from its cached events, after events were written in bulk.
+     */
+    public static void rebuild(SQLiteDatabase db, String cid) {
+        db.execSQL(ConversationSummaryContract.SQL_REBUILD + " WHERE c." + ConversationEntry.COLUMN_CID + " = ?",
+                new Object[] {cid});
+    }
+
+    public static void rebuild(SQLiteDatabase db, Collection<String> cids) {
+        for (String cid : cids)
+            rebuild(db, cid);
+    }
+
+    public static void delete(SQLiteDatabase db, String placeholders, String[] cids) {
+        db.delete(ConversationSummaryEntry.TABLE_NAME,
+                ConversationSummaryEntry.COLUMN_CID + " IN (" + placeholders + ") ", cids);
+    }
+
+}
@@ -1,24 +1,39 @@
 package com.nexmo.sdk.conversation.core.persistence.repository;
 
+import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.text.TextUtils;
 
 import com.nexmo.sdk.conversation.client.Event;
+import com.nexmo.sdk.conversation.config.Defaults;
+import com.nexmo.sdk.conversation.core.persistence.BulkInsert;
+import com.nexmo.sdk.conversation.core.persistence.CacheWriter;
 import com.nexmo.sdk.conversation.core.persistence.dao.EventDAO;
 import com.nexmo.sdk.conversation.core.util.Log;
 
 import com.nexmo.sdk.conversation.client.CacheDB;
 import com.nexmo.sdk.conversation.client.Conversation;
+import com.nexmo.sdk.conversation.client.ReceiptRecordUtil;
+import com.nexmo.sdk.conversation.core.persistence.contract.ConversationContract;
 import com.nexmo.sdk.conversation.core.persistence.contract.MemberContract;
 import com.nexmo.sdk.conversation.core.persistence.contract.EventContract;
+import com.nexmo.sdk.conversation.core.persistence.contract.MessageSearchContract;
+import com.nexmo.sdk.conversation.core.persistence.contract.MessageSearchContract.MessageSearchEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.ReceiptContract;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 
 /**
  * Event manager responsible for managing and updating message events. 
@@ -31,8 +46,33 @@ import java.util.List;
 public class EventRepository implements EventDAO {
     private static final String TAG = EventRepository.class.getSimpleName();
 
+    // BM25 parameters of the search ranking.
+    private static final double RANK_K1 = 1.2;
+    private static final double RANK_B = 0.75;
+
     private CacheDB cacheDB;
 
+    /**
+     * A message matching a search, see {@link #search(String, int)}.
+     */
+    public static final class SearchHit {
+        final long rowId;
+        public final double score;
+        public final String cid;
+        public final String eventId;
+
+        SearchHit(long rowId, double score) {
+            this(rowId, score, null, null);
+        }
+
+        SearchHit(long rowId, double score, String cid, String eventId) {
+            this.rowId = rowId;
+            this.score = score;
+            this.cid = cid;
+            this.eventId = eventId;
+        }
+    }
+
     public EventRepository(CacheDB cacheDB){
         this.cacheDB = cacheDB;
     }
@@ -41,67 +81,231 @@ public class EventRepository implements EventDAO {
     @Override
     public void insert(final Event event, final String cid) {
         Log.d(TAG, "insertAll ID: " + event.getId());
-        SQLiteDatabase db = this.cacheDB.openDatabase();
-
-        // Insert the new row, returning the primary key value of the new row
-        long pk = db.insertWithOnConflict(
-                EventContract.EventEntry.TABLE_NAME,
-                null,
-                EventContract.contentValues(event, cid),
-                SQLiteDatabase.CONFLICT_REPLACE);
+        final ContentValues values = EventContract.contentValues(event, cid);
+        final List<Object[]> receiptRows = new ArrayList<>();
+        ReceiptContract.addRows(event, cid, receiptRows);
+        final String eventId = event.getId();
+
+        this.cacheDB.write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                long unreadBefore = ConversationSummaryRepository.isUnread(db, cid, eventId);
+                // replacing the event drops its receipts as well, write them again.
+                db.insertWithOnConflict(
+                        EventContract.EventEntry.TABLE_NAME,
+                        null,
+                        values,
+                        SQLiteDatabase.CONFLICT_REPLACE);
+                BulkInsert.execute(db, ReceiptContract.SQL_UPSERT, receiptRows);
+                ConversationSummaryRepository.onEventWritten(db, cid, eventId, unreadBefore);
+            }
+        });
     }
 
     // update a single event
     @Override
     public void update(final Event event, final String cid) {
         Log.d(TAG, "update of eventId: " + event.getId());
-        SQLiteDatabase db = this.cacheDB.openDatabase();
+        final ContentValues values = EventContract.contentValues(event, cid);
+        final String[] args = new String[] {cid, event.getId()};
+
+        this.cacheDB.write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                long unreadBefore = ConversationSummaryRepository.isUnread(db, cid, args[1]);
+                db.update(
+                        EventContract.EventEntry.TABLE_NAME,
+                        values,
+                        EventContract.EventEntry.COLUMN_CID + " = ? AND " + EventContract.EventEntry.COLUMN_EVENT_ID + " = ?",
+                        args);
+                ConversationSummaryRepository.onEventWritten(db, cid, args[1], unreadBefore);
+            }
+        });
+    }
 
-        db.update(
-                EventContract.EventEntry.TABLE_NAME,
-                EventContract.contentValues(event, cid),
-                EventContract.EventEntry.COLUMN_CID + " = ? AND " + EventContract.EventEntry.COLUMN_EVENT_ID + " = ?",
-                new String[] {cid, event.getId()});
+    // remove a list of messages of a conversation, returns true once the delete is queued.
+    @Override
+    public boolean delete(final String cid, final Collection<String> ids) {
+        if (ids.isEmpty()) return false;
+
+        final List<String> eventIds = new ArrayList<>(ids);
+        this.cacheDB.write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                // receipts and search index entries go with them.
+                for (int from = 0; from < eventIds.size(); from += Defaults.CACHE_MAX_BATCH_SIZE) {
+                    List<String> chunk = eventIds.subList(from, Math.min(from + Defaults.CACHE_MAX_BATCH_SIZE, eventIds.size()));
+                    String[] args = new String[chunk.size() + 1];
+                    args[0] = cid;
+                    for (int i = 0; i < chunk.size(); i++)
+                        args[i + 1] = chunk.get(i);
+
+                    db.delete(
+                            EventContract.EventEntry.TABLE_NAME,
+                            EventContract.EventEntry.COLUMN_CID + " = ? AND " + EventContract.EventEntry.COLUMN_EVENT_ID
+                                    + " IN (" + TextUtils.join(",", Collections.nCopies(chunk.size(), "?")) + ")",
+                            args);
+                }
+                ConversationSummaryRepository.rebuild(db, cid);
+            }
+        });
+        return true;
     }
 
     @Override
-    public boolean delete(String id) {
-        return false;
+    public void insertAll(final String cid, final List<Event> eventList) {
+        write(cid, eventList, EventContract.SQL_INSERT);
     }
 
-    // remove a list of messages
+    // insert or replace a list of events.
     @Override
-    public boolean delete(final Collection<String> ids ){
-        SQLiteDatabase db = this.cacheDB.openDatabase();
+    public void upsertAll(final String cid, final List<Event> eventList) {
+        write(cid, eventList, EventContract.SQL_UPSERT);
+    }
 
-        String placeholders = TextUtils.join(",", Collections.nCopies(ids.size(), "?"));
+    private void write(final String cid, final List<Event> eventList, final String sql) {
+        if (eventList.isEmpty()) return;
 
-       return (db.delete(
-                EventContract.EventEntry.TABLE_NAME,
-                EventContract.EventEntry.COLUMN_EVENT_ID + " IN (" + placeholders + ") ",
-                ids.toArray(new String[0])) != 0);
+        final List<Object[]> rows = new ArrayList<>(eventList.size());
+        final List<Object[]> receiptRows = new ArrayList<>();
+        for (Event event : eventList) {
+            rows.add(EventContract.row(event, cid));
+            ReceiptContract.addRows(event, cid, receiptRows);
+        }
+
+        this.cacheDB.write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                int rowsInserted = BulkInsert.execute(db, sql, rows);
+                BulkInsert.execute(db, ReceiptContract.SQL_UPSERT, receiptRows);
+                ConversationSummaryRepository.rebuild(db, cid);
+                Log.d(TAG, "insertAll: # of messages persisted: " + rowsInserted);
+            }
+        });
     }
 
-    @Override
-    public void insertAll(final String cid, final List<Event> eventList) {
+    /**
+     * Search the text messages of every cached conversation. Every word has to match the start of
+     * a word of the message, see {@link MessageSearchContract#matchQuery(String)}.
+     *
+     * <p>Matches are ranked with BM25 computed from the FTS matchinfo, only the best {@code limit}
+     * are kept while the matches are scanned.</p>
+     *
+     * @return Up to {@code limit} hits, at most {@link Defaults#CACHE_MAX_SEARCH_HITS}, best first.
+     */
+    public List<SearchHit> search(String text, int limit) {
+        String match = MessageSearchContract.matchQuery(text);
+        if (match == null || limit < 1)
+            return new ArrayList<>();
+        limit = Math.min(limit, Defaults.CACHE_MAX_SEARCH_HITS);
+
         SQLiteDatabase db = this.cacheDB.openDatabase();
-        db.beginTransaction();
-        int rowsInserted = 0;
+        // the worst of the best hits on top, so it's the one dropped.
+        PriorityQueue<SearchHit> best = new PriorityQueue<>(limit + 1, new Comparator<SearchHit>() {
+            @Override
+            public int compare(SearchHit lhs, SearchHit rhs) {
+                return Double.compare(lhs.score, rhs.score);
+            }
+        });
+        Cursor cursor = db.rawQuery("SELECT docid, matchinfo(" + MessageSearchEntry.TABLE_NAME + ", '"
+                + MessageSearchContract.MATCHINFO_FORMAT + "') FROM " + MessageSearchEntry.TABLE_NAME
+                + " WHERE " + MessageSearchEntry.COLUMN_TEXT + " MATCH ?", new String[] {match});
+        int matches = 0;
         try {
-            for (Event event : eventList) {
-                long _id = db.insert(
-                        EventContract.EventEntry.TABLE_NAME,
-                        null,
-                        EventContract.contentValues(event, cid));
-                if(_id != -1)
-                    rowsInserted++;
+            while (cursor.moveToNext()) {
+                best.offer(new SearchHit(cursor.getLong(0), rank(cursor.getBlob(1))));
+                if (best.size() > limit)
+                    best.poll();
+                matches++;
             }
-            db.setTransactionSuccessful();
+        } finally {
+            cursor.close();
         }
-        finally {
-            db.endTransaction();
+        if (best.isEmpty())
+            return new ArrayList<>();
+
+        Map<Long, Double> scores = new HashMap<>(best.size() * 2);
+        for (SearchHit hit : best)
+            scores.put(hit.rowId, hit.score);
+
+        List<SearchHit> hits = new ArrayList<>(scores.size());
+        List<Long> rowIds = new ArrayList<>(scores.keySet());
+        // in chunks, a statement binds up to 999 variables.
+        for (int from = 0; from < rowIds.size(); from += Defaults.CACHE_MAX_BATCH_SIZE) {
+            List<Long> chunk = rowIds.subList(from, Math.min(from + Defaults.CACHE_MAX_BATCH_SIZE, rowIds.size()));
+            String[] args = new String[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++)
+                args[i] = String.valueOf(chunk.get(i));
+            cursor = db.rawQuery("SELECT rowid, " + EventContract.EventEntry.COLUMN_CID + ", " + EventContract.EventEntry.COLUMN_EVENT_ID
+                    + " FROM " + EventContract.EventEntry.TABLE_NAME
+                    + " WHERE rowid IN (" + TextUtils.join(",", Collections.nCopies(chunk.size(), "?")) + ")", args);
+            try {
+                while (cursor.moveToNext())
+                    hits.add(new SearchHit(cursor.getLong(0), scores.get(cursor.getLong(0)), cursor.getString(1), cursor.getString(2)));
+            } finally {
+                cursor.close();
+            }
         }
-        Log.d(TAG, "insertAll: # of messages persisted: " + rowsInserted);
+
+        Collections.sort(hits, new Comparator<SearchHit>() {
+            @Override
+            public int compare(SearchHit lhs, SearchHit rhs) {
+                return Double.compare(rhs.score, lhs.score);
+            }
+        });
+        Log.d(TAG, "search: " + hits.size() + " of " + matches + " matches");
+        return hits;
+    }
+
+    /**
+     * BM25 of a message from matchinfo 'pcnalx' over the single text column.
+     */
+    private static double rank(byte[] matchinfo) {
+        IntBuffer info = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phrases = info.get(0);
+        int columns = info.get(1);
+        double rows = info.get(2) & 0xFFFFFFFFL;
+        double averageLength = Math.max(info.get(3) & 0xFFFFFFFFL, 1);
+        double length = info.get(3 + columns) & 0xFFFFFFFFL;
+        int hitsOffset = 3 + 2 * columns;
+
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            int hits = hitsOffset + 3 * phrase * columns;
+            double frequency = info.get(hits) & 0xFFFFFFFFL;
+            double rowsWithHits = info.get(hits + 2) & 0xFFFFFFFFL;
+            double idf = Math.log(1 + (rows - rowsWithHits + 0.5) / (rowsWithHits + 0.5));
+            score += idf * frequency * (RANK_K1 + 1)
+                    / (frequency + RANK_K1 * (1 - RANK_B + RANK_B * length / averageLength));
+        }
+        return score;
+    }
+
+    /**
+     * Read some events of a conversation, with their receipts.
+     * @return The events found, in ascending order of id.
+     */
+    public List<Event> read(final String cid, Conversation conversation, Collection<String> eventIds) {
+        List<Event> eventList = new ArrayList<>();
+        if (eventIds.isEmpty()) return eventList;
+
+        SQLiteDatabase db = this.cacheDB.openDatabase();
+        String[] selectionArgs = new String[eventIds.size() + 1];
+        selectionArgs[0] = cid;
+        int i = 1;
+        for (String eventId : eventIds)
+            selectionArgs[i++] = eventId;
+
+        Cursor cursor = query(db,
+                EventContract.EventEntry.COLUMN_CID + " = ? AND " + EventContract.EventEntry.COLUMN_EVENT_ID
+                        + " IN (" + TextUtils.join(",", Collections.nCopies(eventIds.size(), "?")) + ")",
+                selectionArgs,
+                EventContract.EventEntry.COLUMN_EVENT_ID + " ASC",
+                null);
+
+        readEvents(cursor, conversation, eventList);
+        readReceipts(db, cid, eventList);
+        return eventList;
     }
 
     @Override
@@ -114,6 +318,70 @@ public class EventRepository implements EventDAO {
         if (count == 0)
             return eventList;
 
+        Cursor cursor = query(db,
+                EventContract.EventEntry.COLUMN_CID + " = ?",
+                new String[] {cid},
+                EventContract.EventEntry.COLUMN_EVENT_ID + " ASC",
+                null);
+
+        readEvents(cursor, conversation, eventList);
+        readReceipts(db, cid, eventList);
+        Log.d(TAG, "queryConversationMessages: " + eventList.size());
+        return eventList;
+    }
+
+    /**
+     * Read a page of events, the index on (conversation_id, event_id) is used to seek straight
+     * to the page instead of reading the events before it.
+     * @param beforeId read the events older than this one, or the latest ones if null.
+     * @return up to {@code limit} events in ascending order of id.
+     */
+    @Override
+    public List<Event> readPage(final String cid, Conversation conversation, String beforeId, int limit) {
+        List<Event> eventList = new ArrayList<>();
+        SQLiteDatabase db = this.cacheDB.openDatabase();
+
+        String selection = EventContract.EventEntry.COLUMN_CID + " = ?";
+        String[] selectionArgs = {cid};
+        if (beforeId != null) {
+            selection += " AND " + EventContract.EventEntry.COLUMN_EVENT_ID + " < ?";
+            selectionArgs = new String[] {cid, beforeId};
+        }
+
+        // newest first to cut the page at the limit, flipped back once read.
+        Cursor cursor = query(db,
+                selection,
+                selectionArgs,
+                EventContract.EventEntry.COLUMN_EVENT_ID + " DESC",
+                String.valueOf(limit));
+
+        readEvents(cursor, conversation, eventList);
+        Collections.reverse(eventList);
+        readReceipts(db, cid, eventList);
+        Log.d(TAG, "readPage: " + eventList.size() + " events before " + beforeId);
+        return eventList;
+    }
+
+    /**
+     * Open a cursor over every event of a conversation in ascending order of id, for reading
+     * the events lazily. The caller closes it.
+     */
+    public Cursor openCursor(final String cid) {
+        return query(this.cacheDB.openDatabase(),
+                EventContract.EventEntry.COLUMN_CID + " = ?",
+                new String[] {cid},
+                EventContract.EventEntry.COLUMN_EVENT_ID + " ASC",
+                null);
+    }
+
+    /**
+     * Attach cached receipts to events of a conversation, given in ascending order of id.
+     */
+    public void attachReceipts(final String cid, List<Event> eventList) {
+        readReceipts(this.cacheDB.openDatabase(), cid, eventList);
+    }
+
+    private static Cursor query(SQLiteDatabase db, String selection, String[] selectionArgs, String orderBy, String limit) {
         String[] projection = {
                 MemberContract.MemberEntry.COLUMN_MEMBER_ID,
                 MemberContract.MemberEntry.COLUMN_USERNAME,
@@ -126,40 +394,75 @@ public class EventRepository implements EventDAO {
                 EventContract.EventEntry.COLUMN_TIMESTAMP,
                 EventContract.EventEntry.COLUMN_DELETED_TIMESTAMP,
                 EventContract.EventEntry.COLUMN_EVENT_ID,
-                EventContract.EventEntry.COLUMN_DELIVERED_RECEIPTS,
-                EventContract.EventEntry.COLUMN_SEEN_RECEIPTS,
                 EventContract.EventEntry.COLUMN_TEXT,
                 EventContract.EventEntry.COLUMN_IMAGE_REPRESENTATIONS,
                 EventContract.EventEntry.COLUMN_MEMBER_MEDIA_ENABLED
         };
 
-        String[] selectionArgs = { String.valueOf(cid) };
-
-        Cursor cursor = db.query(
+        return db.query(
                 EventContract.EventEntry.TABLE_NAME + " , "
                         + MemberContract.MemberEntry.TABLE_NAME,
                 projection,
-                EventContract.EventEntry.COLUMN_CID + " = ?" + " AND "
+                selection + " AND "
                         + MemberContract.MemberEntry.COLUMN_MEMBER_ID + "="
-                        + EventContract.EventEntry.COLUMN_MEMBER_ID,
+                        + EventContract.EventEntry.COLUMN_MEMBER_ID + " AND "
+                        + MemberContract.MemberEntry.TABLE_NAME + "." + ConversationContract.ConversationEntry.COLUMN_CID + "="
+                        + EventContract.EventEntry.COLUMN_CID,
                 selectionArgs,
                 null,
                 null,
+                orderBy,
+                limit
+        );
+    }
+
+    /**
+     * Attach receipts to events read in ascending order, with a single range query
+     * over the (conversation_id, event_id) prefix of the receipts key.
+     */
+    private static void readReceipts(SQLiteDatabase db, String cid, List<Event> eventList) {
+        if (eventList.isEmpty()) return;
+
+        Map<String, Event> eventsById = new HashMap<>(eventList.size() * 2);
+        for (Event event : eventList)
+            eventsById.put(event.getId(), event);
+
+        String[] projection = {
+                ReceiptContract.ReceiptEntry.COLUMN_EVENT_ID,
+                ReceiptContract.ReceiptEntry.COLUMN_MEMBER_ID,
+                ReceiptContract.ReceiptEntry.COLUMN_KIND,
+                ReceiptContract.ReceiptEntry.COLUMN_TIMESTAMP
+        };
+
+        Cursor cursor = db.query(
+                ReceiptContract.ReceiptEntry.TABLE_NAME,
+                projection,
+                ReceiptContract.ReceiptEntry.COLUMN_CID + " = ? AND "
+                        + ReceiptContract.ReceiptEntry.COLUMN_EVENT_ID + " BETWEEN ? AND ?",
+                new String[] {cid, eventList.get(0).getId(), eventList.get(eventList.size() - 1).getId()},
+                null,
+                null,
                 null
         );
 
         if (cursor != null) {
-            cursor.moveToFirst();
-            while (!cursor.isAfterLast()) {
-                Event event = Event.fromCursor(cursor, conversation);
-
-                eventList.add(event);
-                cursor.moveToNext();
-            }
+            ReceiptRecordUtil.attachFromCursor(cursor, eventsById);
             cursor.close();
         }
-        Log.d(TAG, "queryConversationMessages: " + eventList.size());
-        return eventList;
+    }
+
+    private static void readEvents(Cursor cursor, Conversation conversation, List<Event> eventList) {
+        if (cursor == null) return;
+
+        EventContract.Columns columns = new EventContract.Columns(cursor);
+        cursor.moveToFirst();
+        while (!cursor.isAfterLast()) {
+            Event event = Event.fromCursor(cursor, conversation, columns);
+
+            eventList.add(event);
+            cursor.moveToNext();
+        }
+        cursor.close();
     }
 
     @Override
@@ -222,7 +525,7 @@ public class EventRepository implements EventDAO {
                 selectionArgs,
                 null,
                 null,
-                null
+                EventContract.EventEntry.COLUMN_EVENT_ID + " ASC"
         );
 
         if (cursor != null) {
@@ -234,12 +537,6 @@ public class EventRepository implements EventDAO {
             Log.d(TAG, "Conversation: " + conversation.getDisplayName() + " - Number of messages in DB: " + cursor.getCount());
             cursor.close();
         }
-        Collections.sort(cachedMessageIds, new Comparator<String>() {
-            public int compare(String a, String b) {
-                return Integer.parseInt(a) - Integer.parseInt(b);
-            }
-        });
-
         return cachedMessageIds;
     }
 }
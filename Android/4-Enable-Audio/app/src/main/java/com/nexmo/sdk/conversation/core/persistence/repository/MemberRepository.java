@@ -6,11 +6,13 @@
 
 package com.nexmo.sdk.conversation.core.persistence.repository;
 
+import android.content.ContentValues;
 import android.database.Cursor;
-import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.text.TextUtils;
 
+import com.nexmo.sdk.conversation.core.persistence.BulkInsert;
+import com.nexmo.sdk.conversation.core.persistence.CacheWriter;
 import com.nexmo.sdk.conversation.core.persistence.dao.MemberDAO;
 import com.nexmo.sdk.conversation.core.util.Log;
 
@@ -22,10 +24,11 @@ import com.nexmo.sdk.conversation.core.persistence.contract.MemberContract;
 import com.nexmo.sdk.conversation.core.persistence.contract.MemberContract.MemberEntry;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Member manager responsible for managing and updating members.
@@ -46,62 +49,88 @@ public class MemberRepository implements MemberDAO {
     @Override
     public void insertAll(final String cid, final List<Member> members) {
         Log.d(TAG, "bulkInsertMembersToConversation. cid:  " + cid + " members. " + members.toString());
-        delete(cid);
-
-        SQLiteDatabase db = this.cacheDB.openDatabase();
-        db.beginTransaction();
+        final List<Object[]> rows = new ArrayList<>(members.size());
+        final Set<String> memberIds = new HashSet<>();
+        for (Member member : members) {
+            rows.add(MemberContract.row(member, cid));
+            memberIds.add(member.getMemberId());
+        }
 
-        try {
-            for (Member member : members) {
-                db.insert(
-                        MemberEntry.TABLE_NAME,
-                        null,
-                        MemberContract.contentValues(member, cid));
+        this.cacheDB.write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                // in place, deleting a member deletes its events by cascade.
+                BulkInsert.updateOrInsert(db, MemberContract.SQL_UPDATE, MemberContract.SQL_INSERT, rows,
+                        MemberContract.KEY_INDEXES);
+                deleteMembersNotIn(db, cid, memberIds);
             }
-            db.setTransactionSuccessful();
-        }
-        finally {
-            db.endTransaction();
-        }
+        });
     }
 
+    // returns true once the delete is queued.
     @Override
     public boolean delete(final String cid) {
         Log.d(TAG, "removeMembersFromConversation. cid " + cid);
-        SQLiteDatabase db = this.cacheDB.openDatabase();
+        this.cacheDB.write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                deleteMembers(db, cid);
+            }
+        });
+        return true;
+    }
 
-        return (db.delete(
+    private static void deleteMembers(SQLiteDatabase db, String cid) {
+        db.delete(
                 MemberEntry.TABLE_NAME,
                 ConversationEntry.COLUMN_CID + " = ?",
-                new String[] {cid}) != 0);
+                new String[] {cid});
     }
 
-    @Override
-    public boolean delete(Collection<String> ids) {
-        return false;
+    // members which are no longer part of the conversation.
+    private static void deleteMembersNotIn(SQLiteDatabase db, String cid, Set<String> memberIds) {
+        List<String> gone = new ArrayList<>();
+        Cursor cursor = db.query(MemberEntry.TABLE_NAME, new String[] {MemberEntry.COLUMN_MEMBER_ID},
+                ConversationEntry.COLUMN_CID + " = ?", new String[] {cid}, null, null, null);
+        try {
+            while (cursor.moveToNext())
+                if (!memberIds.contains(cursor.getString(0)))
+                    gone.add(cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
+
+        for (String memberId : gone)
+            db.delete(MemberEntry.TABLE_NAME,
+                    ConversationEntry.COLUMN_CID + " = ? AND " + MemberEntry.COLUMN_MEMBER_ID + " = ?",
+                    new String[] {cid, memberId});
     }
 
     @Override
     public void update(final Member member, final String cid) {
         Log.d(TAG, "updateMemberOfConversation. cid " + cid);
-        SQLiteDatabase db = this.cacheDB.openDatabase();
+        final ContentValues values = MemberContract.contentValues(member, cid);
+        final String[] args = new String[] {cid, member.getMemberId()};
 
-        db.update(
-                MemberEntry.TABLE_NAME,
-                MemberContract.contentValues(member, cid),
-                ConversationEntry.COLUMN_CID + " = ? AND " + MemberEntry.COLUMN_MEMBER_ID + " = ?",
-                new String[] {cid, member.getMemberId()});
+        this.cacheDB.write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                db.update(
+                        MemberEntry.TABLE_NAME,
+                        values,
+                        ConversationEntry.COLUMN_CID + " = ? AND " + MemberEntry.COLUMN_MEMBER_ID + " = ?",
+                        args);
+            }
+        });
     }
 
+    // empty if none are cached, e.g. before the conversation list has been synced.
     @Override
     public List<Member> read(final String cid) {
         Log.d(TAG, "read for cid " + cid);
         List<Member> members = new ArrayList<>();
         SQLiteDatabase db = this.cacheDB.openDatabase();
 
-        if (DatabaseUtils.queryNumEntries(db, MemberEntry.TABLE_NAME) == 0)
-            return null;
-
         String[] projection = {
                 ConversationEntry.COLUMN_CID,
                 MemberEntry.COLUMN_MEMBER_ID,
@@ -143,13 +172,15 @@ public class MemberRepository implements MemberDAO {
     @Override
     public void insert(final Member member, final String cid) {
         Log.d(TAG, "insert.cid " + cid);
-        SQLiteDatabase db = this.cacheDB.openDatabase();
-
-        // Insert the new row, returning the primary key value of the new row
-        long pk = db.insertWithOnConflict(
-                MemberEntry.TABLE_NAME,
-                null,
-                MemberContract.contentValues(member, cid),
-                SQLiteDatabase.CONFLICT_REPLACE);
+        final List<Object[]> rows = Collections.singletonList(MemberContract.row(member, cid));
+
+        this.cacheDB.write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                // not replaced, that would delete the member's events by cascade.
+                BulkInsert.updateOrInsert(db, MemberContract.SQL_UPDATE, MemberContract.SQL_INSERT, rows,
+                        MemberContract.KEY_INDEXES);
+            }
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package com.nexmo.sdk.conversation.core.persistence.repository;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.nexmo.sdk.conversation.client.CacheDB;
+import com.nexmo.sdk.conversation.client.ReceiptRecord;
+import com.nexmo.sdk.conversation.core.persistence.BulkInsert;
+import com.nexmo.sdk.conversation.core.persistence.CacheWriter;
+import com.nexmo.sdk.conversation.core.persistence.contract.ReceiptContract;
+import com.nexmo.sdk.conversation.core.persistence.dao.ReceiptDAO;
+import com.nexmo.sdk.conversation.core.util.Log;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Receipt manager responsible for caching seen and delivered receipts.
+ *
+ * <p>Each receipt is its own row, so a new receipt is a single row upsert instead of
+ * a rewrite of its event. Receipts are read together with their events, see
+ * {@link EventRepository}, and removed with them.</p>
+ *
+ * @hide
+ */
+public class ReceiptRepository implements ReceiptDAO {
+    private static final String TAG = ReceiptRepository.class.getSimpleName();
+
+    private CacheDB cacheDB;
+
+    public ReceiptRepository(CacheDB cacheDB) {
+        this.cacheDB = cacheDB;
+    }
+
+    // insert or replace a single receipt.
+    @Override
+    public void insert(final ReceiptRecord receipt, final String cid) {
+        Log.d(TAG, "insert " + ReceiptContract.kind(receipt) + " receipt of eventId: " + receipt.getEvent().getId());
+        final List<Object[]> rows = Collections.singletonList(ReceiptContract.row(receipt, cid));
+        // delivery doesn't change what's unread.
+        final String seenEventId = (ReceiptContract.KIND_SEEN.equals(ReceiptContract.kind(receipt)) ? receipt.getEvent().getId() : null);
+
+        this.cacheDB.write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                long unreadBefore = (seenEventId != null ? ConversationSummaryRepository.isUnread(db, cid, seenEventId) : 0);
+                BulkInsert.execute(db, ReceiptContract.SQL_UPSERT, rows);
+                if (seenEventId != null)
+                    ConversationSummaryRepository.onEventWritten(db, cid, seenEventId, unreadBefore);
+            }
+        });
+    }
+
+    @Override
+    public void update(final ReceiptRecord receipt, final String cid) {
+        insert(receipt, cid);
+    }
+}
@@ -5,59 +5,266 @@
  */
 package com.nexmo.sdk.conversation.core.util;
 
+import android.database.Cursor;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.Locale;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
 
 /**
  * Common date utilities.
  *
+ * <p>ISO-8601 timestamps are parsed and formatted by hand, straight to and from epoch millis:
+ * every event, receipt and member timestamp goes through here, and the codec is stateless so it's
+ * safe on any thread. Timestamps are written and read as {@code yyyy-MM-dd'T'HH:mm:ss.SSS} in the
+ * local time zone, with the exact results of the non-lenient {@link java.text.SimpleDateFormat}
+ * this replaces: text after the millis, such as a {@code Z} or an offset, is ignored.</p>
+ *
  * @author emma tresanszki.
  *
  * @hide
  */
 public class DateUtil {
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+    // days from 0000-03-01 to 1970-01-01, in the proleptic Gregorian calendar.
+    private static final long DAYS_0000_TO_1970 = 719468;
+    private static final int DAYS_PER_400_YEARS = 146097;
 
-    static final DateFormat DATE_FORMAT =
-            new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS", Locale.getDefault());
+    // the first year wholly in the Gregorian calendar, as a GregorianCalendar switches on 1582-10-15.
+    private static final int GREGORIAN_YEAR = 1583;
 
-    static final DateFormat SIMPLIFIED_DATE_FORMAT =
-            new SimpleDateFormat("yyyyMMdd", Locale.getDefault());
+    // captured once, as the formatters this replaces did.
+    private static final TimeZone LOCAL_TIME_ZONE = TimeZone.getDefault();
 
-    static final ThreadLocal<DateFormat> ISO_8601_DATE_FORMAT =
-            new ThreadLocal<DateFormat>() {
+    // yyyy-MM-ddTHH:mm:ss.SSS
+    private static final int ISO_8601_LENGTH = 23;
+    private static final ThreadLocal<char[]> FORMAT_BUFFER =
+            new ThreadLocal<char[]>() {
                 @Override
-                protected DateFormat initialValue() {
-                    DATE_FORMAT.setLenient(false);
-                    DATE_FORMAT.setTimeZone(Calendar.getInstance().getTimeZone());
-                    return DATE_FORMAT;
-                }
-            };
-
-    static final ThreadLocal<DateFormat> IMAGE_NAMING_DATE_FORMAT =
-            new ThreadLocal<DateFormat>() {
-                @Override
-                protected DateFormat initialValue() {
-                    SIMPLIFIED_DATE_FORMAT.setLenient(false);
-                    SIMPLIFIED_DATE_FORMAT.setTimeZone(Calendar.getInstance().getTimeZone());
-                    return SIMPLIFIED_DATE_FORMAT;
+                protected char[] initialValue() {
+                    return new char[ISO_8601_LENGTH + 6];
                 }
             };
 
     public static Date formatIso8601DateString(String timestamp) throws ParseException {
         if (timestamp == null)
             return null;
-        return ISO_8601_DATE_FORMAT.get().parse(timestamp);
+        return new Date(parseIso8601Millis(timestamp));
     }
 
     public static String formatIso8601DateString(Date date) {
-        return (date != null ? ISO_8601_DATE_FORMAT.get().format(date) : null);
+        return (date != null ? formatIso8601Millis(date.getTime()) : null);
+    }
+
+    /**
+     * Parse an ISO-8601 timestamp, e.g. {@code 2017-03-31T12:50:33.871Z}, in the local time zone.
+     *
+     * @return Epoch millis.
+     * @throws ParseException if the timestamp isn't valid.
+     */
+    public static long parseIso8601Millis(CharSequence timestamp) throws ParseException {
+        return parseIso8601Millis(timestamp, LOCAL_TIME_ZONE);
+    }
+
+    /**
+     * As {@link #parseIso8601Millis(CharSequence)}, in the given time zone.
+     *
+     * <p>Reads what {@code yyyy-MM-dd'T'HH:mm:ss.SSS} does: every field is a run of digits,
+     * optionally after spaces, and the millis are the value of the digits after the dot, so
+     * {@code .5} is 5 millis. Anything after the millis is ignored. Invalid dates and times
+     * skipped when daylight saving starts are rejected.</p>
+     */
+    static long parseIso8601Millis(CharSequence timestamp, TimeZone timeZone) throws ParseException {
+        int[] position = new int[1];
+        int year = field(timestamp, position);
+        expect(timestamp, position, '-');
+        int month = field(timestamp, position);
+        expect(timestamp, position, '-');
+        int day = field(timestamp, position);
+        expect(timestamp, position, 'T');
+        int hour = field(timestamp, position);
+        expect(timestamp, position, ':');
+        int minute = field(timestamp, position);
+        expect(timestamp, position, ':');
+        int second = field(timestamp, position);
+        expect(timestamp, position, '.');
+        int millis = field(timestamp, position);
+
+        if (year < GREGORIAN_YEAR || year > 9999)
+            return fromCalendar(timestamp, timeZone, year, month, day, hour, minute, second, millis);
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month) || hour > 23
+                || minute > 59 || second > 59 || millis > 999)
+            throw new ParseException("Invalid date: " + timestamp, 0);
+
+        long local = (daysFromCivil(year, month, day) * MILLIS_PER_DAY) + (hour * MILLIS_PER_HOUR)
+                + (minute * MILLIS_PER_MINUTE) + (second * MILLIS_PER_SECOND) + millis;
+        return fromLocalMillis(timestamp, local, timeZone);
+    }
+
+    /**
+     * Format epoch millis as {@code yyyy-MM-dd'T'HH:mm:ss.SSS} in the local time zone.
+     */
+    public static String formatIso8601Millis(long epochMillis) {
+        long local = epochMillis + LOCAL_TIME_ZONE.getOffset(epochMillis);
+        long days = floorDiv(local, MILLIS_PER_DAY);
+        int millisOfDay = (int) (local - (days * MILLIS_PER_DAY));
+
+        char[] buffer = FORMAT_BUFFER.get();
+        int position = writeDate(buffer, days, true);
+        buffer[position++] = 'T';
+        position = write(buffer, position, millisOfDay / (int) MILLIS_PER_HOUR, 2);
+        buffer[position++] = ':';
+        position = write(buffer, position, (millisOfDay / (int) MILLIS_PER_MINUTE) % 60, 2);
+        buffer[position++] = ':';
+        position = write(buffer, position, (millisOfDay / (int) MILLIS_PER_SECOND) % 60, 2);
+        buffer[position++] = '.';
+        position = write(buffer, position, millisOfDay % (int) MILLIS_PER_SECOND, 3);
+        return new String(buffer, 0, position);
+    }
+
+    // wall clock time in a time zone to epoch millis. As with SimpleDateFormat, a time repeated
+    // when daylight saving ends is the later one, and a time skipped when it starts is rejected.
+    private static long fromLocalMillis(CharSequence timestamp, long local, TimeZone timeZone) throws ParseException {
+        int before = timeZone.getOffset(local - MILLIS_PER_DAY);
+        int after = timeZone.getOffset(local + MILLIS_PER_DAY);
+        int smaller = Math.min(before, after);
+        int larger = Math.max(before, after);
+        if (timeZone.getOffset(local - smaller) == smaller)
+            return local - smaller;
+        if (timeZone.getOffset(local - larger) == larger)
+            return local - larger;
+
+        throw new ParseException("Time skipped in " + timeZone.getID() + ": " + timestamp, 0);
+    }
+
+    // dates before the Gregorian calendar took effect are Julian, as a Calendar has them. Years
+    // beyond 9999 are rare enough to be left to it as well, along with its upper bound.
+    private static long fromCalendar(CharSequence timestamp, TimeZone timeZone, int year, int month, int day,
+                                     int hour, int minute, int second, int millis) throws ParseException {
+        Calendar calendar = new GregorianCalendar(timeZone);
+        calendar.clear();
+        calendar.setLenient(false);
+        calendar.set(year, month - 1, day, hour, minute, second);
+        calendar.set(Calendar.MILLISECOND, millis);
+        try {
+            return calendar.getTimeInMillis();
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("Invalid date: " + timestamp, 0);
+        }
+    }
+
+    // a run of digits after optional spaces or tabs, as SimpleDateFormat reads a number field.
+    private static int field(CharSequence text, int[] position) throws ParseException {
+        int i = position[0];
+        while (i < text.length() && (text.charAt(i) == ' ' || text.charAt(i) == '\t'))
+            i++;
+        int start = i;
+        long value = 0;
+        while (i < text.length() && isDigit(text.charAt(i))) {
+            value = (value * 10) + (text.charAt(i) - '0');
+            if (value > Integer.MAX_VALUE)
+                throw new ParseException("Number too large: " + text, start);
+            i++;
+        }
+        if (i == start)
+            throw new ParseException("Digit expected: " + text, start);
+        position[0] = i;
+        return (int) value;
+    }
+
+    private static void expect(CharSequence text, int[] position, char expected) throws ParseException {
+        if (position[0] >= text.length() || text.charAt(position[0]) != expected)
+            throw new ParseException("'" + expected + "' expected: " + text, position[0]);
+        position[0]++;
+    }
+
+    private static boolean isDigit(char c) {
+        return (c >= '0' && c <= '9');
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2)
+            return ((year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28);
+        return (month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31);
+    }
+
+    // days since 1970-01-01 of a date, see http://howardhinnant.github.io/date_algorithms.html
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = (month <= 2 ? year - 1 : year);
+        long era = floorDiv(y, 400);
+        long yearOfEra = y - (era * 400);
+        long dayOfYear = (((153 * (month > 2 ? month - 3 : month + 9)) + 2) / 5) + day - 1;
+        long dayOfEra = (yearOfEra * 365) + (yearOfEra / 4) - (yearOfEra / 100) + dayOfYear;
+        return (era * DAYS_PER_400_YEARS) + dayOfEra - DAYS_0000_TO_1970;
+    }
+
+    // the inverse of daysFromCivil, writes yyyy-MM-dd or yyyyMMdd and returns the end position.
+    private static int writeDate(char[] buffer, long days, boolean separators) {
+        long shifted = days + DAYS_0000_TO_1970;
+        long era = floorDiv(shifted, DAYS_PER_400_YEARS);
+        long dayOfEra = shifted - (era * DAYS_PER_400_YEARS);
+        long yearOfEra = (dayOfEra - (dayOfEra / 1460) + (dayOfEra / 36524) - (dayOfEra / 146096)) / 365;
+        long dayOfYear = dayOfEra - ((365 * yearOfEra) + (yearOfEra / 4) - (yearOfEra / 100));
+        long shiftedMonth = ((5 * dayOfYear) + 2) / 153;
+        int day = (int) (dayOfYear - (((153 * shiftedMonth) + 2) / 5) + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        int year = (int) (yearOfEra + (era * 400) + (month <= 2 ? 1 : 0));
+
+        int position = write(buffer, 0, year, 4);
+        if (separators) buffer[position++] = '-';
+        position = write(buffer, position, month, 2);
+        if (separators) buffer[position++] = '-';
+        return write(buffer, position, day, 2);
+    }
+
+    // zero padded to width digits, wider if needed.
+    private static int write(char[] buffer, int position, int value, int width) {
+        int digits = width;
+        for (int rest = value / pow10(width); rest > 0; rest /= 10)
+            digits++;
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (char) ('0' + (value % 10));
+            value /= 10;
+        }
+        return position + digits;
+    }
+
+    private static int pow10(int exponent) {
+        int value = 1;
+        for (int i = 0; i < exponent; i++)
+            value *= 10;
+        return value;
+    }
+
+    private static long floorDiv(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        return ((dividend % divisor != 0 && ((dividend ^ divisor) < 0)) ? quotient - 1 : quotient);
+    }
+
+    /**
+     * Date as stored in the cache, epoch millis or null.
+     */
+    public static Long toEpochMillis(Date date) {
+        return (date != null ? date.getTime() : null);
+    }
+
+    /**
+     * Read a date stored in the cache as epoch millis.
+     */
+    public static Date fromEpochMillis(Cursor cursor, String columnName) {
+        return fromEpochMillis(cursor, cursor.getColumnIndex(columnName));
+    }
+
+    public static Date fromEpochMillis(Cursor cursor, int columnIndex) {
+        return (columnIndex != -1 && !cursor.isNull(columnIndex) ? new Date(cursor.getLong(columnIndex)) : null);
     }
 
     public static Date parseDateFromJson(final JSONObject body, final String key) throws JSONException {
@@ -69,7 +276,15 @@ public class DateUtil {
         }
     }
 
+    /**
+     * Date as yyyyMMdd in the local time zone.
+     */
     public static String formatImageNamingDateString(Date date) {
-        return (date != null ? IMAGE_NAMING_DATE_FORMAT.get().format(date) : null);
+        if (date == null)
+            return null;
+
+        long local = date.getTime() + LOCAL_TIME_ZONE.getOffset(date.getTime());
+        char[] buffer = FORMAT_BUFFER.get();
+        return new String(buffer, 0, writeDate(buffer, floorDiv(local, MILLIS_PER_DAY), false));
     }
 }
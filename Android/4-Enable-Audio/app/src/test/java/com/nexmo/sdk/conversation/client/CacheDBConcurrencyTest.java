@@ -0,0 +1,162 @@
+package com.nexmo.sdk.conversation.client;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.nexmo.sdk.conversation.core.persistence.CacheWriter;
+import com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reads of the cache running while the writer commits, as when a conversation is opened during a sync.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CacheDBConcurrencyTest {
+    private static final int CONVERSATIONS = 4;
+    private static final int PAGE = 50;
+
+    private CacheDB cacheDB;
+    private final List<Conversation> conversations = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        cacheDB = TestCache.open();
+        for (int i = 0; i < CONVERSATIONS; i++) {
+            Conversation conversation = TestCache.conversation(cacheDB, "CON-" + i);
+            cacheDB.getEventRepository().insertAll(conversation.getConversationId(), TestCache.texts(conversation, 1, PAGE));
+            conversations.add(conversation);
+        }
+        cacheDB.awaitPendingWrites();
+    }
+
+    @Test
+    public void readsDontWaitForAWriteTransactionInProgress() throws InterruptedException {
+        final Conversation conversation = conversations.get(0);
+        final CountDownLatch inTransaction = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        cacheDB.write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                db.execSQL("DELETE FROM " + EventEntry.TABLE_NAME + " WHERE " + EventEntry.COLUMN_CID + " = ?",
+                        new Object[] {conversation.getConversationId()});
+                inTransaction.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {}
+            }
+        });
+        assertTrue(inTransaction.await(10, TimeUnit.SECONDS));
+
+        try {
+            long start = System.nanoTime();
+            List<Event> page = cacheDB.getEventRepository().readPage(conversation.getConversationId(), conversation, null, PAGE);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            // the last committed snapshot, without waiting for the delete to commit.
+            assertEquals(PAGE, page.size());
+            assertTrue("read waited " + elapsedMillis + "ms for the writer", elapsedMillis < 5000);
+        } finally {
+            release.countDown();
+        }
+
+        cacheDB.awaitPendingWrites();
+        assertTrue(cacheDB.getEventRepository().readPage(conversation.getConversationId(), conversation, null, PAGE).isEmpty());
+    }
+
+    @Test
+    public void concurrentReadsAndWritesStayConsistent() throws InterruptedException {
+        final int readers = 4;
+        final int batches = 10;
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicInteger reads = new AtomicInteger();
+        final AtomicLong maxReadMillis = new AtomicLong();
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        final CountDownLatch readersDone = new CountDownLatch(readers);
+
+        for (int r = 0; r < readers; r++) {
+            final int reader = r;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int i = 0;
+                        while (writing.get()) {
+                            Conversation conversation = conversations.get((reader + i++) % CONVERSATIONS);
+                            long start = System.nanoTime();
+                            List<Event> page = cacheDB.getEventRepository().readPage(conversation.getConversationId(),
+                                    conversation, null, PAGE);
+                            cacheDB.getEventRepository().getLastEventId(conversation.getConversationId());
+                            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                            long max;
+                            do {
+                                max = maxReadMillis.get();
+                            } while (elapsed > max && !maxReadMillis.compareAndSet(max, elapsed));
+
+                            // a committed page: full, in ascending order, without gaps.
+                            assertEquals(PAGE, page.size());
+                            for (int e = 1; e < page.size(); e++)
+                                assertEquals(Long.parseLong(page.get(e - 1).getId()) + 1, Long.parseLong(page.get(e).getId()));
+                            reads.incrementAndGet();
+                        }
+                    } catch (Throwable throwable) {
+                        errors.add(throwable);
+                    } finally {
+                        readersDone.countDown();
+                    }
+                }
+            }, "reader-" + r).start();
+        }
+
+        // history sync: pages of older events and upserts of the latest ones, for every conversation.
+        for (int batch = 0; batch < batches; batch++) {
+            for (Conversation conversation : conversations) {
+                cacheDB.getEventRepository().upsertAll(conversation.getConversationId(),
+                        TestCache.texts(conversation, 1000 + batch * PAGE, PAGE));
+                cacheDB.getEventRepository().upsertAll(conversation.getConversationId(),
+                        TestCache.texts(conversation, 1, PAGE));
+            }
+        }
+        cacheDB.awaitPendingWrites();
+        writing.set(false);
+
+        assertTrue(readersDone.await(30, TimeUnit.SECONDS));
+        if (!errors.isEmpty())
+            throw new AssertionError(errors.get(0));
+        System.out.println(String.format("%d reads during %d writes, slowest read %d ms",
+                reads.get(), 2 * batches * CONVERSATIONS, maxReadMillis.get()));
+        assertTrue(reads.get() > 0);
+        for (Conversation conversation : conversations) {
+            assertEquals(String.valueOf(1000 + batches * PAGE - 1),
+                    cacheDB.getEventRepository().getLastEventId(conversation.getConversationId()));
+            assertEquals((batches + 1) * PAGE, cacheDB.getEventRepository().getEventIds(conversation).size());
+        }
+    }
+
+    @Test
+    public void readerSeesItsOwnWritesAfterAwaitingThem() {
+        Conversation conversation = conversations.get(1);
+        List<Event> latest = TestCache.texts(conversation, 5000, 1);
+        cacheDB.getEventRepository().upsertAll(conversation.getConversationId(), latest);
+
+        cacheDB.awaitPendingWrites();
+        assertEquals("5000", cacheDB.getEventRepository().getLastEventId(conversation.getConversationId()));
+        assertEquals(new Date(5000 * 1000L), cacheDB.getEventRepository()
+                .readPage(conversation.getConversationId(), conversation, null, 1).get(0).getTimestamp());
+    }
+}
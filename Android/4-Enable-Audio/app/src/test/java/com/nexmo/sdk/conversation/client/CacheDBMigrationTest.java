@@ -0,0 +1,179 @@
+package com.nexmo.sdk.conversation.client;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.nexmo.sdk.conversation.core.persistence.CachePartitions;
+import com.nexmo.sdk.conversation.core.persistence.repository.EventRepository;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A cache written by version 3 of the schema, migrated to the current one when the partition is opened.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CacheDBMigrationTest {
+
+    // the schema of version 3, as CacheDB created it. It never created its indexes, see Migration3To4.
+    private static final String[] SCHEMA_V3 = {
+            "CREATE TABLE conversation (cid TEXT PRIMARY KEY,name TEXT,created TIMESTAMP,lastEventId TEXT,selfMemberId TEXT )",
+            "CREATE TABLE member (id TEXT,username TEXT,user_id TEXT,state TEXT,invited_at TIMESTAMP,joined_at TIMESTAMP," +
+                    "left_at TIMESTAMP,cid TEXT, PRIMARY KEY (id,cid), FOREIGN KEY(cid) REFERENCES conversation(cid) ON DELETE CASCADE )",
+            "CREATE TABLE message (event_id TEXT,conversation_id TEXT,message_type TEXT,text TEXT,member_id TEXT,timestamp TIMESTAMP," +
+                    "deleted_timestamp TIMESTAMP,image_representations TEXT,delivered_receipts TEXT,seen_receipts TEXT,audio_enabled INT , " +
+                    " PRIMARY KEY (event_id,conversation_id), FOREIGN KEY(member_id,conversation_id) REFERENCES member(id,cid) ON DELETE CASCADE )"
+    };
+
+    @Test
+    public void version3CacheIsMigratedInPlace() throws ParseException {
+        User user = new User("USR-" + System.nanoTime(), "alice");
+        SQLiteDatabase v3 = createDatabase(user, 3);
+        for (String sql : SCHEMA_V3)
+            v3.execSQL(sql);
+        v3.execSQL("INSERT INTO conversation VALUES ('CON-1', 'general', '2017-01-02T09:00:00.000', '3', 'MEM-1')");
+        v3.execSQL("INSERT INTO member VALUES ('MEM-1', 'alice', ?, 'JOINED', NULL, '2017-01-02T09:00:00.000', NULL, 'CON-1')",
+                new Object[] {user.getUserId()});
+        v3.execSQL("INSERT INTO member VALUES ('MEM-2', 'bob', 'USR-2', 'JOINED', NULL, '2017-01-02T09:30:00.000', NULL, 'CON-1')");
+        v3.execSQL("INSERT INTO message VALUES ('1', 'CON-1', 'TEXT', 'hello world', 'MEM-2', '2017-01-02T10:12:00.000', NULL, NULL," +
+                " NULL, '{\"seen_by\":{\"MEM-1\":\"2017-01-02T10:13:00.000Z\"}}', NULL)");
+        v3.execSQL("INSERT INTO message VALUES ('2', 'CON-1', 'TEXT', 'good morning', 'MEM-2', '2017-01-02T10:14:00.000', NULL, NULL," +
+                " '{\"delivered_to\":{\"MEM-1\":\"2017-01-02T10:14:30.123\"}}', NULL, NULL)");
+        v3.execSQL("INSERT INTO message VALUES ('3', 'CON-1', 'TEXT', 'never mind', 'MEM-1', '2017-01-02T10:15:00.000'," +
+                " '2017-01-02T10:16:00.000', NULL, NULL, 'not json', NULL)");
+        v3.close();
+
+        CacheDB.switchToUser(RuntimeEnvironment.application, user);
+        CacheDB cacheDB = CacheDB.getCacheDBInstance();
+        SQLiteDatabase db = cacheDB.openDatabase();
+
+        // schema
+        assertEquals(8, db.getVersion());
+        assertTrue(names(db, "table").containsAll(Arrays.asList("conversation", "member", "message", "receipt",
+                "conversation_summary", "message_search")));
+        assertEquals(Arrays.asList("message_search_delete", "message_search_insert", "message_search_update"), names(db, "trigger"));
+        assertTrue(names(db, "index").contains("idx_member_cid"));
+        List<String> messageColumns = columns(db, "message");
+        assertFalse(messageColumns.contains("delivered_receipts"));
+        assertFalse(messageColumns.contains("seen_receipts"));
+        Cursor violations = db.rawQuery("PRAGMA foreign_key_check", null);
+        try {
+            assertEquals(0, violations.getCount());
+        } finally {
+            violations.close();
+        }
+
+        // rows, dates are read in local time as version 3 wrote them.
+        assertEquals(localMillis("2017-01-02T09:00:00.000"), DatabaseUtils.longForQuery(db,
+                "SELECT created FROM conversation WHERE cid = 'CON-1'", null));
+        assertEquals(localMillis("2017-01-02T09:30:00.000"), DatabaseUtils.longForQuery(db,
+                "SELECT joined_at FROM member WHERE id = 'MEM-2'", null));
+        assertEquals("integer", DatabaseUtils.stringForQuery(db, "SELECT typeof(event_id) FROM message WHERE text = 'good morning'", null));
+        assertEquals(localMillis("2017-01-02T10:16:00.000"), DatabaseUtils.longForQuery(db,
+                "SELECT deleted_timestamp FROM message WHERE event_id = 3", null));
+
+        // receipts moved to their own table, a trailing zone is ignored the way version 4 read it.
+        assertEquals(2, DatabaseUtils.queryNumEntries(db, "receipt"));
+        assertEquals(localMillis("2017-01-02T10:13:00.000"), DatabaseUtils.longForQuery(db,
+                "SELECT timestamp FROM receipt WHERE event_id = 1 AND member_id = 'MEM-1' AND kind = 'seen'", null));
+        assertEquals(localMillis("2017-01-02T10:14:30.123"), DatabaseUtils.longForQuery(db,
+                "SELECT timestamp FROM receipt WHERE event_id = 2 AND member_id = 'MEM-1' AND kind = 'delivered'", null));
+
+        // summary computed from the migrated rows: message 2 is the only one unseen by alice.
+        assertEquals(3, DatabaseUtils.longForQuery(db, "SELECT last_event_id FROM conversation_summary WHERE conversation_id = 'CON-1'", null));
+        assertEquals(1, DatabaseUtils.longForQuery(db, "SELECT last_event_deleted FROM conversation_summary WHERE conversation_id = 'CON-1'", null));
+        assertEquals(1, DatabaseUtils.longForQuery(db, "SELECT unread_count FROM conversation_summary WHERE conversation_id = 'CON-1'", null));
+
+        // read back through the repositories.
+        Member self = new Member(user.getUserId(), "alice", "MEM-1", Member.STATE.JOINED);
+        Conversation conversation = new Conversation("general", "CON-1", "3", self, new Date(0));
+        self.setConversation(conversation);
+        List<Event> events = cacheDB.getEventRepository().readPage("CON-1", conversation, null, 10);
+        assertEquals(3, events.size());
+        assertEquals("1", events.get(0).getId());
+        assertEquals(new Date(localMillis("2017-01-02T10:12:00.000")), events.get(0).getTimestamp());
+        assertEquals("hello world", ((Text) events.get(0)).getText());
+
+        List<EventRepository.SearchHit> hits = cacheDB.getEventRepository().search("morning", 10);
+        assertEquals(1, hits.size());
+        assertEquals("2", hits.get(0).eventId);
+
+        // later writes keep the search index up to date through the triggers.
+        cacheDB.getEventRepository().insertAll("CON-1", Collections.<Event>singletonList(
+                new Text("morning again", "4", new Date(), self, conversation)));
+        cacheDB.awaitPendingWrites();
+        assertEquals(2, cacheDB.getEventRepository().search("morning", 10).size());
+    }
+
+    @Test
+    public void versionWithoutMigrationIsRecreated() {
+        User user = new User("USR-" + System.nanoTime(), "alice");
+        SQLiteDatabase v2 = createDatabase(user, 2);
+        v2.execSQL("CREATE TABLE conversation (cid TEXT PRIMARY KEY, name TEXT)");
+        v2.execSQL("INSERT INTO conversation VALUES ('CON-1', 'general')");
+        v2.close();
+
+        CacheDB.switchToUser(RuntimeEnvironment.application, user);
+        SQLiteDatabase db = CacheDB.getCacheDBInstance().openDatabase();
+
+        assertEquals(8, db.getVersion());
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, "conversation"));
+        assertTrue(columns(db, "conversation").size() > 2);
+        assertNull(DatabaseUtils.stringForQuery(db, "SELECT MAX(event_id) FROM message", null));
+    }
+
+    // the partition file of the user, as an earlier version of the SDK left it.
+    private static SQLiteDatabase createDatabase(User user, int version) {
+        File file = RuntimeEnvironment.application.getDatabasePath(CachePartitions.databaseName(user));
+        file.getParentFile().mkdirs();
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        db.setVersion(version);
+        return db;
+    }
+
+    private static long localMillis(String date) throws ParseException {
+        return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS", Locale.getDefault()).parse(date).getTime();
+    }
+
+    private static List<String> names(SQLiteDatabase db, String type) {
+        List<String> names = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = ? ORDER BY name", new String[] {type});
+        try {
+            while (cursor.moveToNext())
+                names.add(cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+
+    private static List<String> columns(SQLiteDatabase db, String table) {
+        List<String> columns = new ArrayList<>();
+        Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+        try {
+            while (cursor.moveToNext())
+                columns.add(cursor.getString(cursor.getColumnIndex("name")));
+        } finally {
+            cursor.close();
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,231 @@
+package com.nexmo.sdk.conversation.client;
+
+import com.nexmo.sdk.conversation.core.client.request.GetConversationsRequest;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class ConversationListPagerTest {
+    private static final int CONVERSATIONS = 5000;
+    private static final int PAGE_SIZE = 100;
+
+    private final User self = new User("USR-1", "alice");
+    // stands in for the dispatcher lane responses arrive on.
+    private final ExecutorService lane = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        lane.shutdownNow();
+    }
+
+    @Test
+    public void wholeListIsMergedPageByPageOffTheLane() throws InterruptedException {
+        StandInServer server = new StandInServer(CONVERSATIONS, true);
+        RecordingSink sink = new RecordingSink();
+        new ConversationListPager(server, sink, 5000).sync();
+
+        assertTrue(sink.done.await(30, TimeUnit.SECONDS));
+        assertFalse(sink.failed);
+        assertEquals(CONVERSATIONS / PAGE_SIZE, server.fetched.get());
+        assertEquals(CONVERSATIONS, sink.cids.size());
+        for (int i = 0; i < CONVERSATIONS; i++)
+            assertEquals("CON-" + i, sink.cids.get(i));
+
+        assertEquals(CONVERSATIONS / PAGE_SIZE, sink.firstPageFlags.size());
+        assertTrue(sink.firstPageFlags.get(0));
+        assertFalse(sink.firstPageFlags.get(1));
+        // pages are merged in a loop, the stack doesn't grow page after page.
+        assertEquals(1, new HashSet<>(sink.stackDepths).size());
+        for (String thread : sink.threads)
+            assertEquals("capi-sdk-conversation-pager", thread);
+        assertFalse(server.overlapped);
+    }
+
+    @Test
+    public void failedPageStopsTheSync() throws InterruptedException {
+        StandInServer server = new StandInServer(CONVERSATIONS, true);
+        server.failAtPage = 3;
+        RecordingSink sink = new RecordingSink();
+        new ConversationListPager(server, sink, 5000).sync();
+
+        assertTrue(sink.done.await(30, TimeUnit.SECONDS));
+        assertTrue(sink.failed);
+        assertFalse(sink.failedOnFirstPage);
+        assertEquals(3 * PAGE_SIZE, sink.cids.size());
+        assertEquals(4, server.fetched.get());
+    }
+
+    @Test
+    public void missingPageTimesOut() throws InterruptedException {
+        StandInServer server = new StandInServer(CONVERSATIONS, true);
+        server.dropAtPage = 0;
+        RecordingSink sink = new RecordingSink();
+        new ConversationListPager(server, sink, 100).sync();
+
+        assertTrue(sink.done.await(30, TimeUnit.SECONDS));
+        assertTrue(sink.failed);
+        assertTrue(sink.failedOnFirstPage);
+        assertTrue(sink.cids.isEmpty());
+    }
+
+    @Test
+    public void backendWithoutPagingSendsOnePage() throws InterruptedException {
+        StandInServer server = new StandInServer(CONVERSATIONS, false);
+        RecordingSink sink = new RecordingSink();
+        new ConversationListPager(server, sink, 5000).sync();
+
+        assertTrue(sink.done.await(30, TimeUnit.SECONDS));
+        assertFalse(sink.failed);
+        assertEquals(1, server.fetched.get());
+        assertEquals(CONVERSATIONS, sink.cids.size());
+        assertEquals(Collections.singletonList(true), sink.firstPageFlags);
+    }
+
+    @Test
+    public void syncsRunOneAtATime() throws InterruptedException {
+        StandInServer server = new StandInServer(CONVERSATIONS, true);
+        RecordingSink sink = new RecordingSink(2);
+        ConversationListPager pager = new ConversationListPager(server, sink, 5000);
+        pager.sync();
+        pager.sync();
+
+        assertTrue(sink.done.await(60, TimeUnit.SECONDS));
+        assertEquals(2 * CONVERSATIONS, sink.cids.size());
+        // the second sync starts after the last page of the first one.
+        int pages = CONVERSATIONS / PAGE_SIZE;
+        assertTrue(sink.firstPageFlags.get(0));
+        assertTrue(sink.firstPageFlags.get(pages));
+        assertEquals(2, Collections.frequency(sink.firstPageFlags, true));
+        assertFalse(server.overlapped);
+    }
+
+    /**
+     * Serves the conversation list the way the backend does, responses arrive on the lane.
+     */
+    private class StandInServer implements ConversationListPager.PageSource {
+        private final int conversations;
+        private final boolean paging;
+        private final AtomicInteger fetched = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        volatile int failAtPage = -1;
+        volatile int dropAtPage = -1;
+        volatile boolean overlapped;
+
+        StandInServer(int conversations, boolean paging) {
+            this.conversations = conversations;
+            this.paging = paging;
+        }
+
+        @Override
+        public void fetch(String cursor, final ConversationListPager.PageCallback callback) {
+            final GetConversationsRequest request = new GetConversationsRequest(self, cursor, PAGE_SIZE);
+            final int page = fetched.getAndIncrement();
+            if (inFlight.incrementAndGet() > 1)
+                overlapped = true;
+            if (page == dropAtPage) return;
+
+            lane.execute(new Runnable() {
+                @Override
+                public void run() {
+                    inFlight.decrementAndGet();
+                    if (page == failAtPage) {
+                        callback.onError();
+                        return;
+                    }
+                    try {
+                        GetConversationsRequest.Page result = respond(request);
+                        List<Conversation> list = new ArrayList<>();
+                        for (GetConversationsRequest.Container container : result.containers)
+                            list.add(container.conversation);
+                        callback.onPage(list, result.nextCursor);
+                    } catch (JSONException e) {
+                        callback.onError();
+                    }
+                }
+            });
+        }
+
+        private GetConversationsRequest.Page respond(GetConversationsRequest request) throws JSONException {
+            JSONObject requestBody = request.toJson().getJSONObject("body");
+            int from = 0;
+            int to = conversations;
+            if (paging) {
+                from = Integer.parseInt(requestBody.optString("cursor", "0"));
+                to = Math.min(conversations, from + requestBody.getInt("page_size"));
+            }
+
+            JSONArray array = new JSONArray();
+            for (int i = from; i < to; i++)
+                array.put(new JSONObject()
+                        .put("id", "CON-" + i)
+                        .put("name", "conversation " + i)
+                        .put("sequence_number", String.valueOf(i))
+                        .put("member_id", "MEM-" + i)
+                        .put("state", "JOINED"));
+
+            if (!paging)
+                return request.parse(new JSONObject().put("body", array), new JSONObject());
+
+            JSONObject body = new JSONObject().put("conversations", array);
+            if (to < conversations)
+                body.put("cursor", String.valueOf(to));
+            return request.parse(new JSONObject().put("body", body), body);
+        }
+    }
+
+    private static class RecordingSink implements ConversationListPager.PageSink {
+        final List<String> cids = Collections.synchronizedList(new ArrayList<String>());
+        final List<Boolean> firstPageFlags = Collections.synchronizedList(new ArrayList<Boolean>());
+        final List<Integer> stackDepths = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done;
+        volatile boolean failed;
+        volatile boolean failedOnFirstPage;
+
+        RecordingSink() {
+            this(1);
+        }
+
+        RecordingSink(int syncs) {
+            this.done = new CountDownLatch(syncs);
+        }
+
+        @Override
+        public void onPage(List<Conversation> conversations, boolean firstPage, boolean lastPage) {
+            for (Conversation conversation : conversations)
+                cids.add(conversation.getConversationId());
+            firstPageFlags.add(firstPage);
+            stackDepths.add(Thread.currentThread().getStackTrace().length);
+            threads.add(Thread.currentThread().getName());
+            if (lastPage)
+                done.countDown();
+        }
+
+        @Override
+        public void onPagingFailed(boolean firstPage) {
+            failed = true;
+            failedOnFirstPage = firstPage;
+            done.countDown();
+        }
+    }
+}
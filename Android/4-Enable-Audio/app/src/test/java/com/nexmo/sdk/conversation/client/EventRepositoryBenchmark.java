@@ -0,0 +1,77 @@
+package com.nexmo.sdk.conversation.client;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.nexmo.sdk.conversation.core.persistence.CacheWriter;
+import com.nexmo.sdk.conversation.core.persistence.contract.EventContract;
+import com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 50,000 events cached through the compiled statement of {@link com.nexmo.sdk.conversation.core.persistence.repository.EventRepository#insertAll},
+ * against a {@link ContentValues} and a {@link SQLiteDatabase#insert} per event as they used to be.
+ * Both run in a single transaction, so the difference is the per row work only.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class EventRepositoryBenchmark {
+    private static final int EVENTS = 50000;
+
+    private CacheDB cacheDB;
+    private int conversations;
+
+    @Before
+    public void setUp() {
+        cacheDB = TestCache.open();
+    }
+
+    @Test
+    public void compiledStatementOutperformsInsertPerRow() {
+        long compiled = Long.MAX_VALUE;
+        long contentValues = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT.
+            compiled = Math.min(compiled, measure(true));
+            contentValues = Math.min(contentValues, measure(false));
+        }
+
+        System.out.println(String.format("%d events: compiled statement %.1f ms (%.0f events/s), ContentValues and insert %.1f ms (%.0f events/s)",
+                EVENTS, compiled / 1e6, EVENTS / (compiled / 1e9), contentValues / 1e6, EVENTS / (contentValues / 1e9)));
+        assertTrue("compiled statement slower than an insert per row", compiled < contentValues);
+    }
+
+    // time from handing the events over until they are committed, in a conversation of their own.
+    private long measure(boolean compiledStatement) {
+        final Conversation conversation = TestCache.conversation(cacheDB, "CON-" + conversations++);
+        final String cid = conversation.getConversationId();
+        final List<Event> events = TestCache.texts(conversation, 1, EVENTS);
+        cacheDB.awaitPendingWrites();
+
+        long start = System.nanoTime();
+        if (compiledStatement)
+            cacheDB.getEventRepository().insertAll(cid, events);
+        else
+            cacheDB.write(new CacheWriter.Mutation() {
+                @Override
+                public void apply(SQLiteDatabase db) {
+                    for (Event event : events)
+                        db.insert(EventEntry.TABLE_NAME, null, EventContract.contentValues(event, cid));
+                }
+            });
+        cacheDB.awaitPendingWrites();
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(EVENTS, DatabaseUtils.queryNumEntries(cacheDB.getReadableDatabase(), EventEntry.TABLE_NAME,
+                EventEntry.COLUMN_CID + " = ?", new String[] {cid}));
+        return elapsed;
+    }
+}
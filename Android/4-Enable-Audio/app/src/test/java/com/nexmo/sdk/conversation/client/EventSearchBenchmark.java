@@ -0,0 +1,88 @@
+package com.nexmo.sdk.conversation.client;
+
+import android.database.Cursor;
+
+import com.nexmo.sdk.conversation.config.Defaults;
+import com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry;
+import com.nexmo.sdk.conversation.core.persistence.repository.EventRepository;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link EventRepository#search} over 500,000 cached messages, against a LIKE scan of the
+ * message table as a search without the full text index would run.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class EventSearchBenchmark {
+    private static final int CONVERSATIONS = 10;
+    private static final int EVENTS_PER_CONVERSATION = 50000;
+    // one message in NEEDLE_EVERY mentions the word searched for.
+    private static final int NEEDLE_EVERY = 100;
+    private static final int LIMIT = 20;
+    private static final String[] WORDS = {"hello", "world", "meeting", "tomorrow", "lunch", "call", "later", "thanks"};
+
+    @Test
+    public void searchOutperformsAScanOfTheMessages() {
+        CacheDB cacheDB = TestCache.open();
+        for (int c = 0; c < CONVERSATIONS; c++) {
+            Conversation conversation = TestCache.conversation(cacheDB, "CON-" + c);
+            cacheDB.getEventRepository().insertAll(conversation.getConversationId(), messages(conversation));
+            cacheDB.awaitPendingWrites();
+        }
+        // however many hits are asked for, the follow-up read stays within the limits of a statement.
+        assertEquals(Defaults.CACHE_MAX_SEARCH_HITS, cacheDB.getEventRepository().search("needle", Integer.MAX_VALUE).size());
+
+        long search = Long.MAX_VALUE;
+        long scan = Long.MAX_VALUE;
+        List<EventRepository.SearchHit> hits = null;
+        int scanned = 0;
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT.
+            long start = System.nanoTime();
+            hits = cacheDB.getEventRepository().search("needle", LIMIT);
+            search = Math.min(search, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            scanned = scan(cacheDB, "needle", LIMIT);
+            scan = Math.min(scan, System.nanoTime() - start);
+        }
+
+        System.out.println(String.format("%d messages, %d matching: search %.1f ms, LIKE scan %.1f ms",
+                CONVERSATIONS * EVENTS_PER_CONVERSATION, CONVERSATIONS * EVENTS_PER_CONVERSATION / NEEDLE_EVERY,
+                search / 1e6, scan / 1e6));
+        assertEquals(LIMIT, hits.size());
+        assertEquals(LIMIT, scanned);
+        assertTrue("search slower than a scan of the messages", search < scan);
+    }
+
+    private static List<Event> messages(Conversation conversation) {
+        List<Event> events = new ArrayList<>(EVENTS_PER_CONVERSATION);
+        for (long id = 1; id <= EVENTS_PER_CONVERSATION; id++) {
+            String text = WORDS[(int) (id % WORDS.length)] + " " + WORDS[(int) (id * 7 % WORDS.length)] + " " + id;
+            if (id % NEEDLE_EVERY == 0)
+                text += " needle";
+            events.add(new Text(text, String.valueOf(id), new Date(id * 1000), conversation.getSelf(), conversation));
+        }
+        return events;
+    }
+
+    // the most recent matches, the best a search without ranking can do.
+    private static int scan(CacheDB cacheDB, String word, int limit) {
+        Cursor cursor = cacheDB.openDatabase().rawQuery("SELECT " + EventEntry.COLUMN_CID + ", " + EventEntry.COLUMN_EVENT_ID
+                + " FROM " + EventEntry.TABLE_NAME + " WHERE " + EventEntry.COLUMN_TEXT + " LIKE ? ORDER BY "
+                + EventEntry.COLUMN_TIMESTAMP + " DESC LIMIT " + limit, new String[] {"%" + word + "%"});
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.nexmo.sdk.conversation.client;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class EventTest {
+    private final Conversation conversation = new Conversation("conversation", "CON-1");
+    private final Conversation other = new Conversation("other", "CON-2");
+    private final Member member = new Member("USR-1", "alice", "MEM-1");
+
+    @Test
+    public void eventsAreIdentifiedByIdWithinTheirConversation() {
+        Text text = new Text("hello", "1", new Date(), this.member, this.conversation);
+        Text edited = new Text("hello again", "1", new Date(), this.member, this.conversation);
+        Text elsewhere = new Text("hello", "1", new Date(), this.member, this.other);
+
+        assertEquals(text, edited);
+        assertEquals(text.hashCode(), edited.hashCode());
+        assertFalse(text.contentEquals(edited));
+        assertNotEquals(text, elsewhere);
+    }
+
+    @Test
+    public void unsentEventsAreOnlyEqualToThemselves() {
+        Text first = new Text("hello", this.conversation);
+        Text second = new Text("hello", this.conversation);
+
+        assertEquals(first, first);
+        assertNotEquals(first, second);
+
+        Set<Event> events = new HashSet<>();
+        events.add(first);
+        events.add(second);
+        events.add(first);
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    public void receiptsAreIdentifiedByEventAndMember() {
+        Text text = new Text("hello", "1", new Date(), this.member, this.conversation);
+        Text sameText = new Text("hello", "1", new Date(), this.member, this.conversation);
+        Text elsewhere = new Text("hello", "1", new Date(), this.member, this.other);
+        Member otherMember = new Member("USR-2", "bob", "MEM-2");
+
+        SeenReceipt receipt = new SeenReceipt(text, this.member, new Date(1000));
+        assertEquals(receipt, new SeenReceipt(sameText, this.member, new Date(2000)));
+        assertEquals(receipt.hashCode(), new SeenReceipt(sameText, this.member, new Date(2000)).hashCode());
+        assertFalse(receipt.contentEquals(new SeenReceipt(sameText, this.member, new Date(2000))));
+        assertNotEquals(receipt, new SeenReceipt(text, otherMember, new Date(1000)));
+        assertNotEquals(receipt, new SeenReceipt(elsewhere, this.member, new Date(1000)));
+        assertNotEquals(receipt, new DeliveredReceipt(text, this.member, new Date(1000)));
+    }
+
+    @Test
+    public void receiptsOfUnsentEventsDontCollapse() {
+        Text first = new Text("hello", this.conversation);
+        Text second = new Text("hello", this.conversation);
+
+        Set<SeenReceipt> receipts = new HashSet<>();
+        receipts.add(new SeenReceipt(first, this.member, new Date()));
+        receipts.add(new SeenReceipt(second, this.member, new Date()));
+        assertEquals(2, receipts.size());
+        assertTrue(receipts.contains(new SeenReceipt(first, this.member, new Date())));
+    }
+}
@@ -0,0 +1,64 @@
+package com.nexmo.sdk.conversation.client;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Cost of adding receipts to an event as the conversation history grows. Hashing an event or a
+ * receipt must not walk the conversation, so the cost per receipt has to stay flat.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ReceiptSetBenchmark {
+    private static final int[] HISTORY_SIZES = { 100, 1000, 10000 };
+    private static final int MEMBERS = 50;
+
+    @Test
+    public void receiptInsertionDoesNotDependOnHistorySize() {
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < MEMBERS; i++)
+            members.add(new Member("USR-" + i, "user" + i, "MEM-" + i));
+
+        double[] nanos = new double[HISTORY_SIZES.length];
+        for (int round = 0; round < 3; round++) // the first rounds warm up the JIT.
+            for (int i = 0; i < HISTORY_SIZES.length; i++)
+                nanos[i] = measure(conversationWith(HISTORY_SIZES[i], members), members);
+
+        for (int i = 0; i < HISTORY_SIZES.length; i++)
+            System.out.println(String.format("receipt insertion, %d events: %.1f ns/receipt", HISTORY_SIZES[i], nanos[i]));
+        assertTrue("receipt insertion cost grows with history", nanos[HISTORY_SIZES.length - 1] < nanos[0] * 5);
+    }
+
+    private static Conversation conversationWith(int events, List<Member> members) {
+        Conversation conversation = new Conversation("conversation", "CON-1");
+        conversation.setMembers(new ArrayList<>(members));
+        for (int i = 0; i < events; i++)
+            conversation.addEvent(new Text("message " + i, String.valueOf(i), new Date(), members.get(i % MEMBERS), conversation));
+        return conversation;
+    }
+
+    // Seen and delivered receipts from every member for the latest 100 events, as a receipt storm would.
+    private static double measure(Conversation conversation, List<Member> members) {
+        List<Event> events = conversation.getEvents();
+        int receipts = 0;
+        long start = System.nanoTime();
+        for (int i = events.size() - 100; i < events.size(); i++) {
+            Event event = events.get(i);
+            for (Member member : members) {
+                event.addSeenReceipt(new SeenReceipt(event, member, new Date()));
+                event.addDeliveredReceipt(new DeliveredReceipt(event, member, new Date()));
+                receipts += 2;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        assertEquals(MEMBERS, events.get(events.size() - 1).getSeenReceipts().size());
+        return (double) elapsed / receipts;
+    }
+}
@@ -0,0 +1,55 @@
+package com.nexmo.sdk.conversation.client;
+
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cache fixtures shared by the tests: a fresh partition per test and cached conversations with events.
+ */
+final class TestCache {
+    private static final AtomicInteger partitions = new AtomicInteger();
+
+    private TestCache() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Switch the cache to a partition of its own, the way a login does.
+     */
+    static CacheDB open() {
+        String userId = "USR-test-" + partitions.incrementAndGet() + "-" + System.nanoTime();
+        CacheDB.switchToUser(RuntimeEnvironment.application, new User(userId, "alice"));
+        return CacheDB.getCacheDBInstance();
+    }
+
+    static Member self(String cid) {
+        return new Member("USR-1", "alice", "MEM-" + cid, Member.STATE.JOINED);
+    }
+
+    /**
+     * Cache a conversation and its self member, queued on the writer.
+     */
+    static Conversation conversation(CacheDB cacheDB, String cid) {
+        Member self = self(cid);
+        Conversation conversation = new Conversation("conversation " + cid, cid, null, self, new Date(0));
+        self.setConversation(conversation);
+        cacheDB.getConversationRepository().insertAll(Collections.singletonList(conversation));
+        return conversation;
+    }
+
+    /**
+     * Text messages sent by the self member, with ids from {@code firstId} on.
+     */
+    static List<Event> texts(Conversation conversation, long firstId, int count) {
+        List<Event> events = new ArrayList<>(count);
+        for (long id = firstId; id < firstId + count; id++)
+            events.add(new Text("message " + id + " of " + conversation.getConversationId(), String.valueOf(id),
+                    new Date(id * 1000), conversation.getSelf(), conversation));
+        return events;
+    }
+}
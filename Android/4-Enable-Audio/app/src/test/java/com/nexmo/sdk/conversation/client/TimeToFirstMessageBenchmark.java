@@ -0,0 +1,273 @@
+package com.nexmo.sdk.conversation.client;
+
+import com.nexmo.sdk.conversation.client.event.ConversationOpenListener;
+import com.nexmo.sdk.conversation.client.event.NexmoAPIError;
+import com.nexmo.sdk.conversation.client.event.RequestHandler;
+import com.nexmo.sdk.conversation.client.event.container.ConversationUpdate;
+import com.nexmo.sdk.conversation.client.event.network.CAPIAwareListener;
+import com.nexmo.sdk.conversation.client.event.network.NetworkState;
+import com.nexmo.sdk.conversation.core.client.Router;
+import com.nexmo.sdk.conversation.core.client.request.Request;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Time from opening a conversation until its first message can be shown, with {@link Conversation#open}
+ * against {@link Conversation#update} then {@link Conversation#updateEvents} as conversations used to be
+ * opened. The server answers every request after {@link #LATENCY_MILLIS}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TimeToFirstMessageBenchmark {
+    private static final long LATENCY_MILLIS = 150;
+    private static final int CACHED_EVENTS = 100;
+    private static final int NEW_EVENTS = 5;
+
+    private final ScheduledExecutorService network = Executors.newSingleThreadScheduledExecutor();
+    // a cache partition of its own for every test.
+    private final User user = new User("USR-" + System.nanoTime(), "alice");
+    private ConversationClient conversationClient;
+    private CacheDB cacheDB;
+    private int conversations;
+
+    @Before
+    public void setUp() {
+        conversationClient = new ConversationClient.ConversationClientBuilder()
+                .context(RuntimeEnvironment.application)
+                .onMainThread(false)
+                .build();
+        SocketClient socketClient = conversationClient.getSignallingChannel().socketClient;
+        socketClient.self = user;
+        socketClient.router = new StandInRouter();
+        socketClient.router.updateConnectionStatus(NetworkState.CONNECTED);
+        CacheDB.switchToUser(RuntimeEnvironment.application, user);
+        cacheDB = CacheDB.getCacheDBInstance();
+    }
+
+    @After
+    public void tearDown() {
+        network.shutdownNow();
+    }
+
+    @Test
+    public void openShowsCachedMessagesBeforeTheNetworkAnswers() throws InterruptedException {
+        long open = Long.MAX_VALUE;
+        long updateEvents = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT.
+            open = Math.min(open, measureOpen(listedConversation(true)));
+            updateEvents = Math.min(updateEvents, measureUpdateEvents(listedConversation(true)));
+        }
+
+        System.out.println(String.format("time to first message, %d cached events, %d ms per request: open %d ms, update and updateEvents %d ms",
+                CACHED_EVENTS, LATENCY_MILLIS, open, updateEvents));
+        assertTrue("open waited for the network", open < LATENCY_MILLIS);
+        assertTrue("update and updateEvents didn't wait for the network", updateEvents >= 2 * LATENCY_MILLIS);
+    }
+
+    @Test
+    public void openOfAnUncachedConversationFetchesMembersAndEventsInParallel() throws InterruptedException {
+        long open = Long.MAX_VALUE;
+        long updateEvents = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            open = Math.min(open, measureOpen(listedConversation(false)));
+            updateEvents = Math.min(updateEvents, measureUpdateEvents(listedConversation(false)));
+        }
+
+        System.out.println(String.format("time to first message, nothing cached, %d ms per request: open %d ms, update and updateEvents %d ms",
+                LATENCY_MILLIS, open, updateEvents));
+        assertTrue("open fetched members and events one after the other", open < 2 * LATENCY_MILLIS);
+        assertTrue("update and updateEvents didn't fetch members then events", updateEvents >= 2 * LATENCY_MILLIS);
+
+        // the events of members who weren't known yet are kept, and cached once the members are.
+        Conversation reopened = listedConversation("CON-0");
+        assertEquals(CACHED_EVENTS + NEW_EVENTS, cacheDB.getEventRepository().getEventIds(reopened).size());
+    }
+
+    private long measureOpen(Conversation conversation) throws InterruptedException {
+        final CountDownLatch shown = new CountDownLatch(1);
+        final AtomicLong firstMessageAt = new AtomicLong();
+        final CountDownLatch revalidated = new CountDownLatch(1);
+        final AtomicReference<ConversationUpdate> update = new AtomicReference<>();
+        final long start = System.nanoTime();
+        conversation.open(new ConversationOpenListener() {
+            @Override
+            public void onCached(Conversation conversation) {
+                if (!conversation.getEvents().isEmpty() && firstMessageAt.compareAndSet(0, System.nanoTime()))
+                    shown.countDown();
+            }
+
+            @Override
+            public void onSuccess(ConversationUpdate result) {
+                if (!result.getNewEvents().isEmpty() && firstMessageAt.compareAndSet(0, System.nanoTime()))
+                    shown.countDown();
+                update.set(result);
+                revalidated.countDown();
+            }
+
+            @Override
+            public void onError(NexmoAPIError apiError) {
+                revalidated.countDown();
+            }
+        });
+        assertTrue("no message shown", shown.await(10, TimeUnit.SECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(firstMessageAt.get() - start);
+
+        assertTrue(revalidated.await(10, TimeUnit.SECONDS));
+        assertNotNull("revalidation failed", update.get());
+        for (Event event : update.get().getNewEvents())
+            assertEquals("bob", event.getMember().getName());
+        cacheDB.awaitPendingWrites();
+        return elapsedMillis;
+    }
+
+    // as conversations used to be opened: members first, then the events.
+    private long measureUpdateEvents(Conversation conversation) throws InterruptedException {
+        final CountDownLatch shown = new CountDownLatch(1);
+        final AtomicLong firstMessageAt = new AtomicLong();
+        final long start = System.nanoTime();
+        final RequestHandler<Conversation> eventsHandler = new RequestHandler<Conversation>() {
+            @Override
+            public void onSuccess(Conversation result) {
+                if (!result.getEvents().isEmpty() && firstMessageAt.compareAndSet(0, System.nanoTime()))
+                    shown.countDown();
+            }
+
+            @Override
+            public void onError(NexmoAPIError apiError) {
+            }
+        };
+        conversation.update(new RequestHandler<Conversation>() {
+            @Override
+            public void onSuccess(Conversation result) {
+                result.updateEvents(null, null, eventsHandler);
+            }
+
+            @Override
+            public void onError(NexmoAPIError apiError) {
+            }
+        });
+        assertTrue("no message shown", shown.await(10, TimeUnit.SECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(firstMessageAt.get() - start);
+        cacheDB.awaitPendingWrites();
+        return elapsedMillis;
+    }
+
+    /**
+     * A conversation cached by the conversation list, with its self member only.
+     * @param opened true if it was opened before: the other members and all but the newest events are cached.
+     */
+    private Conversation listedConversation(boolean opened) {
+        Conversation conversation = listedConversation("CON-" + conversations++);
+        cacheDB.getConversationRepository().insertAll(Collections.singletonList(conversation));
+        if (opened) {
+            String cid = conversation.getConversationId();
+            Member bob = bob(conversation);
+            cacheDB.getMemberRepository().insertAll(cid, Collections.singletonList(bob));
+
+            List<Event> events = new ArrayList<>(CACHED_EVENTS);
+            for (long id = 1; id <= CACHED_EVENTS; id++)
+                events.add(new Text("message " + id, String.valueOf(id), new Date(id * 1000), bob, conversation));
+            cacheDB.getEventRepository().insertAll(cid, events);
+        }
+        cacheDB.awaitPendingWrites();
+        return listedConversation(conversation.getConversationId());
+    }
+
+    private Conversation listedConversation(String cid) {
+        Member self = new Member(user.getUserId(), user.getName(), "MEM-alice", Member.STATE.JOINED);
+        Conversation conversation = new Conversation("conversation " + cid, cid,
+                String.valueOf(CACHED_EVENTS + NEW_EVENTS), self, new Date(0));
+        self.setConversation(conversation);
+        conversation.setConversationSignalingChannel(conversationClient.getSignallingChannel());
+        conversationClient.getSignallingChannel().socketClient.getSocketEventHandler().addOrUpdateConversationList(conversation);
+        return conversation;
+    }
+
+    private static Member bob(Conversation conversation) {
+        Member bob = new Member("USR-2", "bob", "MEM-bob", Member.STATE.JOINED);
+        bob.setConversation(conversation);
+        return bob;
+    }
+
+    /**
+     * Answers conversation:get and conversation:events the way the backend does, after the latency.
+     */
+    private class StandInRouter extends Router {
+
+        StandInRouter() {
+            super(RuntimeEnvironment.application, null, false);
+        }
+
+        @Override
+        public void sendRequest(final Request request, final CAPIAwareListener listener) {
+            network.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        JSONObject requestJson = request.toJson();
+                        listener.onRawUnprocessResponseData(respond(request.getRequestName(), requestJson),
+                                request.getTid(), requestJson.getString("cid"));
+                    } catch (JSONException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            }, LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        private JSONObject respond(String requestName, JSONObject requestJson) throws JSONException {
+            String cid = requestJson.getString("cid");
+            if ("conversation:get".equals(requestName)) {
+                JSONArray members = new JSONArray()
+                        .put(member(user.getUserId(), user.getName(), "MEM-alice"))
+                        .put(member("USR-2", "bob", "MEM-bob"));
+                return new JSONObject().put("body", new JSONObject()
+                        .put("id", cid)
+                        .put("name", "conversation " + cid)
+                        .put("sequence_number", String.valueOf(CACHED_EVENTS + NEW_EVENTS))
+                        .put("members", members));
+            }
+
+            JSONObject requestBody = requestJson.optJSONObject("body");
+            long startId = Long.parseLong(requestBody != null ? requestBody.optString("start_id", "1") : "1");
+            JSONArray events = new JSONArray();
+            for (long id = startId; id <= CACHED_EVENTS + NEW_EVENTS; id++)
+                events.put(new JSONObject()
+                        .put("id", String.valueOf(id))
+                        .put("from", "MEM-bob")
+                        .put("type", "text")
+                        .put("timestamp", "2017-01-01T10:00:00.000Z")
+                        .put("body", new JSONObject().put("text", "message " + id)));
+            return new JSONObject().put("cid", cid).put("body", events);
+        }
+
+        private JSONObject member(String userId, String name, String memberId) throws JSONException {
+            return new JSONObject()
+                    .put("user_id", userId)
+                    .put("name", name)
+                    .put("member_id", memberId)
+                    .put("state", "JOINED");
+        }
+    }
+}
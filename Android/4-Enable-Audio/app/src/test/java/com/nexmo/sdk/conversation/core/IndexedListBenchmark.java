@@ -0,0 +1,85 @@
+package com.nexmo.sdk.conversation.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Lookup and replace cost of {@link IndexedList} as the list grows, e.g. a conversation history.
+ * Both have to stay flat: the largest list may not be more than a few times slower per operation
+ * than the smallest, where a linear scan would be 100 times slower.
+ */
+public class IndexedListBenchmark {
+    private static final IndexedList.KeyExtractor<String> BY_VALUE = new IndexedList.KeyExtractor<String>() {
+        @Override
+        public String keyOf(String item) {
+            return item;
+        }
+    };
+    private static final int[] SIZES = { 1000, 10000, 100000 };
+    private static final int OPERATIONS = 200000;
+
+    @Test
+    public void lookupCostDoesNotDependOnSize() {
+        double[] nanos = new double[SIZES.length];
+        for (int round = 0; round < 3; round++) // the first rounds warm up the JIT.
+            for (int i = 0; i < SIZES.length; i++)
+                nanos[i] = measureFind(filled(SIZES[i]), SIZES[i]);
+
+        report("find", nanos);
+        assertTrue("lookup cost grows with size", nanos[SIZES.length - 1] < nanos[0] * 5);
+    }
+
+    @Test
+    public void replaceCostDoesNotDependOnSize() {
+        double[] nanos = new double[SIZES.length];
+        for (int round = 0; round < 3; round++)
+            for (int i = 0; i < SIZES.length; i++)
+                nanos[i] = measureReplace(filled(SIZES[i]), SIZES[i]);
+
+        report("addOrReplace", nanos);
+        assertTrue("replace cost grows with size", nanos[SIZES.length - 1] < nanos[0] * 5);
+    }
+
+    private static IndexedList<String> filled(int size) {
+        IndexedList<String> list = new IndexedList<>(BY_VALUE);
+        for (int i = 0; i < size; i++)
+            list.add(String.valueOf(i));
+        return list;
+    }
+
+    private static double measureFind(IndexedList<String> list, int size) {
+        String[] keys = keys(size);
+        int found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++)
+            if (list.find(BY_VALUE, keys[i % keys.length]) != null)
+                found++;
+        long elapsed = System.nanoTime() - start;
+        assertTrue(found == OPERATIONS);
+        return (double) elapsed / OPERATIONS;
+    }
+
+    private static double measureReplace(IndexedList<String> list, int size) {
+        String[] keys = keys(size);
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++)
+            list.addOrReplace(BY_VALUE, keys[i % keys.length]);
+        long elapsed = System.nanoTime() - start;
+        assertTrue(list.size() == size);
+        return (double) elapsed / OPERATIONS;
+    }
+
+    // keys spread over the whole list, fresh instances so the lookups hash them.
+    private static String[] keys(int size) {
+        String[] keys = new String[1024];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = new String(String.valueOf((int) ((long) i * (size - 1) / (keys.length - 1))));
+        return keys;
+    }
+
+    private static void report(String operation, double[] nanos) {
+        for (int i = 0; i < SIZES.length; i++)
+            System.out.println(String.format("IndexedList.%s, %d items: %.1f ns/op", operation, SIZES[i], nanos[i]));
+    }
+}
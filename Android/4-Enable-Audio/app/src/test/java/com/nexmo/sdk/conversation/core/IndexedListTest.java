@@ -0,0 +1,200 @@
+package com.nexmo.sdk.conversation.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IndexedListTest {
+    private static final IndexedList.KeyExtractor<Item> BY_ID = new IndexedList.KeyExtractor<Item>() {
+        @Override
+        public String keyOf(Item item) {
+            return item.id;
+        }
+    };
+    private static final IndexedList.KeyExtractor<Item> BY_NAME = new IndexedList.KeyExtractor<Item>() {
+        @Override
+        public String keyOf(Item item) {
+            return item.name;
+        }
+    };
+
+    @Test
+    public void findsItemsByEveryKey() {
+        IndexedList<Item> list = new IndexedList<>(BY_ID, BY_NAME);
+        Item first = new Item("1", "alice");
+        Item second = new Item("2", "bob");
+        list.add(first);
+        list.add(second);
+
+        assertSame(first, list.find(BY_ID, "1"));
+        assertSame(second, list.find(BY_NAME, "bob"));
+        assertNull(list.find(BY_ID, "3"));
+        assertNull(list.find(BY_ID, null));
+        assertTrue(list.containsKey(BY_NAME, "alice"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnExtractorItIsNotIndexedBy() {
+        new IndexedList<>(BY_ID).find(BY_NAME, "alice");
+    }
+
+    @Test
+    public void addOrReplaceReplacesInPlace() {
+        IndexedList<Item> list = new IndexedList<>(BY_ID, BY_NAME);
+        Item first = new Item("1", "alice");
+        list.add(first);
+        list.add(new Item("2", "bob"));
+
+        Item renamed = new Item("1", "carol");
+        assertSame(first, list.addOrReplace(BY_ID, renamed));
+        assertEquals(2, list.size());
+        assertSame(renamed, list.get(0));
+        assertSame(renamed, list.find(BY_ID, "1"));
+        assertSame(renamed, list.find(BY_NAME, "carol"));
+        assertNull(list.find(BY_NAME, "alice"));
+
+        Item third = new Item("3", "dave");
+        assertNull(list.addOrReplace(BY_ID, third));
+        assertSame(third, list.get(2));
+    }
+
+    @Test
+    public void addOrReplaceFindsItsPositionAfterTheListShifted() {
+        IndexedList<Item> list = new IndexedList<>(BY_ID);
+        for (int i = 0; i < 5; i++)
+            list.add(new Item(String.valueOf(i), null));
+        list.remove(1);
+        list.add(0, new Item("head", null));
+
+        Item replacement = new Item("3", null);
+        list.addOrReplace(BY_ID, replacement);
+        assertSame(replacement, list.get(3));
+        assertEquals(5, list.size());
+    }
+
+    @Test
+    public void sharedKeysResolveToTheFirstItem() {
+        IndexedList<Item> list = new IndexedList<>(BY_ID, BY_NAME);
+        Item first = new Item("1", "alice");
+        Item second = new Item("2", "alice");
+        Item third = new Item("3", "alice");
+        list.add(first);
+        list.add(second);
+        list.add(third);
+        assertSame(first, list.find(BY_NAME, "alice"));
+
+        list.remove(first);
+        assertSame(second, list.find(BY_NAME, "alice"));
+
+        Item head = new Item("0", "alice");
+        list.add(0, head);
+        assertSame(head, list.find(BY_NAME, "alice"));
+
+        list.set(0, new Item("0", "zoe"));
+        assertSame(second, list.find(BY_NAME, "alice"));
+
+        Item replacement = new Item("2", "alice");
+        list.addOrReplace(BY_ID, replacement);
+        assertSame(replacement, list.find(BY_NAME, "alice"));
+        assertSame(replacement, list.get(1));
+    }
+
+    @Test
+    public void nullKeysAreNotIndexed() {
+        IndexedList<Item> list = new IndexedList<>(BY_ID, BY_NAME);
+        Item anonymous = new Item("1", null);
+        list.add(anonymous);
+        list.addOrReplace(BY_NAME, new Item("2", null));
+
+        assertEquals(2, list.size());
+        assertSame(anonymous, list.find(BY_ID, "1"));
+        list.remove(anonymous);
+        assertNull(list.find(BY_ID, "1"));
+    }
+
+    @Test
+    public void clearDropsTheIndexes() {
+        IndexedList<Item> list = new IndexedList<>(BY_ID);
+        list.add(new Item("1", null));
+        list.clear();
+
+        assertNull(list.find(BY_ID, "1"));
+        Item again = new Item("1", null);
+        assertNull(list.addOrReplace(BY_ID, again));
+        assertSame(again, list.find(BY_ID, "1"));
+    }
+
+    // Random operations, checked after each one against a linear scan of a plain list.
+    @Test
+    public void matchesALinearScan() {
+        Random random = new Random(42);
+        IndexedList<Item> list = new IndexedList<>(BY_ID, BY_NAME);
+        List<Item> expected = new ArrayList<>();
+
+        for (int step = 0; step < 5000; step++) {
+            Item item = new Item(String.valueOf(random.nextInt(40)), "name" + random.nextInt(10));
+            int operation = random.nextInt(6);
+            if (operation == 0 || expected.isEmpty()) {
+                list.add(item);
+                expected.add(item);
+            } else if (operation == 1) {
+                int location = random.nextInt(expected.size() + 1);
+                list.add(location, item);
+                expected.add(location, item);
+            } else if (operation == 2) {
+                int location = random.nextInt(expected.size());
+                assertSame(expected.remove(location), list.remove(location));
+            } else if (operation == 3) {
+                int location = random.nextInt(expected.size());
+                assertSame(expected.set(location, item), list.set(location, item));
+            } else {
+                int location = firstWith(expected, BY_ID, item.id);
+                if (location < 0)
+                    expected.add(item);
+                else
+                    expected.set(location, item);
+                list.addOrReplace(BY_ID, item);
+            }
+
+            assertEquals(expected, list);
+            for (int key = 0; key < 40; key++)
+                assertFound(expected, list, BY_ID, String.valueOf(key));
+            for (int key = 0; key < 10; key++)
+                assertFound(expected, list, BY_NAME, "name" + key);
+        }
+    }
+
+    private static void assertFound(List<Item> expected, IndexedList<Item> list, IndexedList.KeyExtractor<Item> extractor, String key) {
+        int location = firstWith(expected, extractor, key);
+        assertSame(location < 0 ? null : expected.get(location), list.find(extractor, key));
+    }
+
+    private static int firstWith(List<Item> items, IndexedList.KeyExtractor<Item> extractor, String key) {
+        for (int i = 0; i < items.size(); i++)
+            if (key.equals(extractor.keyOf(items.get(i))))
+                return i;
+        return -1;
+    }
+
+    static class Item {
+        final String id;
+        final String name;
+
+        Item(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return this.id + "/" + this.name;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.nexmo.sdk.conversation.core.client;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class InboundDispatcherTest {
+    private final InboundDispatcher dispatcher = new InboundDispatcher(4);
+
+    @After
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void eventsOfOneConversationAreHandledInOrder() throws InterruptedException {
+        final String[] cids = {"CON-1", "CON-2", "CON-3", "", null};
+        final List<List<Integer>> handled = new ArrayList<>();
+        for (int i = 0; i < cids.length; i++)
+            handled.add(Collections.synchronizedList(new ArrayList<Integer>()));
+
+        final CountDownLatch done = new CountDownLatch(cids.length * 1000);
+        for (int n = 0; n < 1000; n++) {
+            for (int i = 0; i < cids.length; i++) {
+                final List<Integer> list = handled.get(i);
+                final int value = n;
+                dispatcher.dispatch(cids[i], new Runnable() {
+                    @Override
+                    public void run() {
+                        list.add(value);
+                        done.countDown();
+                    }
+                });
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (List<Integer> list : handled) {
+            assertEquals(1000, list.size());
+            for (int n = 0; n < 1000; n++)
+                assertEquals(n, (int) list.get(n));
+        }
+    }
+
+    @Test
+    public void eventsWithoutConversationShareOneLane() throws InterruptedException {
+        final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done = new CountDownLatch(2);
+        for (String cid : new String[] {null, ""})
+            dispatcher.dispatch(cid, new Runnable() {
+                @Override
+                public void run() {
+                    threads.add(Thread.currentThread().getName());
+                    done.countDown();
+                }
+            });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals("capi-sdk-inbound-0", threads.get(0));
+        assertEquals("capi-sdk-inbound-0", threads.get(1));
+    }
+
+    @Test
+    public void shutdownHandlesQueuedEventsAndLanesRestart() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch queued = new CountDownLatch(1);
+        dispatcher.dispatch("CON-1", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {}
+            }
+        });
+        dispatcher.dispatch("CON-1", new Runnable() {
+            @Override
+            public void run() {
+                queued.countDown();
+            }
+        });
+
+        dispatcher.shutdown();
+        release.countDown();
+        assertTrue(queued.await(10, TimeUnit.SECONDS));
+
+        final CountDownLatch restarted = new CountDownLatch(1);
+        dispatcher.dispatch("CON-1", new Runnable() {
+            @Override
+            public void run() {
+                restarted.countDown();
+            }
+        });
+        assertTrue(restarted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void statsCountDispatchedEvents() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(10);
+        for (int i = 0; i < 10; i++)
+            dispatcher.dispatch(null, new Runnable() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        // the counter is updated right after the task.
+        long deadline = System.currentTimeMillis() + 5000;
+        while (dispatcher.getLaneStats().get(0).getDispatched() < 10 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(10, dispatcher.getLaneStats().get(0).getDispatched());
+        assertEquals(0, dispatcher.getLaneStats().get(0).getQueueDepth());
+    }
+}
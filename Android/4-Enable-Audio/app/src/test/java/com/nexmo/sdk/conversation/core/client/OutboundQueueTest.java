@@ -0,0 +1,120 @@
+package com.nexmo.sdk.conversation.core.client;
+
+import com.nexmo.sdk.conversation.client.event.RequestHandler;
+import com.nexmo.sdk.conversation.core.client.request.Request;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class OutboundQueueTest {
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<String>());
+    private volatile CountDownLatch blocked;
+    private volatile CountDownLatch emitted;
+
+    private final OutboundQueue queue = new OutboundQueue(new OutboundQueue.Sink() {
+        @Override
+        public void emit(String requestName, Object data) {
+            CountDownLatch blocked = OutboundQueueTest.this.blocked;
+            if (blocked != null) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            sent.add(requestName);
+            if (emitted != null)
+                emitted.countDown();
+        }
+    });
+
+    @After
+    public void tearDown() {
+        queue.shutdown();
+    }
+
+    @Test
+    public void higherPriorityIsSentFirst() throws InterruptedException {
+        blocked = new CountDownLatch(1);
+        emitted = new CountDownLatch(4);
+        queue.offer(new NamedRequest("first", Request.TYPE.OTHER));
+        // wait until the sender holds the first request, the rest queue up behind it.
+        long deadline = System.currentTimeMillis() + 5000;
+        while (queue.size() > 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(5);
+
+        queue.offer(new NamedRequest("receipt", Request.TYPE.MARK_TEXT_SEEN));
+        queue.offer(new NamedRequest("text", Request.TYPE.OTHER));
+        queue.offer(new NamedRequest("hangup", Request.TYPE.RTC_TERMINATE));
+        blocked.countDown();
+
+        assertTrue(emitted.await(10, TimeUnit.SECONDS));
+        assertEquals(new ArrayList<>(Arrays.asList("first", "hangup", "text", "receipt")), new ArrayList<>(sent));
+    }
+
+    @Test
+    public void shutdownDropsQueuedRequestsAndSenderRestarts() throws InterruptedException {
+        blocked = new CountDownLatch(1);
+        queue.offer(new NamedRequest("sending", Request.TYPE.OTHER));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (queue.size() > 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(5);
+        queue.offer(new NamedRequest("dropped", Request.TYPE.OTHER));
+
+        // interrupts the sender blocked on the first request.
+        queue.shutdown();
+        assertEquals(0, queue.size());
+
+        emitted = new CountDownLatch(1);
+        blocked = null;
+        queue.offer(new NamedRequest("after", Request.TYPE.OTHER));
+        assertTrue(emitted.await(10, TimeUnit.SECONDS));
+        assertTrue(sent.contains("after"));
+        assertFalse(sent.contains("dropped"));
+    }
+
+    private static class NamedRequest extends Request<RequestHandler<Void>, Void> {
+        private final String name;
+
+        NamedRequest(String name, TYPE type) {
+            super(type, name);
+            this.name = name;
+        }
+
+        @Override
+        protected JSONObject makeJson() throws JSONException {
+            return new JSONObject();
+        }
+
+        @Override
+        public String getRequestName() {
+            return this.name;
+        }
+
+        @Override
+        public String getSuccessEventName() {
+            return this.name + ":success";
+        }
+
+        @Override
+        public Void parse(JSONObject jsonObject, JSONObject body) throws JSONException {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.nexmo.sdk.conversation.core.client;
+
+import com.nexmo.sdk.conversation.client.event.NexmoAPIError;
+import com.nexmo.sdk.conversation.client.event.RequestHandler;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SingleFlightTest {
+    private final SingleFlight<Object> flight = new SingleFlight<>();
+
+    @Test
+    public void callersOfTheSameKeyShareOneRequest() {
+        RecordingHandler leader = new RecordingHandler();
+        RecordingHandler follower = new RecordingHandler();
+        RecordingHandler other = new RecordingHandler();
+
+        RequestHandler<Object> send = flight.join("conversation:get:CON-1", leader);
+        assertNotNull(send);
+        assertNull(flight.join("conversation:get:CON-1", follower));
+        assertNotNull(flight.join("conversation:get:CON-2", other));
+        assertEquals(2, flight.size());
+
+        Object result = new Object();
+        send.onSuccess(result);
+
+        assertEquals(1, leader.results.size());
+        assertEquals(1, follower.results.size());
+        // the result is shared, not copied.
+        assertSame(result, leader.results.get(0));
+        assertSame(result, follower.results.get(0));
+        assertTrue(other.results.isEmpty());
+    }
+
+    @Test
+    public void errorIsForwardedToEveryCaller() {
+        RecordingHandler leader = new RecordingHandler();
+        RecordingHandler follower = new RecordingHandler();
+        RequestHandler<Object> send = flight.join("key", leader);
+        flight.join("key", follower);
+
+        NexmoAPIError error = new NexmoAPIError(NexmoAPIError.REQUEST_TIMEOUT, "CON-1", "timed out");
+        send.onError(error);
+
+        assertSame(error, leader.errors.get(0));
+        assertSame(error, follower.errors.get(0));
+        assertTrue(leader.results.isEmpty());
+        assertTrue(follower.results.isEmpty());
+    }
+
+    @Test
+    public void keyIsReleasedOnceTheResultIsDelivered() {
+        RequestHandler<Object> first = flight.join("key", new RecordingHandler());
+        first.onSuccess("first");
+        assertEquals(0, flight.size());
+
+        // a later caller leads a new request instead of getting the stale result.
+        RecordingHandler late = new RecordingHandler();
+        RequestHandler<Object> second = flight.join("key", late);
+        assertNotNull(second);
+        second.onSuccess("second");
+        assertEquals("second", late.results.get(0));
+
+        RequestHandler<Object> failed = flight.join("key", new RecordingHandler());
+        failed.onError(new NexmoAPIError(NexmoAPIError.REQUEST_TIMEOUT, "timed out"));
+        assertEquals(0, flight.size());
+    }
+
+    @Test
+    public void callersWithoutHandlerStillCoalesce() {
+        RecordingHandler follower = new RecordingHandler();
+        RequestHandler<Object> send = flight.join("key", null);
+        assertNull(flight.join("key", null));
+        assertNull(flight.join("key", follower));
+
+        send.onSuccess("result");
+        assertEquals("result", follower.results.get(0));
+        assertEquals(0, flight.size());
+    }
+
+    @Test
+    public void resultDeliveredTwiceReachesCallersOnce() {
+        RecordingHandler leader = new RecordingHandler();
+        RequestHandler<Object> send = flight.join("key", leader);
+        send.onSuccess("result");
+        send.onError(new NexmoAPIError(NexmoAPIError.REQUEST_TIMEOUT, "late"));
+
+        assertEquals(1, leader.results.size());
+        assertTrue(leader.errors.isEmpty());
+    }
+
+    private static class RecordingHandler implements RequestHandler<Object> {
+        final List<Object> results = new ArrayList<>();
+        final List<NexmoAPIError> errors = new ArrayList<>();
+
+        @Override
+        public void onSuccess(Object result) {
+            results.add(result);
+        }
+
+        @Override
+        public void onError(NexmoAPIError apiError) {
+            errors.add(apiError);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.nexmo.sdk.conversation.core.client;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+    // long enough for the ticker to never fire, the tests tick by hand.
+    private static final long TICK = TimeUnit.HOURS.toMillis(1);
+    private static final int SLOTS = 8;
+
+    private final List<String> expired = Collections.synchronizedList(new ArrayList<String>());
+    private final TimingWheel wheel = new TimingWheel(TICK, SLOTS, new TimingWheel.ExpiryListener() {
+        @Override
+        public void onExpired(String key) {
+            expired.add(key);
+        }
+    });
+
+    @After
+    public void tearDown() {
+        wheel.shutdown();
+    }
+
+    @Test
+    public void deadlineIsRoundedUpToTheNextTick() {
+        wheel.schedule("zero", 0);
+        wheel.schedule("one", TICK);
+        wheel.schedule("twoRoundedUp", TICK + 1);
+
+        // a deadline of zero still waits for the next tick.
+        assertEquals(0, ticksUntilExpired("zero"));
+        assertEquals(Arrays.asList("zero", "one"), expired);
+        // two ticks, one of them passed already.
+        assertEquals(0, ticksUntilExpired("twoRoundedUp"));
+        assertEquals(Arrays.asList("zero", "one", "twoRoundedUp"), expired);
+    }
+
+    @Test
+    public void deadlinesLongerThanTheWheelWaitForRounds() {
+        for (int ticks = 1; ticks <= 4 * SLOTS + 1; ticks++) {
+            String key = "ticks-" + ticks;
+            wheel.schedule(key, ticks * TICK);
+            assertEquals(key, ticks - 1, ticksUntilExpired(key));
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void deadlinesScheduledAtDifferentCursorsExpireOnTime() {
+        // move the cursor so slot indexes wrap around the end of the wheel.
+        for (int i = 0; i < SLOTS - 3; i++)
+            wheel.tick();
+
+        wheel.schedule("short", 2 * TICK);
+        wheel.schedule("wrapping", (SLOTS + 5) * TICK);
+
+        assertEquals(1, ticksUntilExpired("short"));
+        assertEquals(SLOTS + 5 - 2 - 1, ticksUntilExpired("wrapping"));
+    }
+
+    @Test
+    public void rescheduleReplacesTheDeadline() {
+        wheel.schedule("tid", 2 * TICK);
+        wheel.tick();
+        wheel.schedule("tid", 3 * TICK);
+        assertEquals(1, wheel.size());
+
+        wheel.tick();
+        assertTrue(expired.isEmpty());
+        assertEquals(1, ticksUntilExpired("tid"));
+        assertEquals(Collections.singletonList("tid"), expired);
+    }
+
+    @Test
+    public void cancelledDeadlineNeverExpires() {
+        wheel.schedule("cancelled", 2 * TICK);
+        wheel.schedule("kept", 2 * TICK);
+        wheel.cancel("cancelled");
+        wheel.cancel("unknown");
+        assertEquals(1, wheel.size());
+
+        for (int i = 0; i < 3 * SLOTS; i++)
+            wheel.tick();
+        assertEquals(Collections.singletonList("kept"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void listenerErrorDoesNotStopOtherDeadlines() {
+        final List<String> fired = new ArrayList<>();
+        TimingWheel failing = new TimingWheel(TICK, SLOTS, new TimingWheel.ExpiryListener() {
+            @Override
+            public void onExpired(String key) {
+                fired.add(key);
+                throw new IllegalStateException(key);
+            }
+        });
+        failing.schedule("a", TICK);
+        failing.schedule("b", TICK);
+        failing.tick();
+        failing.shutdown();
+
+        assertEquals(2, fired.size());
+    }
+
+    @Test
+    public void shutdownDropsDeadlinesAndTickerRestarts() throws InterruptedException {
+        wheel.schedule("dropped", TICK);
+        wheel.shutdown();
+        assertEquals(0, wheel.size());
+        wheel.tick();
+        assertTrue(expired.isEmpty());
+
+        final CountDownLatch fired = new CountDownLatch(1);
+        TimingWheel fast = new TimingWheel(10, SLOTS, new TimingWheel.ExpiryListener() {
+            @Override
+            public void onExpired(String key) {
+                fired.countDown();
+            }
+        });
+        fast.schedule("first", 10);
+        fast.shutdown();
+        fast.schedule("second", 10);
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        fast.shutdown();
+    }
+
+    // number of ticks before the one which expired the key.
+    private int ticksUntilExpired(String key) {
+        for (int ticks = 0; ticks < 10 * SLOTS; ticks++) {
+            wheel.tick();
+            if (expired.contains(key))
+                return ticks;
+        }
+        throw new AssertionError(key + " never expired");
+    }
+}
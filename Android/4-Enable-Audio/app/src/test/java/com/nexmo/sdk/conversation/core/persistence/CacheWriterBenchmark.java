@@ -0,0 +1,62 @@
+package com.nexmo.sdk.conversation.core.persistence;
+
+import android.database.DatabaseUtils;
+
+import com.nexmo.sdk.conversation.config.Defaults;
+import com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A burst of 10,000 incoming messages written through the group commit, against one
+ * transaction per message as every write used to be.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CacheWriterBenchmark {
+    private static final int MESSAGES = 10000;
+    private static final String DATABASE = "cache-writer-benchmark.db";
+
+    @After
+    public void tearDown() {
+        RuntimeEnvironment.application.deleteDatabase(DATABASE);
+    }
+
+    @Test
+    public void groupCommitOutperformsCommitPerMessage() {
+        long grouped = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) // the first rounds warm up the JIT.
+            grouped = Math.min(grouped, measure(Defaults.CACHE_FLUSH_WINDOW, Defaults.CACHE_MAX_BATCH_SIZE));
+        // a single round, it takes long enough for warm up not to matter.
+        long single = measure(0, 1);
+
+        System.out.println(String.format("%d messages: group commit %.1f ms (%.0f msg/s), commit per message %.1f ms (%.0f msg/s)",
+                MESSAGES, grouped / 1e6, MESSAGES / (grouped / 1e9), single / 1e6, MESSAGES / (single / 1e9)));
+        assertTrue("group commit slower than a commit per message", grouped < single);
+    }
+
+    // time from the first write of the burst until every message is committed.
+    private long measure(long flushWindowMillis, int maxBatchSize) {
+        tearDown();
+        CacheWriterTest.TestDatabase database = new CacheWriterTest.TestDatabase(RuntimeEnvironment.application, DATABASE);
+        database.getWritableDatabase();
+        CacheWriter writer = new CacheWriter(database, flushWindowMillis, maxBatchSize);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MESSAGES; i++)
+            writer.write(CacheWriterTest.insertEvent("CON-" + (i % 10), i));
+        writer.awaitPendingWrites();
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(MESSAGES, DatabaseUtils.queryNumEntries(database.getReadableDatabase(), EventEntry.TABLE_NAME));
+        writer.shutdown();
+        database.close();
+        return elapsed;
+    }
+}
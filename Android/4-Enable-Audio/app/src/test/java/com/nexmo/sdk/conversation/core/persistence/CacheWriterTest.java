@@ -0,0 +1,319 @@
+package com.nexmo.sdk.conversation.core.persistence;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.SystemClock;
+
+import com.nexmo.sdk.conversation.core.persistence.contract.ConversationContract.ConversationEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.ConversationSummaryContract.ConversationSummaryEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.MemberContract.MemberEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.ReceiptContract.ReceiptEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class CacheWriterTest {
+    private TestDatabase database;
+    private CacheWriter writer;
+
+    @Before
+    public void setUp() {
+        database = new TestDatabase(RuntimeEnvironment.application, "cache-writer-test.db");
+        // a wide flush window, so the writes queued by a test end up in one batch.
+        writer = new CacheWriter(database, 200, 500);
+    }
+
+    @After
+    public void tearDown() {
+        writer.shutdown();
+        database.close();
+        RuntimeEnvironment.application.deleteDatabase("cache-writer-test.db");
+    }
+
+    @Test
+    public void awaitPendingWritesSeesEveryQueuedWrite() {
+        for (int i = 0; i < 100; i++)
+            writer.write(insertConversation("CON-" + i));
+        writer.write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                db.execSQL("UPDATE " + ConversationEntry.TABLE_NAME + " SET name = 'renamed' WHERE cid = 'CON-0'");
+            }
+        });
+
+        writer.awaitPendingWrites();
+
+        assertEquals(100, count(ConversationEntry.TABLE_NAME));
+        assertEquals("renamed", DatabaseUtils.stringForQuery(database.getReadableDatabase(),
+                "SELECT name FROM " + ConversationEntry.TABLE_NAME + " WHERE cid = 'CON-0'", null));
+    }
+
+    @Test
+    public void awaitPendingWritesWaitsForWritesOfOtherThreads() throws InterruptedException {
+        final int threads = 4;
+        final CountDownLatch queued = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 250; i++)
+                        writer.write(insertConversation("CON-" + thread + "-" + i));
+                    queued.countDown();
+                }
+            }).start();
+        }
+
+        assertTrue(queued.await(10, TimeUnit.SECONDS));
+        writer.awaitPendingWrites();
+        assertEquals(threads * 250, count(ConversationEntry.TABLE_NAME));
+    }
+
+    @Test
+    public void awaitPendingWritesOnTheWriterThreadReturns() {
+        final AtomicInteger applied = new AtomicInteger();
+        writer.write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                // would wait for itself otherwise.
+                writer.awaitPendingWrites();
+                applied.incrementAndGet();
+            }
+        });
+
+        writer.awaitPendingWrites();
+        assertEquals(1, applied.get());
+    }
+
+    @Test
+    public void failedMutationIsRolledBackAndTheBatchReplayedWithoutIt() {
+        final AtomicInteger goodApplied = new AtomicInteger();
+        writer.write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                goodApplied.incrementAndGet();
+                db.execSQL("INSERT INTO " + ConversationEntry.TABLE_NAME + " (cid, name) VALUES ('CON-1', 'before')");
+            }
+        });
+        writer.write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                // half of its writes are done when it fails.
+                db.execSQL("INSERT INTO " + ConversationEntry.TABLE_NAME + " (cid, name) VALUES ('CON-BAD', 'bad')");
+                throw new IllegalStateException("failing mutation");
+            }
+        });
+        writer.write(insertConversation("CON-2"));
+
+        writer.awaitPendingWrites();
+
+        // the good mutation ran in the rolled back transaction and again in the replay.
+        assertEquals(2, goodApplied.get());
+        assertEquals(2, count(ConversationEntry.TABLE_NAME));
+        assertEquals(0, DatabaseUtils.longForQuery(database.getReadableDatabase(),
+                "SELECT COUNT(*) FROM " + ConversationEntry.TABLE_NAME + " WHERE cid = 'CON-BAD'", null));
+    }
+
+    @Test
+    public void invalidationIsReportedPerTableOnceCommitted() throws InterruptedException {
+        final List<Map<String, Set<String>>> invalidations = Collections.synchronizedList(new ArrayList<Map<String, Set<String>>>());
+        writer.setInvalidationListener(new CacheWriter.InvalidationListener() {
+            @Override
+            public void onInvalidated(Map<String, Set<String>> cidsByTable) {
+                invalidations.add(cidsByTable);
+            }
+        });
+
+        writer.write(insertConversation("CON-1"));
+        writer.write(insertEvent("CON-1", 1));
+        writer.write(insertEvent("CON-1", 2));
+        writer.awaitPendingWrites();
+
+        assertEquals(1, invalidations.size());
+        assertEquals(Collections.singleton("CON-1"), invalidations.get(0).get(ConversationEntry.TABLE_NAME));
+        assertEquals(Collections.singleton("CON-1"), invalidations.get(0).get(EventEntry.TABLE_NAME));
+        assertFalse(invalidations.get(0).containsKey(MemberEntry.TABLE_NAME));
+    }
+
+    @Test
+    public void errorKillingTheWriterReleasesWaiters() throws InterruptedException {
+        writer.write(insertConversation("CON-1"));
+        writer.write(new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                throw new StackOverflowError("mutation");
+            }
+        });
+        writer.write(insertConversation("CON-2"));
+
+        final CountDownLatch released = new CountDownLatch(1);
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writer.awaitPendingWrites();
+                released.countDown();
+            }
+        });
+        waiter.start();
+
+        assertTrue("waiter still blocked", released.await(10, TimeUnit.SECONDS));
+        // the batch died with the thread, later writes are dropped instead of queued forever.
+        assertEquals(0, count(ConversationEntry.TABLE_NAME));
+        writer.write(insertConversation("CON-3"));
+        writer.awaitPendingWrites();
+        assertEquals(0, count(ConversationEntry.TABLE_NAME));
+    }
+
+    @Test
+    public void shutdownCommitsPendingWritesThenDropsLaterOnes() {
+        for (int i = 0; i < 10; i++)
+            writer.write(insertConversation("CON-" + i));
+        writer.shutdown();
+        assertEquals(10, count(ConversationEntry.TABLE_NAME));
+
+        writer.write(insertConversation("CON-LATE"));
+        writer.awaitPendingWrites();
+        assertEquals(10, count(ConversationEntry.TABLE_NAME));
+    }
+
+    @Test
+    public void runExclusiveRunsAfterPendingWrites() {
+        for (int i = 0; i < 50; i++)
+            writer.write(insertConversation("CON-" + i));
+
+        final long[] seen = new long[1];
+        writer.runExclusive(new Runnable() {
+            @Override
+            public void run() {
+                seen[0] = count(ConversationEntry.TABLE_NAME);
+            }
+        });
+        assertEquals(50, seen[0]);
+    }
+
+    @Test
+    public void idleTaskRunsOnceTheQueueIsIdle() throws InterruptedException {
+        final CountDownLatch ran = new CountDownLatch(1);
+        final List<String> threads = new ArrayList<>();
+        writer.setIdleTask(new CacheWriter.IdleTask() {
+            @Override
+            public boolean run(SQLiteDatabase db) {
+                threads.add(Thread.currentThread().getName());
+                ran.countDown();
+                return false;
+            }
+        }, 50);
+        writer.write(insertConversation("CON-1"));
+
+        assertTrue(ran.await(10, TimeUnit.SECONDS));
+        assertEquals("capi-sdk-cache-writer", threads.get(0));
+    }
+
+    @Test
+    public void shutdownWaitsForARunningIdleTask() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger finished = new AtomicInteger();
+        writer.setIdleTask(new CacheWriter.IdleTask() {
+            @Override
+            public boolean run(SQLiteDatabase db) {
+                started.countDown();
+                SystemClock.sleep(300);
+                db.execSQL("DELETE FROM " + ConversationEntry.TABLE_NAME);
+                finished.incrementAndGet();
+                return false;
+            }
+        }, 10);
+        writer.write(insertConversation("CON-1"));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        writer.shutdown();
+        // the database can be closed now, the idle task is done with it.
+        assertEquals(1, finished.get());
+        database.close();
+    }
+
+    private long count(String table) {
+        return DatabaseUtils.queryNumEntries(database.getReadableDatabase(), table);
+    }
+
+    static CacheWriter.Mutation insertConversation(final String cid) {
+        return new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                db.execSQL("INSERT INTO " + ConversationEntry.TABLE_NAME + " (cid, name) VALUES (?, ?)",
+                        new Object[] {cid, "conversation " + cid});
+            }
+        };
+    }
+
+    static CacheWriter.Mutation insertEvent(final String cid, final long eventId) {
+        return new CacheWriter.Mutation() {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                db.execSQL("INSERT INTO " + EventEntry.TABLE_NAME + " (" + EventEntry.COLUMN_CID + ", " + EventEntry.COLUMN_EVENT_ID + ", "
+                        + EventEntry.COLUMN_TEXT + ") VALUES (?, ?, ?)", new Object[] {cid, eventId, "message " + eventId});
+            }
+        };
+    }
+
+    /**
+     * The tables tracked by {@link InvalidationTracker}, reduced to the columns the tests use.
+     */
+    static class TestDatabase extends SQLiteOpenHelper {
+
+        TestDatabase(Context context, String name) {
+            super(context, name, null, 1);
+            setWriteAheadLoggingEnabled(true);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE " + ConversationEntry.TABLE_NAME + " (" + ConversationEntry.COLUMN_CID + " TEXT PRIMARY KEY, "
+                    + ConversationEntry.COLUMN_NAME + " TEXT)");
+            db.execSQL("CREATE TABLE " + MemberEntry.TABLE_NAME + " (" + MemberEntry.COLUMN_MEMBER_ID + " TEXT, "
+                    + ConversationEntry.COLUMN_CID + " TEXT, PRIMARY KEY (" + MemberEntry.COLUMN_MEMBER_ID + ", " + ConversationEntry.COLUMN_CID + "),"
+                    + " FOREIGN KEY(" + ConversationEntry.COLUMN_CID + ") REFERENCES " + ConversationEntry.TABLE_NAME
+                    + "(" + ConversationEntry.COLUMN_CID + ") ON DELETE CASCADE)");
+            db.execSQL("CREATE TABLE " + EventEntry.TABLE_NAME + " (" + EventEntry.COLUMN_EVENT_ID + " INTEGER, "
+                    + EventEntry.COLUMN_CID + " TEXT, " + EventEntry.COLUMN_TEXT + " TEXT, "
+                    + "PRIMARY KEY (" + EventEntry.COLUMN_CID + ", " + EventEntry.COLUMN_EVENT_ID + "))");
+            db.execSQL("CREATE TABLE " + ReceiptEntry.TABLE_NAME + " (" + ReceiptEntry.COLUMN_CID + " TEXT, "
+                    + ReceiptEntry.COLUMN_EVENT_ID + " INTEGER, " + ReceiptEntry.COLUMN_MEMBER_ID + " TEXT)");
+            db.execSQL("CREATE TABLE " + ConversationSummaryEntry.TABLE_NAME + " (" + ConversationSummaryEntry.COLUMN_CID + " TEXT PRIMARY KEY)");
+        }
+
+        @Override
+        public void onOpen(SQLiteDatabase db) {
+            super.onOpen(db);
+            if (!db.isReadOnly()) {
+                db.setForeignKeyConstraintsEnabled(true);
+                InvalidationTracker.install(db);
+            }
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        }
+    }
+}
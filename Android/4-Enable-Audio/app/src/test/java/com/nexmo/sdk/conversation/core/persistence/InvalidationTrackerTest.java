@@ -0,0 +1,146 @@
+package com.nexmo.sdk.conversation.core.persistence;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.nexmo.sdk.conversation.core.persistence.contract.ConversationContract.ConversationEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.ConversationSummaryContract.ConversationSummaryEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.EventContract.EventEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.MemberContract.MemberEntry;
+import com.nexmo.sdk.conversation.core.persistence.contract.ReceiptContract.ReceiptEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class InvalidationTrackerTest {
+    private CacheWriterTest.TestDatabase database;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        database = new CacheWriterTest.TestDatabase(RuntimeEnvironment.application, "invalidation-tracker-test.db");
+        db = database.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+        RuntimeEnvironment.application.deleteDatabase("invalidation-tracker-test.db");
+    }
+
+    @Test
+    public void insertsUpdatesAndDeletesOfEveryTableAreLogged() {
+        Map<String, Set<String>> invalidated = inTransaction(
+                "INSERT INTO " + ConversationEntry.TABLE_NAME + " (cid, name) VALUES ('CON-1', 'one')",
+                "INSERT INTO " + ConversationEntry.TABLE_NAME + " (cid, name) VALUES ('CON-2', 'two')",
+                "INSERT INTO " + MemberEntry.TABLE_NAME + " VALUES ('MEM-1', 'CON-1')",
+                "INSERT INTO " + EventEntry.TABLE_NAME + " VALUES (1, 'CON-2', 'hello')",
+                "INSERT INTO " + ReceiptEntry.TABLE_NAME + " VALUES ('CON-2', 1, 'MEM-1')",
+                "INSERT INTO " + ConversationSummaryEntry.TABLE_NAME + " VALUES ('CON-2')");
+        assertEquals(new HashSet<>(Arrays.asList("CON-1", "CON-2")), invalidated.get(ConversationEntry.TABLE_NAME));
+        assertEquals(Collections.singleton("CON-1"), invalidated.get(MemberEntry.TABLE_NAME));
+        assertEquals(Collections.singleton("CON-2"), invalidated.get(EventEntry.TABLE_NAME));
+        assertEquals(Collections.singleton("CON-2"), invalidated.get(ReceiptEntry.TABLE_NAME));
+        assertEquals(Collections.singleton("CON-2"), invalidated.get(ConversationSummaryEntry.TABLE_NAME));
+
+        invalidated = inTransaction("UPDATE " + EventEntry.TABLE_NAME + " SET text = 'edited' WHERE event_id = 1");
+        assertEquals(Collections.singleton(EventEntry.TABLE_NAME), invalidated.keySet());
+        assertEquals(Collections.singleton("CON-2"), invalidated.get(EventEntry.TABLE_NAME));
+
+        invalidated = inTransaction("DELETE FROM " + ReceiptEntry.TABLE_NAME);
+        assertEquals(Collections.singleton(ReceiptEntry.TABLE_NAME), invalidated.keySet());
+        assertEquals(Collections.singleton("CON-2"), invalidated.get(ReceiptEntry.TABLE_NAME));
+    }
+
+    @Test
+    public void rowsDeletedByCascadeAreLogged() {
+        inTransaction(
+                "INSERT INTO " + ConversationEntry.TABLE_NAME + " (cid, name) VALUES ('CON-1', 'one')",
+                "INSERT INTO " + MemberEntry.TABLE_NAME + " VALUES ('MEM-1', 'CON-1')",
+                "INSERT INTO " + MemberEntry.TABLE_NAME + " VALUES ('MEM-2', 'CON-1')");
+
+        Map<String, Set<String>> invalidated = inTransaction("DELETE FROM " + ConversationEntry.TABLE_NAME + " WHERE cid = 'CON-1'");
+
+        assertEquals(Collections.singleton("CON-1"), invalidated.get(ConversationEntry.TABLE_NAME));
+        assertEquals(Collections.singleton("CON-1"), invalidated.get(MemberEntry.TABLE_NAME));
+    }
+
+    @Test
+    public void collectClearsTheLog() {
+        db.beginTransaction();
+        try {
+            db.execSQL("INSERT INTO " + ConversationEntry.TABLE_NAME + " (cid, name) VALUES ('CON-1', 'one')");
+            assertFalse(InvalidationTracker.collect(db).isEmpty());
+            assertTrue(InvalidationTracker.collect(db).isEmpty());
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        // a transaction writing nothing reports nothing.
+        assertTrue(inTransaction().isEmpty());
+    }
+
+    @Test
+    public void rolledBackChangesAreNotLogged() {
+        db.beginTransaction();
+        try {
+            db.execSQL("INSERT INTO " + ConversationEntry.TABLE_NAME + " (cid, name) VALUES ('CON-1', 'one')");
+        } finally {
+            db.endTransaction();
+        }
+
+        Map<String, Set<String>> invalidated = inTransaction(
+                "INSERT INTO " + ConversationEntry.TABLE_NAME + " (cid, name) VALUES ('CON-2', 'two')");
+        assertEquals(Collections.singleton("CON-2"), invalidated.get(ConversationEntry.TABLE_NAME));
+    }
+
+    @Test
+    public void installingAgainKeepsASingleSetOfTriggers() {
+        // on the primary connection, as onOpen does.
+        db.beginTransaction();
+        try {
+            InvalidationTracker.install(db);
+            InvalidationTracker.install(db);
+            // insert, update and delete, temp triggers are only visible to their own connection.
+            assertEquals(3, DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM sqlite_temp_master WHERE type = 'trigger' AND tbl_name = ?",
+                    new String[] {ConversationEntry.TABLE_NAME}));
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        Map<String, Set<String>> invalidated = inTransaction(
+                "INSERT INTO " + ConversationEntry.TABLE_NAME + " (cid, name) VALUES ('CON-1', 'one')");
+        assertEquals(Collections.singleton("CON-1"), invalidated.get(ConversationEntry.TABLE_NAME));
+    }
+
+    // run the statements in a transaction, and collect the log before it commits as the writer does.
+    private Map<String, Set<String>> inTransaction(String... statements) {
+        db.beginTransaction();
+        try {
+            for (String sql : statements)
+                db.execSQL(sql);
+            Map<String, Set<String>> invalidated = InvalidationTracker.collect(db);
+            db.setTransactionSuccessful();
+            return invalidated;
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
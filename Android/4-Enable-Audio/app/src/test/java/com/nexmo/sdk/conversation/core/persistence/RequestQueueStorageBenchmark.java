@@ -0,0 +1,100 @@
+package com.nexmo.sdk.conversation.core.persistence;
+
+import android.content.Context;
+
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 1,000 queued sends and their responses through the journal, against rewriting the whole
+ * snapshot on every send and response as the queue used to.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RequestQueueStorageBenchmark {
+    private static final int SENDS = 1000;
+
+    private final Context context = RuntimeEnvironment.application;
+
+    @After
+    public void tearDown() {
+        this.context.deleteFile("capi-sdk-pending.journal");
+        this.context.deleteFile("capi-sdk-pending.journal.tmp");
+        this.context.deleteFile("capi-sdk-pending.json");
+        this.context.deleteFile("snapshot-baseline.json");
+    }
+
+    @Test
+    public void journalOutperformsSnapshotRewrites() throws Exception {
+        List<RequestQueueStorageTest.TestRequest> requests = new ArrayList<>();
+        for (int i = 0; i < SENDS; i++)
+            requests.add(new RequestQueueStorageTest.TestRequest(String.valueOf(i)));
+
+        long journal = Long.MAX_VALUE;
+        long snapshot = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT.
+            journal = Math.min(journal, measureJournal(requests));
+            snapshot = Math.min(snapshot, measureSnapshots(requests));
+        }
+
+        System.out.println(String.format("%d sends and responses: journal %.1f ms (%.0f ops/s), snapshot rewrites %.1f ms (%.0f ops/s)",
+                SENDS, journal / 1e6, 2 * SENDS / (journal / 1e9), snapshot / 1e6, 2 * SENDS / (snapshot / 1e9)));
+        assertTrue("journal slower than snapshot rewrites", journal < snapshot);
+    }
+
+    // every send queued before any response arrives, the worst case for a snapshot.
+    private long measureJournal(List<RequestQueueStorageTest.TestRequest> requests) {
+        tearDown();
+        RequestQueueStorage storage = new RequestQueueStorage(this.context);
+        storage.loadAndRemove();
+
+        long start = System.nanoTime();
+        for (RequestQueueStorageTest.TestRequest request : requests)
+            storage.enqueue(request);
+        for (RequestQueueStorageTest.TestRequest request : requests)
+            storage.ack(request.getTid());
+        storage.shutdown(); // waits until every record is written and synced.
+        return System.nanoTime() - start;
+    }
+
+    private long measureSnapshots(List<RequestQueueStorageTest.TestRequest> requests) throws IOException {
+        File file = this.context.getFileStreamPath("snapshot-baseline.json");
+        Map<String, RequestQueueStorage.RequestHolder> pending = new LinkedHashMap<>();
+
+        long start = System.nanoTime();
+        for (RequestQueueStorageTest.TestRequest request : requests) {
+            pending.put(request.getTid(), new RequestQueueStorage.RequestHolder(request));
+            rewrite(file, pending);
+        }
+        for (RequestQueueStorageTest.TestRequest request : requests) {
+            pending.remove(request.getTid());
+            rewrite(file, pending);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void rewrite(File file, Map<String, RequestQueueStorage.RequestHolder> pending) throws IOException {
+        JSONArray snapshot = new JSONArray();
+        for (RequestQueueStorage.RequestHolder holder : pending.values())
+            snapshot.put(holder.toJson());
+        FileOutputStream outputStream = new FileOutputStream(file, false);
+        try {
+            outputStream.write(snapshot.toString().getBytes("UTF-8"));
+        } finally {
+            outputStream.close();
+        }
+    }
+}
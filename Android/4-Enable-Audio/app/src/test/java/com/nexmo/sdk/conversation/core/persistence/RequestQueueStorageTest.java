@@ -0,0 +1,288 @@
+package com.nexmo.sdk.conversation.core.persistence;
+
+import android.content.Context;
+
+import com.nexmo.sdk.conversation.client.event.RequestHandler;
+import com.nexmo.sdk.conversation.core.client.request.Request;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class RequestQueueStorageTest {
+    private static final String LEGACY_FILENAME = "capi-sdk-pending.json";
+    private static final String JOURNAL_FILENAME = "capi-sdk-pending.journal";
+
+    private Context context;
+    private final List<RequestQueueStorage> storages = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        this.context = RuntimeEnvironment.application;
+        deleteFiles();
+    }
+
+    @After
+    public void tearDown() {
+        for (RequestQueueStorage storage : this.storages)
+            storage.shutdown();
+        deleteFiles();
+    }
+
+    @Test
+    public void recoversRequestsWhichWereNotAcknowledged() {
+        RequestQueueStorage storage = open();
+        storage.enqueue(new TestRequest("1"));
+        storage.enqueue(new TestRequest("2"));
+        storage.enqueue(new TestRequest("3"));
+        storage.ack("2");
+        storage.loadAndRemove(); // waits for the writer, then the process "crashes".
+
+        assertEquals(tids("1", "3"), tidsOf(open().loadAndRemove()));
+    }
+
+    @Test
+    public void recoveredRequestsAreReturnedOnce() {
+        RequestQueueStorage storage = open();
+        storage.enqueue(new TestRequest("1"));
+        storage.shutdown();
+
+        RequestQueueStorage recovered = open();
+        assertEquals(tids("1"), tidsOf(recovered.loadAndRemove()));
+        assertTrue(recovered.loadAndRemove().isEmpty());
+
+        // still journaled until acknowledged.
+        recovered.shutdown();
+        RequestQueueStorage again = open();
+        assertEquals(tids("1"), tidsOf(again.loadAndRemove()));
+        again.ack("1");
+        again.shutdown();
+        assertTrue(open().loadAndRemove().isEmpty());
+    }
+
+    @Test
+    public void ignoresNonPersistableRequests() {
+        RequestQueueStorage storage = open();
+        storage.enqueue(new TestRequest("1", false));
+        storage.shutdown();
+
+        assertTrue(open().loadAndRemove().isEmpty());
+    }
+
+    @Test
+    public void ignoresATruncatedLastRecord() throws Exception {
+        RequestQueueStorage storage = open();
+        storage.enqueue(new TestRequest("1"));
+        storage.enqueue(new TestRequest("2"));
+        storage.loadAndRemove();
+
+        // the process was killed in the middle of the third append.
+        String record = new RequestQueueStorage.RequestHolder(new TestRequest("3")).toJournalRecord().toString();
+        appendTo(file(JOURNAL_FILENAME), record.substring(0, record.length() / 2));
+
+        assertEquals(tids("1", "2"), tidsOf(open().loadAndRemove()));
+    }
+
+    @Test
+    public void ignoresACompactionWhichWasNotRenamed() throws Exception {
+        RequestQueueStorage storage = open();
+        storage.enqueue(new TestRequest("1"));
+        storage.enqueue(new TestRequest("2"));
+        storage.loadAndRemove();
+
+        // the process was killed after writing the compacted journal, before renaming it.
+        File compacted = file(JOURNAL_FILENAME + ".tmp");
+        appendTo(compacted, new RequestQueueStorage.RequestHolder(new TestRequest("stale")).toJournalRecord() + "\n");
+
+        RequestQueueStorage recovered = open();
+        assertEquals(tids("1", "2"), tidsOf(recovered.loadAndRemove()));
+        assertFalse(compacted.exists());
+        assertEquals(2, lines(file(JOURNAL_FILENAME)).size());
+    }
+
+    @Test
+    public void compactsOnceAcknowledgedRecordsPileUp() throws Exception {
+        RequestQueueStorage storage = open();
+        storage.enqueue(new TestRequest("kept"));
+        int sent = 2 * RequestQueueStorage.COMPACTION_THRESHOLD;
+        for (int i = 0; i < sent; i++) {
+            storage.enqueue(new TestRequest(String.valueOf(i)));
+            storage.ack(String.valueOf(i));
+        }
+        storage.shutdown();
+
+        // 2 records per request were appended, at most a threshold's worth are left.
+        assertTrue(lines(file(JOURNAL_FILENAME)).size() <= RequestQueueStorage.COMPACTION_THRESHOLD + 1);
+        assertEquals(tids("kept"), tidsOf(open().loadAndRemove()));
+    }
+
+    @Test
+    public void migratesTheLegacySnapshot() throws Exception {
+        writeLegacySnapshot("1", "2");
+
+        RequestQueueStorage storage = open();
+        assertEquals(tids("1", "2"), tidsOf(storage.loadAndRemove()));
+        assertFalse(file(LEGACY_FILENAME).exists());
+        assertEquals(2, lines(file(JOURNAL_FILENAME)).size());
+
+        storage.ack("1");
+        storage.shutdown();
+        assertEquals(tids("2"), tidsOf(open().loadAndRemove()));
+    }
+
+    @Test
+    public void keepsTheLegacySnapshotUntilTheJournalReplacesIt() throws Exception {
+        writeLegacySnapshot("1", "2");
+        // a directory in place of the journal, the compacted journal can't be renamed over it.
+        File blocker = file(JOURNAL_FILENAME);
+        assertTrue(new File(blocker, "blocker").mkdirs());
+
+        RequestQueueStorage storage = open();
+        assertEquals(tids("1", "2"), tidsOf(storage.loadAndRemove()));
+        storage.shutdown();
+        assertTrue(file(LEGACY_FILENAME).exists());
+
+        deleteRecursively(blocker);
+        assertEquals(tids("1", "2"), tidsOf(open().loadAndRemove()));
+        assertFalse(file(LEGACY_FILENAME).exists());
+    }
+
+    @Test
+    public void restartsTheWriterAfterShutdown() {
+        RequestQueueStorage storage = open();
+        storage.enqueue(new TestRequest("1"));
+        storage.shutdown();
+        storage.enqueue(new TestRequest("2"));
+        storage.ack("1");
+        storage.shutdown();
+
+        assertEquals(tids("2"), tidsOf(open().loadAndRemove()));
+    }
+
+    private RequestQueueStorage open() {
+        RequestQueueStorage storage = new RequestQueueStorage(this.context);
+        this.storages.add(storage);
+        return storage;
+    }
+
+    private File file(String name) {
+        return this.context.getFileStreamPath(name);
+    }
+
+    private void deleteFiles() {
+        deleteRecursively(file(LEGACY_FILENAME));
+        deleteRecursively(file(JOURNAL_FILENAME));
+        deleteRecursively(file(JOURNAL_FILENAME + ".tmp"));
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null)
+            for (File child : children)
+                deleteRecursively(child);
+        file.delete();
+    }
+
+    private void writeLegacySnapshot(String... tids) throws IOException {
+        JSONArray snapshot = new JSONArray();
+        for (String tid : tids)
+            snapshot.put(new RequestQueueStorage.RequestHolder(new TestRequest(tid)).toJson());
+        appendTo(file(LEGACY_FILENAME), snapshot.toString());
+    }
+
+    private static void appendTo(File file, String text) throws IOException {
+        FileOutputStream outputStream = new FileOutputStream(file, true);
+        try {
+            outputStream.write(text.getBytes("UTF-8"));
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private static List<String> lines(File file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null)
+                lines.add(line);
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    private static List<String> tids(String... tids) {
+        List<String> list = new ArrayList<>();
+        for (String tid : tids)
+            list.add(tid);
+        return list;
+    }
+
+    private static List<String> tidsOf(Deque<RequestQueueStorage.RequestHolder> holders) {
+        List<String> tids = new ArrayList<>();
+        for (RequestQueueStorage.RequestHolder holder : holders)
+            tids.add(holder.getTid());
+        return tids;
+    }
+
+    static class TestRequest extends Request<RequestHandler<Void>, Void> {
+        private final boolean persistable;
+
+        TestRequest(String tid) {
+            this(tid, true);
+        }
+
+        TestRequest(String tid, boolean persistable) {
+            super(TYPE.OTHER, tid);
+            this.persistable = persistable;
+        }
+
+        @Override
+        protected JSONObject makeJson() throws JSONException {
+            return newTaggedResponse()
+                    .put("cid", "CON-1")
+                    .put("body", jsonObject("text", "message " + getTid()));
+        }
+
+        @Override
+        public String getRequestName() {
+            return "text";
+        }
+
+        @Override
+        public String getSuccessEventName() {
+            return "text:success";
+        }
+
+        @Override
+        public boolean isPersistable() {
+            return this.persistable;
+        }
+
+        @Override
+        public Void parse(JSONObject jsonObject, JSONObject body) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.nexmo.sdk.conversation.core.util;
+
+import org.junit.Test;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 200,000 timestamps parsed and formatted by {@link DateUtil}, against a {@link java.text.SimpleDateFormat}
+ * per thread as they used to be.
+ */
+public class DateUtilBenchmark {
+    private static final int TIMESTAMPS = 200000;
+
+    @Test
+    public void codecOutperformsSimpleDateFormat() throws ParseException {
+        String[] timestamps = new String[TIMESTAMPS];
+        Random random = new Random(7);
+        for (int i = 0; i < TIMESTAMPS; i++)
+            timestamps[i] = DateUtilTest.randomTimestamp(random);
+        DateFormat dateFormat = DateUtilTest.oldDateFormat(TimeZone.getDefault());
+
+        long parse = Long.MAX_VALUE;
+        long oldParse = Long.MAX_VALUE;
+        long format = Long.MAX_VALUE;
+        long oldFormat = Long.MAX_VALUE;
+        long checksum = 0;
+        long oldChecksum = 0;
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT.
+            checksum = 0;
+            long start = System.nanoTime();
+            for (String timestamp : timestamps) {
+                try {
+                    checksum += DateUtil.parseIso8601Millis(timestamp);
+                } catch (ParseException e) {
+                    checksum--;
+                }
+            }
+            parse = Math.min(parse, System.nanoTime() - start);
+
+            oldChecksum = 0;
+            start = System.nanoTime();
+            for (String timestamp : timestamps) {
+                try {
+                    oldChecksum += dateFormat.parse(timestamp).getTime();
+                } catch (ParseException e) {
+                    oldChecksum--;
+                }
+            }
+            oldParse = Math.min(oldParse, System.nanoTime() - start);
+
+            int length = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < TIMESTAMPS; i++)
+                length += DateUtil.formatIso8601Millis(i * 15817L * 1000).length();
+            format = Math.min(format, System.nanoTime() - start);
+
+            int oldLength = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < TIMESTAMPS; i++)
+                oldLength += dateFormat.format(new Date(i * 15817L * 1000)).length();
+            oldFormat = Math.min(oldFormat, System.nanoTime() - start);
+            assertEquals(oldLength, length);
+        }
+
+        System.out.println(String.format("%d timestamps: parse %.1f ms, SimpleDateFormat parse %.1f ms, format %.1f ms, SimpleDateFormat format %.1f ms",
+                TIMESTAMPS, parse / 1e6, oldParse / 1e6, format / 1e6, oldFormat / 1e6));
+        assertEquals(oldChecksum, checksum);
+        assertTrue("parse slower than SimpleDateFormat", parse < oldParse);
+        assertTrue("format slower than SimpleDateFormat", format < oldFormat);
+    }
+}
@@ -0,0 +1,179 @@
+package com.nexmo.sdk.conversation.core.util;
+
+import org.junit.Test;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link DateUtil} against the non-lenient {@link SimpleDateFormat} it replaced.
+ */
+public class DateUtilTest {
+    private static final String[] TIME_ZONES = {
+            "UTC", "America/New_York", "Europe/London", "Asia/Kolkata", "Australia/Lord_Howe", "America/Sao_Paulo"
+    };
+
+    private static final String[] TIMESTAMPS = {
+            "2017-03-31T12:50:33.871",
+            // the zone designator is ignored, the time is read as local.
+            "2017-03-31T12:50:33.871Z",
+            "2017-03-31T12:50:33.871+05:30",
+            "2017-03-31T12:50:33.871-0800",
+            // the millis are the value of the digits.
+            "2017-03-31T12:50:33.5",
+            "2017-03-31T12:50:33.050",
+            "2017-03-31T12:50:33.8712",
+            "2017-03-31T12:50:33.999999Z",
+            // fields of any width, after spaces.
+            "2017-3-1T2:5:3.7",
+            "0002017-03-31T12:50:33.871",
+            " 2017-03-31T 12:50:33.871",
+            "2017-03-31T12:50:33. 871",
+            // invalid.
+            "2017-03-31T12:50:33",
+            "2017-03-31T12:50:33Z",
+            "2017-03-31 12:50:33.871",
+            "2017-03-31T12:50:33.Z",
+            "2017-02-29T12:00:00.000",
+            "2016-02-29T12:00:00.000",
+            "2017-13-01T12:00:00.000",
+            "2017-00-01T12:00:00.000",
+            "2017-04-31T12:00:00.000",
+            "2017-03-31T24:00:00.000",
+            "2017-03-31T23:60:00.000",
+            "2017-03-31T23:59:60.000",
+            "99999999999-03-31T12:00:00.000",
+            "",
+            "Z",
+            // daylight saving, skipped and repeated in some of the zones.
+            "2017-03-12T02:30:00.000",
+            "2017-11-05T01:30:00.000",
+            "2017-03-26T01:30:00.000",
+            "2017-10-29T01:30:00.000",
+            "2017-04-02T02:15:00.000",
+            "2017-10-01T02:15:00.000",
+            "2017-10-15T00:30:00.000",
+            "2018-02-17T23:30:00.000",
+            // the Julian calendar, and its switch to the Gregorian one.
+            "1582-10-04T12:00:00.000",
+            "1582-10-10T12:00:00.000",
+            "1582-10-15T12:00:00.000",
+            "1066-10-14T09:00:00.000",
+            "0000-01-01T00:00:00.000",
+            "0001-01-01T00:00:00.000",
+            "12017-03-31T12:50:33.871"
+    };
+
+    @Test
+    public void parsesAsSimpleDateFormatDid() {
+        for (String id : TIME_ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(id);
+            DateFormat dateFormat = oldDateFormat(timeZone);
+            for (String timestamp : TIMESTAMPS)
+                assertEquals(id + " " + timestamp, oldParse(dateFormat, timestamp), parse(timestamp, timeZone));
+        }
+    }
+
+    @Test
+    public void parsesRandomTimestampsAsSimpleDateFormatDid() {
+        Random random = new Random(42);
+        for (String id : TIME_ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(id);
+            DateFormat dateFormat = oldDateFormat(timeZone);
+            for (int i = 0; i < 20000; i++) {
+                String timestamp = randomTimestamp(random);
+                assertEquals(id + " " + timestamp, oldParse(dateFormat, timestamp), parse(timestamp, timeZone));
+            }
+        }
+    }
+
+    @Test
+    public void concurrentParsesAndFormatsMatchSimpleDateFormat() throws InterruptedException {
+        final int threads = 8;
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final long seed = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        // a format of its own per thread, SimpleDateFormat isn't thread safe.
+                        DateFormat dateFormat = oldDateFormat(TimeZone.getDefault());
+                        Random random = new Random(seed);
+                        for (int i = 0; i < 20000; i++) {
+                            String timestamp = randomTimestamp(random);
+                            Long expected = oldParse(dateFormat, timestamp);
+                            assertEquals(timestamp, expected, parse(timestamp, null));
+                            if (expected != null)
+                                assertEquals(dateFormat.format(new Date(expected)), DateUtil.formatIso8601Millis(expected));
+                        }
+                    } catch (Throwable throwable) {
+                        errors.add(throwable);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "parser-" + t).start();
+        }
+
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        if (!errors.isEmpty())
+            throw new AssertionError(errors.get(0));
+    }
+
+    @Test
+    public void nullIsKeptAsNull() throws ParseException {
+        assertNull(DateUtil.formatIso8601DateString((String) null));
+        assertNull(DateUtil.formatIso8601DateString((Date) null));
+    }
+
+    static DateFormat oldDateFormat(TimeZone timeZone) {
+        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS", Locale.getDefault());
+        dateFormat.setLenient(false);
+        dateFormat.setTimeZone(timeZone);
+        return dateFormat;
+    }
+
+    // mostly valid timestamps of the last and next decades, some with a zone, some out of range.
+    static String randomTimestamp(Random random) {
+        String timestamp = String.format(Locale.US, "%04d-%02d-%02dT%02d:%02d:%02d.%03d",
+                1990 + random.nextInt(60), 1 + random.nextInt(12), 1 + random.nextInt(random.nextInt(10) == 0 ? 32 : 28),
+                random.nextInt(random.nextInt(50) == 0 ? 25 : 24), random.nextInt(60), random.nextInt(60), random.nextInt(1000));
+        switch (random.nextInt(4)) {
+            case 0: return timestamp + "Z";
+            case 1: return timestamp + "+01:00";
+            default: return timestamp;
+        }
+    }
+
+    private static Long oldParse(DateFormat dateFormat, String timestamp) {
+        try {
+            return dateFormat.parse(timestamp).getTime();
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    private static Long parse(String timestamp, TimeZone timeZone) {
+        try {
+            return (timeZone != null ? DateUtil.parseIso8601Millis(timestamp, timeZone) : DateUtil.parseIso8601Millis(timestamp));
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+}